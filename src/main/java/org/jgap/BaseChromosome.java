@@ -10,16 +10,16 @@
 package org.jgap;
 
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 
 import org.jgap.impl.JGAPFactory;
+import org.jgap.util.ConstructorCache;
+import org.jgap.util.RepresentationCursor;
 import org.jgap.util.StringKit;
 
 /**
@@ -407,36 +407,38 @@ public abstract class BaseChromosome
       throws UnsupportedRepresentationException {
     if (a_representation != null) {
       try {
-        List r = split(a_representation);
+        RepresentationCursor cursor = new RepresentationCursor(
+            a_representation);
         String g;
         // Obtain fitness value.
         // ---------------------
-        g = decode( (String) r.get(0));
+        if (!cursor.hasNext()) {
+          throw new UnsupportedRepresentationException(
+              "Fitness value expected!");
+        }
+        g = decode(cursor.nextField(CHROM_DELIMITER));
+        if (!cursor.hasNext()) {
+          throw new UnsupportedRepresentationException(
+              "Number of genes expected!");
+        }
+        String count = cursor.nextField(CHROM_DELIMITER);
+        if (!cursor.hasNext()) {
+          throw new UnsupportedRepresentationException("Gene data missing!");
+        }
         setFitnessValue(Double.parseDouble(g));
-        r.remove(0);/**@todo we can do this faster!*/
         // Obtain number of genes.
         // -----------------------
-        g = decode( (String) r.get(0));
-        int count = Integer.parseInt(g);
-        setGenes(new Gene[count]);
-        r.remove(0);/**@todo we can do this faster!*/
+        g = decode(count);
+        setGenes(new Gene[Integer.parseInt(g)]);
         // Obtain the genes.
         // -----------------
-        Iterator iter = r.iterator();
-        StringTokenizer st;
-        String clas;
-        String representation;
+        String[] st;
         Gene gene;
         int index = 0;
-        while (iter.hasNext()) {
-          g = decode( (String) iter.next());
-          st = new StringTokenizer(g, GENE_DELIMITER);
-          if (st.countTokens() != 2)
-            throw new UnsupportedRepresentationException("In " + g + ", " +
-                "expecting two tokens, separated by " + GENE_DELIMITER);
-          clas = st.nextToken();
-          representation = st.nextToken();
-          gene = createGene(clas, representation);
+        while (cursor.hasNext()) {
+          st = RepresentationCursor.splitPair(cursor.nextElement(
+              GENE_DELIMITER_HEADING, GENE_DELIMITER_CLOSING), GENE_DELIMITER);
+          gene = createGene(st[0], st[1]);
           setGene(index++, gene);
         }
       }
@@ -463,9 +465,8 @@ public abstract class BaseChromosome
   protected Gene createGene(String a_geneClassName,
                             String a_persistentRepresentation)
       throws Exception {
-    Class geneClass = Class.forName(a_geneClassName);
-    Constructor constr = geneClass.getConstructor(new Class[] {Configuration.class});
-    Gene gene = (Gene) constr.newInstance(new Object[] {getConfiguration()});
+    Gene gene = (Gene) ConstructorCache.newInstance(a_geneClassName,
+        Configuration.class, getConfiguration());
     gene.setValueFromPersistentRepresentation(a_persistentRepresentation);
     return gene;
   }
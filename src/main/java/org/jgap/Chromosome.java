@@ -129,6 +129,14 @@ public class Chromosome
    */
   private boolean m_alwaysCalculate;
 
+  /**
+   * TRUE: the fitness value has been estimated (e.g. by a surrogate model)
+   * instead of being computed by the fitness function.
+   *
+   * @since 3.7
+   */
+  private boolean m_fitnessEstimated;
+
   /**
    * Default constructor, only provided for dynamic instantiation.<p>
    * Attention: The configuration used is the one set with the static method
@@ -437,6 +445,9 @@ public class Chromosome
         }
       }
       copy.setFitnessValue(m_fitnessValue);
+      if (m_fitnessEstimated && copy instanceof Chromosome) {
+        ( (Chromosome) copy).m_fitnessEstimated = true;
+      }
       // Clone constraint checker.
       // -------------------------
       copy.setConstraintChecker(getConstraintChecker());
@@ -567,6 +578,7 @@ public class Chromosome
         // fitness value.
         // --------------------------------------------------------------
         m_fitnessValue = normalFitnessFunction.getFitnessValue(this);
+        m_fitnessEstimated = false;
       }
     }
     return m_fitnessValue;
@@ -584,9 +596,11 @@ public class Chromosome
    * @since 1.0
    */
   public void setFitnessValue(double a_newFitnessValue) {
-    if (a_newFitnessValue >= 0 &&
-        Math.abs(m_fitnessValue - a_newFitnessValue) > 0.0000001) {
-      m_fitnessValue = a_newFitnessValue;
+    if (a_newFitnessValue >= 0) {
+      m_fitnessEstimated = false;
+      if (Math.abs(m_fitnessValue - a_newFitnessValue) > 0.0000001) {
+        m_fitnessValue = a_newFitnessValue;
+      }
     }
   }
 
@@ -602,6 +616,31 @@ public class Chromosome
    */
   public void setFitnessValueDirectly(double a_newFitnessValue) {
     m_fitnessValue = a_newFitnessValue;
+    m_fitnessEstimated = false;
+  }
+
+  /**
+   * Sets an estimated fitness value, e.g. as predicted by a surrogate model.
+   * It is used like a computed one, but isFitnessEstimated() returns true
+   * until a fitness value is set or computed.
+   *
+   * @param a_estimatedFitnessValue the estimated fitness value
+   *
+   * @since 3.7
+   */
+  public void setFitnessValueEstimated(double a_estimatedFitnessValue) {
+    m_fitnessValue = a_estimatedFitnessValue;
+    m_fitnessEstimated = true;
+  }
+
+  /**
+   * @return true if the fitness value has been estimated instead of being
+   * computed by the fitness function
+   *
+   * @since 3.7
+   */
+  public boolean isFitnessEstimated() {
+    return m_fitnessEstimated;
   }
 
   /**
@@ -936,6 +975,7 @@ public class Chromosome
     // --------------------------------
     m_fitnessValue = getConfiguration().getFitnessFunction().
         NO_FITNESS_VALUE;
+    m_fitnessEstimated = false;
     m_isSelectedForNextGeneration = false;
     // Next we want to try to release this Chromosome to a ChromosomePool
     // if one has been setup so that we can save a little time and memory
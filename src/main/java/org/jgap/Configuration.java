@@ -1321,6 +1321,22 @@ implements Configurable, Serializable, ICloneable, Comparable {
 		return m_generationNr;
 	}
 
+	/**
+	 * Sets the number of the current generation, e.g. when resuming an
+	 * evolution from a checkpoint.
+	 *
+	 * @param a_generationNr the number of generations evolved so far
+	 *
+	 * @since 3.7
+	 */
+	public void setGenerationNr(final int a_generationNr) {
+		if (a_generationNr < 0) {
+			throw new IllegalArgumentException(
+					"Generation number must not be negative!");
+		}
+		m_generationNr = a_generationNr;
+	}
+
 	/**
 	 * Implementation of the Configurable interface.
 	 * @return ConfigurationHandler
@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.Vector;
 
 import org.jgap.audit.IEvolutionMonitor;
+import org.jgap.data.CheckpointService;
 import org.jgap.distr.IPopulationMerger;
 import org.jgap.impl.job.EvolveData;
 import org.jgap.impl.job.EvolveJob;
@@ -66,6 +67,13 @@ public class Genotype implements Serializable, Runnable {
 
 	private IEvolutionMonitor m_monitor;
 
+	/**
+	 * Writes checkpoints during evolution, null for none
+	 * 
+	 * @since 3.7
+	 */
+	private transient CheckpointService m_checkpointService;
+
 	/**
 	 * Constructs a new Genotype instance with the given array of Chromosomes
 	 * and the given active Configuration instance. Note that the Configuration
@@ -258,6 +266,9 @@ public class Genotype implements Serializable, Runnable {
 		final Population newPop = breeder.evolve(getPopulation(),
 				getConfiguration());
 		setPopulation(newPop);
+		if (m_checkpointService != null) {
+			m_checkpointService.generationEvolved(this);
+		}
 	}
 
 	/**
@@ -761,6 +772,23 @@ public class Genotype implements Serializable, Runnable {
 	 * @author Klaus Meffert
 	 * @since 3.6
 	 */
+	/**
+	 * Sets the service writing checkpoints after each generation if due.
+	 * Resume from a checkpoint via CheckpointService.resume.
+	 * 
+	 * @param a_service
+	 *            the checkpoint service, null for none
+	 * 
+	 * @since 3.7
+	 */
+	public void setCheckpointService(final CheckpointService a_service) {
+		m_checkpointService = a_service;
+	}
+
+	public CheckpointService getCheckpointService() {
+		return m_checkpointService;
+	}
+
 	public void setMonitor(final IEvolutionMonitor a_monitor) {
 		m_monitor = a_monitor;
 	}
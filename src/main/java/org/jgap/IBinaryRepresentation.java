@@ -0,0 +1,88 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for genes that can write their allele in binary form, as a
+ * compact alternative to IPersistentRepresentation for many individuals.
+ * <p>
+ * The state of a gene is split into its schema and its allele. The schema
+ * is the state shared by all genes at the same position of the chromosomes
+ * of a population (e.g. the bounds of a number gene). It is written once per
+ * population, see org.jgap.data.ChromosomeSchema. The allele is written per
+ * individual into a ByteBuffer, which can be reused for all individuals.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public interface IBinaryRepresentation {
+  /** String containing the CVS revision. Read out via reflection!*/
+  final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Writes the state shared by all genes at the same position, e.g. bounds.
+   *
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  void writeSchema(DataOutput a_out)
+      throws IOException;
+
+  /**
+   * Counterpart of writeSchema.
+   *
+   * @param a_in the input to read from
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  void readSchema(DataInput a_in)
+      throws IOException;
+
+  /**
+   * @return number of bytes written by writeAllele, -1 if it varies
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  int getAlleleSize();
+
+  /**
+   * Writes the allele at the position of the buffer, advancing it.
+   *
+   * @param a_out the buffer to write to
+   * @throws java.nio.BufferOverflowException if the buffer is too small
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  void writeAllele(ByteBuffer a_out);
+
+  /**
+   * Counterpart of writeAllele.
+   *
+   * @param a_in the buffer to read from
+   * @throws UnsupportedRepresentationException if the data read is invalid
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  void readAllele(ByteBuffer a_in)
+      throws UnsupportedRepresentationException;
+}
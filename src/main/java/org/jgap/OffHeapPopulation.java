@@ -0,0 +1,643 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.jgap.data.ChromosomeSchema;
+
+/**
+ * Store of a very large number of chromosomes of a fixed schema, kept in
+ * (by default direct) byte buffers instead of chromosome and gene objects.
+ * Each chromosome occupies a slot holding its fitness value and its alleles,
+ * encoded via ChromosomeSchema. All genes of the schema must have a fixed
+ * binary size (e.g. IntegerGene, DoubleGene, BooleanGene, FixedBinaryGene),
+ * see ChromosomeSchema.getRecordSize().
+ * <p>
+ * Chromosomes are accessed through a ChromosomeView, a flyweight chromosome
+ * that is moved from slot to slot. Its genes hold the alleles of the current
+ * slot, fitness values set or computed on it are written to the slot. Thus
+ * fitness evaluation and selection iterate over the store without creating
+ * an object per chromosome. Only the chromosomes selected are materialized,
+ * see getChromosome(int) and toPopulation(int[]).
+ * <p>
+ * Adding and replacing chromosomes is synchronized. A view must not be
+ * shared between threads, but each thread may use its own view.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class OffHeapPopulation
+    implements Iterable<IChromosome> {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Default size of a buffer segment: 256 MB.
+   */
+  public final static int DEFAULT_SEGMENT_SIZE = 1 << 28;
+
+  private final Configuration m_conf;
+
+  private final ChromosomeSchema m_schema;
+
+  /**
+   * Bytes per slot: fitness value followed by the alleles.
+   */
+  private final int m_slotSize;
+
+  private final int m_slotsPerSegment;
+
+  private final boolean m_direct;
+
+  /**
+   * Segments allocated, replaced by a larger array when growing.
+   */
+  private volatile ByteBuffer[] m_segments = new ByteBuffer[0];
+
+  private volatile int m_size;
+
+  /**
+   * Chromosome used for encoding alleles when adding random chromosomes.
+   */
+  private IChromosome m_random;
+
+  private final Cursor m_writer = new Cursor();
+
+  /**
+   * Creates a store for chromosomes like the sample chromosome of the
+   * configuration, using direct buffers.
+   *
+   * @param a_conf the configuration to use
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public OffHeapPopulation(Configuration a_conf) {
+    this(a_conf.getSampleChromosome(), DEFAULT_SEGMENT_SIZE, true);
+  }
+
+  /**
+   * @param a_sample the chromosome whose genes define the schema
+   * @param a_segmentSize bytes per buffer segment, rounded to whole slots;
+   * buffers are allocated segment by segment as the store grows
+   * @param a_direct true: allocate direct buffers outside the heap, false:
+   * allocate heap buffers
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public OffHeapPopulation(IChromosome a_sample, int a_segmentSize,
+                           boolean a_direct) {
+    if (a_sample == null) {
+      throw new IllegalArgumentException("Sample chromosome must not be"
+                                         + " null!");
+    }
+    m_conf = a_sample.getConfiguration();
+    m_schema = new ChromosomeSchema(a_sample);
+    if (m_schema.getRecordSize() < 0) {
+      throw new IllegalArgumentException("All genes must have a fixed"
+                                         + " binary size!");
+    }
+    m_slotSize = 8 + m_schema.getRecordSize();
+    m_slotsPerSegment = Math.max(1, a_segmentSize / m_slotSize);
+    m_direct = a_direct;
+  }
+
+  public Configuration getConfiguration() {
+    return m_conf;
+  }
+
+  public ChromosomeSchema getSchema() {
+    return m_schema;
+  }
+
+  /**
+   * @return number of chromosomes stored
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int size() {
+    return m_size;
+  }
+
+  /**
+   * @return number of bytes allocated
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public long getAllocatedBytes() {
+    return (long) m_segments.length * m_slotsPerSegment * m_slotSize;
+  }
+
+  /**
+   * Appends a chromosome.
+   *
+   * @param a_chrom the chromosome to add, having the genes of the schema
+   * @return index of the chromosome in the store
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized int add(IChromosome a_chrom) {
+    int index = m_size;
+    if (index == Integer.MAX_VALUE) {
+      throw new IllegalStateException("Store is full!");
+    }
+    ensureCapacity(index + 1);
+    write(index, a_chrom);
+    m_size = index + 1;
+    return index;
+  }
+
+  /**
+   * Appends all chromosomes of a population.
+   *
+   * @param a_pop the population to add
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void addAll(Population a_pop) {
+    for (int i = 0; i < a_pop.size(); i++) {
+      add(a_pop.getChromosome(i));
+    }
+  }
+
+  /**
+   * Appends chromosomes with random alleles and without fitness value.
+   *
+   * @param a_count number of chromosomes to add
+   * @return index of the first chromosome added
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized int addRandom(int a_count)
+      throws InvalidConfigurationException {
+    if (m_random == null) {
+      m_random = m_schema.newChromosome();
+    }
+    RandomGenerator generator = m_conf.getRandomGenerator();
+    int first = m_size;
+    for (int i = 0; i < a_count; i++) {
+      for (int j = 0; j < m_random.size(); j++) {
+        m_random.getGene(j).setToRandomValue(generator);
+      }
+      add(m_random);
+    }
+    return first;
+  }
+
+  /**
+   * Replaces a chromosome.
+   *
+   * @param a_index index of the chromosome to replace
+   * @param a_chrom the new chromosome, having the genes of the schema
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void set(int a_index, IChromosome a_chrom) {
+    checkIndex(a_index);
+    write(a_index, a_chrom);
+  }
+
+  /**
+   * Removes all chromosomes, keeping the buffers allocated.
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void clear() {
+    m_size = 0;
+  }
+
+  private void write(int a_index, IChromosome a_chrom) {
+    ByteBuffer buf = m_writer.position(a_index);
+    buf.putDouble(a_chrom.getFitnessValueDirectly());
+    m_schema.encode(a_chrom, buf);
+  }
+
+  private void ensureCapacity(int a_size) {
+    ByteBuffer[] segments = m_segments;
+    int needed = (a_size - 1) / m_slotsPerSegment + 1;
+    if (needed <= segments.length) {
+      return;
+    }
+    ByteBuffer[] grown = new ByteBuffer[needed];
+    System.arraycopy(segments, 0, grown, 0, segments.length);
+    int capacity = m_slotsPerSegment * m_slotSize;
+    for (int i = segments.length; i < needed; i++) {
+      if (m_direct) {
+        grown[i] = ByteBuffer.allocateDirect(capacity);
+      }
+      else {
+        grown[i] = ByteBuffer.allocate(capacity);
+      }
+    }
+    m_segments = grown;
+  }
+
+  private void checkIndex(int a_index) {
+    if (a_index < 0 || a_index >= m_size) {
+      throw new IndexOutOfBoundsException("Index " + a_index + ", size "
+                                          + m_size);
+    }
+  }
+
+  /**
+   * @param a_index index of a chromosome
+   * @return fitness value of the chromosome,
+   * FitnessFunction.NO_FITNESS_VALUE if not computed yet
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public double getFitnessValue(int a_index) {
+    checkIndex(a_index);
+    return m_segments[a_index / m_slotsPerSegment].getDouble(
+        a_index % m_slotsPerSegment * m_slotSize);
+  }
+
+  /**
+   * @param a_index index of a chromosome
+   * @param a_fitnessValue the fitness value of the chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void setFitnessValue(int a_index, double a_fitnessValue) {
+    checkIndex(a_index);
+    m_segments[a_index / m_slotsPerSegment].putDouble(
+        a_index % m_slotsPerSegment * m_slotSize, a_fitnessValue);
+  }
+
+  /**
+   * @param a_index index of a chromosome
+   * @return new chromosome holding the alleles and the fitness value stored
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public IChromosome getChromosome(int a_index)
+      throws InvalidConfigurationException {
+    ChromosomeView view = newView();
+    view.moveTo(a_index);
+    return (IChromosome) view.clone();
+  }
+
+  /**
+   * @param a_indices indices of chromosomes, e.g. as returned by
+   * getFittestIndices(int)
+   * @return new population holding copies of the chromosomes
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Population toPopulation(int[] a_indices)
+      throws InvalidConfigurationException {
+    Population pop = new Population(m_conf, a_indices.length);
+    ChromosomeView view = newView();
+    for (int i = 0; i < a_indices.length; i++) {
+      view.moveTo(a_indices[i]);
+      pop.addChromosome( (IChromosome) view.clone());
+    }
+    return pop;
+  }
+
+  /**
+   * @return new flyweight chromosome for accessing the store
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public ChromosomeView newView()
+      throws InvalidConfigurationException {
+    return new ChromosomeView();
+  }
+
+  /**
+   * Iterates over the chromosomes stored. The same view is returned for
+   * each chromosome, thus it must not be kept.
+   *
+   * @return iterator over the store
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Iterator<IChromosome> iterator() {
+    final ChromosomeView view;
+    try {
+      view = newView();
+    } catch (InvalidConfigurationException iex) {
+      throw new IllegalStateException(iex.getMessage());
+    }
+    return new Iterator<IChromosome>() {
+      private int m_next;
+
+      public boolean hasNext() {
+        return m_next < m_size;
+      }
+
+      public IChromosome next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        view.moveTo(m_next++);
+        return view;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Computes the fitness values not computed yet with the fitness function
+   * of the configuration.
+   *
+   * @return number of fitness values computed
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int evaluate()
+      throws InvalidConfigurationException {
+    FitnessFunction fitnessFunction = m_conf.getFitnessFunction();
+    if (fitnessFunction == null) {
+      throw new IllegalStateException("No fitness function set!");
+    }
+    ChromosomeView view = newView();
+    int size = m_size;
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (getFitnessValue(i) == FitnessFunction.NO_FITNESS_VALUE) {
+        view.moveTo(i);
+        setFitnessValue(i, fitnessFunction.getFitnessValue(view));
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return index of the fittest chromosome according to the fitness
+   * evaluator of the configuration, -1 if no fitness value is computed
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getFittestIndex() {
+    int[] fittest = getFittestIndices(1);
+    if (fittest.length == 0) {
+      return -1;
+    }
+    return fittest[0];
+  }
+
+  /**
+   * Determines the fittest chromosomes according to the fitness evaluator
+   * of the configuration. Chromosomes without fitness value are ignored.
+   *
+   * @param a_count maximum number of chromosomes to determine
+   * @return indices of the fittest chromosomes, the fittest first
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int[] getFittestIndices(int a_count) {
+    FitnessEvaluator evaluator = m_conf.getFitnessEvaluator();
+    int size = m_size;
+    // Heap of the fittest chromosomes found, the least fit one at the root.
+    // ---------------------------------------------------------------------
+    int[] heap = new int[Math.max(0, Math.min(a_count, size))];
+    double[] fitness = new double[heap.length];
+    int n = 0;
+    for (int i = 0; i < size && heap.length > 0; i++) {
+      double value = getFitnessValue(i);
+      if (value == FitnessFunction.NO_FITNESS_VALUE) {
+        continue;
+      }
+      if (n < heap.length) {
+        int pos = n++;
+        while (pos > 0) {
+          int parent = (pos - 1) / 2;
+          if (!evaluator.isFitter(fitness[parent], value)) {
+            break;
+          }
+          heap[pos] = heap[parent];
+          fitness[pos] = fitness[parent];
+          pos = parent;
+        }
+        heap[pos] = i;
+        fitness[pos] = value;
+      }
+      else if (evaluator.isFitter(value, fitness[0])) {
+        siftDown(heap, fitness, n, i, value, evaluator);
+      }
+    }
+    int[] result = new int[n];
+    while (n > 0) {
+      result[--n] = heap[0];
+      siftDown(heap, fitness, n, heap[n], fitness[n], evaluator);
+    }
+    return result;
+  }
+
+  /**
+   * Places an entry at the root of the heap and moves it down.
+   */
+  private static void siftDown(int[] a_heap, double[] a_fitness, int a_size,
+                               int a_index, double a_value,
+                               FitnessEvaluator a_evaluator) {
+    int pos = 0;
+    while (true) {
+      int child = 2 * pos + 1;
+      if (child >= a_size) {
+        break;
+      }
+      if (child + 1 < a_size
+          && a_evaluator.isFitter(a_fitness[child], a_fitness[child + 1])) {
+        child++;
+      }
+      if (!a_evaluator.isFitter(a_value, a_fitness[child])) {
+        break;
+      }
+      a_heap[pos] = a_heap[child];
+      a_fitness[pos] = a_fitness[child];
+      pos = child;
+    }
+    a_heap[pos] = a_index;
+    a_fitness[pos] = a_value;
+  }
+
+  /**
+   * Buffers of the segments positioned independently of other cursors.
+   */
+  private class Cursor {
+    private ByteBuffer[] m_buffers = new ByteBuffer[0];
+
+    /**
+     * @param a_index index of a slot
+     * @return buffer positioned at the start of the slot
+     */
+    ByteBuffer position(int a_index) {
+      int segment = a_index / m_slotsPerSegment;
+      if (segment >= m_buffers.length) {
+        ByteBuffer[] segments = m_segments;
+        ByteBuffer[] buffers = new ByteBuffer[segments.length];
+        System.arraycopy(m_buffers, 0, buffers, 0, m_buffers.length);
+        for (int i = m_buffers.length; i < buffers.length; i++) {
+          buffers[i] = segments[i].duplicate();
+        }
+        m_buffers = buffers;
+      }
+      ByteBuffer buf = m_buffers[segment];
+      buf.clear();
+      buf.position(a_index % m_slotsPerSegment * m_slotSize);
+      return buf;
+    }
+  }
+
+  /**
+   * Flyweight chromosome showing the slot it has been moved to. Its genes
+   * hold the alleles of the slot. Fitness values set or computed are
+   * written to the slot, modified alleles only when calling save(). Clones
+   * are ordinary chromosomes.
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public class ChromosomeView
+      extends Chromosome {
+    private final Cursor m_cursor = new Cursor();
+
+    private int m_index = -1;
+
+    protected ChromosomeView()
+        throws InvalidConfigurationException {
+      super(m_conf, m_schema.newGenes());
+    }
+
+    /**
+     * Shows the chromosome at the given index.
+     *
+     * @param a_index index of a chromosome in the store
+     *
+     * @author Julien Subercaze
+     * @since 3.7
+     */
+    public void moveTo(int a_index) {
+      checkIndex(a_index);
+      ByteBuffer buf = m_cursor.position(a_index);
+      super.setFitnessValueDirectly(buf.getDouble());
+      try {
+        m_schema.decode(buf, this);
+      } catch (UnsupportedRepresentationException uex) {
+        throw new IllegalStateException("Slot " + a_index
+                                        + " is corrupt: " + uex.getMessage());
+      }
+      m_index = a_index;
+    }
+
+    /**
+     * @return index of the chromosome shown, -1 if not moved yet
+     *
+     * @author Julien Subercaze
+     * @since 3.7
+     */
+    public int getIndex() {
+      return m_index;
+    }
+
+    /**
+     * Writes the alleles and the fitness value to the slot shown.
+     *
+     * @author Julien Subercaze
+     * @since 3.7
+     */
+    public void save() {
+      checkMoved();
+      ByteBuffer buf = m_cursor.position(m_index);
+      buf.putDouble(getFitnessValueDirectly());
+      m_schema.encode(this, buf);
+    }
+
+    public void setFitnessValue(double a_newFitnessValue) {
+      super.setFitnessValue(a_newFitnessValue);
+      storeFitnessValue();
+    }
+
+    public void setFitnessValueDirectly(double a_newFitnessValue) {
+      super.setFitnessValueDirectly(a_newFitnessValue);
+      storeFitnessValue();
+    }
+
+    public void setFitnessValueEstimated(double a_estimatedFitnessValue) {
+      super.setFitnessValueEstimated(a_estimatedFitnessValue);
+      storeFitnessValue();
+    }
+
+    protected double calcFitnessValue() {
+      double value = super.calcFitnessValue();
+      storeFitnessValue();
+      return value;
+    }
+
+    /**
+     * @return new chromosome holding the alleles and the fitness value of
+     * this view
+     *
+     * @author Julien Subercaze
+     * @since 3.7
+     */
+    public synchronized Object clone() {
+      ByteBuffer buf = ByteBuffer.allocate(m_schema.getRecordSize());
+      m_schema.encode(this, buf);
+      buf.flip();
+      try {
+        Chromosome copy = m_schema.newChromosome();
+        m_schema.decode(buf, copy);
+        copy.setFitnessValueDirectly(getFitnessValueDirectly());
+        return copy;
+      } catch (InvalidConfigurationException iex) {
+        throw new IllegalStateException(iex.getMessage());
+      } catch (UnsupportedRepresentationException uex) {
+        throw new IllegalStateException(uex.getMessage());
+      }
+    }
+
+    private void storeFitnessValue() {
+      // Also called by the constructor of the super class.
+      // --------------------------------------------------
+      if (m_cursor != null && m_index >= 0) {
+        OffHeapPopulation.this.setFitnessValue(m_index,
+            getFitnessValueDirectly());
+      }
+    }
+
+    private void checkMoved() {
+      if (m_index < 0) {
+        throw new IllegalStateException("View not moved to a slot yet!");
+      }
+    }
+  }
+}
@@ -10,7 +10,6 @@
 package org.jgap;
 
 import java.io.Serializable;
-import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -22,7 +21,9 @@ import java.util.Vector;
 import org.jgap.audit.IEvolutionMonitor;
 import org.jgap.util.ChromosomeFitnessComparator;
 import org.jgap.util.CloneException;
+import org.jgap.util.ConstructorCache;
 import org.jgap.util.ICloneable;
+import org.jgap.util.RepresentationCursor;
 import org.jgap.util.StringKit;
 
 /**
@@ -748,32 +749,40 @@ public class Population
   public void setValueFromPersistentRepresentation(String a_representation)
       throws UnsupportedRepresentationException {
     if (a_representation != null) {
-      try {
-        List r = split(a_representation);
-        String g;
-        m_chromosomes = new Vector();
-        // Obtain the chromosomes.
-        // -----------------------
-        Iterator iter = r.iterator();
-        StringTokenizer st;
-        String clas;
-        String representation;
-        IChromosome chrom;
-        while (iter.hasNext()) {
-          g = StringKit.decode( (String) iter.next());
-          st = new StringTokenizer(g, CHROM_DELIMITER);
-          if (st.countTokens() != 2)
-            throw new UnsupportedRepresentationException("In " + g + ", " +
-                "expecting two tokens, separated by " + CHROM_DELIMITER);
-          clas = st.nextToken();
-          representation = st.nextToken();
-          chrom = createChromosome(clas, representation);
-          m_chromosomes.add(chrom);
-        }
-        setChanged(true);
-      } catch (Exception ex) {
-        throw new UnsupportedRepresentationException(ex.toString());
+      readPersistentRepresentation(new RepresentationCursor(a_representation));
+    }
+  }
+
+  /**
+   * Sets the value of this population from a persistent representation read
+   * in a single pass, e.g. from a large file via
+   * new RepresentationCursor(Reader).
+   *
+   * @param a_cursor cursor over the string representation retrieved from a
+   * prior call to the getPersistentRepresentation() method
+   *
+   * @throws UnsupportedRepresentationException
+   *
+   * @since 3.7
+   */
+  public void readPersistentRepresentation(RepresentationCursor a_cursor)
+      throws UnsupportedRepresentationException {
+    try {
+      m_chromosomes = new Vector();
+      // Obtain the chromosomes.
+      // -----------------------
+      String[] st;
+      IChromosome chrom;
+      while (a_cursor.hasNext()) {
+        st = RepresentationCursor.splitPair(a_cursor.nextElement(
+            CHROM_DELIMITER_HEADING, CHROM_DELIMITER_CLOSING),
+            CHROM_DELIMITER);
+        chrom = createChromosome(st[0], st[1]);
+        m_chromosomes.add(chrom);
       }
+      setChanged(true);
+    } catch (Exception ex) {
+      throw new UnsupportedRepresentationException(ex.toString());
     }
   }
 
@@ -794,10 +803,8 @@ public class Population
   protected IChromosome createChromosome(String a_chromClassName,
       String a_persistentRepresentation)
       throws Exception {
-    Class chromClass = Class.forName(a_chromClassName);
-    Constructor constr = chromClass.getConstructor(new Class[] {Configuration.class});
-    IChromosome chrom = (IChromosome) constr.newInstance(new Object[] {
-        getConfiguration()});
+    IChromosome chrom = (IChromosome) ConstructorCache.newInstance(
+        a_chromClassName, Configuration.class, getConfiguration());
     ( (IPersistentRepresentation) chrom).setValueFromPersistentRepresentation(
         a_persistentRepresentation);
     return chrom;
@@ -0,0 +1,69 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap;
+
+/**
+ * Fitness function whose fitness value is the mean of a fixed number of noisy
+ * samples, e.g. simulation runs with different seeds or evaluations on
+ * different test cases. Exposing the samples one by one allows to stop
+ * sampling an individual early once it is clearly worse than the selection
+ * threshold, see org.jgap.impl.RacingEvaluator.
+ * <p>
+ * Sample values must be non-negative, like fitness values. Sample number i
+ * should denote the same scenario for all individuals (e.g. the seed of a
+ * simulation run), so that individuals are compared on equal terms.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public abstract class SampledFitnessFunction
+    extends FitnessFunction {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * @return number of samples making up the full fitness value, at least 1
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public abstract int getSampleCount();
+
+  /**
+   * Computes a single sample of the fitness value of an individual. Must be
+   * thread-safe if samples are computed in parallel.
+   *
+   * @param a_subject the individual to evaluate
+   * @param a_sample number of the sample, from 0 to getSampleCount() - 1
+   * @return non-negative sample value
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public abstract double evaluateSample(IChromosome a_subject, int a_sample);
+
+  /**
+   * Computes the full fitness value, being the mean of all samples.
+   *
+   * @param a_subject the individual to evaluate
+   * @return mean of all samples
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public double evaluate(IChromosome a_subject) {
+    int count = getSampleCount();
+    double sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += evaluateSample(a_subject, i);
+    }
+    return sum / count;
+  }
+}
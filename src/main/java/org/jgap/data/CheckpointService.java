@@ -0,0 +1,333 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+import org.jgap.Configuration;
+import org.jgap.Genotype;
+
+/**
+ * Writes checkpoints of an evolution every N generations and/or every T
+ * milliseconds. Register it via Genotype.setCheckpointService or
+ * GPGenotype.setCheckpointService.
+ * <p>
+ * The state is captured on the evolving thread (see ICheckpoint), which is
+ * the only pause of evolution. Writing it, forcing it to disk and replacing
+ * the previous checkpoint happens on a background thread. The checkpoint is
+ * first written to a temporary file next to the target file, which is then
+ * atomically renamed to the target file, so that the target file always
+ * holds a complete checkpoint. While a checkpoint is being written, no
+ * further one is captured.
+ * <p>
+ * Resume an evolution with resume(File, Configuration), respectively with
+ * GPGenotypeCheckpoint.resume(File, GPGenotype) for genetic programming.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class CheckpointService {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private transient static Logger LOGGER = Logger.getLogger(
+      CheckpointService.class);
+
+  private final File m_file;
+
+  private final int m_everyGenerations;
+
+  private final long m_everyMillis;
+
+  private final ExecutorService m_writer;
+
+  /**
+   * True while a checkpoint is being written.
+   */
+  private final AtomicBoolean m_busy = new AtomicBoolean();
+
+  private volatile Future<?> m_pending;
+
+  private int m_lastGeneration = -1;
+
+  private long m_lastTime;
+
+  private volatile int m_written;
+
+  private volatile int m_lastGenerationWritten = -1;
+
+  private volatile Throwable m_lastError;
+
+  /**
+   * @param a_file the file to write checkpoints to
+   * @param a_everyGenerations number of generations between two checkpoints,
+   * 0 for not considering generations
+   * @param a_everyMillis milliseconds between two checkpoints, 0 for not
+   * considering time
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public CheckpointService(File a_file, int a_everyGenerations,
+                           long a_everyMillis) {
+    if (a_file == null) {
+      throw new IllegalArgumentException("File must not be null!");
+    }
+    if (a_everyGenerations < 0 || a_everyMillis < 0
+        || a_everyGenerations == 0 && a_everyMillis == 0) {
+      throw new IllegalArgumentException("Interval of generations or time"
+                                         + " must be positive!");
+    }
+    m_file = a_file.getAbsoluteFile();
+    m_everyGenerations = a_everyGenerations;
+    m_everyMillis = a_everyMillis;
+    m_lastTime = System.currentTimeMillis();
+    m_writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable a_runnable) {
+        Thread thread = new Thread(a_runnable, "Checkpoint writer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * @param a_generationNr number of the current generation
+   * @return true if a checkpoint is due and no checkpoint is being written
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized boolean isDue(int a_generationNr) {
+    if (m_busy.get()) {
+      return false;
+    }
+    // Generations are counted absolutely, thus the interval is kept when
+    // resuming.
+    // -------------------------------------------------------------------
+    if (m_everyGenerations > 0 && a_generationNr % m_everyGenerations == 0
+        && a_generationNr != m_lastGeneration) {
+      return true;
+    }
+    return m_everyMillis > 0
+        && System.currentTimeMillis() - m_lastTime >= m_everyMillis;
+  }
+
+  /**
+   * Writes a checkpoint of the genotype if one is due.
+   *
+   * @param a_genotype the genotype evolving
+   * @return true if a checkpoint was captured
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public boolean generationEvolved(Genotype a_genotype) {
+    if (!isDue(a_genotype.getConfiguration().getGenerationNr())) {
+      return false;
+    }
+    submit(GenotypeCheckpoint.capture(a_genotype));
+    return true;
+  }
+
+  /**
+   * Writes a captured checkpoint on the background thread.
+   *
+   * @param a_checkpoint the checkpoint to write
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void submit(final ICheckpoint a_checkpoint) {
+    m_busy.set(true);
+    m_lastGeneration = a_checkpoint.getGenerationNr();
+    m_lastTime = System.currentTimeMillis();
+    m_pending = m_writer.submit(new Runnable() {
+      public void run() {
+        try {
+          writeAtomically(a_checkpoint);
+          m_lastGenerationWritten = a_checkpoint.getGenerationNr();
+          m_written++;
+        } catch (Throwable t) {
+          // Also runtime exceptions of the checkpoint, as the executor would
+          // swallow them.
+          // ----------------------------------------------------------------
+          m_lastError = t;
+          LOGGER.error("Writing checkpoint of generation "
+                       + a_checkpoint.getGenerationNr() + " failed", t);
+        } finally {
+          m_busy.set(false);
+        }
+      }
+    });
+  }
+
+  /**
+   * Writes the checkpoint to a temporary file, forces it to disk and renames
+   * it to the target file. Then the directory is forced to disk, so the
+   * rename survives a crash.
+   *
+   * @param a_checkpoint the checkpoint to write
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  protected void writeAtomically(ICheckpoint a_checkpoint)
+      throws IOException {
+    File tmp = new File(m_file.getPath() + ".tmp");
+    FileOutputStream out = new FileOutputStream(tmp);
+    try {
+      a_checkpoint.write(out);
+      out.flush();
+      out.getChannel().force(true);
+    } finally {
+      out.close();
+    }
+    try {
+      Files.move(tmp.toPath(), m_file.toPath(),
+                 StandardCopyOption.ATOMIC_MOVE,
+                 StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException aex) {
+      Files.move(tmp.toPath(), m_file.toPath(),
+                 StandardCopyOption.REPLACE_EXISTING);
+    }
+    syncDirectory(m_file.getAbsoluteFile().getParentFile());
+  }
+
+  /**
+   * Forces the entries of a directory to disk, where the platform allows to
+   * open a directory (not on Windows, for instance).
+   *
+   * @param a_dir the directory
+   */
+  private static void syncDirectory(File a_dir) {
+    if (a_dir == null) {
+      return;
+    }
+    try {
+      FileChannel channel = FileChannel.open(a_dir.toPath(),
+          StandardOpenOption.READ);
+      try {
+        channel.force(true);
+      } finally {
+        channel.close();
+      }
+    } catch (IOException iex) {
+      // Directories cannot be opened or forced on this platform.
+      // --------------------------------------------------------
+      ;
+    }
+  }
+
+  /**
+   * Waits until the checkpoint being written, if any, is on disk.
+   *
+   * @throws InterruptedException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void flush()
+      throws InterruptedException {
+    Future<?> pending = m_pending;
+    if (pending != null) {
+      try {
+        pending.get();
+      } catch (ExecutionException eex) {
+        // Errors are recorded by the writer, see getLastError().
+        // -----------------------------------------------------
+        ;
+      }
+    }
+  }
+
+  /**
+   * Waits for the checkpoint being written and stops the background thread.
+   *
+   * @throws InterruptedException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void close()
+      throws InterruptedException {
+    m_writer.shutdown();
+    m_writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Resumes an evolution from a checkpoint file written for a Genotype.
+   *
+   * @param a_file the checkpoint file
+   * @param a_conf the configuration to use, see GenotypeCheckpoint.read
+   * @return the genotype restored
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static Genotype resume(File a_file, Configuration a_conf)
+      throws IOException {
+    return GenotypeCheckpoint.read(a_file, a_conf);
+  }
+
+  public File getFile() {
+    return m_file;
+  }
+
+  /**
+   * @return number of checkpoints written successfully
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getCheckpointsWritten() {
+    return m_written;
+  }
+
+  /**
+   * @return generation number of the last checkpoint written successfully,
+   * -1 if none
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getLastGenerationWritten() {
+    return m_lastGenerationWritten;
+  }
+
+  /**
+   * @return error of the last checkpoint that failed to be written (an
+   * IOException or any exception thrown by the checkpoint), null if none
+   * failed
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Throwable getLastError() {
+    return m_lastError;
+  }
+}
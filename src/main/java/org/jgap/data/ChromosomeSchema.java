@@ -0,0 +1,633 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import org.jgap.Chromosome;
+import org.jgap.Configuration;
+import org.jgap.Gene;
+import org.jgap.IBinaryRepresentation;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+import org.jgap.UnsupportedRepresentationException;
+import org.jgap.util.ConstructorCache;
+
+/**
+ * Batch binary encoding of the chromosomes of a population having the same
+ * genes as a sample chromosome (see Configuration.getSampleChromosome()).
+ * <p>
+ * The schema, i.e. the class and the static state of each gene (such as
+ * bounds), is written once. Per chromosome, only the alleles are written,
+ * into a ByteBuffer that can be reused. Genes implementing
+ * IBinaryRepresentation write their alleles in binary form, other genes by
+ * their persistent representation. If all genes write alleles of fixed size,
+ * the records of all chromosomes have the same size (see getRecordSize()).
+ * Alternatively, the alleles of a population can be written column-wise, one
+ * column per gene position (see writeColumn).
+ * <p>
+ * Layout of the schema (big endian): int number of genes, per gene: UTF
+ * class name, boolean whether binary, then the schema written by
+ * IBinaryRepresentation.writeSchema, respectively the persistent
+ * representation of the sample gene as string. Strings are stored as int
+ * length (-1 for null) and UTF-8 bytes.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class ChromosomeSchema {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final static String UTF8 = "UTF-8";
+
+  private final Configuration m_conf;
+
+  /**
+   * Genes holding the static state of each position.
+   */
+  private final Gene[] m_genes;
+
+  private final int m_recordSize;
+
+  /**
+   * Buffer reused for writing to a DataOutput.
+   */
+  private ByteBuffer m_buffer;
+
+  /**
+   * @param a_sample the chromosome whose genes define the schema
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public ChromosomeSchema(IChromosome a_sample) {
+    this(a_sample.getConfiguration(), a_sample.getGenes());
+  }
+
+  private ChromosomeSchema(Configuration a_conf, Gene[] a_genes) {
+    m_conf = a_conf;
+    m_genes = new Gene[a_genes.length];
+    int size = 0;
+    for (int i = 0; i < a_genes.length; i++) {
+      m_genes[i] = a_genes[i].newGene();
+      int alleleSize = getAlleleSize(m_genes[i]);
+      if (alleleSize < 0 || size < 0) {
+        size = -1;
+      }
+      else {
+        size += alleleSize;
+      }
+    }
+    m_recordSize = size;
+  }
+
+  /**
+   * Reads a schema written by write(DataOutput).
+   *
+   * @param a_in the input to read from
+   * @param a_conf the configuration to create the genes with
+   * @return the schema read
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static ChromosomeSchema read(DataInput a_in, Configuration a_conf)
+      throws IOException {
+    int size = a_in.readInt();
+    if (size < 0) {
+      throw new IOException("Invalid number of genes: " + size);
+    }
+    Gene[] genes = new Gene[size];
+    for (int i = 0; i < size; i++) {
+      genes[i] = readGeneSchema(a_in, a_conf);
+    }
+    return new ChromosomeSchema(a_conf, genes);
+  }
+
+  /**
+   * Writes the schema.
+   *
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void write(DataOutput a_out)
+      throws IOException {
+    a_out.writeInt(m_genes.length);
+    for (int i = 0; i < m_genes.length; i++) {
+      writeGeneSchema(m_genes[i], a_out);
+    }
+  }
+
+  /**
+   * @return number of genes per chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int size() {
+    return m_genes.length;
+  }
+
+  /**
+   * @return number of bytes of the alleles of each chromosome, -1 if it
+   * varies
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getRecordSize() {
+    return m_recordSize;
+  }
+
+  public Configuration getConfiguration() {
+    return m_conf;
+  }
+
+  /**
+   * @param a_index position of a gene
+   * @return the gene holding the static state of the position, must not be
+   * modified
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Gene getGene(int a_index) {
+    return m_genes[a_index];
+  }
+
+  /**
+   * @return new genes according to the schema, alleles are not initialized
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Gene[] newGenes() {
+    Gene[] genes = new Gene[m_genes.length];
+    for (int i = 0; i < genes.length; i++) {
+      genes[i] = m_genes[i].newGene();
+    }
+    return genes;
+  }
+
+  /**
+   * @return new chromosome according to the schema, alleles are not
+   * initialized
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Chromosome newChromosome()
+      throws InvalidConfigurationException {
+    return new Chromosome(m_conf, newGenes());
+  }
+
+  /**
+   * Writes the alleles of a chromosome at the position of a buffer.
+   *
+   * @param a_chrom the chromosome to encode, having the genes of the schema
+   * @param a_out the buffer to write to
+   * @throws BufferOverflowException if the buffer is too small
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void encode(IChromosome a_chrom, ByteBuffer a_out) {
+    if (a_chrom.size() != m_genes.length) {
+      throw new IllegalArgumentException("Chromosome has " + a_chrom.size()
+                                         + " genes instead of "
+                                         + m_genes.length);
+    }
+    for (int i = 0; i < m_genes.length; i++) {
+      writeAllele(a_chrom.getGene(i), a_out);
+    }
+  }
+
+  /**
+   * Reads the alleles of a chromosome written by encode.
+   *
+   * @param a_in the buffer to read from
+   * @param a_chrom the chromosome to set the alleles of, having the genes of
+   * the schema
+   * @throws UnsupportedRepresentationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void decode(ByteBuffer a_in, IChromosome a_chrom)
+      throws UnsupportedRepresentationException {
+    for (int i = 0; i < m_genes.length; i++) {
+      readAllele(a_chrom.getGene(i), a_in);
+    }
+  }
+
+  /**
+   * Writes the alleles of a chromosome, preceded by their length if the
+   * record size is not fixed. Uses a buffer reused for all chromosomes.
+   *
+   * @param a_chrom the chromosome to write
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeAlleles(IChromosome a_chrom, DataOutput a_out)
+      throws IOException {
+    if (m_buffer == null) {
+      m_buffer = ByteBuffer.allocate(m_recordSize > 0 ? m_recordSize : 256);
+    }
+    while (true) {
+      m_buffer.clear();
+      try {
+        encode(a_chrom, m_buffer);
+        break;
+      } catch (BufferOverflowException bex) {
+        m_buffer = ByteBuffer.allocate(m_buffer.capacity() * 2);
+      }
+    }
+    if (m_recordSize < 0) {
+      a_out.writeInt(m_buffer.position());
+    }
+    a_out.write(m_buffer.array(), 0, m_buffer.position());
+  }
+
+  /**
+   * Reads the alleles of a chromosome written by writeAlleles.
+   *
+   * @param a_in the input to read from
+   * @param a_chrom the chromosome to set the alleles of
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void readAlleles(DataInput a_in, IChromosome a_chrom)
+      throws IOException {
+    int length = m_recordSize;
+    if (length < 0) {
+      length = a_in.readInt();
+    }
+    byte[] bytes = new byte[length];
+    a_in.readFully(bytes);
+    try {
+      decode(ByteBuffer.wrap(bytes), a_chrom);
+    } catch (UnsupportedRepresentationException uex) {
+      throw new IOException(uex.getMessage());
+    }
+  }
+
+  /**
+   * Writes the alleles of one gene position of all chromosomes as a column,
+   * preceded by its length in bytes. Uses the buffer of writeAlleles.
+   *
+   * @param a_chroms the chromosomes, having the genes of the schema
+   * @param a_index the gene position to write
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeColumn(IChromosome[] a_chroms, int a_index,
+                          DataOutput a_out)
+      throws IOException {
+    int alleleSize = getAlleleSize(m_genes[a_index]);
+    int capacity = alleleSize < 0 ? 256 : Math.max(1, alleleSize
+        * a_chroms.length);
+    if (m_buffer == null || m_buffer.capacity() < capacity) {
+      m_buffer = ByteBuffer.allocate(capacity);
+    }
+    while (true) {
+      m_buffer.clear();
+      try {
+        for (int i = 0; i < a_chroms.length; i++) {
+          writeAllele(a_chroms[i].getGene(a_index), m_buffer);
+        }
+        break;
+      } catch (BufferOverflowException bex) {
+        m_buffer = ByteBuffer.allocate(m_buffer.capacity() * 2);
+      }
+    }
+    a_out.writeInt(m_buffer.position());
+    a_out.write(m_buffer.array(), 0, m_buffer.position());
+  }
+
+  /**
+   * Reads a column written by writeColumn.
+   *
+   * @param a_in the buffer to read from
+   * @param a_chroms the chromosomes to set the alleles of, having the genes
+   * of the schema
+   * @param a_index the gene position to read
+   * @throws IOException if the column does not fit the genes
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void readColumn(ByteBuffer a_in, IChromosome[] a_chroms,
+                         int a_index)
+      throws IOException {
+    int length = a_in.getInt();
+    if (length < 0 || length > a_in.remaining()) {
+      throw new IOException("Invalid length of column " + a_index + ": "
+                            + length);
+    }
+    int end = a_in.position() + length;
+    try {
+      for (int i = 0; i < a_chroms.length; i++) {
+        readAllele(a_chroms[i].getGene(a_index), a_in);
+      }
+    } catch (UnsupportedRepresentationException uex) {
+      throw new IOException(uex.getMessage());
+    }
+    if (a_in.position() != end) {
+      throw new IOException("Alleles of gene " + a_index
+                            + " do not fit sample chromosome");
+    }
+  }
+
+  /**
+   * Writes the schema once and then the fitness values and alleles of all
+   * chromosomes of a population.
+   *
+   * @param a_pop the population to write
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writePopulation(Population a_pop, DataOutput a_out)
+      throws IOException {
+    write(a_out);
+    int size = a_pop.size();
+    a_out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      IChromosome chrom = a_pop.getChromosome(i);
+      a_out.writeDouble(chrom.getFitnessValueDirectly());
+      writeAlleles(chrom, a_out);
+    }
+  }
+
+  /**
+   * Reads a population written by writePopulation.
+   *
+   * @param a_in the input to read from
+   * @param a_conf the configuration to use
+   * @return the population read
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static Population readPopulation(DataInput a_in,
+                                          Configuration a_conf)
+      throws IOException {
+    ChromosomeSchema schema = read(a_in, a_conf);
+    int size = a_in.readInt();
+    if (size < 0) {
+      throw new IOException("Invalid population size: " + size);
+    }
+    try {
+      IChromosome[] chroms = new IChromosome[size];
+      for (int i = 0; i < size; i++) {
+        double fitness = a_in.readDouble();
+        chroms[i] = schema.newChromosome();
+        schema.readAlleles(a_in, chroms[i]);
+        chroms[i].setFitnessValueDirectly(fitness);
+      }
+      return new Population(a_conf, chroms);
+    } catch (InvalidConfigurationException iex) {
+      throw new IOException(iex.getMessage());
+    }
+  }
+
+  /**
+   * Writes the class and the static state of a gene.
+   *
+   * @param a_gene the gene
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void writeGeneSchema(Gene a_gene, DataOutput a_out)
+      throws IOException {
+    a_out.writeUTF(a_gene.getClass().getName());
+    if (a_gene instanceof IBinaryRepresentation) {
+      a_out.writeBoolean(true);
+      ( (IBinaryRepresentation) a_gene).writeSchema(a_out);
+    }
+    else {
+      a_out.writeBoolean(false);
+      writeString(a_out, a_gene.getPersistentRepresentation());
+    }
+  }
+
+  /**
+   * Creates a gene from its class and static state written by
+   * writeGeneSchema.
+   *
+   * @param a_in the input to read from
+   * @param a_conf the configuration to create the gene with
+   * @return the gene created
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static Gene readGeneSchema(DataInput a_in, Configuration a_conf)
+      throws IOException {
+    String className = a_in.readUTF();
+    boolean binary = a_in.readBoolean();
+    Gene gene;
+    try {
+      gene = (Gene) ConstructorCache.newInstance(className,
+          Configuration.class, a_conf);
+    } catch (Exception ex) {
+      throw new IOException("Unable to create gene of " + className + ": "
+                            + ex, ex);
+    }
+    if (binary) {
+      ( (IBinaryRepresentation) gene).readSchema(a_in);
+    }
+    else {
+      try {
+        gene.setValueFromPersistentRepresentation(readString(a_in));
+      } catch (UnsupportedRepresentationException uex) {
+        throw new IOException(uex.getMessage());
+      }
+    }
+    return gene;
+  }
+
+  /**
+   * @param a_gene a gene
+   * @return number of bytes written by writeAllele, -1 if it varies
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static int getAlleleSize(Gene a_gene) {
+    if (a_gene instanceof IBinaryRepresentation) {
+      return ( (IBinaryRepresentation) a_gene).getAlleleSize();
+    }
+    return -1;
+  }
+
+  /**
+   * Writes the allele of a gene, in binary form if supported or else as
+   * persistent representation.
+   *
+   * @param a_gene the gene
+   * @param a_out the buffer to write to
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void writeAllele(Gene a_gene, ByteBuffer a_out) {
+    if (a_gene instanceof IBinaryRepresentation) {
+      ( (IBinaryRepresentation) a_gene).writeAllele(a_out);
+    }
+    else {
+      putString(a_out, a_gene.getPersistentRepresentation());
+    }
+  }
+
+  /**
+   * Counterpart of writeAllele.
+   *
+   * @param a_gene the gene to set the allele of
+   * @param a_in the buffer to read from
+   * @throws UnsupportedRepresentationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void readAllele(Gene a_gene, ByteBuffer a_in)
+      throws UnsupportedRepresentationException {
+    if (a_gene instanceof IBinaryRepresentation) {
+      ( (IBinaryRepresentation) a_gene).readAllele(a_in);
+    }
+    else {
+      a_gene.setValueFromPersistentRepresentation(getString(a_in));
+    }
+  }
+
+  /**
+   * Writes a string as int length (-1 for null) and UTF-8 bytes.
+   *
+   * @param a_out the buffer to write to
+   * @param a_value the string to write, may be null
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void putString(ByteBuffer a_out, String a_value) {
+    if (a_value == null) {
+      a_out.putInt( -1);
+    }
+    else {
+      byte[] bytes = toBytes(a_value);
+      a_out.putInt(bytes.length).put(bytes);
+    }
+  }
+
+  /**
+   * Counterpart of putString.
+   *
+   * @param a_in the buffer to read from
+   * @return the string read, may be null
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static String getString(ByteBuffer a_in) {
+    int length = a_in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    a_in.get(bytes);
+    return fromBytes(bytes);
+  }
+
+  /**
+   * Writes a string as int length (-1 for null) and UTF-8 bytes.
+   *
+   * @param a_out the output to write to
+   * @param a_value the string to write, may be null
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void writeString(DataOutput a_out, String a_value)
+      throws IOException {
+    if (a_value == null) {
+      a_out.writeInt( -1);
+    }
+    else {
+      byte[] bytes = toBytes(a_value);
+      a_out.writeInt(bytes.length);
+      a_out.write(bytes);
+    }
+  }
+
+  /**
+   * Counterpart of writeString.
+   *
+   * @param a_in the input to read from
+   * @return the string read, may be null
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static String readString(DataInput a_in)
+      throws IOException {
+    int length = a_in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    a_in.readFully(bytes);
+    return fromBytes(bytes);
+  }
+
+  private static byte[] toBytes(String a_value) {
+    try {
+      return a_value.getBytes(UTF8);
+    } catch (UnsupportedEncodingException uex) {
+      throw new Error("UTF-8 encoding should always be supported!", uex);
+    }
+  }
+
+  private static String fromBytes(byte[] a_bytes) {
+    try {
+      return new String(a_bytes, UTF8);
+    } catch (UnsupportedEncodingException uex) {
+      throw new Error("UTF-8 encoding should always be supported!", uex);
+    }
+  }
+}
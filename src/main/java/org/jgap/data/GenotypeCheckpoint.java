@@ -0,0 +1,610 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.jgap.Configuration;
+import org.jgap.Gene;
+import org.jgap.Genotype;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+import org.jgap.RandomGenerator;
+import org.jgap.UnsupportedRepresentationException;
+import org.jgap.impl.StockRandomGenerator;
+
+/**
+ * Versioned binary checkpoint format for the state of a Genotype: generation
+ * number, population, fitness values and state of the random generator.
+ * Much faster to write and read than the textual persistent representation,
+ * XMLManager or XStream, e.g. for populations with a million individuals.
+ * <p>
+ * The population is stored column-wise as encoded by ChromosomeSchema: the
+ * schema of the genes once, followed by one column with the fitness values
+ * and one column per gene position holding the alleles of all chromosomes.
+ * Genes implementing IBinaryRepresentation store their alleles in binary
+ * form, e.g. an IntegerGene column is a column of ints, other genes by their
+ * persistent representation. All chromosomes must have the same genes as the
+ * sample chromosome of the configuration.
+ * <p>
+ * Checkpoints are written as a stream and read via memory mapping. A CRC32
+ * checksum at the end of the file detects truncated or corrupted files.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * int magic, int version, int generation number, int population size,
+ * int length and bytes of the schema (see ChromosomeSchema.write),
+ * int length and bytes of the state of the random generator (0: none),
+ * double[population size] fitness values,
+ * per gene: column of alleles (see ChromosomeSchema.writeColumn),
+ * int checksum of all preceding bytes
+ * </pre>
+ * Version 2 stored the alleles per chromosome instead (see
+ * ChromosomeSchema.writeAlleles) and can still be read. Version 1 is not
+ * supported anymore.
+ * <p>
+ * The random generators of JGAP deliberately get a new seed when they are
+ * deserialized. Thus, for a random generator extending java.util.Random only
+ * its current seed is stored, which is set when the checkpoint is read. A
+ * resumed run thus continues with exactly the random numbers the original run
+ * used after the checkpoint (except for a gaussian value already computed by
+ * Random.nextGaussian()). Other random generators are stored serialized.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GenotypeCheckpoint {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * First four bytes of a checkpoint ("JGCP").
+   */
+  public final static int MAGIC = 0x4A474350;
+
+  /**
+   * Version of the format written.
+   */
+  public final static int VERSION = 3;
+
+  /**
+   * Kinds of random generator state.
+   */
+  private final static byte RANDOM_SEED = 1;
+
+  private final static byte RANDOM_SERIALIZED = 2;
+
+  /**
+   * Scrambles the seed passed to Random.setSeed(long).
+   */
+  private final static long SEED_SCRAMBLER = 0x5DEECE66DL;
+
+  private GenotypeCheckpoint() {
+  }
+
+  /**
+   * Writes a checkpoint of a genotype to a file.
+   *
+   * @param a_genotype the genotype to write
+   * @param a_file the file to write to, overwritten if existing
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void write(Genotype a_genotype, File a_file)
+      throws IOException {
+    OutputStream out = new FileOutputStream(a_file);
+    try {
+      write(a_genotype, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes a checkpoint of a genotype to a stream. The stream is not closed.
+   *
+   * @param a_genotype the genotype to write
+   * @param a_out the stream to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void write(Genotype a_genotype, OutputStream a_out)
+      throws IOException {
+    capture(a_genotype).write(a_out);
+  }
+
+  /**
+   * Captures the state of a genotype, to be written later on, possibly by
+   * another thread. The alleles are encoded right away, no chromosomes are
+   * created.
+   *
+   * @param a_genotype the genotype to capture
+   * @return the checkpoint captured
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static ICheckpoint capture(Genotype a_genotype) {
+    Configuration conf = a_genotype.getConfiguration();
+    return capture(a_genotype.getPopulation().getChromosomes().toArray(
+        new IChromosome[0]), conf.getGenerationNr(),
+                   captureRandomState(conf.getRandomGenerator()));
+  }
+
+  /**
+   * Captures the state of a population, to be written later on.
+   *
+   * @param a_chroms the chromosomes of the population, all having the same
+   * genes
+   * @param a_generationNr the generation number to store
+   * @param a_randomState state of the random generator as captured by
+   * captureRandomState
+   * @return the checkpoint captured
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static ICheckpoint capture(IChromosome[] a_chroms, int a_generationNr,
+                                    byte[] a_randomState) {
+    int size = a_chroms.length;
+    Gene[] first = size == 0 ? new Gene[0] : a_chroms[0].getGenes();
+    for (int i = 1; i < size; i++) {
+      Gene[] genes = a_chroms[i].getGenes();
+      if (genes.length != first.length) {
+        throw new IllegalArgumentException("All chromosomes must have the"
+                                           + " same number of genes!");
+      }
+      for (int j = 0; j < genes.length; j++) {
+        if (genes[j].getClass() != first[j].getClass()) {
+          throw new IllegalArgumentException("All chromosomes must have the"
+                                             + " same types of genes!");
+        }
+      }
+    }
+    double[] fitness = new double[size];
+    ByteArrayOutputStream schemaBytes = new ByteArrayOutputStream();
+    ByteArrayOutputStream alleleBytes = new ByteArrayOutputStream();
+    try {
+      DataOutputStream schemaOut = new DataOutputStream(schemaBytes);
+      if (size == 0) {
+        // Without chromosomes, the schema has no genes.
+        // ---------------------------------------------
+        schemaOut.writeInt(0);
+      }
+      else {
+        ChromosomeSchema schema = new ChromosomeSchema(a_chroms[0]);
+        schema.write(schemaOut);
+        DataOutputStream alleleOut = new DataOutputStream(alleleBytes);
+        for (int i = 0; i < size; i++) {
+          fitness[i] = a_chroms[i].getFitnessValueDirectly();
+        }
+        for (int j = 0; j < schema.size(); j++) {
+          schema.writeColumn(a_chroms, j, alleleOut);
+        }
+        alleleOut.flush();
+      }
+      schemaOut.flush();
+    } catch (IOException iex) {
+      // Not thrown by streams writing to memory.
+      // ----------------------------------------
+      throw new IllegalStateException(iex.getMessage());
+    }
+    return new Snapshot(a_generationNr, a_randomState, fitness,
+                        schemaBytes.toByteArray(), alleleBytes.toByteArray());
+  }
+
+  /**
+   * Captures the state of a random generator for storing it in a checkpoint.
+   * The random generator is not changed.
+   *
+   * @param a_random the random generator, may be null
+   * @return the state captured, empty if it cannot be captured
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static byte[] captureRandomState(RandomGenerator a_random) {
+    if (a_random == null) {
+      return new byte[0];
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      if (a_random instanceof Random) {
+        long seed = getSeed( (Random) a_random);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RANDOM_SEED);
+        out.writeLong(seed);
+        out.close();
+      }
+      else {
+        bytes.write(RANDOM_SERIALIZED);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(a_random);
+        out.close();
+      }
+      return bytes.toByteArray();
+    } catch (IOException iex) {
+      // Random generator not serializable: resume without its state.
+      // -------------------------------------------------------------
+      return new byte[0];
+    }
+  }
+
+  /**
+   * Reads the current seed of a random generator without changing its state.
+   * The generator is serialized and the seed is picked up when reading it
+   * back, as subclasses may set a new seed when deserialized.
+   *
+   * @param a_random the random generator
+   * @return the seed to pass to Random.setSeed(long) for continuing with the
+   * same random numbers
+   * @throws IOException if the random generator cannot be serialized
+   */
+  private static long getSeed(Random a_random)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(a_random);
+    out.close();
+    SeedReader in = new SeedReader(new ByteArrayInputStream(bytes.
+        toByteArray()));
+    try {
+      in.readObject();
+    } catch (ClassNotFoundException cex) {
+      throw new IOException(cex.getMessage());
+    } finally {
+      in.close();
+    }
+    if (!in.m_found) {
+      throw new IOException("Seed of random generator not found");
+    }
+    return in.m_seed ^ SEED_SCRAMBLER;
+  }
+
+  /**
+   * Reads a checkpoint and creates a genotype from it. The generation number
+   * of the configuration is set to the one stored, the state of its random
+   * generator is restored (see restoreRandomState).
+   *
+   * @param a_file the checkpoint file
+   * @param a_conf the configuration to use, must contain a sample chromosome
+   * having the same genes as the chromosomes stored
+   * @return the genotype restored
+   * @throws IOException if the file is corrupt or does not fit the sample
+   * chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static Genotype read(File a_file, Configuration a_conf)
+      throws IOException {
+    Population pop = readPopulation(a_file, a_conf);
+    try {
+      return new Genotype(a_conf, pop);
+    } catch (InvalidConfigurationException iex) {
+      throw new IOException(iex.getMessage());
+    }
+  }
+
+  /**
+   * Reads the population stored in a checkpoint. The generation number of the
+   * configuration is set to the one stored, the state of its random
+   * generator is restored (see restoreRandomState).
+   *
+   * @param a_file the checkpoint file
+   * @param a_conf the configuration to use, must contain a sample chromosome
+   * having the same genes as the chromosomes stored
+   * @return the population restored
+   * @throws IOException if the file is corrupt or does not fit the sample
+   * chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static Population readPopulation(File a_file, Configuration a_conf)
+      throws IOException {
+    RandomAccessFile file = new RandomAccessFile(a_file, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      long length = channel.size();
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Checkpoint too large to be mapped: " + length);
+      }
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                      length);
+      return readPopulation(buffer, a_conf);
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Reads the population stored in a checkpoint from a buffer, starting at
+   * its position.
+   *
+   * @param a_buffer the buffer holding the checkpoint
+   * @param a_conf the configuration to use
+   * @return the population restored
+   * @throws IOException if the checkpoint is corrupt or does not fit the
+   * sample chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static Population readPopulation(ByteBuffer a_buffer,
+                                          Configuration a_conf)
+      throws IOException {
+    ByteBuffer in = a_buffer.slice();
+    verifyChecksum(in);
+    try {
+      if (in.getInt() != MAGIC) {
+        throw new IOException("Not a checkpoint");
+      }
+      int version = in.getInt();
+      if (version < 2 || version > VERSION) {
+        throw new IOException("Unsupported checkpoint version " + version);
+      }
+      int generationNr = in.getInt();
+      int size = in.getInt();
+      byte[] schemaBytes = new byte[in.getInt()];
+      in.get(schemaBytes);
+      ChromosomeSchema schema = ChromosomeSchema.read(new DataInputStream(
+          new ByteArrayInputStream(schemaBytes)), a_conf);
+      byte[] random = new byte[in.getInt()];
+      in.get(random);
+      IChromosome[] chroms = new IChromosome[size];
+      if (size > 0) {
+        IChromosome sample = a_conf.getSampleChromosome();
+        if (sample == null) {
+          throw new IOException("Sample chromosome needed for restoring");
+        }
+        Gene[] genes = sample.getGenes();
+        if (genes.length != schema.size()) {
+          throw new IOException("Number of genes (" + schema.size()
+                                + ") does not fit sample chromosome");
+        }
+        for (int j = 0; j < genes.length; j++) {
+          if (genes[j].getClass() != schema.getGene(j).getClass()) {
+            throw new IOException("Gene " + j + " is of type "
+                                  + schema.getGene(j).getClass().getName()
+                                  + ", not fitting sample chromosome");
+          }
+        }
+        for (int i = 0; i < size; i++) {
+          chroms[i] = (IChromosome) sample.clone();
+          chroms[i].setFitnessValueDirectly(in.getDouble());
+        }
+        if (version == 2) {
+          readRows(in, schema, chroms);
+        }
+        else {
+          for (int j = 0; j < genes.length; j++) {
+            schema.readColumn(in, chroms, j);
+          }
+        }
+      }
+      a_conf.setGenerationNr(generationNr);
+      restoreRandomState(random, a_conf);
+      return new Population(a_conf, chroms);
+    } catch (java.nio.BufferUnderflowException bex) {
+      throw new IOException("Checkpoint truncated");
+    } catch (UnsupportedRepresentationException uex) {
+      throw new IOException(uex.getMessage());
+    } catch (InvalidConfigurationException iex) {
+      throw new IOException(iex.getMessage());
+    }
+  }
+
+  /**
+   * Reads the alleles stored per chromosome by version 2 of the format.
+   */
+  private static void readRows(ByteBuffer a_in, ChromosomeSchema a_schema,
+                               IChromosome[] a_chroms)
+      throws IOException, UnsupportedRepresentationException {
+    int recordSize = a_schema.getRecordSize();
+    for (int i = 0; i < a_chroms.length; i++) {
+      int length = recordSize < 0 ? a_in.getInt() : recordSize;
+      int end = a_in.position() + length;
+      a_schema.decode(a_in, a_chroms[i]);
+      if (a_in.position() != end) {
+        throw new IOException("Alleles of chromosome " + i
+                              + " do not fit sample chromosome");
+      }
+    }
+  }
+
+  /**
+   * Verifies the CRC32 checksum stored in the last four bytes of the
+   * remaining bytes of a buffer, as written by the checkpoints of JGAP.
+   * Afterwards, the limit of the buffer excludes the checksum.
+   *
+   * @param a_in the buffer holding a checkpoint
+   * @throws IOException if the checkpoint is truncated or corrupt
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void verifyChecksum(ByteBuffer a_in)
+      throws IOException {
+    int length = a_in.remaining() - 4;
+    if (length < 0) {
+      throw new IOException("Checkpoint truncated");
+    }
+    CRC32 crc = new CRC32();
+    ByteBuffer data = a_in.duplicate();
+    byte[] chunk = new byte[65536];
+    int left = length;
+    while (left > 0) {
+      int n = Math.min(chunk.length, left);
+      data.get(chunk, 0, n);
+      crc.update(chunk, 0, n);
+      left -= n;
+    }
+    if (data.getInt() != (int) crc.getValue()) {
+      throw new IOException("Checksum mismatch, checkpoint corrupt");
+    }
+    a_in.limit(a_in.position() + length);
+  }
+
+  /**
+   * Restores the state of the random generator of a configuration. A seed
+   * stored is set on the random generator of the configuration if it extends
+   * java.util.Random. Otherwise, the random generator is replaced if the
+   * configuration is not locked yet.
+   *
+   * @param a_state the state as captured by captureRandomState
+   * @param a_conf the configuration to restore the random generator of
+   * @throws IOException
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void restoreRandomState(byte[] a_state, Configuration a_conf)
+      throws IOException, InvalidConfigurationException {
+    if (a_state.length == 0) {
+      return;
+    }
+    RandomGenerator current = a_conf.getRandomGenerator();
+    if (a_state[0] == RANDOM_SEED) {
+      long seed = ByteBuffer.wrap(a_state, 1, 8).getLong();
+      if (current instanceof Random) {
+        ( (Random) current).setSeed(seed);
+      }
+      else if (!a_conf.isLocked()) {
+        StockRandomGenerator random = new StockRandomGenerator();
+        random.setSeed(seed);
+        a_conf.setRandomGenerator(random);
+      }
+    }
+    else if (a_state[0] == RANDOM_SERIALIZED && !a_conf.isLocked()) {
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+          a_state, 1, a_state.length - 1));
+      try {
+        a_conf.setRandomGenerator( (RandomGenerator) in.readObject());
+      } catch (ClassNotFoundException cex) {
+        throw new IOException("Class of random generator not found: "
+                              + cex.getMessage());
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * Picks up the seed of the first java.util.Random deserialized, before a
+   * subclass can change it.
+   */
+  private static class SeedReader
+      extends ObjectInputStream {
+    private long m_seed;
+
+    private boolean m_found;
+
+    SeedReader(InputStream a_in)
+        throws IOException {
+      super(a_in);
+    }
+
+    public GetField readFields()
+        throws IOException, ClassNotFoundException {
+      GetField fields = super.readFields();
+      if (!m_found
+          && fields.getObjectStreamClass().forClass() == Random.class) {
+        m_seed = fields.get("seed", 0L);
+        m_found = true;
+      }
+      return fields;
+    }
+  }
+
+  /**
+   * State of a population captured for writing it.
+   */
+  private static class Snapshot
+      implements ICheckpoint {
+    private final int m_generationNr;
+
+    private final byte[] m_randomState;
+
+    private final double[] m_fitness;
+
+    /**
+     * Schema written by ChromosomeSchema.write.
+     */
+    private final byte[] m_schema;
+
+    /**
+     * Columns of alleles written by ChromosomeSchema.writeColumn.
+     */
+    private final byte[] m_alleles;
+
+    Snapshot(int a_generationNr, byte[] a_randomState, double[] a_fitness,
+             byte[] a_schema, byte[] a_alleles) {
+      m_generationNr = a_generationNr;
+      m_randomState = a_randomState;
+      m_fitness = a_fitness;
+      m_schema = a_schema;
+      m_alleles = a_alleles;
+    }
+
+    public int getGenerationNr() {
+      return m_generationNr;
+    }
+
+    public void write(OutputStream a_out)
+        throws IOException {
+      int size = m_fitness.length;
+      BufferedOutputStream buffered = new BufferedOutputStream(a_out, 65536);
+      CRC32 crc = new CRC32();
+      DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+          buffered, crc));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(m_generationNr);
+      out.writeInt(size);
+      out.writeInt(m_schema.length);
+      out.write(m_schema);
+      out.writeInt(m_randomState.length);
+      out.write(m_randomState);
+      for (int i = 0; i < size; i++) {
+        out.writeDouble(m_fitness[i]);
+      }
+      out.write(m_alleles);
+      out.flush();
+      // The checksum itself is not part of the checksum.
+      // ------------------------------------------------
+      new DataOutputStream(buffered).writeInt( (int) crc.getValue());
+      buffered.flush();
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * State of an evolution captured at a certain generation, independent of the
+ * objects evolving further. Thus, it can be written by another thread while
+ * evolution goes on.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public interface ICheckpoint {
+  /** String containing the CVS revision. Read out via reflection!*/
+  final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * @return number of the generation captured
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  int getGenerationNr();
+
+  /**
+   * Writes the state captured. The stream is not closed.
+   *
+   * @param a_out the stream to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  void write(OutputStream a_out)
+      throws IOException;
+}
@@ -0,0 +1,706 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.distr.grid.common;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.jgap.util.IObjectCodec;
+
+/**
+ * Append-only store of results, each identified by an ID (e.g. the ID of the
+ * request the result belongs to) and having a fitness value.
+ * <p>
+ * Storing or removing a result appends a record to a log file, thus its cost
+ * only depends on the size of the result. An index held in memory maps the
+ * IDs to the records and ranks the results by fitness, the results
+ * themselves are read from the file on demand. Records superseded by later
+ * ones are removed by compacting the log, which happens automatically when
+ * they take more space than the records being current.
+ * <p>
+ * Each record carries a checksum. When opening a log that was not written
+ * completely (e.g. after a crash), the incomplete or corrupt records at its
+ * end are discarded.
+ * <p>
+ * Layout (big endian): int magic, int version, then per record: int length
+ * of the body, int checksum of the body, body: byte type (put or remove),
+ * long sequence number, UTF ID, double fitness value, long time stamp,
+ * int length of the encoded result (-1: null) and the encoded result.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class ResultStore {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private transient static Logger LOGGER = Logger.getLogger(ResultStore.class);
+
+  /**
+   * First four bytes of a log ("JGRS").
+   */
+  public final static int MAGIC = 0x4A475253;
+
+  /**
+   * Version of the format written.
+   */
+  public final static int VERSION = 1;
+
+  private final static int HEADER_SIZE = 8;
+
+  private final static int RECORD_HEADER_SIZE = 8;
+
+  private final static byte TYPE_PUT = 1;
+
+  private final static byte TYPE_REMOVE = 2;
+
+  /**
+   * Minimum number of bytes superseded before compacting automatically.
+   */
+  private final static long MIN_GARBAGE = 1 << 20;
+
+  private final File m_file;
+
+  private final IObjectCodec m_codec;
+
+  private final boolean m_higherIsFitter;
+
+  private RandomAccessFile m_raf;
+
+  private FileChannel m_channel;
+
+  /**
+   * End of the last complete record.
+   */
+  private long m_end;
+
+  private long m_sequence;
+
+  private final Map<String, Entry> m_index = new HashMap<String, Entry>();
+
+  private final TreeSet<Entry> m_ranking;
+
+  private long m_liveBytes;
+
+  private long m_garbageBytes;
+
+  private boolean m_syncOnWrite;
+
+  private boolean m_autoCompact = true;
+
+  /**
+   * Opens a store, creating its log file if not existing.
+   *
+   * @param a_file the log file
+   * @param a_codec the codec to encode the results with
+   * @param a_higherIsFitter true: results with higher fitness values are
+   * ranked first
+   * @throws IOException if the log file cannot be read
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public ResultStore(File a_file, IObjectCodec a_codec,
+                     boolean a_higherIsFitter)
+      throws IOException {
+    m_file = a_file.getAbsoluteFile();
+    m_codec = a_codec;
+    m_higherIsFitter = a_higherIsFitter;
+    m_ranking = new TreeSet<Entry>(new RankComparator());
+    // A compaction interrupted before replacing the log is discarded.
+    // ---------------------------------------------------------------
+    File tmp = getCompactFile();
+    if (tmp.exists() && !tmp.delete()) {
+      throw new IOException("Unable to delete " + tmp);
+    }
+    open();
+  }
+
+  private void open()
+      throws IOException {
+    m_raf = new RandomAccessFile(m_file, "rw");
+    m_channel = m_raf.getChannel();
+    if (m_channel.size() < HEADER_SIZE) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).flip();
+      m_channel.truncate(0);
+      writeFully(header, 0);
+      m_channel.force(true);
+      m_end = HEADER_SIZE;
+      return;
+    }
+    recover();
+  }
+
+  /**
+   * Reads the log, building the index, and discards incomplete records at
+   * its end.
+   *
+   * @throws IOException
+   */
+  private void recover()
+      throws IOException {
+    long size = m_channel.size();
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(m_file), 65536));
+    long pos;
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(m_file + " is not a result store");
+      }
+      int version = in.readInt();
+      if (version < 1 || version > VERSION) {
+        throw new IOException("Unsupported result store version " + version);
+      }
+      pos = HEADER_SIZE;
+      CRC32 crc = new CRC32();
+      while (pos + RECORD_HEADER_SIZE <= size) {
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length <= 0 || pos + RECORD_HEADER_SIZE + length > size) {
+          break;
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        crc.reset();
+        crc.update(body);
+        if ( (int) crc.getValue() != checksum) {
+          break;
+        }
+        apply(body, pos, RECORD_HEADER_SIZE + length);
+        pos += RECORD_HEADER_SIZE + length;
+      }
+    } catch (EOFException eex) {
+      throw new IOException(m_file + " is not a result store");
+    } finally {
+      in.close();
+    }
+    if (pos < size) {
+      LOGGER.warn("Discarding " + (size - pos) + " bytes of incomplete"
+                  + " records at the end of " + m_file);
+      m_channel.truncate(pos);
+      m_channel.force(true);
+    }
+    m_end = pos;
+  }
+
+  /**
+   * Updates the index by a record.
+   *
+   * @param a_body body of the record
+   * @param a_offset offset of the record in the log
+   * @param a_length length of the record including its header
+   * @throws IOException
+   */
+  private void apply(byte[] a_body, long a_offset, int a_length)
+      throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+        a_body));
+    byte type = in.readByte();
+    long sequence = in.readLong();
+    String id = in.readUTF();
+    double fitness = in.readDouble();
+    long timestamp = in.readLong();
+    m_sequence = Math.max(m_sequence, sequence + 1);
+    Entry old = m_index.remove(id);
+    if (old != null) {
+      m_ranking.remove(old);
+      m_liveBytes -= old.m_length;
+      m_garbageBytes += old.m_length;
+    }
+    if (type == TYPE_PUT) {
+      Entry entry = new Entry(id, fitness, timestamp, sequence, a_offset,
+                              a_length);
+      m_index.put(id, entry);
+      m_ranking.add(entry);
+      m_liveBytes += a_length;
+    }
+    else {
+      // Removal records are only needed until compacting.
+      // -------------------------------------------------
+      m_garbageBytes += a_length;
+    }
+  }
+
+  /**
+   * Stores a result, replacing the one stored with the same ID.
+   *
+   * @param a_id ID of the result
+   * @param a_fitness fitness value of the result
+   * @param a_result the result, may be null
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void put(String a_id, double a_fitness, Object a_result)
+      throws IOException {
+    byte[] encoded = null;
+    if (a_result != null) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      m_codec.encode(a_result, bytes);
+      encoded = bytes.toByteArray();
+    }
+    append(TYPE_PUT, a_id, a_fitness, encoded);
+  }
+
+  /**
+   * Removes a result.
+   *
+   * @param a_id ID of the result
+   * @return true if a result with the ID was stored
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized boolean remove(String a_id)
+      throws IOException {
+    if (!m_index.containsKey(a_id)) {
+      return false;
+    }
+    append(TYPE_REMOVE, a_id, Double.NaN, null);
+    return true;
+  }
+
+  private void append(byte a_type, String a_id, double a_fitness,
+                      byte[] a_encoded)
+      throws IOException {
+    checkOpen();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64
+        + (a_encoded == null ? 0 : a_encoded.length));
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(a_type);
+    out.writeLong(m_sequence);
+    out.writeUTF(a_id);
+    out.writeDouble(a_fitness);
+    out.writeLong(System.currentTimeMillis());
+    if (a_encoded == null) {
+      out.writeInt( -1);
+    }
+    else {
+      out.writeInt(a_encoded.length);
+      out.write(a_encoded);
+    }
+    out.flush();
+    byte[] body = bytes.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+    record.putInt(body.length).putInt( (int) crc.getValue()).put(body).flip();
+    writeFully(record, m_end);
+    if (m_syncOnWrite) {
+      m_channel.force(false);
+    }
+    apply(body, m_end, RECORD_HEADER_SIZE + body.length);
+    m_end += RECORD_HEADER_SIZE + body.length;
+    if (m_autoCompact && isCompactionDue()) {
+      compact();
+    }
+  }
+
+  /**
+   * @param a_id ID of a result
+   * @return the result, null if not stored
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized Object get(String a_id)
+      throws IOException {
+    checkOpen();
+    Entry entry = m_index.get(a_id);
+    if (entry == null) {
+      return null;
+    }
+    ByteBuffer body = ByteBuffer.allocate(entry.m_length
+                                          - RECORD_HEADER_SIZE);
+    readFully(body, entry.m_offset + RECORD_HEADER_SIZE);
+    byte[] bytes = body.array();
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    in.readByte();
+    in.readLong();
+    in.readUTF();
+    in.readDouble();
+    in.readLong();
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    try {
+      return m_codec.decode(in);
+    } catch (ClassNotFoundException cex) {
+      throw new IOException("Unable to decode result " + a_id + ": "
+                            + cex.getMessage());
+    }
+  }
+
+  /**
+   * @param a_id ID of a result
+   * @return true if a result with the ID is stored
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized boolean contains(String a_id) {
+    return m_index.containsKey(a_id);
+  }
+
+  /**
+   * @param a_id ID of a result
+   * @return fitness value of the result, NaN if not stored
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized double getFitness(String a_id) {
+    Entry entry = m_index.get(a_id);
+    if (entry == null) {
+      return Double.NaN;
+    }
+    return entry.m_fitness;
+  }
+
+  /**
+   * @param a_id ID of a result
+   * @return time the result was stored, -1 if not stored
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized long getTimestamp(String a_id) {
+    Entry entry = m_index.get(a_id);
+    if (entry == null) {
+      return -1;
+    }
+    return entry.m_timestamp;
+  }
+
+  /**
+   * @param a_count maximum number of IDs to return
+   * @return IDs of the fittest results, the fittest first
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized List<String> getTopIds(int a_count) {
+    List<String> ids = new ArrayList<String>(Math.min(a_count,
+        m_ranking.size()));
+    Iterator<Entry> it = m_ranking.iterator();
+    while (it.hasNext() && ids.size() < a_count) {
+      ids.add(it.next().m_id);
+    }
+    return ids;
+  }
+
+  /**
+   * @return IDs of all results, the fittest first
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized List<String> getIds() {
+    return getTopIds(m_ranking.size());
+  }
+
+  /**
+   * @param a_id ID of a result
+   * @return rank of the result by fitness (0 for the fittest), -1 if not
+   * stored
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized int getRank(String a_id) {
+    Entry entry = m_index.get(a_id);
+    if (entry == null) {
+      return -1;
+    }
+    return m_ranking.headSet(entry).size();
+  }
+
+  /**
+   * @return number of results stored
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized int size() {
+    return m_index.size();
+  }
+
+  /**
+   * @return true if superseded records take more space than current ones
+   * (and at least one megabyte)
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized boolean isCompactionDue() {
+    return m_garbageBytes >= MIN_GARBAGE && m_garbageBytes > m_liveBytes;
+  }
+
+  /**
+   * Rewrites the log with the current records only. The new log is written
+   * to a temporary file, which then atomically replaces the log.
+   *
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void compact()
+      throws IOException {
+    checkOpen();
+    Entry[] entries = m_index.values().toArray(new Entry[m_index.size()]);
+    Arrays.sort(entries, new Comparator<Entry>() {
+      public int compare(Entry a_e1, Entry a_e2) {
+        return a_e1.m_offset < a_e2.m_offset ? -1
+            : (a_e1.m_offset == a_e2.m_offset ? 0 : 1);
+      }
+    });
+    File tmp = getCompactFile();
+    long[] offsets = new long[entries.length];
+    RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+    try {
+      FileChannel channel = out.getChannel();
+      channel.truncate(0);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).flip();
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+      long pos = HEADER_SIZE;
+      for (int i = 0; i < entries.length; i++) {
+        offsets[i] = pos;
+        long done = 0;
+        while (done < entries[i].m_length) {
+          done += m_channel.transferTo(entries[i].m_offset + done,
+                                       entries[i].m_length - done, channel);
+        }
+        pos += entries[i].m_length;
+      }
+      channel.force(true);
+    } finally {
+      out.close();
+    }
+    m_raf.close();
+    try {
+      try {
+        Files.move(tmp.toPath(), m_file.toPath(),
+                   StandardCopyOption.ATOMIC_MOVE,
+                   StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException aex) {
+        Files.move(tmp.toPath(), m_file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      // If replacing failed, the old log is still in place and used further.
+      // ---------------------------------------------------------------------
+      m_raf = new RandomAccessFile(m_file, "rw");
+      m_channel = m_raf.getChannel();
+    }
+    long end = HEADER_SIZE;
+    for (int i = 0; i < entries.length; i++) {
+      entries[i].m_offset = offsets[i];
+      end += entries[i].m_length;
+    }
+    m_end = end;
+    m_garbageBytes = 0;
+  }
+
+  /**
+   * Forces all records written to the storage device.
+   *
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void sync()
+      throws IOException {
+    checkOpen();
+    m_channel.force(false);
+  }
+
+  /**
+   * Closes the log file.
+   *
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void close()
+      throws IOException {
+    if (m_raf != null) {
+      m_channel.force(false);
+      m_raf.close();
+      m_raf = null;
+      m_channel = null;
+    }
+  }
+
+  /**
+   * @param a_syncOnWrite true: force each record to the storage device when
+   * written, which survives a crash of the operating system; false (default):
+   * leave it to the operating system, which survives a crash of the
+   * application only
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void setSyncOnWrite(boolean a_syncOnWrite) {
+    m_syncOnWrite = a_syncOnWrite;
+  }
+
+  /**
+   * @param a_autoCompact true (default): compact when isCompactionDue()
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void setAutoCompact(boolean a_autoCompact) {
+    m_autoCompact = a_autoCompact;
+  }
+
+  public File getFile() {
+    return m_file;
+  }
+
+  /**
+   * @return size of the log in bytes
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized long getLogSize() {
+    return m_end;
+  }
+
+  /**
+   * @return bytes taken by superseded records
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized long getGarbageBytes() {
+    return m_garbageBytes;
+  }
+
+  private File getCompactFile() {
+    return new File(m_file.getPath() + ".compact");
+  }
+
+  private void checkOpen() {
+    if (m_raf == null) {
+      throw new IllegalStateException("Result store is closed");
+    }
+  }
+
+  private void writeFully(ByteBuffer a_buffer, long a_pos)
+      throws IOException {
+    long pos = a_pos;
+    while (a_buffer.hasRemaining()) {
+      pos += m_channel.write(a_buffer, pos);
+    }
+  }
+
+  private void readFully(ByteBuffer a_buffer, long a_pos)
+      throws IOException {
+    long pos = a_pos;
+    while (a_buffer.hasRemaining()) {
+      int n = m_channel.read(a_buffer, pos);
+      if (n < 0) {
+        throw new EOFException("Result store truncated");
+      }
+      pos += n;
+    }
+  }
+
+  /**
+   * Index entry of a result.
+   */
+  private static class Entry {
+    final String m_id;
+
+    final double m_fitness;
+
+    final long m_timestamp;
+
+    final long m_sequence;
+
+    long m_offset;
+
+    final int m_length;
+
+    Entry(String a_id, double a_fitness, long a_timestamp, long a_sequence,
+          long a_offset, int a_length) {
+      m_id = a_id;
+      m_fitness = a_fitness;
+      m_timestamp = a_timestamp;
+      m_sequence = a_sequence;
+      m_offset = a_offset;
+      m_length = a_length;
+    }
+  }
+
+  /**
+   * Ranks fitter results first, results without fitness value last and
+   * results with equal fitness in the order stored.
+   */
+  private class RankComparator
+      implements Comparator<Entry> {
+    public int compare(Entry a_e1, Entry a_e2) {
+      boolean nan1 = Double.isNaN(a_e1.m_fitness);
+      boolean nan2 = Double.isNaN(a_e2.m_fitness);
+      int result;
+      if (nan1 || nan2) {
+        result = nan1 == nan2 ? 0 : (nan1 ? 1 : -1);
+      }
+      else if (m_higherIsFitter) {
+        result = Double.compare(a_e2.m_fitness, a_e1.m_fitness);
+      }
+      else {
+        result = Double.compare(a_e1.m_fitness, a_e2.m_fitness);
+      }
+      if (result == 0) {
+        result = a_e1.m_sequence < a_e2.m_sequence ? -1
+            : (a_e1.m_sequence == a_e2.m_sequence ? 0 : 1);
+      }
+      return result;
+    }
+  }
+}
@@ -9,9 +9,12 @@
  */
 package org.jgap.distr.grid.gp;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -32,6 +35,7 @@ import org.jgap.distr.grid.IGridClientMediator;
 import org.jgap.distr.grid.MessageContext;
 import org.jgap.distr.grid.common.ClientStatus;
 import org.jgap.distr.grid.common.NoWorkResultsFoundException;
+import org.jgap.distr.grid.common.ResultStore;
 import org.jgap.distr.grid.common.ResultVerification;
 import org.jgap.distr.grid.common.WorkRequestsSendException;
 import org.jgap.distr.grid.common.WorkResultNotFoundException;
@@ -40,12 +44,14 @@ import org.jgap.distr.grid.wan.WANData;
 import org.jgap.distr.grid.wan.WANUtils;
 import org.jgap.gp.BaseGPChromosome;
 import org.jgap.gp.IGPProgram;
+import org.jgap.gp.impl.GPBinaryCodec;
 import org.jgap.gp.impl.GPConfiguration;
 import org.jgap.gp.impl.GPGenotype;
 import org.jgap.gp.impl.GPPopulation;
 import org.jgap.util.DateKit;
 import org.jgap.util.FileKit;
 import org.jgap.util.NumberKit;
+import org.jgap.util.IObjectCodec;
 import org.jgap.util.PersistableObject;
 import org.jgap.util.SystemKit;
 
@@ -88,6 +94,20 @@ public class JGAPClientGP
 
   public static final String RESULTS_DATABASE = "results.jgap";
 
+  /**
+   * Log of the results received, see ResultStore.
+   *
+   * @since 3.7
+   */
+  public static final String RESULT_STORE = "results.log";
+
+  /**
+   * Log of the not too bad results, kept in the NTB dir.
+   *
+   * @since 3.7
+   */
+  public static final String NTB_STORE = "ntb.log";
+
   /**@todo das ist nicht module, sondern sender-receiver*/
 
   public static final String MODULE_SC = "SC";
@@ -171,6 +191,27 @@ public class JGAPClientGP
 
   private int m_max_fetch_results;
 
+  /**
+   * Codec for writing results to files, null for XStream.
+   *
+   * @since 3.7
+   */
+  private IObjectCodec m_codec;
+
+  /**
+   * Fittest program of each result received, by ID of the result.
+   *
+   * @since 3.7
+   */
+  private ResultStore m_resultStore;
+
+  /**
+   * Not too bad results for presetting work requests.
+   *
+   * @since 3.7
+   */
+  private ResultStore m_ntbStore;
+
   public JGAPClientGP(GridNodeClientConfig a_gridconfig,
                       String a_clientClassName,
                       boolean a_WANMode,
@@ -284,6 +325,18 @@ public class JGAPClientGP
       m_resultsVerified = new ResultVerification();
       m_resultsPersister.setObject(m_resultsVerified);
     }
+    // Open the logs of results, recovering them if not closed properly.
+    // The configuration is not written with each program.
+    // -----------------------------------------------------------------
+    IObjectCodec codec = new GPBinaryCodec(true, getConfiguration());
+    boolean higherIsFitter = getConfiguration().getGPFitnessEvaluator().
+        isFitter(2.0d, 1.0d);
+    m_resultStore = new ResultStore(new File(getWorkDirectory(),
+        RESULT_STORE), codec, higherIsFitter);
+    m_ntbStore = new ResultStore(new File(m_ntbResultsDir, NTB_STORE), codec,
+                                 higherIsFitter);
+    log.info(m_resultStore.size() + " results and " + m_ntbStore.size()
+             + " NTB results stored");
   }
 
   /**
@@ -745,17 +798,23 @@ public class JGAPClientGP
             IGPProgram best = result.getPopulation().determineFittestProgram();
             String key = result.getID();
             // Check if result already received, and if, skip it
-            if (m_objects.getResults().get(key) != null) {
+            if (m_resultStore.contains(key)
+                || m_objects.getResults().get(key) != null) {
               log.info("Already received result detected, key: "+key);
               continue;
             }
             if (best == null) {
               log.info("Empty result received!");
             }
-            m_objects.getResults().put(key, "received");
+            // Appending to the log only writes the new result, in contrast
+            // to saving the whole client status.
+            // ------------------------------------------------------------
+            m_resultStore.put(key, best == null ? Double.NaN
+                              : best.getFitnessValue(), best);
             // Work with the result.
             // ---------------------
             m_gridConfig.getClientEvolveStrategy().resultReceived(result);
+            boolean deferred = false;
             try {
               // Remove result from online store.
               // ---------------------------------
@@ -776,13 +835,16 @@ public class JGAPClientGP
                 if (key != null) {
                   log.info(" Key for later deletion: " + key);
                   m_objects.getResults().put(key, "delete:");
+                  deferred = true;
                 }
                 else {
                   log.info("Deferred deletion not possible: key unknown");
                 }
               }
             } finally {
-              m_persister.save();
+              if (deferred) {
+                m_persister.save();
+              }
             }
             i++;
             resultReceived(best);
@@ -1067,8 +1129,17 @@ public class JGAPClientGP
    */
   public void writeToFile(Object a_obj, String a_dir, String a_filename)
       throws Exception {
-    JGAPGPXStream xstream = new JGAPGPXStream();
     File f = new File(a_dir, a_filename);
+    if (m_codec != null) {
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(f));
+      try {
+        m_codec.encode(a_obj, out);
+      } finally {
+        out.close();
+      }
+      return;
+    }
+    JGAPGPXStream xstream = new JGAPGPXStream();
 //    FileOutputStream fos = new FileOutputStream(f);
     FileWriter fw = new FileWriter(f);
     CompactWriter compact = new CompactWriter(fw);
@@ -1076,6 +1147,41 @@ public class JGAPClientGP
     fw.close();
   }
 
+  /**
+   * Sets the codec for writing results to files (see writeToFile and
+   * saveResult), e.g. GPBinaryCodec. Results written by XStream before can
+   * still be read.
+   *
+   * @param a_codec the codec to use, null for XStream
+   *
+   * @since 3.7
+   */
+  public void setCodec(IObjectCodec a_codec) {
+    m_codec = a_codec;
+  }
+
+  public IObjectCodec getCodec() {
+    return m_codec;
+  }
+
+  /**
+   * @return the fittest program of each result received, by ID of the result
+   *
+   * @since 3.7
+   */
+  public ResultStore getResultStore() {
+    return m_resultStore;
+  }
+
+  /**
+   * @return the not too bad results used for presetting work requests
+   *
+   * @since 3.7
+   */
+  public ResultStore getNTBStore() {
+    return m_ntbStore;
+  }
+
   public void setWorkDirectory(String a_workDir)
       throws IOException {
     m_workDir = a_workDir;
@@ -1301,11 +1407,10 @@ public class JGAPClientGP
           String title = "ntb_fitness_"
               + DateKit.getNowAsString()
               + "_"
-              + NumberKit.niceDecimalNumber(a_fitness, 2)
-              + ".jgap";
-          // Store in separate subdir.
-          // -------------------------
-          saveResult(m_ntbResultsDir, title, a_fittest);
+              + NumberKit.niceDecimalNumber(a_fitness, 2);
+          // Store in separate log.
+          // ----------------------
+          m_ntbStore.put(title, a_fitness, a_fittest);
         }
       } while (it.hasNext()) {
         IGPProgram prog = (IGPProgram) it.next();
@@ -1403,6 +1508,7 @@ public class JGAPClientGP
       throws Exception {
     String filename = FileKit.addFilename(a_dir, a_filename);
     PersistableObject po = new PersistableObject(filename);
+    po.setCodec(m_codec);
     po.setObject(a_obj);
     po.save();
   }
@@ -1457,8 +1563,23 @@ public class JGAPClientGP
       }
       // Merge not too bad results in.
       // -----------------------------
-      String[] results = getFilenames(m_ntbResultsDir);
-      if (results != null && results.length > 0) {
+      List<String> ntbIds = m_ntbStore.getIds();
+      if (!ntbIds.isEmpty()) {
+        int count = randGen.nextInt(Math.min(5, ntbIds.size()));
+        for (int i = 0; i < count; i++) {
+          String id = ntbIds.get(randGen.nextInt(ntbIds.size()));
+          IGPProgram ntb = (IGPProgram) m_ntbStore.get(id);
+          if (ntb != null) {
+            log.info("Presetting with NTB result");
+            added++;
+            toAdd.add(ntb);
+          }
+        }
+      }
+      // Results stored as single files by previous versions.
+      // ----------------------------------------------------
+      String[] results = FileKit.listFilesInDir(m_ntbResultsDir, ".*\\.jgap");
+      if (ntbIds.isEmpty() && results != null && results.length > 0) {
         int count = randGen.nextInt(Math.min(5, results.length));
         if (count > 0) {
           if (count > results.length) {
@@ -1470,6 +1591,7 @@ public class JGAPClientGP
                 results[index]);
             /**@todo remove results[index]*/
             PersistableObject po = new PersistableObject(filename);
+            po.setCodec(m_codec);
             IGPProgram ntb = (IGPProgram) po.load();
             log.info("Presetting with NTB result");
             added++;
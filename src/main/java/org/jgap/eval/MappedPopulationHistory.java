@@ -0,0 +1,712 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.eval;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jgap.Configuration;
+import org.jgap.FitnessEvaluator;
+import org.jgap.Gene;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.Population;
+import org.jgap.UnsupportedRepresentationException;
+import org.jgap.data.ChromosomeSchema;
+
+/**
+ * History of populations kept off the heap in a memory-mapped file, for
+ * tracking many generations for post-run analysis. In contrast to
+ * PopulationHistory, only a compact snapshot of each population is kept:
+ * the fitness values and the alleles of the chromosomes, encoded via
+ * ChromosomeSchema. The chromosomes must have the genes of the sample
+ * chromosome given.
+ * <p>
+ * Generations are numbered in the order added, starting with 0. Single
+ * chromosomes, fitness trajectories and allele frequencies are read from
+ * the mapped file without materializing whole populations.
+ * <p>
+ * The file consists of a header holding the schema, followed by segments of
+ * a fixed size (or larger, if a single snapshot is larger), each mapped into
+ * memory. A snapshot does not span segments. Layout of a snapshot (big
+ * endian): int length of the snapshot, int generation number, int
+ * population size n, double[n] fitness values, int[n + 1] offsets of the
+ * records if the schema has no fixed record size, records of the alleles.
+ * The length is written last, thus snapshots not written completely are
+ * ignored when opening the file.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class MappedPopulationHistory
+    implements Closeable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * First four bytes of a history file ("JGPH").
+   */
+  public final static int MAGIC = 0x4A475048;
+
+  /**
+   * Version of the format written.
+   */
+  public final static int VERSION = 1;
+
+  /**
+   * Default size of a segment: 64 MB.
+   */
+  public final static int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+  /**
+   * Length of a snapshot preceding the fitness values.
+   */
+  private final static int SNAPSHOT_HEADER = 12;
+
+  /**
+   * Marks the unused end of a segment.
+   */
+  private final static int SKIP = -1;
+
+  private final File m_file;
+
+  private final RandomAccessFile m_raf;
+
+  private final FileChannel m_channel;
+
+  private final ChromosomeSchema m_schema;
+
+  private final int m_segmentSize;
+
+  private final long m_headerLength;
+
+  /**
+   * Offset of each gene within a record, null if the schema has no fixed
+   * record size.
+   */
+  private final int[] m_locusOffsets;
+
+  private final List<MappedByteBuffer> m_segments =
+      new ArrayList<MappedByteBuffer>();
+
+  private final List<Long> m_segmentStarts = new ArrayList<Long>();
+
+  private int[] m_snapshotSegments = new int[64];
+
+  private int[] m_snapshotOffsets = new int[64];
+
+  private int m_size;
+
+  /**
+   * Buffer reused for encoding snapshots.
+   */
+  private ByteBuffer m_buffer;
+
+  /**
+   * Creates a new history file, replacing an existing one.
+   *
+   * @param a_file the file to write to
+   * @param a_sample the chromosome defining the genes of all chromosomes
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public MappedPopulationHistory(File a_file, IChromosome a_sample)
+      throws IOException {
+    this(a_file, a_sample, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Creates a new history file, replacing an existing one.
+   *
+   * @param a_file the file to write to
+   * @param a_sample the chromosome defining the genes of all chromosomes
+   * @param a_segmentSize size of the segments mapped into memory
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public MappedPopulationHistory(File a_file, IChromosome a_sample,
+                                 int a_segmentSize)
+      throws IOException {
+    if (a_segmentSize < 1024) {
+      throw new IllegalArgumentException("Segment size must be at least"
+                                         + " 1024 bytes!");
+    }
+    m_file = a_file.getAbsoluteFile();
+    m_schema = new ChromosomeSchema(a_sample);
+    m_segmentSize = a_segmentSize;
+    m_locusOffsets = computeLocusOffsets(m_schema);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(m_segmentSize);
+    m_schema.write(out);
+    out.flush();
+    m_raf = new RandomAccessFile(m_file, "rw");
+    m_channel = m_raf.getChannel();
+    m_channel.truncate(0);
+    ByteBuffer header = ByteBuffer.wrap(bytes.toByteArray());
+    while (header.hasRemaining()) {
+      m_channel.write(header);
+    }
+    m_headerLength = bytes.size();
+  }
+
+  /**
+   * Opens an existing history file for reading and further appending.
+   *
+   * @param a_file the file to open
+   * @param a_conf the configuration to create chromosomes with
+   * @throws IOException
+   */
+  private MappedPopulationHistory(File a_file, Configuration a_conf)
+      throws IOException {
+    m_file = a_file.getAbsoluteFile();
+    m_raf = new RandomAccessFile(m_file, "rw");
+    m_channel = m_raf.getChannel();
+    try {
+      long length = m_channel.size();
+      // The header is small, the schema is bounded by the first segment.
+      // ----------------------------------------------------------------
+      ByteBuffer head = ByteBuffer.allocate( (int) Math.min(length,
+          1 << 20));
+      while (head.hasRemaining() && m_channel.read(head, head.position())
+             >= 0) {
+        ;
+      }
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+          head.array(), 0, head.position()));
+      if (head.position() < 12 || in.readInt() != MAGIC) {
+        throw new IOException(m_file + " is not a population history");
+      }
+      int version = in.readInt();
+      if (version < 1 || version > VERSION) {
+        throw new IOException("Unsupported history version " + version);
+      }
+      m_segmentSize = in.readInt();
+      m_schema = ChromosomeSchema.read(in, a_conf);
+      m_headerLength = head.position() - in.available();
+      m_locusOffsets = computeLocusOffsets(m_schema);
+      scan(length);
+    } catch (IOException iex) {
+      m_raf.close();
+      throw iex;
+    }
+  }
+
+  /**
+   * Opens an existing history file for reading and further appending.
+   *
+   * @param a_file the file to open
+   * @param a_conf the configuration to create chromosomes with
+   * @return the history
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static MappedPopulationHistory open(File a_file,
+      Configuration a_conf)
+      throws IOException {
+    return new MappedPopulationHistory(a_file, a_conf);
+  }
+
+  private static int[] computeLocusOffsets(ChromosomeSchema a_schema) {
+    if (a_schema.getRecordSize() < 0) {
+      return null;
+    }
+    int[] offsets = new int[a_schema.size()];
+    int offset = 0;
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = offset;
+      offset += ChromosomeSchema.getAlleleSize(a_schema.getGene(i));
+    }
+    return offsets;
+  }
+
+  /**
+   * Maps the segments of an existing file and indexes its snapshots.
+   *
+   * @param a_length length of the file
+   * @throws IOException
+   */
+  private void scan(long a_length)
+      throws IOException {
+    long start = m_headerLength;
+    ByteBuffer first = ByteBuffer.allocate(4);
+    while (start + 4 <= a_length) {
+      first.clear();
+      m_channel.read(first, start);
+      int length = first.getInt(0);
+      if (length <= 0) {
+        break;
+      }
+      MappedByteBuffer segment = mapSegment(start, Math.max(m_segmentSize,
+          length));
+      int offset = 0;
+      boolean end = false;
+      while (offset + 4 <= segment.capacity()) {
+        length = segment.getInt(offset);
+        if (length == SKIP) {
+          break;
+        }
+        if (length < SNAPSHOT_HEADER || offset + length > segment.capacity()) {
+          end = true;
+          break;
+        }
+        addSnapshot(m_segments.size() - 1, offset);
+        offset += length;
+      }
+      segment.position(offset);
+      if (end) {
+        return;
+      }
+      start += segment.capacity();
+    }
+  }
+
+  private MappedByteBuffer mapSegment(long a_start, int a_size)
+      throws IOException {
+    MappedByteBuffer segment = m_channel.map(FileChannel.MapMode.READ_WRITE,
+        a_start, a_size);
+    m_segments.add(segment);
+    m_segmentStarts.add(Long.valueOf(a_start));
+    return segment;
+  }
+
+  private void addSnapshot(int a_segment, int a_offset) {
+    if (m_size == m_snapshotSegments.length) {
+      m_snapshotSegments = Arrays.copyOf(m_snapshotSegments, m_size * 2);
+      m_snapshotOffsets = Arrays.copyOf(m_snapshotOffsets, m_size * 2);
+    }
+    m_snapshotSegments[m_size] = a_segment;
+    m_snapshotOffsets[m_size] = a_offset;
+    m_size++;
+  }
+
+  /**
+   * Appends a snapshot of a population, numbering it with the current
+   * generation number of its configuration.
+   *
+   * @param a_population the population to add
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void addPopulation(Population a_population)
+      throws IOException {
+    addPopulation(a_population.getConfiguration().getGenerationNr(),
+                  a_population);
+  }
+
+  /**
+   * Appends a snapshot of a population.
+   *
+   * @param a_generationNr generation number to store with the snapshot
+   * @param a_population the population to add
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void addPopulation(int a_generationNr,
+      Population a_population)
+      throws IOException {
+    if (a_population == null) {
+      throw new IllegalArgumentException("Population must not be null");
+    }
+    ByteBuffer snapshot = encode(a_generationNr, a_population);
+    int length = snapshot.remaining();
+    MappedByteBuffer segment = null;
+    if (!m_segments.isEmpty()) {
+      segment = m_segments.get(m_segments.size() - 1);
+      if (segment.remaining() < length) {
+        if (segment.remaining() >= 4) {
+          segment.putInt(segment.position(), SKIP);
+        }
+        segment = null;
+      }
+    }
+    if (segment == null) {
+      long start = m_headerLength;
+      if (!m_segments.isEmpty()) {
+        int last = m_segments.size() - 1;
+        start = m_segmentStarts.get(last).longValue()
+            + m_segments.get(last).capacity();
+      }
+      segment = mapSegment(start, Math.max(m_segmentSize, length));
+    }
+    int offset = segment.position();
+    // Write the length last for ignoring incomplete snapshots.
+    // --------------------------------------------------------
+    snapshot.putInt(0, 0);
+    segment.put(snapshot);
+    segment.putInt(offset, length);
+    addSnapshot(m_segments.size() - 1, offset);
+  }
+
+  private ByteBuffer encode(int a_generationNr, Population a_population) {
+    int n = a_population.size();
+    int recordSize = m_schema.getRecordSize();
+    int estimate = SNAPSHOT_HEADER + n * 8;
+    if (recordSize >= 0) {
+      estimate += n * recordSize;
+    }
+    else {
+      estimate += (n + 1) * 4 + n * 32;
+    }
+    if (m_buffer == null || m_buffer.capacity() < estimate) {
+      m_buffer = ByteBuffer.allocate(estimate);
+    }
+    while (true) {
+      try {
+        ByteBuffer buf = m_buffer;
+        buf.clear();
+        buf.putInt(0).putInt(a_generationNr).putInt(n);
+        for (int i = 0; i < n; i++) {
+          buf.putDouble(a_population.getChromosome(i).
+                        getFitnessValueDirectly());
+        }
+        int table = buf.position();
+        if (recordSize < 0) {
+          buf.position(table + (n + 1) * 4);
+        }
+        int records = buf.position();
+        for (int i = 0; i < n; i++) {
+          if (recordSize < 0) {
+            buf.putInt(table + i * 4, buf.position() - records);
+          }
+          m_schema.encode(a_population.getChromosome(i), buf);
+        }
+        if (recordSize < 0) {
+          buf.putInt(table + n * 4, buf.position() - records);
+        }
+        buf.flip();
+        return buf;
+      } catch (BufferOverflowException bex) {
+        m_buffer = ByteBuffer.allocate(m_buffer.capacity() * 2);
+      }
+    }
+  }
+
+  /**
+   * @return number of generations stored
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized int size() {
+    return m_size;
+  }
+
+  /**
+   * @return the schema of the chromosomes stored
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public ChromosomeSchema getSchema() {
+    return m_schema;
+  }
+
+  public File getFile() {
+    return m_file;
+  }
+
+  /**
+   * @param a_generation index of the generation
+   * @return read-only view of the snapshot, positioned at its start
+   */
+  private synchronized ByteBuffer snapshot(int a_generation) {
+    if (a_generation < 0 || a_generation >= m_size) {
+      throw new IndexOutOfBoundsException("Generation " + a_generation
+                                          + " of " + m_size);
+    }
+    ByteBuffer buf = m_segments.get(m_snapshotSegments[a_generation]).
+        asReadOnlyBuffer();
+    buf.position(m_snapshotOffsets[a_generation]);
+    return buf.slice();
+  }
+
+  /**
+   * @param a_generation index of the generation
+   * @return generation number stored with the snapshot
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getGenerationNr(int a_generation) {
+    return snapshot(a_generation).getInt(4);
+  }
+
+  /**
+   * @param a_generation index of the generation
+   * @return number of chromosomes of the generation
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getPopulationSize(int a_generation) {
+    return snapshot(a_generation).getInt(8);
+  }
+
+  /**
+   * @param a_generation index of the generation
+   * @param a_index index of the chromosome
+   * @return fitness value of the chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public double getFitnessValue(int a_generation, int a_index) {
+    ByteBuffer buf = snapshot(a_generation);
+    checkIndex(buf, a_index);
+    return buf.getDouble(SNAPSHOT_HEADER + a_index * 8);
+  }
+
+  /**
+   * @param a_generation index of the generation
+   * @return fitness values of all chromosomes of the generation
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public double[] getFitnessValues(int a_generation) {
+    ByteBuffer buf = snapshot(a_generation);
+    double[] result = new double[buf.getInt(8)];
+    buf.position(SNAPSHOT_HEADER);
+    buf.asDoubleBuffer().get(result);
+    return result;
+  }
+
+  /**
+   * @param a_evaluator evaluator determining which fitness value is fitter
+   * @return fitness value of the fittest chromosome of each generation
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public double[] getBestFitnessTrajectory(FitnessEvaluator a_evaluator) {
+    int size = size();
+    double[] result = new double[size];
+    for (int g = 0; g < size; g++) {
+      ByteBuffer buf = snapshot(g);
+      int n = buf.getInt(8);
+      double best = Double.NaN;
+      for (int i = 0; i < n; i++) {
+        double fitness = buf.getDouble(SNAPSHOT_HEADER + i * 8);
+        if (i == 0 || a_evaluator.isFitter(fitness, best)) {
+          best = fitness;
+        }
+      }
+      result[g] = best;
+    }
+    return result;
+  }
+
+  /**
+   * @return mean fitness value of each generation
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public double[] getMeanFitnessTrajectory() {
+    int size = size();
+    double[] result = new double[size];
+    for (int g = 0; g < size; g++) {
+      ByteBuffer buf = snapshot(g);
+      int n = buf.getInt(8);
+      double sum = 0.0d;
+      for (int i = 0; i < n; i++) {
+        sum += buf.getDouble(SNAPSHOT_HEADER + i * 8);
+      }
+      result[g] = n == 0 ? Double.NaN : sum / n;
+    }
+    return result;
+  }
+
+  /**
+   * @param a_generation index of the generation
+   * @param a_index index of the chromosome
+   * @return new chromosome with the alleles and fitness value stored
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public IChromosome getChromosome(int a_generation, int a_index)
+      throws IOException {
+    ByteBuffer buf = snapshot(a_generation);
+    checkIndex(buf, a_index);
+    try {
+      IChromosome chrom = m_schema.newChromosome();
+      positionRecord(buf, a_index);
+      m_schema.decode(buf, chrom);
+      chrom.setFitnessValueDirectly(buf.getDouble(SNAPSHOT_HEADER
+          + a_index * 8));
+      return chrom;
+    } catch (InvalidConfigurationException iex) {
+      throw new IOException(iex.getMessage());
+    } catch (UnsupportedRepresentationException uex) {
+      throw new IOException(uex.getMessage());
+    }
+  }
+
+  /**
+   * @param a_generation index of the generation
+   * @return new population with the chromosomes of the generation
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Population getPopulation(int a_generation)
+      throws IOException {
+    int n = getPopulationSize(a_generation);
+    IChromosome[] chroms = new IChromosome[n];
+    for (int i = 0; i < n; i++) {
+      chroms[i] = getChromosome(a_generation, i);
+    }
+    try {
+      return new Population(m_schema.getConfiguration(), chroms);
+    } catch (InvalidConfigurationException iex) {
+      throw new IOException(iex.getMessage());
+    }
+  }
+
+  /**
+   * Computes the relative frequency of each allele at a gene position,
+   * decoding only the genes needed.
+   *
+   * @param a_generation index of the generation
+   * @param a_locus position of the gene
+   * @return relative frequency by allele. Alleles being arrays (e.g. of
+   * FixedBinaryGene) are keyed by their persistent representation
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Map<Object, Double> getAlleleFrequencies(int a_generation,
+      int a_locus)
+      throws IOException {
+    if (a_locus < 0 || a_locus >= m_schema.size()) {
+      throw new IndexOutOfBoundsException("Locus " + a_locus);
+    }
+    ByteBuffer buf = snapshot(a_generation);
+    int n = buf.getInt(8);
+    Gene[] genes = m_schema.newGenes();
+    Map<Object, int[]> counts = new HashMap<Object, int[]>();
+    try {
+      for (int i = 0; i < n; i++) {
+        positionRecord(buf, i);
+        if (m_locusOffsets != null) {
+          buf.position(buf.position() + m_locusOffsets[a_locus]);
+          ChromosomeSchema.readAllele(genes[a_locus], buf);
+        }
+        else {
+          for (int j = 0; j <= a_locus; j++) {
+            ChromosomeSchema.readAllele(genes[j], buf);
+          }
+        }
+        Object allele = genes[a_locus].getAllele();
+        if (allele != null && allele.getClass().isArray()) {
+          allele = genes[a_locus].getPersistentRepresentation();
+        }
+        int[] count = counts.get(allele);
+        if (count == null) {
+          count = new int[1];
+          counts.put(allele, count);
+        }
+        count[0]++;
+      }
+    } catch (UnsupportedRepresentationException uex) {
+      throw new IOException(uex.getMessage());
+    }
+    Map<Object, Double> result = new HashMap<Object, Double>();
+    for (Map.Entry<Object, int[]> entry : counts.entrySet()) {
+      result.put(entry.getKey(), Double.valueOf( (double) entry.getValue()[0]
+                                                / n));
+    }
+    return result;
+  }
+
+  private void checkIndex(ByteBuffer a_snapshot, int a_index) {
+    int n = a_snapshot.getInt(8);
+    if (a_index < 0 || a_index >= n) {
+      throw new IndexOutOfBoundsException("Chromosome " + a_index + " of "
+                                          + n);
+    }
+  }
+
+  /**
+   * Positions a snapshot at the record of a chromosome.
+   */
+  private void positionRecord(ByteBuffer a_snapshot, int a_index) {
+    int n = a_snapshot.getInt(8);
+    int records = SNAPSHOT_HEADER + n * 8;
+    int recordSize = m_schema.getRecordSize();
+    if (recordSize >= 0) {
+      a_snapshot.position(records + a_index * recordSize);
+    }
+    else {
+      int table = records;
+      records += (n + 1) * 4;
+      a_snapshot.position(records + a_snapshot.getInt(table + a_index * 4));
+    }
+  }
+
+  /**
+   * Forces the snapshots written to the storage device.
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void sync() {
+    for (MappedByteBuffer segment : m_segments) {
+      segment.force();
+    }
+  }
+
+  /**
+   * Forces the snapshots to the storage device and closes the file. The
+   * mapped segments are released by the garbage collector.
+   *
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void close()
+      throws IOException {
+    sync();
+    m_raf.close();
+  }
+}
@@ -10,6 +10,7 @@
 package org.jgap.gp;
 
 import org.apache.log4j.Logger;
+import org.jgap.gp.impl.ExecutionAbortedException;
 
 /**
  * Fitness function for GP-Programs.
@@ -62,6 +63,14 @@ public abstract class GPFitnessFunction
     double fitnessValue;
     try {
       fitnessValue = evaluate(a_program);
+    } catch (ExecutionAbortedException aex) {
+      // The program exceeded its execution budget or has been cancelled.
+      // ------------------------------------------------------------------
+      LOGGER.debug(aex.getMessage());
+      fitnessValue = a_program.getGPConfiguration().
+          getAbortedExecutionFitness();
+      m_lastComputedFitnessValue = fitnessValue;
+      return fitnessValue;
     } catch (IllegalStateException iex) {
       LOGGER.debug(iex.getMessage());
       fitnessValue = NO_FITNESS_VALUE;
@@ -0,0 +1,27 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp;
+
+/**
+ * Marker interface for selectors (INaturalGPSelector) and crossing over
+ * methods (CrossMethod) that may be used by several threads at once, as done
+ * when breeding concurrently (see GPConfiguration.setBreedingThreads). Such
+ * an implementation must take all random numbers from
+ * GPConfiguration.getRandomGenerator(), which is bound per thread then, and
+ * must not modify the programs passed to it or other shared state without
+ * synchronization.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public interface IThreadSafe {
+  /** String containing the CVS revision. Read out via reflection!*/
+  final static String CVS_REVISION = "$Revision: 1.1 $";
+}
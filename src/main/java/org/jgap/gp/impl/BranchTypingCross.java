@@ -11,12 +11,15 @@ package org.jgap.gp.impl;
 
 import java.io.Serializable;
 
+import org.apache.log4j.Logger;
+import org.jgap.ICloneHandler;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.RandomGenerator;
 import org.jgap.gp.CommandGene;
 import org.jgap.gp.CrossMethod;
 import org.jgap.gp.IGPProgram;
 import org.jgap.gp.IMutateable;
+import org.jgap.gp.IThreadSafe;
 
 /**
  * Crossing over for GP ProgramChromosomes.
@@ -25,12 +28,23 @@ import org.jgap.gp.IMutateable;
  * @since 3.0
  */
 public class BranchTypingCross
-    extends CrossMethod implements Serializable, Comparable, Cloneable {
+    extends CrossMethod
+    implements IThreadSafe, Serializable, Comparable, Cloneable {
   /** String containing the CVS revision. Read out via reflection!*/
   private final static String CVS_REVISION = "$Revision: 1.19 $";
 
+  private transient static Logger LOGGER = Logger.getLogger(
+      BranchTypingCross.class);
+
+  /**
+   * True after a skipped mutation has been logged.
+   */
+  private static volatile boolean MUTATION_SKIPPED_LOGGED;
+
   private boolean m_simpleChromosomeSelection;
 
+  private boolean m_sizeChecked;
+
   /**
    * Standard constructor.
    *
@@ -52,8 +66,54 @@ public class BranchTypingCross
    */
   public BranchTypingCross(GPConfiguration a_config,
           boolean a_simpleChromosomeSelection) {
+    this(a_config, a_simpleChromosomeSelection, false);
+  }
+
+  /**
+   *
+   * @param a_config the configuration to use
+   * @param a_simpleChromosomeSelection true: plainly select chromosomes,
+   * false: select chromosomes proportionally to their size (=number of nodes
+   * within a chromosome)
+   * @param a_sizeChecked true: only choose crossover points leading to
+   * offspring within the maximum crossover depth and the maximum number of
+   * nodes, see setSizeChecked(boolean)
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public BranchTypingCross(GPConfiguration a_config,
+          boolean a_simpleChromosomeSelection, boolean a_sizeChecked) {
     super(a_config);
     m_simpleChromosomeSelection = a_simpleChromosomeSelection;
+    m_sizeChecked = a_sizeChecked;
+  }
+
+  /**
+   * By default, the second crossover point is chosen regardless of the size of
+   * the resulting offspring. If an offspring would exceed the maximum
+   * crossover depth or the maximum number of nodes, a parent is copied
+   * instead. With size checking, the second crossover point is drawn only
+   * among the points leading to valid offspring, using the subtree size index
+   * of the chromosomes. This keeps programs from growing beyond the limits
+   * without wasting crossover operations. GPGenotype retries failed
+   * crossovers either way.
+   *
+   * @param a_sizeChecked true: choose compatible crossover points up front
+   *
+   * @since 3.7
+   */
+  public void setSizeChecked(boolean a_sizeChecked) {
+    m_sizeChecked = a_sizeChecked;
+  }
+
+  /**
+   * @return true if crossover points are chosen by the size of the offspring
+   *
+   * @since 3.7
+   */
+  public boolean isSizeChecked() {
+    return m_sizeChecked;
   }
 
   /**
@@ -165,6 +225,21 @@ public class BranchTypingCross
       throws InvalidConfigurationException {
     ProgramChromosome[] c = {
         a_c0, a_c1};
+    // With concurrent breeding, the parents may be shared with other
+    // offspring bred at the same time. Thus, terminals are mutated as a copy
+    // which is only placed into the newly created offspring. The same holds
+    // for frozen parents, e.g. elite programs.
+    // ----------------------------------------------------------------------
+    boolean copyOnMutate = getConfiguration().isConcurrentBreeding();
+    boolean copyOnMutate0 = copyOnMutate || a_c0.isFrozen();
+    boolean copyOnMutate1 = copyOnMutate || a_c1.isFrozen();
+    // Nodes of a frozen parent must not be mutated in place via the
+    // offspring later on.
+    // -------------------------------------------------------------
+    boolean sharesFrozenNodes = !copyOnMutate
+        && (a_c0.isFrozen() || a_c1.isFrozen());
+    CommandGene mutant0 = null;
+    CommandGene mutant1 = null;
     // Choose a point in c1.
     // ---------------------
     int p0;
@@ -190,13 +265,17 @@ public class BranchTypingCross
       CommandGene command = a_c0.getNode(p0);
       if (random.nextDouble() <= getConfiguration().getMutationProb()) {
         if (IMutateable.class.isInstance(command)) {
-          IMutateable term = (IMutateable) command;
-          command = term.applyMutation(0, 0.3d);
+          command = mutate(command, copyOnMutate0);
           if (command != null) {
             // Check if mutant's function is allowed.
             // --------------------------------------
             if (a_c0.getCommandOfClass(0, command.getClass()) >= 0) {
-              a_c0.setGene(p0, command);
+              if (copyOnMutate0) {
+                mutant0 = command;
+              }
+              else {
+                a_c0.setGene(p0, command);
+              }
             }
           }
         }
@@ -204,51 +283,72 @@ public class BranchTypingCross
     }
     // Choose a point in c2 matching the type and subtype of p0.
     // ---------------------------------------------------------
-    int p1;
-    CommandGene nodeP0 = a_c0.getNode(p0);
+    int p1 = -1;
+    CommandGene nodeP0 = mutant0 != null ? mutant0 : a_c0.getNode(p0);
     Class type_ = nodeP0.getReturnType();
     int subType = nodeP0.getSubReturnType();
-    if (random.nextFloat() < getConfiguration().getFunctionProb()) {
-      // Choose a function.
-      // ------------------
-      int nf = a_c1.numFunctions(type_, subType);
-      if (nf == 0) {
-        // No functions of that type.
-        // --------------------------
+    boolean chooseFunction = random.nextFloat()
+        < getConfiguration().getFunctionProb();
+    if (m_sizeChecked) {
+      p1 = selectCompatiblePoint(a_c0, p0, a_c1, type_, subType,
+                                 chooseFunction);
+      if (p1 < 0) {
+        // No point leads to valid offspring.
+        // ----------------------------------
         return c;
       }
-      p1 = a_c1.getFunction(random.nextInt(nf), type_, subType);
+      chooseFunction = a_c1.getNode(p1).getArity(a_c1.getIndividual()) != 0;
+    }
+    if (chooseFunction) {
+      if (!m_sizeChecked) {
+        // Choose a function.
+        // ------------------
+        int nf = a_c1.numFunctions(type_, subType);
+        if (nf == 0) {
+          // No functions of that type.
+          // --------------------------
+          return c;
+        }
+        p1 = a_c1.getFunction(random.nextInt(nf), type_, subType);
+      }
     }
     else {
       // Choose a terminal.
       // ------------------
-      int nt = a_c1.numTerminals(type_, subType);
-      if (nt == 0) {
-        // No terminals of that type.
-        // --------------------------
-        return c;
+      if (!m_sizeChecked) {
+        int nt = a_c1.numTerminals(type_, subType);
+        if (nt == 0) {
+          // No terminals of that type.
+          // --------------------------
+          return c;
+        }
+        p1 = a_c1.getTerminal(random.nextInt(a_c1.numTerminals(type_,
+            subType)), type_, subType);
       }
-      p1 = a_c1.getTerminal(random.nextInt(a_c1.numTerminals(type_, subType)),
-                          type_, subType);
       // Mutate the command's value.
       // ----------------------------
       CommandGene command = a_c1.getNode(p1);
       if (random.nextDouble() <= getConfiguration().getMutationProb()) {
         if (IMutateable.class.isInstance(command)) {
-          IMutateable term = (IMutateable) command;
-          command = term.applyMutation(0, 0.3d);
+          command = mutate(command, copyOnMutate1);
           if (command != null) {
             // Check if mutant's function is allowed.
             // --------------------------------------
             if (a_c0.getCommandOfClass(0, command.getClass()) >= 0) {
-              a_c1.setGene(p1, command);
+              if (copyOnMutate1) {
+                mutant1 = command;
+              }
+              else {
+                a_c1.setGene(p1, command);
+              }
             }
           }
         }
       }
     }
     /**@todo solve in general*/
-    if (org.jgap.gp.function.SubProgram.class.isAssignableFrom(a_c1.getFunctions()[p1].getClass())) {
+    if (!a_c1.isFrozen() && org.jgap.gp.function.SubProgram.class.
+        isAssignableFrom(a_c1.getFunctions()[p1].getClass())) {
       ((IMutateable)a_c1.getFunctions()[p1]).applyMutation(0, 0.5d);
     }
     int s0 = a_c0.getSize(p0); //Number of nodes in c0 from index p0
@@ -276,6 +376,12 @@ public class BranchTypingCross
       System.arraycopy(a_c1.getFunctions(), p1, c[0].getFunctions(), p0, s1);
       System.arraycopy(a_c0.getFunctions(), p0 + s0, c[0].getFunctions(),
                        p0 + s1, c0s - p0 - s0);
+      if (mutant1 != null) {
+        c[0].getFunctions()[p0] = mutant1;
+      }
+      if (sharesFrozenNodes) {
+        c[0].cloneMutableNodes();
+      }
       c[0].redepth();
     }
     // Check for depth constraint for p0 inserted into c1.
@@ -297,11 +403,126 @@ public class BranchTypingCross
       System.arraycopy(a_c0.getFunctions(), p0, c[1].getFunctions(), p1, s0);
       System.arraycopy(a_c1.getFunctions(), p1 + s1, c[1].getFunctions(),
                        p1 + s0, c1s - p1 - s1);
+      if (mutant0 != null) {
+        c[1].getFunctions()[p1] = mutant0;
+      }
+      if (sharesFrozenNodes) {
+        c[1].cloneMutableNodes();
+      }
       c[1].redepth();
     }
     return c;
   }
 
+  /**
+   * Chooses a point in the second chromosome which has the type and subtype of
+   * the first crossover point and which leads to offspring within the maximum
+   * crossover depth and the maximum number of nodes.
+   *
+   * @param a_c0 the first chromosome to cross
+   * @param a_p0 the crossover point in the first chromosome
+   * @param a_c1 the second chromosome to cross
+   * @param a_type the return type to match
+   * @param a_subType the sub return type to match, 0 for any
+   * @param a_function true: prefer a function, false: prefer a terminal. If
+   * there is no compatible point of the preferred kind, the other kind is
+   * taken
+   * @return index of the point in the second chromosome, or -1 if there is no
+   * compatible point
+   *
+   * @since 3.7
+   */
+  protected int selectCompatiblePoint(ProgramChromosome a_c0, int a_p0,
+                                      ProgramChromosome a_c1, Class a_type,
+                                      int a_subType, boolean a_function) {
+    int[] sizes0 = a_c0.getSubtreeSizes();
+    int[] depths0 = a_c0.getSubtreeDepths();
+    int[] sizes1 = a_c1.getSubtreeSizes();
+    int[] depths1 = a_c1.getSubtreeDepths();
+    int s0 = sizes0[a_p0];
+    int d0 = depths0[a_p0];
+    int c0s = sizes0[0];
+    int c1s = sizes1[0];
+    int maxDepth = getConfiguration().getMaxCrossoverDepth();
+    int len0 = a_c0.getFunctions().length;
+    int len1 = a_c1.getFunctions().length;
+    IGPProgram ind = a_c1.getIndividual();
+    int[] functions = new int[c1s];
+    int[] terminals = new int[c1s];
+    int nf = 0;
+    int nt = 0;
+    for (int i = 0; i < c1s; i++) {
+      CommandGene node = a_c1.getNode(i);
+      if (node.getReturnType() != a_type
+          || (a_subType != 0 && node.getSubReturnType() != a_subType)) {
+        continue;
+      }
+      // Same constraints as checked when building the offspring.
+      // --------------------------------------------------------
+      int s1 = sizes1[i];
+      if (d0 - 1 + depths1[i] > maxDepth
+          || c0s - s0 + s1 >= len0
+          || c1s - s1 + s0 >= len1) {
+        continue;
+      }
+      if (node.getArity(ind) != 0) {
+        functions[nf++] = i;
+      }
+      else {
+        terminals[nt++] = i;
+      }
+    }
+    if (nf == 0 && nt == 0) {
+      return -1;
+    }
+    RandomGenerator random = getConfiguration().getRandomGenerator();
+    if ( (a_function && nf > 0) || nt == 0) {
+      return functions[random.nextInt(nf)];
+    }
+    return terminals[random.nextInt(nt)];
+  }
+
+  /**
+   * Applies a mutation to the given command.
+   *
+   * @param a_command the command to mutate, must implement IMutateable
+   * @param a_copy true: mutate a clone of the command instead of the command
+   * itself. The clone is created by the clone handler of the configuration.
+   * If there is none for the command, no mutation takes place
+   * @return the mutated command, or null if the mutation was skipped
+   * @throws InvalidConfigurationException
+   *
+   * @since 3.7
+   */
+  protected CommandGene mutate(CommandGene a_command, boolean a_copy)
+      throws InvalidConfigurationException {
+    if (a_copy) {
+      ICloneHandler cloner = getConfiguration().getJGAPFactory().
+          getCloneHandlerFor(a_command, null);
+      CommandGene clone = null;
+      if (cloner != null) {
+        try {
+          clone = (CommandGene) cloner.perform(a_command, null, null);
+        } catch (Exception ex) {
+          ; // Handled below.
+        }
+      }
+      if (clone == null) {
+        if (!MUTATION_SKIPPED_LOGGED) {
+          // Only output once.
+          // -----------------
+          MUTATION_SKIPPED_LOGGED = true;
+          LOGGER.warn("Mutation skipped because command "
+                      + a_command.getClass().getName()
+                      + " cannot be cloned");
+        }
+        return null;
+      }
+      a_command = clone;
+    }
+    return ( (IMutateable) a_command).applyMutation(0, 0.3d);
+  }
+
   /**
    * The compareTo-method.
    *
@@ -350,7 +571,8 @@ public class BranchTypingCross
    * @since 3.2
    */
   public Object clone() {
-    BranchTypingCross result = new BranchTypingCross(getConfiguration());
+    BranchTypingCross result = new BranchTypingCross(getConfiguration(),
+        m_simpleChromosomeSelection, m_sizeChecked);
     return result;
   }
 }
@@ -0,0 +1,376 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.jgap.InvalidConfigurationException;
+import org.jgap.gp.CommandGene;
+import org.jgap.gp.IGPProgram;
+import org.jgap.gp.IMutateable;
+import org.jgap.gp.terminal.Terminal;
+import org.jgap.util.ICloneable;
+
+/**
+ * Compact, immutable representation of a ProgramChromosome: the nodes in
+ * prefix order as opcodes into a shared NodeTable, plus the values of
+ * ephemeral random constants (Terminal) as raw bits (see
+ * Terminal.getValueBits()). Compared to a ProgramChromosome holding a
+ * (usually cloned) CommandGene per node, a node takes 4 bytes, plus 8 bytes
+ * per node if the program contains constants.
+ * <p>
+ * Crossover and mutation work on slices of the arrays and return new
+ * instances. Conversion from and to ProgramChromosome is lossless, see
+ * compact(ProgramChromosome, NodeTable) and toProgramChromosome. Only
+ * chromosomes whose nodes have a fixed arity can be compacted (see
+ * NodeTable.isSupported(CommandGene)).
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class CompactProgram
+    implements Serializable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final NodeTable m_table;
+
+  private final int[] m_opcodes;
+
+  /**
+   * Raw bits of the constant of each node, null if there are no constants.
+   */
+  private final long[] m_constants;
+
+  /**
+   * Maximum number of nodes, i.e. size of the ProgramChromosome.
+   */
+  private final int m_capacity;
+
+  private final CommandGene[] m_functionSet;
+
+  private final Class[] m_argTypes;
+
+  CompactProgram(NodeTable a_table, int[] a_opcodes,
+                 long[] a_constants, int a_capacity,
+                 CommandGene[] a_functionSet, Class[] a_argTypes) {
+    m_table = a_table;
+    m_opcodes = a_opcodes;
+    m_constants = a_constants;
+    m_capacity = a_capacity;
+    m_functionSet = a_functionSet;
+    m_argTypes = a_argTypes;
+  }
+
+  /**
+   * Creates the compact representation of a chromosome.
+   *
+   * @param a_chrom the chromosome to compact
+   * @param a_table the node table to use, normally
+   * GPConfiguration.getNodeTable()
+   * @return compact representation of the chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static CompactProgram compact(ProgramChromosome a_chrom,
+                                       NodeTable a_table) {
+    int size = a_chrom.size();
+    CommandGene[] genes = a_chrom.getFunctions();
+    int[] opcodes = new int[size];
+    long[] constants = null;
+    for (int i = 0; i < size; i++) {
+      opcodes[i] = a_table.intern(genes[i]);
+      if (a_table.isConstant(opcodes[i])) {
+        if (constants == null) {
+          constants = new long[size];
+        }
+        constants[i] = ( (Terminal) genes[i]).getValueBits();
+      }
+    }
+    return new CompactProgram(a_table, opcodes, constants, genes.length,
+                              a_chrom.getFunctionSet(),
+                              a_chrom.getArgTypes());
+  }
+
+  /**
+   * Creates the chromosome represented by this instance. Nodes holding a
+   * constant and other mutable nodes are cloned, all other nodes are shared
+   * with the node table.
+   *
+   * @param a_conf the configuration to use
+   * @param a_ind the program the chromosome belongs to, may be null
+   * @return the chromosome
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public ProgramChromosome toProgramChromosome(GPConfiguration a_conf,
+      IGPProgram a_ind)
+      throws InvalidConfigurationException {
+    ProgramChromosome chrom;
+    if (a_ind == null) {
+      chrom = new ProgramChromosome(a_conf, m_capacity);
+      chrom.setFunctionSet(m_functionSet);
+      chrom.setArgTypes(m_argTypes);
+    }
+    else {
+      chrom = new ProgramChromosome(a_conf, m_capacity, m_functionSet,
+                                    m_argTypes, a_ind);
+    }
+    CommandGene[] genes = chrom.getFunctions();
+    for (int i = 0; i < m_opcodes.length; i++) {
+      genes[i] = getNode(i);
+    }
+    chrom.redepth();
+    return chrom;
+  }
+
+  /**
+   * @param a_index index of a node
+   * @return the node at the given index, as a new instance if it is mutable
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public CommandGene getNode(int a_index) {
+    CommandGene node = m_table.getNode(m_opcodes[a_index]);
+    if (node instanceof IMutateable && node instanceof ICloneable) {
+      node = (CommandGene) ( (ICloneable) node).clone();
+      if (m_table.isConstant(m_opcodes[a_index])) {
+        ( (Terminal) node).setValueBits(m_constants[a_index]);
+      }
+    }
+    return node;
+  }
+
+  /**
+   * @return number of nodes
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int size() {
+    return m_opcodes.length;
+  }
+
+  /**
+   * @return maximum number of nodes, as for the originating chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getCapacity() {
+    return m_capacity;
+  }
+
+  public NodeTable getNodeTable() {
+    return m_table;
+  }
+
+  public int getOpcode(int a_index) {
+    return m_opcodes[a_index];
+  }
+
+  /**
+   * @param a_index index of a node
+   * @return raw bits of the constant of the node, 0 if it holds none
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public long getConstantBits(int a_index) {
+    if (m_constants == null) {
+      return 0;
+    }
+    return m_constants[a_index];
+  }
+
+  /**
+   * @param a_index index of a node
+   * @return index after the last node of the subtree starting at the given
+   * node
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getSubtreeEnd(int a_index) {
+    int open = 1;
+    int i = a_index;
+    while (open > 0) {
+      open += m_table.getArity(m_opcodes[i]) - 1;
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Replaces the subtree starting at the given node by a subtree of another
+   * program (subtree crossover).
+   *
+   * @param a_index start of the subtree to replace
+   * @param a_donor the program to take the new subtree from, must use the
+   * same node table
+   * @param a_donorIndex start of the subtree to take
+   * @return the new program
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public CompactProgram replaceSubtree(int a_index, CompactProgram a_donor,
+                                       int a_donorIndex) {
+    if (a_donor.m_table != m_table) {
+      throw new IllegalArgumentException("Programs must use the same node"
+                                         + " table!");
+    }
+    CommandGene node = m_table.getNode(m_opcodes[a_index]);
+    CommandGene donorNode = m_table.getNode(a_donor.m_opcodes[a_donorIndex]);
+    if (node.getReturnType() != donorNode.getReturnType()) {
+      throw new IllegalArgumentException("Return types of subtrees differ!");
+    }
+    int end = getSubtreeEnd(a_index);
+    int donorEnd = a_donor.getSubtreeEnd(a_donorIndex);
+    int donorSize = donorEnd - a_donorIndex;
+    int size = a_index + donorSize + m_opcodes.length - end;
+    if (size > m_capacity) {
+      throw new IllegalStateException("Maximum number of nodes ("
+                                      + m_capacity + ") exceeded");
+    }
+    int[] opcodes = new int[size];
+    System.arraycopy(m_opcodes, 0, opcodes, 0, a_index);
+    System.arraycopy(a_donor.m_opcodes, a_donorIndex, opcodes, a_index,
+                     donorSize);
+    System.arraycopy(m_opcodes, end, opcodes, a_index + donorSize,
+                     m_opcodes.length - end);
+    long[] constants = null;
+    if (m_constants != null || a_donor.m_constants != null) {
+      constants = new long[size];
+      if (m_constants != null) {
+        System.arraycopy(m_constants, 0, constants, 0, a_index);
+        System.arraycopy(m_constants, end, constants, a_index + donorSize,
+                         m_opcodes.length - end);
+      }
+      if (a_donor.m_constants != null) {
+        System.arraycopy(a_donor.m_constants, a_donorIndex, constants,
+                         a_index, donorSize);
+      }
+    }
+    return new CompactProgram(m_table, opcodes, constants, m_capacity,
+                              m_functionSet, m_argTypes);
+  }
+
+  /**
+   * Subtree crossover of two programs.
+   *
+   * @param a_c0 the first program
+   * @param a_p0 start of the subtree in the first program
+   * @param a_c1 the second program
+   * @param a_p1 start of the subtree in the second program
+   * @return the two offspring: the first program with the subtree of the
+   * second one, and vice versa
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static CompactProgram[] crossover(CompactProgram a_c0, int a_p0,
+      CompactProgram a_c1, int a_p1) {
+    return new CompactProgram[] {
+        a_c0.replaceSubtree(a_p0, a_c1, a_p1),
+        a_c1.replaceSubtree(a_p1, a_c0, a_p0)};
+  }
+
+  /**
+   * Replaces a node by another one of the same arity and return type (point
+   * mutation).
+   *
+   * @param a_index index of the node to replace
+   * @param a_opcode opcode of the new node
+   * @param a_constantBits raw bits of the constant of the new node, ignored
+   * if it holds none
+   * @return the new program
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public CompactProgram replaceNode(int a_index, int a_opcode,
+                                    long a_constantBits) {
+    int opcode = m_opcodes[a_index];
+    if (m_table.getArity(opcode) != m_table.getArity(a_opcode)
+        || m_table.getNode(opcode).getReturnType()
+        != m_table.getNode(a_opcode).getReturnType()) {
+      throw new IllegalArgumentException("Arity and return type of nodes"
+                                         + " must be equal!");
+    }
+    int[] opcodes = (int[]) m_opcodes.clone();
+    opcodes[a_index] = a_opcode;
+    long[] constants = m_constants;
+    if (m_table.isConstant(a_opcode)) {
+      constants = constants == null ? new long[opcodes.length]
+          : (long[]) constants.clone();
+      constants[a_index] = a_constantBits;
+    }
+    else if (constants != null) {
+      constants = (long[]) constants.clone();
+      constants[a_index] = 0;
+    }
+    return new CompactProgram(m_table, opcodes, constants, m_capacity,
+                              m_functionSet, m_argTypes);
+  }
+
+  /**
+   * Mutates the constant of a node, see Terminal.applyMutation.
+   *
+   * @param a_index index of a node holding a constant
+   * @param a_percentage the mutation strength
+   * @return the new program
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public CompactProgram mutateConstant(int a_index, double a_percentage)
+      throws InvalidConfigurationException {
+    if (!m_table.isConstant(m_opcodes[a_index])) {
+      throw new IllegalArgumentException("Node " + a_index
+                                         + " holds no constant!");
+    }
+    Terminal node = (Terminal) getNode(a_index);
+    node.applyMutation(0, a_percentage);
+    return replaceNode(a_index, m_opcodes[a_index], node.getValueBits());
+  }
+
+  public boolean equals(Object a_other) {
+    if (! (a_other instanceof CompactProgram)) {
+      return false;
+    }
+    CompactProgram other = (CompactProgram) a_other;
+    if (other.m_table != m_table
+        || !Arrays.equals(m_opcodes, other.m_opcodes)) {
+      return false;
+    }
+    for (int i = 0; i < m_opcodes.length; i++) {
+      if (getConstantBits(i) != other.getConstantBits(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public int hashCode() {
+    int hash = Arrays.hashCode(m_opcodes);
+    for (int i = 0; i < m_opcodes.length; i++) {
+      long bits = getConstantBits(i);
+      hash = hash * 31 + (int) (bits ^ (bits >>> 32));
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+/**
+ * Thrown when the execution of a program is aborted because it exceeded its
+ * step or time budget or because it has been cancelled (see
+ * GPConfiguration.setMaxExecutionSteps(long),
+ * GPConfiguration.setMaxExecutionTime(long) and
+ * GPConfiguration.cancelExecutions()).
+ * <p>
+ * Being an IllegalStateException, it is handled by
+ * GPFitnessFunction.getFitnessValue(IGPProgram) like other failed
+ * executions, but results in the fitness value configured via
+ * GPConfiguration.setAbortedExecutionFitness(double).
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class ExecutionAbortedException
+    extends IllegalStateException {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * The step budget has been exceeded.
+   */
+  public final static int STEP_BUDGET = 0;
+
+  /**
+   * The time budget has been exceeded.
+   */
+  public final static int TIME_BUDGET = 1;
+
+  /**
+   * The execution has been cancelled.
+   */
+  public final static int CANCELLED = 2;
+
+  private final int m_reason;
+
+  private final long m_steps;
+
+  /**
+   * @param a_reason one of STEP_BUDGET, TIME_BUDGET or CANCELLED
+   * @param a_steps number of nodes executed until the abort
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public ExecutionAbortedException(int a_reason, long a_steps) {
+    super(getMessage(a_reason, a_steps));
+    m_reason = a_reason;
+    m_steps = a_steps;
+  }
+
+  /**
+   * @return why the execution has been aborted: STEP_BUDGET, TIME_BUDGET or
+   * CANCELLED
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getReason() {
+    return m_reason;
+  }
+
+  /**
+   * @return number of nodes executed until the abort
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public long getSteps() {
+    return m_steps;
+  }
+
+  private static String getMessage(int a_reason, long a_steps) {
+    switch (a_reason) {
+      case STEP_BUDGET:
+        return "Execution aborted: step budget exceeded after " + a_steps
+            + " steps";
+      case TIME_BUDGET:
+        return "Execution aborted: time budget exceeded after " + a_steps
+            + " steps";
+      default:
+        return "Execution cancelled after " + a_steps + " steps";
+    }
+  }
+}
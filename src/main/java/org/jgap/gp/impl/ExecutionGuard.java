@@ -0,0 +1,202 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+/**
+ * Supervises a program execution on the current thread: counts the nodes
+ * executed and aborts the execution with an ExecutionAbortedException if the
+ * step or time budget configured is exceeded or if the execution has been
+ * cancelled. Nested executions on the same thread (e.g. of another
+ * chromosome called via an ADF) share the guard of the outermost one.
+ * <p>
+ * The clock, the interrupt flag of the thread and the cancellation counter of
+ * the configuration are only checked every CHECK_INTERVAL steps.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+class ExecutionGuard {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Must be a power of two minus one.
+   */
+  private final static int CHECK_INTERVAL = 255;
+
+  private final static ThreadLocal<ExecutionGuard> CURRENT =
+      new ThreadLocal<ExecutionGuard>();
+
+  /**
+   * Set if an execution on the current thread has been aborted for a reason
+   * not depending on the program alone (time budget or cancellation).
+   */
+  private final static ThreadLocal<Boolean> TRANSIENT_ABORT =
+      new ThreadLocal<Boolean>();
+
+  private final GPConfiguration m_conf;
+
+  private final long m_maxSteps;
+
+  /**
+   * Deadline as of System.nanoTime(), only valid if m_timed is true.
+   */
+  private final long m_deadline;
+
+  private final boolean m_timed;
+
+  private final boolean m_cancellable;
+
+  private final int m_cancelCount;
+
+  private long m_steps;
+
+  private int m_depth;
+
+  private ExecutionAbortedException m_aborted;
+
+  private ExecutionGuard(GPConfiguration a_conf) {
+    m_conf = a_conf;
+    m_maxSteps = a_conf.getMaxExecutionSteps();
+    long maxTime = a_conf.getMaxExecutionTime();
+    m_timed = maxTime > 0;
+    m_deadline = m_timed ? System.nanoTime() + maxTime * 1000000L : 0;
+    m_cancellable = a_conf.isCancellableExecution();
+    m_cancelCount = a_conf.getExecutionCancelCount();
+    m_depth = 1;
+  }
+
+  /**
+   * Starts supervising an execution on the current thread. Must be paired
+   * with a call of exit() if the result is not null.
+   *
+   * @param a_conf the configuration holding the budgets
+   * @return the guard of the execution, or null if executions are not
+   * supervised
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  static ExecutionGuard enter(GPConfiguration a_conf) {
+    if (a_conf == null || !a_conf.isExecutionGuarded()) {
+      return null;
+    }
+    ExecutionGuard guard = CURRENT.get();
+    if (guard != null) {
+      guard.m_depth++;
+      return guard;
+    }
+    guard = new ExecutionGuard(a_conf);
+    CURRENT.set(guard);
+    return guard;
+  }
+
+  /**
+   * Counts a node to be executed by the execution running on the current
+   * thread, if any.
+   *
+   * @param a_conf the configuration of the node executed
+   * @throws ExecutionAbortedException if the execution has to be aborted
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  static void stepCurrent(GPConfiguration a_conf) {
+    if (a_conf != null && a_conf.isExecutionGuarded()) {
+      ExecutionGuard guard = CURRENT.get();
+      if (guard != null) {
+        guard.step();
+      }
+    }
+  }
+
+  /**
+   * Resets the flag telling whether an execution on the current thread has
+   * been aborted because of its time budget or a cancellation. Such aborts
+   * depend on the load of the machine or on the caller, thus the penalty
+   * fitness resulting must not be cached for the program.
+   *
+   * @return true if such an abort occured since the last call
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  static boolean clearTransientAbort() {
+    if (TRANSIENT_ABORT.get() == null) {
+      return false;
+    }
+    TRANSIENT_ABORT.remove();
+    return true;
+  }
+
+  /**
+   * Ends an execution started via enter(GPConfiguration).
+   *
+   * @return true if the outermost execution has ended
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  boolean exit() {
+    if (--m_depth == 0) {
+      CURRENT.remove();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Counts a node to be executed.
+   *
+   * @throws ExecutionAbortedException if the execution has to be aborted
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  void step() {
+    if (m_aborted != null) {
+      // The exception has been caught by a node, abort again.
+      // ------------------------------------------------------
+      throw m_aborted;
+    }
+    m_steps++;
+    if (m_maxSteps > 0 && m_steps > m_maxSteps) {
+      abort(ExecutionAbortedException.STEP_BUDGET);
+    }
+    if ( (m_steps & CHECK_INTERVAL) == 0) {
+      if (m_timed && System.nanoTime() - m_deadline > 0) {
+        abort(ExecutionAbortedException.TIME_BUDGET);
+      }
+      if (m_cancellable && (m_conf.getExecutionCancelCount() != m_cancelCount
+                            || Thread.currentThread().isInterrupted())) {
+        abort(ExecutionAbortedException.CANCELLED);
+      }
+    }
+  }
+
+  /**
+   * @return number of nodes executed so far
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  long getSteps() {
+    return m_steps;
+  }
+
+  private void abort(int a_reason) {
+    m_aborted = new ExecutionAbortedException(a_reason, m_steps);
+    if (a_reason != ExecutionAbortedException.STEP_BUDGET) {
+      TRANSIENT_ABORT.set(Boolean.TRUE);
+    }
+    m_conf.abortedExecution();
+    throw m_aborted;
+  }
+}
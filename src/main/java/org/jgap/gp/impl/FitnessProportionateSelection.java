@@ -10,11 +10,10 @@
 package org.jgap.gp.impl;
 
 import java.io.Serializable;
-import java.util.Arrays;
 
-import org.jgap.gp.IGPFitnessEvaluator;
 import org.jgap.gp.IGPProgram;
 import org.jgap.gp.INaturalGPSelector;
+import org.jgap.gp.IThreadSafe;
 
 /**
  * Selects individuals proportionally according to their adjusted fitness.
@@ -24,7 +23,7 @@ import org.jgap.gp.INaturalGPSelector;
  * @deprecated use TournamentSelector instead
  */
 public class FitnessProportionateSelection
-    implements INaturalGPSelector, Serializable {
+    implements INaturalGPSelector, IThreadSafe, Serializable {
   /** String containing the CVS revision. Read out via reflection!*/
   private final static String CVS_REVISION = "$Revision: 1.7 $";
 
@@ -38,51 +37,17 @@ public class FitnessProportionateSelection
   }
 
   /**
+   * Selects a program proportionally to its fitness, using the roulette wheel
+   * of the population. Considers the fitness evaluator registered with the
+   * configuration: with lower fitness values being fitter (delta mode), the
+   * adjusted fitness 1 / (1 + fitness value) is used.
    *
    * @param a_genotype GPGenotype
    * @return IGPProgram
    * @deprecated use TournamentSelector or WeightedGPRouletteSelector instead
    */
   public IGPProgram select(GPGenotype a_genotype) {
-    double chosen = a_genotype.getGPConfiguration().getRandomGenerator().
-        nextFloat() * a_genotype.getTotalFitness();
-    int num = 0;
-    GPPopulation pop = a_genotype.getGPPopulation();
-    int popSize = pop.size();
-    // Consider the fitness comparator used.
-    // -------------------------------------
-    IGPFitnessEvaluator evaluator = a_genotype.getGPConfiguration().getGPFitnessEvaluator();
-    num = Arrays.binarySearch(pop.getFitnessRanks(), (float) chosen);
-    if (num >= 0) {
-      return pop.getGPProgram(num);
-    }
-    else {
-      /**@todo implement for deltaMode*/
-      boolean deltaMode;
-      if (evaluator.isFitter(2.0d, 1.0d)) {
-        deltaMode = false;
-      }
-      else {
-        deltaMode = true;
-      }
-      for (num = 1; num < popSize; num++) {
-        if (chosen < pop.getFitnessRank(num)) {
-          break;
-        }
-      }
-      num--;
-      if (num >= popSize - 1) {
-        if (popSize - 1 < 1) {
-          num = 1;
-        }
-        else {
-          // fall back to complete randomization.
-          // ------------------------------------
-          num = a_genotype.getGPConfiguration().getRandomGenerator().
-              nextInt(popSize - 1);
-        }
-      }
-      return pop.getGPProgram(num);
-    }
+    return a_genotype.getGPPopulation().getRouletteWheel().select(
+        a_genotype.getGPConfiguration().getRandomGenerator());
   }
 }
@@ -0,0 +1,330 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.jgap.gp.CommandGene;
+import org.jgap.util.IObjectCodec;
+
+/**
+ * Compact binary codec for GP objects like JGAPRequestGP, JGAPResultGP,
+ * GPPopulation, IGPProgram or GPConfiguration. It is based on Java
+ * serialization, which writes each object only once, but stores the nodes of
+ * program chromosomes in a compact way (see ProgramChromosome.writeObject):
+ * <ul>
+ * <li>Only the nodes in use are written, without the unused entries of the
+ * node array. Nodes shared by programs are written once per stream and then
+ * referenced by the handle of Java serialization.</li>
+ * <li>The depths of the nodes are stored as differences to the depth of the
+ * preceding node (as variable length integer).</li>
+ * </ul>
+ * Optionally, the stream is compressed with Deflate. If a configuration is
+ * given, configurations are not written but replaced by the given one when
+ * reading, which keeps messages small if both sides know the configuration.
+ * <p>
+ * Streams start with the MAGIC number, thus they can be told apart from XML
+ * written by XStream (see PersistableObject).
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GPBinaryCodec
+    implements IObjectCodec {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * First four bytes of an encoded stream ("JGBC").
+   */
+  public final static int MAGIC = 0x4A474243;
+
+  /**
+   * Version of the format written.
+   */
+  public final static int VERSION = 1;
+
+  private final static int FLAG_DEFLATE = 1;
+
+  private final static int FLAG_OMIT_CONFIG = 2;
+
+  private final boolean m_compress;
+
+  private final GPConfiguration m_conf;
+
+  /**
+   * Codec compressing the data and writing configurations.
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public GPBinaryCodec() {
+    this(true, null);
+  }
+
+  /**
+   * @param a_compress true: compress data with Deflate
+   * @param a_conf null: write configurations, otherwise: omit configurations
+   * when writing and use the given one when reading
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public GPBinaryCodec(boolean a_compress, GPConfiguration a_conf) {
+    m_compress = a_compress;
+    m_conf = a_conf;
+  }
+
+  public void encode(Object a_object, OutputStream a_out)
+      throws IOException {
+    DataOutputStream header = new DataOutputStream(a_out);
+    header.writeInt(MAGIC);
+    header.writeByte(VERSION);
+    int flags = 0;
+    if (m_compress) {
+      flags |= FLAG_DEFLATE;
+    }
+    if (m_conf != null) {
+      flags |= FLAG_OMIT_CONFIG;
+    }
+    header.writeByte(flags);
+    header.flush();
+    Deflater deflater = null;
+    DeflaterOutputStream deflated = null;
+    OutputStream out = a_out;
+    if (m_compress) {
+      deflater = new Deflater(Deflater.BEST_SPEED);
+      deflated = new DeflaterOutputStream(a_out, deflater, 65536);
+      out = deflated;
+    }
+    try {
+      Output data = new Output(out, m_conf != null);
+      data.writeObject(a_object);
+      data.flush();
+      if (deflated != null) {
+        deflated.finish();
+      }
+      a_out.flush();
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+  }
+
+  public Object decode(InputStream a_in)
+      throws IOException, ClassNotFoundException {
+    DataInputStream header = new DataInputStream(a_in);
+    if (header.readInt() != MAGIC) {
+      throw new StreamCorruptedException("Not encoded by GPBinaryCodec");
+    }
+    int version = header.readUnsignedByte();
+    if (version < 1 || version > VERSION) {
+      throw new StreamCorruptedException("Unsupported version " + version);
+    }
+    int flags = header.readUnsignedByte();
+    if ( (flags & FLAG_OMIT_CONFIG) != 0 && m_conf == null) {
+      throw new IOException("Configuration omitted when writing, codec must"
+                            + " be constructed with a configuration");
+    }
+    Inflater inflater = null;
+    InputStream in = a_in;
+    if ( (flags & FLAG_DEFLATE) != 0) {
+      inflater = new Inflater();
+      in = new InflaterInputStream(a_in, inflater, 65536);
+    }
+    try {
+      return new Input(in, m_conf).readObject();
+    } finally {
+      if (inflater != null) {
+        inflater.end();
+      }
+    }
+  }
+
+  public boolean isEncoded(byte[] a_header) {
+    if (a_header == null || a_header.length < HEADER_LENGTH) {
+      return false;
+    }
+    int magic = ( (a_header[0] & 0xFF) << 24) | ( (a_header[1] & 0xFF) << 16)
+        | ( (a_header[2] & 0xFF) << 8) | (a_header[3] & 0xFF);
+    return magic == MAGIC;
+  }
+
+  /**
+   * Placeholder written instead of a configuration.
+   */
+  private static class OmittedConfiguration
+      implements Serializable {
+  }
+
+  /**
+   * Stream writing program chromosomes compactly.
+   */
+  static class Output
+      extends ObjectOutputStream {
+    private final OmittedConfiguration m_omitted;
+
+    Output(OutputStream a_out, boolean a_omitConfig)
+        throws IOException {
+      super(a_out);
+      if (a_omitConfig) {
+        m_omitted = new OmittedConfiguration();
+        enableReplaceObject(true);
+      }
+      else {
+        m_omitted = null;
+      }
+    }
+
+    protected Object replaceObject(Object a_obj)
+        throws IOException {
+      if (a_obj instanceof GPConfiguration) {
+        return m_omitted;
+      }
+      return a_obj;
+    }
+
+    /**
+     * Writes the nodes of a program up to the first null entry.
+     *
+     * @param a_nodes the nodes to write
+     * @throws IOException
+     */
+    void writeNodes(CommandGene[] a_nodes)
+        throws IOException {
+      int count = 0;
+      while (count < a_nodes.length && a_nodes[count] != null) {
+        count++;
+      }
+      writeVarInt(a_nodes.length);
+      writeVarInt(count);
+      for (int i = 0; i < count; i++) {
+        writeObject(a_nodes[i]);
+      }
+    }
+
+    /**
+     * Writes the first a_count depths as differences to their predecessor.
+     *
+     * @param a_depths the depths to write
+     * @param a_count number of depths to write
+     * @throws IOException
+     */
+    void writeDepths(int[] a_depths, int a_count)
+        throws IOException {
+      writeVarInt(a_depths.length);
+      writeVarInt(a_count);
+      int previous = 0;
+      for (int i = 0; i < a_count; i++) {
+        int delta = a_depths[i] - previous;
+        writeVarInt( (delta << 1) ^ (delta >> 31));
+        previous = a_depths[i];
+      }
+    }
+
+    private void writeVarInt(int a_value)
+        throws IOException {
+      while ( (a_value & ~0x7F) != 0) {
+        write( (a_value & 0x7F) | 0x80);
+        a_value >>>= 7;
+      }
+      write(a_value);
+    }
+  }
+
+  /**
+   * Stream reading program chromosomes written by Output.
+   */
+  static class Input
+      extends ObjectInputStream {
+    private final GPConfiguration m_conf;
+
+    Input(InputStream a_in, GPConfiguration a_conf)
+        throws IOException {
+      super(a_in);
+      m_conf = a_conf;
+      if (a_conf != null) {
+        enableResolveObject(true);
+      }
+    }
+
+    protected Object resolveObject(Object a_obj)
+        throws IOException {
+      if (a_obj instanceof OmittedConfiguration) {
+        return m_conf;
+      }
+      return a_obj;
+    }
+
+    /**
+     * @return the nodes written by Output.writeNodes
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    CommandGene[] readNodes()
+        throws IOException, ClassNotFoundException {
+      CommandGene[] nodes = new CommandGene[readVarInt()];
+      int count = readVarInt();
+      if (count > nodes.length) {
+        throw new StreamCorruptedException("Invalid number of nodes");
+      }
+      for (int i = 0; i < count; i++) {
+        nodes[i] = (CommandGene) readObject();
+      }
+      return nodes;
+    }
+
+    /**
+     * @return the depths written by Output.writeDepths
+     * @throws IOException
+     */
+    int[] readDepths()
+        throws IOException {
+      int[] depths = new int[readVarInt()];
+      int count = readVarInt();
+      if (count > depths.length) {
+        throw new StreamCorruptedException("Invalid number of depths");
+      }
+      int previous = 0;
+      for (int i = 0; i < count; i++) {
+        int zigzag = readVarInt();
+        depths[i] = previous + ( (zigzag >>> 1) ^ - (zigzag & 1));
+        previous = depths[i];
+      }
+      return depths;
+    }
+
+    private int readVarInt()
+        throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        int b = readUnsignedByte();
+        value |= (b & 0x7F) << shift;
+        if ( (b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new StreamCorruptedException("Invalid variable length integer");
+    }
+  }
+}
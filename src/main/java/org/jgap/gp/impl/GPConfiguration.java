@@ -11,16 +11,18 @@ package org.jgap.gp.impl;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Stack;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.builder.CompareToBuilder;
 import org.jgap.Configuration;
 import org.jgap.GeneticOperator;
 import org.jgap.IJGAPFactory;
 import org.jgap.InvalidConfigurationException;
+import org.jgap.RandomGenerator;
 import org.jgap.distr.Culture;
 import org.jgap.distr.CultureMemoryCell;
 import org.jgap.event.EventManager;
@@ -34,6 +36,7 @@ import org.jgap.gp.INaturalGPSelector;
 import org.jgap.gp.INodeValidator;
 import org.jgap.gp.ISingleNodeValidator;
 import org.jgap.gp.terminal.Variable;
+import org.jgap.gp.terminal.VariableContext;
 import org.jgap.impl.JGAPFactory;
 import org.jgap.impl.StockRandomGenerator;
 import org.jgap.util.CloneException;
@@ -171,7 +174,45 @@ public class GPConfiguration
 
   private Map m_variables;
 
-  private transient Map m_programCache;
+  /**
+   * Slots holding the values of primitive variables, see getVariableContext().
+   */
+  private VariableContext m_variableContext;
+
+  /**
+   * Bounded cache of fitness values, keyed by the structural hash of
+   * programs.
+   */
+  private transient GPProgramCache m_programCache;
+
+  /**
+   * Maximum number of programs in the program cache.
+   *
+   * @since 3.7
+   */
+  private int m_programCacheSize = GPProgramCache.DEFAULT_CAPACITY;
+
+  /**
+   * Simplifier producing the form of programs used for execution, null if
+   * programs are executed as they are.
+   *
+   * @since 3.7
+   */
+  private ProgramSimplifier m_programSimplifier;
+
+  /**
+   * Lookup tables of the function sets used for creating programs. Keyed by
+   * the identity of the function set array, entries for function sets no
+   * longer used are dropped by the garbage collector.
+   *
+   * @since 3.7
+   */
+  private transient Map<CommandGene[], NodeSetIndex> m_nodeSetIndexes;
+
+  /**
+   * Node table shared by compact programs, see getNodeTable().
+   */
+  private NodeTable m_nodeTable;
 
   /**
    * Holds the central configurable factory for creating default objects.
@@ -204,6 +245,97 @@ public class GPConfiguration
    */
   private boolean m_noCommandGeneCloning;
 
+  /**
+   * Number of threads breeding the next generation in GPGenotype.evolve().
+   * A value of 1 keeps the classic sequential breeding loop.
+   *
+   * @since 3.7
+   */
+  private int m_breedingThreads = 1;
+
+  /**
+   * TRUE: breed in fixed-size chunks, each with its own random stream seeded
+   * in chunk order, so that the resulting population does not depend on the
+   * number of breeding threads.
+   *
+   * @since 3.7
+   */
+  private boolean m_deterministicBreeding;
+
+  /**
+   * Number of population slots bred as one unit of work when breeding in
+   * parallel or deterministically.
+   *
+   * @since 3.7
+   */
+  private int m_breedingChunkSize = 128;
+
+  /**
+   * TRUE: when creating a population, structurally equal programs are
+   * discarded and created anew.
+   *
+   * @since 3.7
+   */
+  private boolean m_deduplicatePrograms;
+
+  /**
+   * Random generator bound to the current thread, overriding the one set via
+   * setRandomGenerator. Used by breeding threads.
+   *
+   * @since 3.7
+   */
+  private transient ThreadLocal<RandomGenerator> m_threadRandomGenerator;
+
+  /**
+   * Maximum number of nodes executed per program execution, 0 for no limit.
+   *
+   * @since 3.7
+   */
+  private long m_maxExecutionSteps;
+
+  /**
+   * Maximum duration of a program execution in milliseconds, 0 for no limit.
+   *
+   * @since 3.7
+   */
+  private long m_maxExecutionTime;
+
+  /**
+   * TRUE: program executions check for cancellation, see cancelExecutions().
+   *
+   * @since 3.7
+   */
+  private boolean m_cancellableExecution;
+
+  /**
+   * Incremented by cancelExecutions(). Executions started before are aborted.
+   *
+   * @since 3.7
+   */
+  private transient volatile int m_executionCancelCount;
+
+  /**
+   * Fitness value assigned to programs whose execution has been aborted,
+   * NaN for the worst fitness value of the fitness evaluator.
+   *
+   * @since 3.7
+   */
+  private double m_abortedExecutionFitness = Double.NaN;
+
+  /**
+   * Number of aborted executions in the current generation.
+   *
+   * @since 3.7
+   */
+  private final AtomicInteger m_abortedExecutions = new AtomicInteger();
+
+  /**
+   * Number of aborted executions in the previous generation.
+   *
+   * @since 3.7
+   */
+  private volatile int m_abortedExecutionsPrevious;
+
   /**
    * Constructor utilizing the FitnessProportionateSelection.
    *
@@ -285,8 +417,14 @@ public class GPConfiguration
     if (m_factory == null) {
       throw new IllegalStateException("JGAPFactory not registered!");
     }
-    m_programCache = new HashMap(50);
+    if (m_programCacheSize < 1) {
+      // Not contained in older serialized configurations.
+      // -------------------------------------------------
+      m_programCacheSize = GPProgramCache.DEFAULT_CAPACITY;
+    }
+    m_programCache = new GPProgramCache(m_programCacheSize);
     m_matrices = new Hashtable();
+    m_threadRandomGenerator = new ThreadLocal<RandomGenerator>();
     if (a_fullInit) {
       m_variables = new Hashtable();
       m_crossMethod = new BranchTypingCross(this);
@@ -1006,15 +1144,136 @@ public class GPConfiguration
     return m_memory.size();
   }
 
+  /**
+   * Looks up a program in the program cache by its structural hash.
+   *
+   * @param a_prog the program to look up
+   * @return cached info about a structurally equal program, or null
+   *
+   * @author Klaus Meffert
+   * @since 3.2
+   */
   public GPProgramInfo readProgramCache(GPProgram a_prog) {
-    GPProgramInfo pci = new GPProgramInfo(a_prog, true);
-    pci.setFound(false);
-    return (GPProgramInfo) m_programCache.get(pci.getToStringNorm());
+    GPProgramInfo info = m_programCache.get(a_prog.structuralHash());
+    if (info != null && !info.matches(a_prog)) {
+      // Different program with the same hash.
+      // -------------------------------------
+      return null;
+    }
+    return info;
   }
 
+  /**
+   * Puts a program with its current fitness value into the program cache.
+   *
+   * @param a_prog the program to cache
+   * @return info previously cached for a structurally equal program, or null
+   *
+   * @author Klaus Meffert
+   * @since 3.2
+   */
   public GPProgramInfo putToProgramCache(GPProgram a_prog) {
-    GPProgramInfo pci = new GPProgramInfo(a_prog, true);
-    return (GPProgramInfo) m_programCache.put(pci.getToStringNorm(), pci);
+    long hash = a_prog.structuralHash();
+    GPProgramInfo pci = new GPProgramInfo(a_prog, hash, true);
+    return m_programCache.put(hash, pci);
+  }
+
+  /**
+   * @return the program cache, e.g. to read out its hit rate
+   *
+   * @since 3.7
+   */
+  public GPProgramCache getProgramCache() {
+    return m_programCache;
+  }
+
+  /**
+   * Sets the maximum number of programs held in the program cache. The
+   * current content of the cache is discarded.
+   *
+   * @param a_size maximum number of cached programs
+   *
+   * @since 3.7
+   */
+  public void setProgramCacheSize(int a_size) {
+    m_programCache = new GPProgramCache(a_size);
+    m_programCacheSize = a_size;
+  }
+
+  /**
+   * Sets the simplifier used to derive a smaller form of each program
+   * chromosome for execution (e.g. by constant folding). The programs
+   * themselves stay untouched.
+   *
+   * @param a_simplifier the simplifier to use, null to execute programs as
+   * they are
+   *
+   * @since 3.7
+   */
+  public void setProgramSimplifier(ProgramSimplifier a_simplifier) {
+    m_programSimplifier = a_simplifier;
+  }
+
+  /**
+   * @return the simplifier used for executing programs, or null
+   *
+   * @since 3.7
+   */
+  public ProgramSimplifier getProgramSimplifier() {
+    return m_programSimplifier;
+  }
+
+  /**
+   * Returns the lookup tables for picking nodes of the given function set,
+   * building them on first request. Only request them for function sets
+   * shared by many programs, as the tables are kept as long as the function
+   * set is referenced.
+   *
+   * @param a_functionSet the function set used for creating programs
+   * @return lookup tables of the function set, or null if the function set
+   * cannot be indexed (see NodeSetIndex.isIndexable)
+   *
+   * @since 3.7
+   */
+  public synchronized NodeSetIndex getNodeSetIndex(CommandGene[]
+      a_functionSet) {
+    if (m_nodeSetIndexes == null) {
+      m_nodeSetIndexes = new WeakHashMap<CommandGene[], NodeSetIndex>();
+    }
+    // Arrays do not override equals and hashCode, thus the map works by
+    // identity.
+    // -----------------------------------------------------------------
+    if (m_nodeSetIndexes.containsKey(a_functionSet)) {
+      return m_nodeSetIndexes.get(a_functionSet);
+    }
+    NodeSetIndex index = null;
+    if (NodeSetIndex.isIndexable(a_functionSet)) {
+      index = new NodeSetIndex(a_functionSet);
+    }
+    m_nodeSetIndexes.put(a_functionSet, index);
+    return index;
+  }
+
+  /**
+   * @return the node table shared by all compact programs (see
+   * CompactProgram) of this configuration
+   *
+   * @since 3.7
+   */
+  public synchronized NodeTable getNodeTable() {
+    if (m_nodeTable == null) {
+      m_nodeTable = new NodeTable();
+    }
+    return m_nodeTable;
+  }
+
+  /**
+   * @return maximum number of programs held in the program cache
+   *
+   * @since 3.7
+   */
+  public int getProgramCacheSize() {
+    return m_programCacheSize;
   }
 
   public boolean isUseProgramCache() {
@@ -1048,6 +1307,19 @@ public class GPConfiguration
     return (Variable) m_variables.get(a_varName);
   }
 
+  /**
+   * @return the context holding the values of the primitive variables
+   * (DoubleVariable, IntegerVariable, LongVariable) of this configuration
+   *
+   * @since 3.7
+   */
+  public synchronized VariableContext getVariableContext() {
+    if (m_variableContext == null) {
+      m_variableContext = new VariableContext();
+    }
+    return m_variableContext;
+  }
+
   /**
    * @return deep clone of this instance
    *
@@ -1108,8 +1380,20 @@ public class GPConfiguration
           m_fitnessEvaluator);
       result.m_nodeValidator = (INodeValidator) doClone(m_nodeValidator);
       result.m_useProgramCache = m_useProgramCache;
+      result.setProgramCacheSize(m_programCacheSize);
+      result.m_programSimplifier = m_programSimplifier;
       result.m_verify = m_verify;
       result.m_variables = m_variables;
+      result.m_variableContext = m_variableContext;
+      result.m_nodeTable = m_nodeTable;
+      result.m_breedingThreads = m_breedingThreads;
+      result.m_deterministicBreeding = m_deterministicBreeding;
+      result.m_breedingChunkSize = m_breedingChunkSize;
+      result.m_deduplicatePrograms = m_deduplicatePrograms;
+      result.m_maxExecutionSteps = m_maxExecutionSteps;
+      result.m_maxExecutionTime = m_maxExecutionTime;
+      result.m_cancellableExecution = m_cancellableExecution;
+      result.m_abortedExecutionFitness = m_abortedExecutionFitness;
       // Configurable data.
       // ------------------
 //      result.m_config = new ConfigurationConfigurable();
@@ -1225,4 +1509,315 @@ public class GPConfiguration
     return m_noCommandGeneCloning;
   }
 
+  /**
+   * @return the random generator bound to the current thread, if any,
+   * otherwise the random generator set via setRandomGenerator
+   *
+   * @since 3.7
+   */
+  public RandomGenerator getRandomGenerator() {
+    if (m_threadRandomGenerator != null) {
+      RandomGenerator bound = m_threadRandomGenerator.get();
+      if (bound != null) {
+        return bound;
+      }
+    }
+    return super.getRandomGenerator();
+  }
+
+  /**
+   * Binds a random generator to the current thread. Until unbound, all calls
+   * of getRandomGenerator from this thread return the given generator. This
+   * gives each breeding thread its own random stream.
+   *
+   * @param a_generator the generator to bind, null to unbind
+   *
+   * @since 3.7
+   */
+  public synchronized void bindRandomGenerator(RandomGenerator a_generator) {
+    if (m_threadRandomGenerator == null) {
+      // Field is transient, so it is lost on deserialization.
+      // -----------------------------------------------------
+      m_threadRandomGenerator = new ThreadLocal<RandomGenerator>();
+    }
+    if (a_generator == null) {
+      m_threadRandomGenerator.remove();
+    }
+    else {
+      m_threadRandomGenerator.set(a_generator);
+    }
+  }
+
+  /**
+   * Sets the number of threads used to breed the next generation in
+   * GPGenotype.evolve() and to create the programs of a new population in
+   * GPPopulation.create. Node validators registered with this configuration
+   * must be thread-safe if more than one thread is used. The selection
+   * method and the crossover method must implement IThreadSafe then,
+   * otherwise GPGenotype.evolve() fails.
+   * <p>
+   * With concurrent or deterministic breeding, crossover mutates copies of
+   * the parents' terminals, as the parents are shared between threads.
+   * Terminals that can be neither cloned via ICloneable nor by a clone
+   * handler of the JGAPFactory are not mutated then (logged once), unlike in
+   * sequential breeding.
+   *
+   * @param a_threads number of threads, 1 for the sequential breeding loop
+   *
+   * @since 3.7
+   */
+  public void setBreedingThreads(int a_threads) {
+    if (a_threads < 1) {
+      throw new IllegalArgumentException("Number of breeding threads must be"
+                                         + " at least one!");
+    }
+    m_breedingThreads = a_threads;
+  }
+
+  /**
+   * @return number of threads used to breed the next generation
+   *
+   * @since 3.7
+   */
+  public int getBreedingThreads() {
+    return m_breedingThreads;
+  }
+
+  /**
+   * @param a_deterministic true: breed in chunks with one random stream per
+   * chunk, so that a seeded run produces the same programs regardless of the
+   * number of breeding threads
+   *
+   * @since 3.7
+   */
+  public void setDeterministicBreeding(boolean a_deterministic) {
+    m_deterministicBreeding = a_deterministic;
+  }
+
+  /**
+   * @return true: breeding results do not depend on the number of threads
+   *
+   * @since 3.7
+   */
+  public boolean isDeterministicBreeding() {
+    return m_deterministicBreeding;
+  }
+
+  /**
+   * @param a_chunkSize number of population slots bred as one unit of work,
+   * at least 2 to allow for crossing over
+   *
+   * @since 3.7
+   */
+  public void setBreedingChunkSize(int a_chunkSize) {
+    if (a_chunkSize < 2) {
+      throw new IllegalArgumentException("Chunk size must be at least two!");
+    }
+    m_breedingChunkSize = a_chunkSize;
+  }
+
+  /**
+   * @return number of population slots bred as one unit of work
+   *
+   * @since 3.7
+   */
+  public int getBreedingChunkSize() {
+    return m_breedingChunkSize;
+  }
+
+  /**
+   * @return true: breeding does not run as the classic sequential loop, thus
+   * genetic operators must not modify programs of the previous generation in
+   * place as these may be shared between offspring bred concurrently
+   *
+   * @since 3.7
+   */
+  public boolean isConcurrentBreeding() {
+    return m_breedingThreads > 1 || m_deterministicBreeding;
+  }
+
+  /**
+   * @param a_deduplicate true: when creating a population, a program
+   * structurally equal to a program created before (same
+   * GPProgram.structuralHash() and verified by GPProgramInfo.matches) is
+   * discarded and created anew, up to a limited number of tries
+   *
+   * @since 3.7
+   */
+  public void setDeduplicatePrograms(boolean a_deduplicate) {
+    m_deduplicatePrograms = a_deduplicate;
+  }
+
+  /**
+   * @return true: duplicate programs are avoided when creating a population
+   *
+   * @since 3.7
+   */
+  public boolean isDeduplicatePrograms() {
+    return m_deduplicatePrograms;
+  }
+
+  /**
+   * Limits the number of nodes executed per program execution (including
+   * nodes of other chromosomes executed by an ADF). Executions exceeding the
+   * limit are aborted, see setAbortedExecutionFitness(double).
+   *
+   * @param a_maxSteps maximum number of nodes to execute, 0 for no limit
+   *
+   * @since 3.7
+   */
+  public void setMaxExecutionSteps(long a_maxSteps) {
+    if (a_maxSteps < 0) {
+      throw new IllegalArgumentException("Maximum number of execution steps"
+                                         + " must not be negative!");
+    }
+    m_maxExecutionSteps = a_maxSteps;
+  }
+
+  /**
+   * @return maximum number of nodes executed per program execution, 0 for
+   * no limit
+   *
+   * @since 3.7
+   */
+  public long getMaxExecutionSteps() {
+    return m_maxExecutionSteps;
+  }
+
+  /**
+   * Limits the duration of a program execution. Executions exceeding the
+   * limit are aborted, see setAbortedExecutionFitness(double).
+   *
+   * @param a_millis maximum duration in milliseconds, 0 for no limit
+   *
+   * @since 3.7
+   */
+  public void setMaxExecutionTime(long a_millis) {
+    if (a_millis < 0) {
+      throw new IllegalArgumentException("Maximum execution time must not be"
+                                         + " negative!");
+    }
+    m_maxExecutionTime = a_millis;
+  }
+
+  /**
+   * @return maximum duration of a program execution in milliseconds, 0 for
+   * no limit
+   *
+   * @since 3.7
+   */
+  public long getMaxExecutionTime() {
+    return m_maxExecutionTime;
+  }
+
+  /**
+   * @param a_cancellable true: program executions are aborted if
+   * cancelExecutions() is called or the executing thread is interrupted
+   *
+   * @since 3.7
+   */
+  public void setCancellableExecution(boolean a_cancellable) {
+    m_cancellableExecution = a_cancellable;
+  }
+
+  /**
+   * @return true: program executions can be cancelled
+   *
+   * @since 3.7
+   */
+  public boolean isCancellableExecution() {
+    return m_cancellableExecution;
+  }
+
+  /**
+   * @return true if program executions are limited or can be cancelled, i.e.
+   * need to be supervised
+   *
+   * @since 3.7
+   */
+  public boolean isExecutionGuarded() {
+    return m_maxExecutionSteps > 0 || m_maxExecutionTime > 0
+        || m_cancellableExecution;
+  }
+
+  /**
+   * Aborts all program executions currently running, provided executions
+   * are cancellable (see setCancellableExecution(boolean)). Executions
+   * started afterwards are not affected.
+   *
+   * @since 3.7
+   */
+  public void cancelExecutions() {
+    m_executionCancelCount++;
+  }
+
+  int getExecutionCancelCount() {
+    return m_executionCancelCount;
+  }
+
+  /**
+   * @param a_fitness fitness value to assign to programs whose execution has
+   * been aborted, must not be negative. Double.NaN for the worst fitness value
+   * with respect to the fitness evaluator (the default)
+   *
+   * @since 3.7
+   */
+  public void setAbortedExecutionFitness(double a_fitness) {
+    if (a_fitness < 0) {
+      throw new IllegalArgumentException("Fitness value must not be"
+                                         + " negative!");
+    }
+    m_abortedExecutionFitness = a_fitness;
+  }
+
+  /**
+   * @return fitness value assigned to programs whose execution has been
+   * aborted: the value set, or else 0 if higher fitness values are fitter and
+   * GPFitnessFunction.MAX_FITNESS_VALUE otherwise
+   *
+   * @since 3.7
+   */
+  public double getAbortedExecutionFitness() {
+    if (!Double.isNaN(m_abortedExecutionFitness)) {
+      return m_abortedExecutionFitness;
+    }
+    if (getGPFitnessEvaluator().isFitter(2.0d, 1.0d)) {
+      return 0.0d;
+    }
+    return GPFitnessFunction.MAX_FITNESS_VALUE;
+  }
+
+  void abortedExecution() {
+    m_abortedExecutions.incrementAndGet();
+  }
+
+  /**
+   * @return number of program executions aborted during the current
+   * generation
+   *
+   * @since 3.7
+   */
+  public int getAbortedExecutions() {
+    return m_abortedExecutions.get();
+  }
+
+  /**
+   * @return number of program executions aborted during the previous
+   * generation
+   *
+   * @since 3.7
+   */
+  public int getAbortedExecutionsPreviousGeneration() {
+    return m_abortedExecutionsPrevious;
+  }
+
+  /**
+   * Also starts counting aborted program executions anew.
+   *
+   * @since 3.7
+   */
+  public void incrementGenerationNr() {
+    super.incrementGenerationNr();
+    m_abortedExecutionsPrevious = m_abortedExecutions.getAndSet(0);
+  }
 }
@@ -20,6 +20,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
 import org.jgap.FitnessFunction;
@@ -27,6 +29,7 @@ import org.jgap.ICloneHandler;
 import org.jgap.IInitializer;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.RandomGenerator;
+import org.jgap.data.CheckpointService;
 import org.jgap.distr.grid.gp.IGPPopulationInitializer;
 import org.jgap.event.GeneticEvent;
 import org.jgap.gp.CommandGene;
@@ -34,7 +37,11 @@ import org.jgap.gp.GPFitnessFunction;
 import org.jgap.gp.IGPFitnessEvaluator;
 import org.jgap.gp.IGPProgram;
 import org.jgap.gp.IPopulationCreator;
+import org.jgap.gp.IThreadSafe;
+import org.jgap.gp.terminal.PrimitiveVariable;
 import org.jgap.gp.terminal.Variable;
+import org.jgap.gp.terminal.VariableContext;
+import org.jgap.impl.SeededRandomGenerator;
 import org.jgap.util.DateKit;
 import org.jgap.util.NumberKit;
 import org.jgap.util.SystemKit;
@@ -122,6 +129,13 @@ public class GPGenotype
    */
   private boolean m_verbose;
 
+  /**
+   * Writes checkpoints during evolution, null for none.
+   *
+   * @since 3.7
+   */
+  private transient CheckpointService m_checkpointService;
+
   private Map m_variables;
 
   private IGPProgram m_fittestToAdd;
@@ -475,12 +489,9 @@ public class GPGenotype
     gp.m_fullModeAllowed = a_fullModeAllowed;
     // Publish GP variables to configuration to make them accessible globally.
     // -----------------------------------------------------------------------
-    Iterator it = gp.m_variables.keySet().iterator();
+    Iterator it = gp.m_variables.values().iterator();
     while (it.hasNext()) {
-      /**@todo optimize access to map*/
-      String varName = (String) it.next();
-      Variable var = (Variable) gp.m_variables.get(varName);
-      a_conf.putVariable(var);
+      a_conf.putVariable( (Variable) it.next());
     }
     gp.checkErroneousPop(gp.getGPPopulation(), " after creating population/2");
     return gp;
@@ -559,10 +570,17 @@ public class GPGenotype
                       + ", memory free: "
                       + freeMB
                       + " MB");
+          if (getGPConfiguration().isUseProgramCache()) {
+            LOGGER.info(getGPConfiguration().getProgramCache());
+          }
         }
       }
       evolve();
       calcFitness();
+      if (m_checkpointService != null && m_checkpointService.isDue(
+          getGPConfiguration().getGenerationNr())) {
+        m_checkpointService.submit(GPGenotypeCheckpoint.capture(this));
+      }
     }
   }
 
@@ -601,7 +619,7 @@ public class GPGenotype
         best = program;
         m_bestFitness = fitness;
         if (m_allTimeBest != null && !bestPreserved) {
-          if (best.toStringNorm(0).equals(m_allTimeBest.toStringNorm(0))) {
+          if (isAllTimeBest(best)) {
             bestPreserved = true;
           }
         }
@@ -616,23 +634,31 @@ public class GPGenotype
       if (m_allTimeBest == null
           || evaluator.isFitter(m_bestFitness, m_allTimeBestFitness)) {
         pop.setChanged(true);
-        try {
-          ICloneHandler cloner = getGPConfiguration().getJGAPFactory().
-              getCloneHandlerFor(best, null);
-          if (cloner == null) {
-            m_allTimeBest = best;
-            if (!m_cloneWarningGPProgramShown) {
-              LOGGER.info("Warning: cannot clone instance of "
-                          + best.getClass());
-              m_cloneWarningGPProgramShown = true;
+        if (best instanceof GPProgram) {
+          // Keep a frozen snapshot, which is immutable and thus need not be
+          // cloned (see GPPopulation.determineFittestProgram()).
+          // ---------------------------------------------------------------
+          m_allTimeBest = ( (GPProgram) best).snapshot();
+        }
+        else {
+          try {
+            ICloneHandler cloner = getGPConfiguration().getJGAPFactory().
+                getCloneHandlerFor(best, null);
+            if (cloner == null) {
+              m_allTimeBest = best;
+              if (!m_cloneWarningGPProgramShown) {
+                LOGGER.info("Warning: cannot clone instance of "
+                            + best.getClass());
+                m_cloneWarningGPProgramShown = true;
+              }
             }
+            else {
+              m_allTimeBest = (IGPProgram) cloner.perform(best, null, null);
+            }
+          } catch (Exception ex) {
+            m_allTimeBest = best;
+            ex.printStackTrace();
           }
-          else {
-            m_allTimeBest = (IGPProgram) cloner.perform(best, null, null);
-          }
-        } catch (Exception ex) {
-          m_allTimeBest = best;
-          ex.printStackTrace();
         }
         m_allTimeBestFitness = m_bestFitness;
         // Fire an event to indicate a new best solution.
@@ -708,6 +734,9 @@ public class GPGenotype
    * Evolve the population by one generation. Probabilistically reproduces
    * and crosses individuals into a new population which then overwrites the
    * original population.
+   * If the configuration asks for concurrent breeding (see
+   * GPConfiguration.setBreedingThreads and setDeterministicBreeding), the new
+   * population is bred in chunks, each chunk with its own random stream.
    *
    * @author Klaus Meffert
    * @since 3.0
@@ -717,216 +746,477 @@ public class GPGenotype
       int popSize = getGPConfiguration().getPopulationSize();
       GPPopulation oldPop = getGPPopulation();
       GPPopulation newPopulation = new GPPopulation(oldPop, false);
-      if (m_fittestToAdd != null) {
+      boolean fittestAdded = m_fittestToAdd != null;
+      if (fittestAdded) {
         newPopulation.addFittestProgram(m_fittestToAdd);
         m_fittestToAdd = null;
       }
-      float val;
-      RandomGenerator random = getGPConfiguration().getRandomGenerator();
       GPConfiguration conf = getGPConfiguration();
       // Determine how many new individuals will be added to the new generation.
       // -----------------------------------------------------------------------
       int popSize1 = (int) Math.round(popSize * (1 - conf.getNewChromsPercent()));
-      double crossProb = conf.getCrossoverProb()
-          / (conf.getCrossoverProb() + conf.getReproductionProb());
-      int crossover = 0;
-      int reproduction = 0;
-      int creation = 0;
       checkErroneousPop(getGPPopulation(), " (before evolution)", true);
-      final int maxTries = getGPConfiguration().getProgramCreationMaxtries();
-      // Do crossing over.
-      // -----------------
-      for (int i = 0; i < popSize1; i++) {
-        // Clear the stack for each GP program.
-        // ------------------------------------
+      // Number of crossovers, reproductions and creations.
+      // --------------------------------------------------
+      int[] stats = new int[3];
+      if (isBreedingConcurrently(conf)) {
+        breedConcurrently(newPopulation, popSize, popSize1, fittestAdded,
+                          stats);
+      }
+      else {
+        breed(newPopulation, 0, popSize, popSize1, popSize, popSize1, stats);
+      }
+      LOGGER.debug("Did "
+                   + stats[0] + " x-overs, "
+                   + stats[1] + " reproductions, "
+                   + stats[2] + " creations");
+      // Now set the new population as the active one.
+      // ---------------------------------------------
+      setGPPopulation(newPopulation);
+      // Increase number of generation.
+      // ------------------------------
+      conf.incrementGenerationNr();
+      if (conf.getAbortedExecutionsPreviousGeneration() > 0) {
+        LOGGER.debug(conf.getAbortedExecutionsPreviousGeneration()
+                     + " program executions aborted");
+      }
+      // Fire an event to indicate we've performed an evolution.
+      // -------------------------------------------------------
+      conf.getEventManager().fireGeneticEvent(
+          new GeneticEvent(GeneticEvent.GPGENOTYPE_EVOLVED_EVENT, this));
+    } catch (InvalidConfigurationException iex) {
+      // This should never happen.
+      // -------------------------
+      throw new IllegalStateException(iex.getMessage());
+    }
+  }
+
+  /**
+   * Breeds the slots a_start (inclusive) to a_end (exclusive) of the new
+   * population. Slots below a_popSize1 are filled by crossing over or
+   * reproduction, slots from a_createStart on by newly created programs.
+   * All random numbers are taken from the random generator returned by the
+   * configuration for the current thread.
+   *
+   * @param a_newPop the population to fill
+   * @param a_start first slot to breed
+   * @param a_end slot after the last slot to breed
+   * @param a_popSize1 number of slots to fill by crossing over or reproduction
+   * @param a_crossLimit crossing over is only done if its second offspring
+   * goes to a slot below this limit
+   * @param a_createStart first slot to fill with a newly created program
+   * @param a_stats counters for crossovers, reproductions and creations
+   *
+   * @throws InvalidConfigurationException
+   *
+   * @since 3.7
+   */
+  protected void breed(GPPopulation a_newPop, int a_start, int a_end,
+                       int a_popSize1, int a_crossLimit, int a_createStart,
+                       int[] a_stats)
+      throws InvalidConfigurationException {
+    float val;
+    RandomGenerator random = getGPConfiguration().getRandomGenerator();
+    GPConfiguration conf = getGPConfiguration();
+    double crossProb = conf.getCrossoverProb()
+        / (conf.getCrossoverProb() + conf.getReproductionProb());
+    final int maxTries = getGPConfiguration().getProgramCreationMaxtries();
+    // Do crossing over.
+    // -----------------
+    boolean concurrent = isBreedingConcurrently(conf);
+    for (int i = a_start; i < Math.min(a_end, a_popSize1); i++) {
+      if (!concurrent) {
+        // Clear the stack for each GP program. Programs are not executed
+        // when breeding concurrently, so the shared stack is left alone then.
+        // -------------------------------------------------------------------
         getGPConfiguration().clearStack();
-        val = random.nextFloat();
-        // Note that if we only have one slot left to fill, we don't do
-        // crossover, but fall through to reproduction.
-        // ------------------------------------------------------------
-        if (i < popSize - 1 && val < crossProb) {
-          crossover++;
-          // Actually do the crossover here.
-          // -------------------------------
-          IGPProgram i1 = conf.getSelectionMethod().select(this);
-          IGPProgram i2 = conf.getSelectionMethod().select(this);
-          int tries = 0;
-          do {
-            try {
-              checkErroneousProg(i1,
-                                 " at start of evolution (index " + i +
-                                 "/01)", false);
-              if (i1 != i2) {
-                // Crossing over the a program with itself does not lead anywhere.
-                // ---------------------------------------------------------------
-                checkErroneousProg(i2,
-                                   " at start of evolution (index " + i +
-                                   "/02)", false);
-                IGPProgram[] newIndividuals = conf.getCrossMethod().operate(
-                    i1,
-                    i2);
-                newPopulation.setGPProgram(i, newIndividuals[0]);
-                newPopulation.setGPProgram(i + 1, newIndividuals[1]);
-                try {
-                  checkErroneousProg(newIndividuals[0],
-                                     " at start of evolution (index " + i +
-                                     "/11)", false);
-                } catch (RuntimeException t) {
-                  writeToFile(i1, i2, newIndividuals[0],
-                              "Error in first X-over program");
-                  throw t;
-                }
-                try {
-                  checkErroneousProg(newIndividuals[1],
-                                     " at start of evolution (index " + i +
-                                     "/12)", false);
-                } catch (RuntimeException t) {
-                  writeToFile(i1, i2, newIndividuals[1],
-                              "Error in second X-over program");
-                  throw t;
-                }
-              }
-              else {
-                newPopulation.setGPProgram(i, i1);
-                newPopulation.setGPProgram(i + 1, i2);
-              }
-              i++;
-              break;
-            } catch (IllegalStateException iex) {
-              tries++;
-              if ( (maxTries > 0 && tries >= maxTries) || tries > 40) {
-                if (!getGPConfiguration().isMaxNodeWarningPrinted()) {
-                  LOGGER.error(
-                      "Warning: Maximum number of nodes allowed may be too small");
-                  getGPConfiguration().flagMaxNodeWarningPrinted();
-                }
-                // Try cloning a previously generated valid program.
-                // -------------------------------------------------
-                IGPProgram program = cloneProgram(getGPConfiguration().
-                    getPrototypeProgram());
-                if (program != null) {
-                  newPopulation.setGPProgram(i++, program);
-                  program = cloneProgram(getGPConfiguration().
-                      getPrototypeProgram());
-                  newPopulation.setGPProgram(i, program);
-                  break;
-                }
-                else {
-                  throw new IllegalStateException(iex.getMessage());
-                }
-              }
-            }
-          } while (true)
-          ;
-        }
-        else { //if (val < conf.getCrossoverProb() + conf.getReproductionProb()) {
-          // Reproduction only.
-          // ------------------
-          reproduction++;
-          newPopulation.setGPProgram(i, conf.getSelectionMethod().select(this));
-        }
       }
-      // Add new random programs.
-      // ------------------------
-      for (int i = popSize1; i < popSize; i++) {
-        creation++;
-        // Randomly determine depth between minInitDepth and maxInitDepth.
-        // ---------------------------------------------------------------
-        int depth = conf.getMinInitDepth()
-            + random.nextInt(conf.getMaxInitDepth() - conf.getMinInitDepth()
-                             + 1);
+      val = random.nextFloat();
+      // Note that if we only have one slot left to fill, we don't do
+      // crossover, but fall through to reproduction.
+      // ------------------------------------------------------------
+      if (i < a_crossLimit - 1 && val < crossProb) {
+        a_stats[0]++;
+        // Actually do the crossover here.
+        // -------------------------------
+        IGPProgram i1 = conf.getSelectionMethod().select(this);
+        IGPProgram i2 = conf.getSelectionMethod().select(this);
         int tries = 0;
-        int nogc = 0;
         do {
           try {
-            // Randomize grow option as growing produces a valid program
-            // more likely than the full mode.
-            // ---------------------------------------------------------
-            boolean grow;
-            if (i % 2 == 0 || random.nextInt(8) > 6) {
-              grow = true;
-            }
-            else {
-              grow = false;
-            }
-            /**@todo use program creator in case such is registered and returns
-             * a non-null program
-             */
-            IGPProgram program = newPopulation.create(i, m_types, m_argTypes,
-                m_nodeSets, m_minDepths, m_maxDepths, depth, grow,
-                m_maxNodes, m_fullModeAllowed, tries);
-            newPopulation.setGPProgram(i, program);
-            checkErroneousProg(program,
-                               " when adding a program, evolution (index " + i +
-                               ")", true);
-            LOGGER.debug("Added new GP program (depth parameter: "
-                         + depth
-                         + ", "
-                         + tries
-                         + " tries)");
+            crossOver(a_newPop, i, i1, i2);
+            i++;
             break;
           } catch (IllegalStateException iex) {
             tries++;
-            nogc++;
-            /**@todo instead of re-using prototype, create a program anyway
-             * (ignoring the validator) in case it is the last try.
-             * Or even better: Make the validator return a defect rate!
-             */
-            if ( (maxTries > 0 && tries > maxTries) || tries > 40) {
-              LOGGER.debug(
-                  "Creating random GP program failed (depth "
-                  + depth
-                  + ", "
-                  + tries
-                  + " tries), will use prototype");
+            if ( (maxTries > 0 && tries >= maxTries) || tries > 40) {
+              if (!getGPConfiguration().isMaxNodeWarningPrinted()) {
+                LOGGER.error(
+                    "Warning: Maximum number of nodes allowed may be too small");
+                getGPConfiguration().flagMaxNodeWarningPrinted();
+              }
               // Try cloning a previously generated valid program.
               // -------------------------------------------------
               IGPProgram program = cloneProgram(getGPConfiguration().
                   getPrototypeProgram());
               if (program != null) {
-                // Cloning worked.
-                // ---------------
-                newPopulation.setGPProgram(i, program);
+                a_newPop.setGPProgram(i++, program);
+                program = cloneProgram(getGPConfiguration().
+                    getPrototypeProgram());
+                a_newPop.setGPProgram(i, program);
                 break;
               }
               else {
-                if (getGPConfiguration().getPrototypeProgram() == null) {
-                  throw new IllegalStateException(
-                      "Cloning: Prototype program was null");
-                }
-                else {
-                  throw new IllegalStateException(
-                      "Cloning of prototype program failed, " +
-                      iex.getMessage());
-                }
+                throw new IllegalStateException(iex.getMessage());
               }
             }
-            if (nogc > 5) {
-              nogc = 0;
-              System.gc();
-            }
           }
         } while (true)
         ;
       }
-      LOGGER.debug("Did "
-                   + crossover + " x-overs, "
-                   + reproduction + " reproductions, "
-                   + creation + " creations");
-      // Now set the new population as the active one.
-      // ---------------------------------------------
-      setGPPopulation(newPopulation);
-      // Increase number of generation.
-      // ------------------------------
-      conf.incrementGenerationNr();
-      // Fire an event to indicate we've performed an evolution.
-      // -------------------------------------------------------
-      conf.getEventManager().fireGeneticEvent(
-          new GeneticEvent(GeneticEvent.GPGENOTYPE_EVOLVED_EVENT, this));
-    } catch (InvalidConfigurationException iex) {
-      // This should never happen.
-      // -------------------------
-      throw new IllegalStateException(iex.getMessage());
+      else { //if (val < conf.getCrossoverProb() + conf.getReproductionProb()) {
+        // Reproduction only.
+        // ------------------
+        a_stats[1]++;
+        a_newPop.setGPProgram(i, conf.getSelectionMethod().select(this));
+      }
+    }
+    // Add new random programs.
+    // ------------------------
+    for (int i = Math.max(a_start, a_createStart); i < a_end; i++) {
+      a_stats[2]++;
+      // Randomly determine depth between minInitDepth and maxInitDepth.
+      // ---------------------------------------------------------------
+      int depth = conf.getMinInitDepth()
+          + random.nextInt(conf.getMaxInitDepth() - conf.getMinInitDepth()
+                           + 1);
+      int tries = 0;
+      int nogc = 0;
+      do {
+        try {
+          // Randomize grow option as growing produces a valid program
+          // more likely than the full mode.
+          // ---------------------------------------------------------
+          boolean grow;
+          if (i % 2 == 0 || random.nextInt(8) > 6) {
+            grow = true;
+          }
+          else {
+            grow = false;
+          }
+          /**@todo use program creator in case such is registered and returns
+           * a non-null program
+           */
+          IGPProgram program = a_newPop.create(i, m_types, m_argTypes,
+              m_nodeSets, m_minDepths, m_maxDepths, depth, grow,
+              m_maxNodes, m_fullModeAllowed, tries);
+          a_newPop.setGPProgram(i, program);
+          checkErroneousProg(program,
+                             " when adding a program, evolution (index " + i +
+                             ")", true);
+          LOGGER.debug("Added new GP program (depth parameter: "
+                       + depth
+                       + ", "
+                       + tries
+                       + " tries)");
+          break;
+        } catch (IllegalStateException iex) {
+          tries++;
+          nogc++;
+          /**@todo instead of re-using prototype, create a program anyway
+           * (ignoring the validator) in case it is the last try.
+           * Or even better: Make the validator return a defect rate!
+           */
+          if ( (maxTries > 0 && tries > maxTries) || tries > 40) {
+            LOGGER.debug(
+                "Creating random GP program failed (depth "
+                + depth
+                + ", "
+                + tries
+                + " tries), will use prototype");
+            // Try cloning a previously generated valid program.
+            // -------------------------------------------------
+            IGPProgram program = cloneProgram(getGPConfiguration().
+                getPrototypeProgram());
+            if (program != null) {
+              // Cloning worked.
+              // ---------------
+              a_newPop.setGPProgram(i, program);
+              break;
+            }
+            else {
+              if (getGPConfiguration().getPrototypeProgram() == null) {
+                throw new IllegalStateException(
+                    "Cloning: Prototype program was null");
+              }
+              else {
+                throw new IllegalStateException(
+                    "Cloning of prototype program failed, " +
+                    iex.getMessage());
+              }
+            }
+          }
+          if (nogc > 5) {
+            nogc = 0;
+            System.gc();
+          }
+        }
+      } while (true)
+      ;
+    }
+  }
+
+  /**
+   * Verifying programs means executing them, which is not possible
+   * concurrently as all programs share the stack of the configuration.
+   *
+   * @param a_conf the configuration used
+   * @return true: evolve() breeds via breedConcurrently
+   */
+  private static boolean isBreedingConcurrently(GPConfiguration a_conf) {
+    return a_conf.isConcurrentBreeding() && !a_conf.isVerifyPrograms();
+  }
+
+  /**
+   * Crosses two programs and puts the offspring into the given slot and the
+   * slot after it.
+   *
+   * @param a_newPop the population to fill
+   * @param a_index the slot for the first offspring
+   * @param a_i1 the first program to cross
+   * @param a_i2 the second program to cross
+   *
+   * @since 3.7
+   */
+  private void crossOver(GPPopulation a_newPop, int a_index, IGPProgram a_i1,
+                         IGPProgram a_i2) {
+    checkErroneousProg(a_i1, " at start of evolution (index " + a_index
+                       + "/01)", false);
+    if (a_i1 != a_i2) {
+      // Crossing over the a program with itself does not lead anywhere.
+      // ---------------------------------------------------------------
+      checkErroneousProg(a_i2, " at start of evolution (index " + a_index
+                         + "/02)", false);
+      IGPProgram[] newIndividuals = getGPConfiguration().getCrossMethod().
+          operate(a_i1, a_i2);
+      a_newPop.setGPProgram(a_index, newIndividuals[0]);
+      a_newPop.setGPProgram(a_index + 1, newIndividuals[1]);
+      try {
+        checkErroneousProg(newIndividuals[0], " at start of evolution (index "
+                           + a_index + "/11)", false);
+      } catch (RuntimeException t) {
+        writeToFile(a_i1, a_i2, newIndividuals[0],
+                    "Error in first X-over program");
+        throw t;
+      }
+      try {
+        checkErroneousProg(newIndividuals[1], " at start of evolution (index "
+                           + a_index + "/12)", false);
+      } catch (RuntimeException t) {
+        writeToFile(a_i1, a_i2, newIndividuals[1],
+                    "Error in second X-over program");
+        throw t;
+      }
+    }
+    else {
+      a_newPop.setGPProgram(a_index, a_i1);
+      a_newPop.setGPProgram(a_index + 1, a_i2);
+    }
+  }
+
+  /**
+   * Breeds the new population in chunks of GPConfiguration.
+   * getBreedingChunkSize() slots, using getBreedingThreads() threads.
+   * Crossing over never spans two chunks. In deterministic mode, each chunk
+   * gets its own random stream seeded in chunk order, so the result is the
+   * same for any number of threads.
+   * <p>
+   * If more than one thread is used, the selection method and the crossover
+   * method of the configuration must implement IThreadSafe. The prototype
+   * program of the configuration is only read while breeding.
+   *
+   * @param a_newPop the population to fill
+   * @param a_popSize size of the population
+   * @param a_popSize1 number of slots to fill by crossing over or reproduction
+   * @param a_injectFittest true: a fittest program has been added to the new
+   * population and is to be injected at the first slot for creation
+   * @param a_stats counters for crossovers, reproductions and creations
+   *
+   * @throws InvalidConfigurationException if more than one thread is to be
+   * used with a selection or crossover method not implementing IThreadSafe
+   *
+   * @since 3.7
+   */
+  protected void breedConcurrently(final GPPopulation a_newPop,
+                                   final int a_popSize, final int a_popSize1,
+                                   boolean a_injectFittest, int[] a_stats)
+      throws InvalidConfigurationException {
+    GPConfiguration conf = getGPConfiguration();
+    final int chunkSize = conf.getBreedingChunkSize();
+    final int chunks = (a_popSize + chunkSize - 1) / chunkSize;
+    int threads = Math.max(1, Math.min(conf.getBreedingThreads(), chunks));
+    if (threads > 1) {
+      if (! (conf.getSelectionMethod() instanceof IThreadSafe)) {
+        throw new InvalidConfigurationException("Selection method "
+            + conf.getSelectionMethod().getClass().getName()
+            + " is not thread-safe, see IThreadSafe");
+      }
+      if (! (conf.getCrossMethod() instanceof IThreadSafe)) {
+        throw new InvalidConfigurationException("Crossover method "
+            + conf.getCrossMethod().getClass().getName()
+            + " is not thread-safe, see IThreadSafe");
+      }
+    }
+    RandomGenerator random = conf.getRandomGenerator();
+    // Selection may evaluate programs not evaluated yet. Do this here, as
+    // programs cannot be executed concurrently.
+    // -------------------------------------------------------------------
+    GPPopulation oldPop = getGPPopulation();
+    for (int i = 0; i < oldPop.size() && oldPop.getGPProgram(i) != null; i++) {
+      try {
+        oldPop.getGPProgram(i).getFitnessValue();
+      } catch (IllegalStateException iex) {
+        // Erroneous programs are dealt with by the selection as before.
+        // -------------------------------------------------------------
+      }
+    }
+    int createStart = a_popSize1;
+    if (a_injectFittest && a_popSize1 < a_popSize) {
+      // Inject the fittest program before breeding starts. This has
+      // to be done here as GPPopulation.create is not thread-safe for it.
+      // --------------------------------------------------------------------
+      IGPProgram fittest = a_newPop.create(a_popSize1, m_types, m_argTypes,
+          m_nodeSets, m_minDepths, m_maxDepths, conf.getMinInitDepth(), true,
+          m_maxNodes, m_fullModeAllowed, 0);
+      a_newPop.setGPProgram(a_popSize1, fittest);
+      createStart++;
+    }
+    final boolean deterministic = conf.isDeterministicBreeding();
+    // Seed the random streams from the configuration's generator, one per
+    // chunk in deterministic mode, otherwise one per thread.
+    // -------------------------------------------------------------------
+    final long[] seeds = new long[deterministic ? chunks : threads];
+    for (int i = 0; i < seeds.length; i++) {
+      seeds[i] = random.nextLong();
+    }
+    AtomicInteger nextChunk = new AtomicInteger();
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    BreedingWorker[] workers = new BreedingWorker[threads];
+    Thread[] workerThreads = new Thread[threads - 1];
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new BreedingWorker(a_newPop, a_popSize, a_popSize1,
+                                      createStart, chunkSize, chunks, seeds,
+                                      deterministic ? -1 : i, nextChunk,
+                                      failure);
+      if (i > 0) {
+        workerThreads[i - 1] = new Thread(workers[i], "GP breeder " + i);
+        workerThreads[i - 1].start();
+      }
+    }
+    // The current thread takes part in breeding.
+    // ------------------------------------------
+    workers[0].run();
+    for (int i = 0; i < workerThreads.length; i++) {
+      try {
+        workerThreads[i].join();
+      } catch (InterruptedException iex) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while breeding");
+      }
+    }
+    Throwable t = failure.get();
+    if (t != null) {
+      if (t instanceof InvalidConfigurationException) {
+        throw (InvalidConfigurationException) t;
+      }
+      if (t instanceof RuntimeException) {
+        throw (RuntimeException) t;
+      }
+      if (t instanceof Error) {
+        throw (Error) t;
+      }
+      throw new IllegalStateException(t.getMessage());
+    }
+    for (int i = 0; i < threads; i++) {
+      for (int j = 0; j < a_stats.length; j++) {
+        a_stats[j] += workers[i].m_stats[j];
+      }
+    }
+  }
+
+  /**
+   * Breeds chunks of the new population until none is left, see
+   * breedConcurrently.
+   *
+   * @since 3.7
+   */
+  private class BreedingWorker
+      implements Runnable {
+    private final GPPopulation m_newPop;
+
+    private final int m_popSize;
+
+    private final int m_popSize1;
+
+    private final int m_createStart;
+
+    private final int m_chunkSize;
+
+    private final int m_chunks;
+
+    private final long[] m_seeds;
+
+    /**
+     * Index of the seed of this worker, -1 for one seed per chunk.
+     */
+    private final int m_seedIndex;
+
+    private final AtomicInteger m_nextChunk;
+
+    private final AtomicReference<Throwable> m_failure;
+
+    private final int[] m_stats = new int[3];
+
+    BreedingWorker(GPPopulation a_newPop, int a_popSize, int a_popSize1,
+                   int a_createStart, int a_chunkSize, int a_chunks,
+                   long[] a_seeds, int a_seedIndex,
+                   AtomicInteger a_nextChunk,
+                   AtomicReference<Throwable> a_failure) {
+      m_newPop = a_newPop;
+      m_popSize = a_popSize;
+      m_popSize1 = a_popSize1;
+      m_createStart = a_createStart;
+      m_chunkSize = a_chunkSize;
+      m_chunks = a_chunks;
+      m_seeds = a_seeds;
+      m_seedIndex = a_seedIndex;
+      m_nextChunk = a_nextChunk;
+      m_failure = a_failure;
+    }
+
+    public void run() {
+      GPConfiguration conf = getGPConfiguration();
+      try {
+        if (m_seedIndex >= 0) {
+          conf.bindRandomGenerator(new SeededRandomGenerator(m_seeds[
+              m_seedIndex]));
+        }
+        int chunk;
+        while (m_failure.get() == null
+               && (chunk = m_nextChunk.getAndIncrement()) < m_chunks) {
+          if (m_seedIndex < 0) {
+            conf.bindRandomGenerator(new SeededRandomGenerator(m_seeds[chunk]));
+          }
+          int start = chunk * m_chunkSize;
+          int end = Math.min(start + m_chunkSize, m_popSize);
+          breed(m_newPop, start, end, m_popSize1, Math.min(end, m_popSize1),
+                m_createStart, m_stats);
+        }
+      } catch (Throwable t) {
+        m_failure.compareAndSet(null, t);
+      } finally {
+        conf.bindRandomGenerator(null);
+      }
     }
   }
 
@@ -1137,6 +1427,30 @@ public class GPGenotype
     return localHashCode;
   }
 
+  /**
+   * Sets the service writing checkpoints during evolve(int) if due. Resume
+   * from a checkpoint via GPGenotypeCheckpoint.resume.
+   *
+   * @param a_service the checkpoint service, null for none
+   * @throws IllegalArgumentException if the node sets contain nodes that
+   * cannot be captured, see GPGenotypeCheckpoint.isSupported
+   *
+   * @since 3.7
+   */
+  public void setCheckpointService(CheckpointService a_service) {
+    if (a_service != null && m_nodeSets != null
+        && !GPGenotypeCheckpoint.isSupported(m_nodeSets)) {
+      throw new IllegalArgumentException("Checkpoints do not support ADFs,"
+                                         + " subprograms and nodes with"
+                                         + " dynamic arity!");
+    }
+    m_checkpointService = a_service;
+  }
+
+  public CheckpointService getCheckpointService() {
+    return m_checkpointService;
+  }
+
   /**
    * @param a_verbose true: output status information to console
    *
@@ -1147,6 +1461,28 @@ public class GPGenotype
     m_verbose = a_verbose;
   }
 
+  /**
+   * Checks whether a program is the all-time best program kept, i.e. the
+   * latter has been preserved in the population. Compares identity first,
+   * then the structural hash. The string representations are only compared
+   * for programs other than GPProgram.
+   *
+   * @param a_program the program to check
+   * @return true if the program equals the all-time best program
+   *
+   * @since 3.7
+   */
+  private boolean isAllTimeBest(IGPProgram a_program) {
+    if (a_program == m_allTimeBest) {
+      return true;
+    }
+    if (a_program instanceof GPProgram && m_allTimeBest instanceof GPProgram) {
+      return ( (GPProgram) a_program).structuralHash()
+          == ( (GPProgram) m_allTimeBest).structuralHash();
+    }
+    return a_program.toStringNorm(0).equals(m_allTimeBest.toStringNorm(0));
+  }
+
   private IGPProgram cloneProgram(IGPProgram a_original) {
     IGPProgram validProgram = a_original;
     ICloneHandler cloner = getGPConfiguration().getJGAPFactory().
@@ -1187,6 +1523,41 @@ public class GPGenotype
     return (Variable) m_variables.get(a_varName);
   }
 
+  /**
+   * Resolves a primitive variable (DoubleVariable, IntegerVariable,
+   * LongVariable) to the index of its slot within the variable context. Do
+   * this once and then set the value for each fitness case directly via the
+   * context, thus neither looking up the variable by name nor boxing the
+   * value.
+   *
+   * @param a_varName name of the variable, stored with this genotype or the
+   * configuration
+   * @return index of the slot of the variable within getVariableContext()
+   *
+   * @since 3.7
+   */
+  public int getVariableSlot(String a_varName) {
+    Variable var = getVariable(a_varName);
+    if (var == null) {
+      var = getGPConfiguration().getVariable(a_varName);
+    }
+    if (! (var instanceof PrimitiveVariable)) {
+      throw new IllegalArgumentException("No primitive variable named "
+                                         + a_varName);
+    }
+    return ( (PrimitiveVariable) var).getSlot();
+  }
+
+  /**
+   * @return the context holding the values of primitive variables, see
+   * GPConfiguration.getVariableContext()
+   *
+   * @since 3.7
+   */
+  public VariableContext getVariableContext() {
+    return getGPConfiguration().getVariableContext();
+  }
+
   /**
    * Adds a GP program to this Genotype. Does nothing when given null.
    * The injection is actually executed in method create(..) of GPPopulation.
@@ -0,0 +1,390 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.jgap.InvalidConfigurationException;
+import org.jgap.data.ChromosomeSchema;
+import org.jgap.data.GenotypeCheckpoint;
+import org.jgap.data.ICheckpoint;
+import org.jgap.gp.CommandGene;
+import org.jgap.gp.GPProgramBase;
+import org.jgap.gp.IGPProgram;
+
+/**
+ * Binary checkpoint of the state of a GPGenotype: generation number, programs
+ * with their fitness values and state of the random generator. The programs
+ * are captured as compact programs (see CompactProgram), which is fast and
+ * leaves the programs evolving untouched. Programs containing nodes not
+ * supported by NodeTable (ADFs, subprograms and nodes with dynamic arity)
+ * cannot be captured, see isSupported(CommandGene[][]).
+ * <p>
+ * Nodes are stored by the key identifying them in the node table. When
+ * resuming, they are looked up in the node sets of the genotype to resume,
+ * which must have been set up the same way as the one captured.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * int magic, int version, int generation number,
+ * int length and bytes of the state of the random generator (0: none),
+ * int number of nodes, per node: string key,
+ * int population size, per program: double fitness value,
+ * int number of chromosomes, per chromosome: int capacity,
+ * int number of nodes, int[] opcodes, boolean constants present,
+ * long[] raw bits of the constants if present,
+ * int checksum of all preceding bytes
+ * </pre>
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GPGenotypeCheckpoint {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * First four bytes of a checkpoint ("JGGP").
+   */
+  public final static int MAGIC = 0x4A474750;
+
+  /**
+   * Version of the format written.
+   */
+  public final static int VERSION = 1;
+
+  private GPGenotypeCheckpoint() {
+  }
+
+  /**
+   * @param a_nodeSets the node sets of a genotype
+   * @return true if the programs of a genotype using the given node sets can
+   * be captured, i.e. all nodes are supported by NodeTable
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static boolean isSupported(CommandGene[][] a_nodeSets) {
+    for (int i = 0; i < a_nodeSets.length; i++) {
+      for (int j = 0; j < a_nodeSets[i].length; j++) {
+        if (!NodeTable.isSupported(a_nodeSets[i][j])) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Captures the state of a genotype, to be written later on, possibly by
+   * another thread.
+   *
+   * @param a_genotype the genotype to capture
+   * @return the checkpoint captured
+   * @throws IllegalArgumentException if a program contains a node not
+   * supported, see isSupported(CommandGene[][])
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static ICheckpoint capture(GPGenotype a_genotype) {
+    GPConfiguration conf = a_genotype.getGPConfiguration();
+    NodeTable table = conf.getNodeTable();
+    IGPProgram[] programs = a_genotype.getGPPopulation().getGPPrograms();
+    int count = 0;
+    for (int i = 0; i < programs.length; i++) {
+      if (programs[i] != null) {
+        count++;
+      }
+    }
+    double[] fitness = new double[count];
+    CompactProgram[][] compact = new CompactProgram[count][];
+    count = 0;
+    for (int i = 0; i < programs.length; i++) {
+      IGPProgram prog = programs[i];
+      if (prog == null) {
+        continue;
+      }
+      if (prog instanceof GPProgramBase) {
+        fitness[count] = ( (GPProgramBase) prog).getFitnessValueDirectly();
+      }
+      else {
+        fitness[count] = prog.getFitnessValue();
+      }
+      compact[count] = new CompactProgram[prog.size()];
+      for (int j = 0; j < prog.size(); j++) {
+        compact[count][j] = CompactProgram.compact(prog.getChromosome(j),
+            table);
+      }
+      count++;
+    }
+    return new Snapshot(conf.getGenerationNr(),
+                        GenotypeCheckpoint.captureRandomState(conf.
+        getRandomGenerator()), table, table.size(), fitness, compact);
+  }
+
+  /**
+   * Writes a checkpoint of a genotype to a file.
+   *
+   * @param a_genotype the genotype to write
+   * @param a_file the file to write to, overwritten if existing
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void write(GPGenotype a_genotype, File a_file)
+      throws IOException {
+    OutputStream out = new FileOutputStream(a_file);
+    try {
+      capture(a_genotype).write(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Replaces the population of a genotype by the one stored in a checkpoint.
+   * The generation number of the configuration is set to the one stored, the
+   * state of its random generator is restored (see
+   * GenotypeCheckpoint.restoreRandomState).
+   *
+   * @param a_file the checkpoint file
+   * @param a_genotype the genotype to resume, set up like the one captured
+   * and containing at least one program serving as template
+   * @throws IOException if the file is corrupt or does not fit the genotype
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void resume(File a_file, GPGenotype a_genotype)
+      throws IOException {
+    RandomAccessFile file = new RandomAccessFile(a_file, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      long length = channel.size();
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Checkpoint too large to be mapped: " + length);
+      }
+      resume(channel.map(FileChannel.MapMode.READ_ONLY, 0, length),
+             a_genotype);
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Replaces the population of a genotype by the one stored in a checkpoint
+   * held by a buffer, starting at its position.
+   *
+   * @param a_buffer the buffer holding the checkpoint
+   * @param a_genotype the genotype to resume
+   * @throws IOException if the checkpoint is corrupt or does not fit the
+   * genotype
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void resume(ByteBuffer a_buffer, GPGenotype a_genotype)
+      throws IOException {
+    ByteBuffer in = a_buffer.slice();
+    GenotypeCheckpoint.verifyChecksum(in);
+    GPConfiguration conf = a_genotype.getGPConfiguration();
+    IGPProgram template = a_genotype.getGPPopulation().getGPProgram(0);
+    if (template == null) {
+      throw new IOException("Template program needed for resuming");
+    }
+    try {
+      if (in.getInt() != MAGIC) {
+        throw new IOException("Not a GP checkpoint");
+      }
+      int version = in.getInt();
+      if (version < 1 || version > VERSION) {
+        throw new IOException("Unsupported checkpoint version " + version);
+      }
+      int generationNr = in.getInt();
+      byte[] random = new byte[in.getInt()];
+      in.get(random);
+      String[] keys = new String[in.getInt()];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = ChromosomeSchema.getString(in);
+      }
+      int size = in.getInt();
+      int chromCount = template.size();
+      // Opcodes of the file mapped to opcodes of the node table, per
+      // chromosome as node sets may differ.
+      // ------------------------------------------------------------
+      NodeTable table = conf.getNodeTable();
+      int[][] opcodeMap = new int[chromCount][];
+      Map<String, CommandGene>[] nodes = new Map[chromCount];
+      for (int j = 0; j < chromCount; j++) {
+        opcodeMap[j] = new int[keys.length];
+        Arrays.fill(opcodeMap[j], -1);
+        nodes[j] = new HashMap<String, CommandGene>();
+        CommandGene[] nodeSet = template.getChromosome(j).getFunctionSet();
+        for (int k = 0; k < nodeSet.length; k++) {
+          if (NodeTable.isSupported(nodeSet[k])) {
+            nodes[j].put(NodeTable.getKey(nodeSet[k]), nodeSet[k]);
+          }
+        }
+      }
+      IGPProgram[] programs = new IGPProgram[size];
+      for (int i = 0; i < size; i++) {
+        double fitness = in.getDouble();
+        if (in.getInt() != chromCount) {
+          throw new IOException("Number of chromosomes does not fit genotype");
+        }
+        GPProgram prog = new GPProgram(conf, template.getTypes(),
+                                       template.getArgTypes(),
+                                       template.getNodeSets(),
+                                       template.getMinDepths(),
+                                       template.getMaxDepths(),
+                                       template.getMaxNodes());
+        for (int j = 0; j < chromCount; j++) {
+          int capacity = in.getInt();
+          int[] opcodes = new int[in.getInt()];
+          for (int k = 0; k < opcodes.length; k++) {
+            int opcode = in.getInt();
+            if (opcodeMap[j][opcode] < 0) {
+              CommandGene node = nodes[j].get(keys[opcode]);
+              if (node == null) {
+                throw new IOException("Node " + keys[opcode]
+                                      + " not in function set of chromosome "
+                                      + j);
+              }
+              opcodeMap[j][opcode] = table.intern(node);
+            }
+            opcodes[k] = opcodeMap[j][opcode];
+          }
+          long[] constants = null;
+          if (in.get() != 0) {
+            constants = new long[opcodes.length];
+            for (int k = 0; k < opcodes.length; k++) {
+              constants[k] = in.getLong();
+            }
+          }
+          ProgramChromosome chrom = template.getChromosome(j);
+          CompactProgram compact = new CompactProgram(table, opcodes,
+              constants, capacity, chrom.getFunctionSet(),
+              chrom.getArgTypes());
+          prog.setChromosome(j, compact.toProgramChromosome(conf, prog));
+        }
+        prog.setFitnessValue(fitness);
+        programs[i] = prog;
+      }
+      a_genotype.getGPPopulation().setGPPrograms(programs);
+      conf.setGenerationNr(generationNr);
+      GenotypeCheckpoint.restoreRandomState(random, conf);
+    } catch (BufferUnderflowException bex) {
+      throw new IOException("Checkpoint truncated");
+    } catch (ArrayIndexOutOfBoundsException aex) {
+      throw new IOException("Invalid opcode in checkpoint");
+    } catch (InvalidConfigurationException iex) {
+      throw new IOException(iex.getMessage());
+    }
+  }
+
+  /**
+   * Programs captured in compact form.
+   */
+  private static class Snapshot
+      implements ICheckpoint {
+    private final int m_generationNr;
+
+    private final byte[] m_randomState;
+
+    private final NodeTable m_table;
+
+    /**
+     * Size of the node table when capturing. As the table only grows, the
+     * nodes up to this size stay the same.
+     */
+    private final int m_tableSize;
+
+    private final double[] m_fitness;
+
+    private final CompactProgram[][] m_programs;
+
+    Snapshot(int a_generationNr, byte[] a_randomState, NodeTable a_table,
+             int a_tableSize, double[] a_fitness,
+             CompactProgram[][] a_programs) {
+      m_generationNr = a_generationNr;
+      m_randomState = a_randomState;
+      m_table = a_table;
+      m_tableSize = a_tableSize;
+      m_fitness = a_fitness;
+      m_programs = a_programs;
+    }
+
+    public int getGenerationNr() {
+      return m_generationNr;
+    }
+
+    public void write(OutputStream a_out)
+        throws IOException {
+      BufferedOutputStream buffered = new BufferedOutputStream(a_out, 65536);
+      CRC32 crc = new CRC32();
+      DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+          buffered, crc));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(m_generationNr);
+      out.writeInt(m_randomState.length);
+      out.write(m_randomState);
+      out.writeInt(m_tableSize);
+      for (int i = 0; i < m_tableSize; i++) {
+        ChromosomeSchema.writeString(out,
+                                     NodeTable.getKey(m_table.getNode(i)));
+      }
+      out.writeInt(m_programs.length);
+      for (int i = 0; i < m_programs.length; i++) {
+        out.writeDouble(m_fitness[i]);
+        out.writeInt(m_programs[i].length);
+        for (int j = 0; j < m_programs[i].length; j++) {
+          CompactProgram prog = m_programs[i][j];
+          int size = prog.size();
+          out.writeInt(prog.getCapacity());
+          out.writeInt(size);
+          boolean constants = false;
+          for (int k = 0; k < size; k++) {
+            int opcode = prog.getOpcode(k);
+            out.writeInt(opcode);
+            constants |= m_table.isConstant(opcode);
+          }
+          out.writeBoolean(constants);
+          if (constants) {
+            for (int k = 0; k < size; k++) {
+              out.writeLong(prog.getConstantBits(k));
+            }
+          }
+        }
+      }
+      out.flush();
+      // The checksum itself is not part of the checksum.
+      // ------------------------------------------------
+      new DataOutputStream(buffered).writeInt( (int) crc.getValue());
+      buffered.flush();
+    }
+  }
+}
@@ -14,6 +14,10 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
 import org.jgap.FitnessFunction;
@@ -27,6 +31,7 @@ import org.jgap.gp.GPProgramBase;
 import org.jgap.gp.IGPFitnessEvaluator;
 import org.jgap.gp.IGPProgram;
 import org.jgap.gp.IProgramCreator;
+import org.jgap.impl.SeededRandomGenerator;
 import org.jgap.util.StringKit;
 
 /**
@@ -52,6 +57,14 @@ public class GPPopulation
 
   private transient int warningPrototypeReused = 0;
 
+  /**
+   * Maximum number of times a program is created anew because it duplicates
+   * a program created before.
+   *
+   * @since 3.7
+   */
+  private final static int MAX_DUPLICATE_TRIES = 40;
+
   /**
    * The array of GPProgram's that make-up the Genotype's population.
    */
@@ -79,6 +92,12 @@ public class GPPopulation
 
   private IGPProgram m_fittestToAdd;
 
+  /**
+   * Roulette wheel built on demand for fitness proportionate selection,
+   * discarded as soon as the programs change.
+   */
+  private transient GPRouletteWheel m_rouletteWheel;
+
   /**
    * Default constructor, only for dynamic instantiation.
    *
@@ -290,6 +309,271 @@ public class GPPopulation
                      IProgramCreator a_programCreator,
                      int a_offset)
       throws InvalidConfigurationException {
+    if (getGPConfiguration().isConcurrentBreeding()
+        && m_popSize - a_offset > 1) {
+      createConcurrently(a_types, a_argTypes, a_nodeSets, a_minDepths,
+                         a_maxDepths, a_maxNodes, a_fullModeAllowed,
+                         a_programCreator, a_offset);
+      setChanged(true);
+      return;
+    }
+    int genNr = getGPConfiguration().getGenerationNr();
+    int genI = new Random().nextInt(m_popSize);
+    ConcurrentMap<Long, GPProgramInfo> created = null;
+    if (getGPConfiguration().isDeduplicatePrograms()) {
+      created = new ConcurrentHashMap<Long, GPProgramInfo>();
+    }
+    for (int i = a_offset; i < m_popSize; i++) {
+      IGPProgram program = createProgram(i, a_types, a_argTypes, a_nodeSets,
+          a_minDepths, a_maxDepths, a_maxNodes, a_fullModeAllowed,
+          a_programCreator, a_offset, true, genNr, genI, created);
+      setGPProgram(i, program);
+    }
+    setChanged(true);
+  }
+
+  /**
+   * Creates the programs of the population using GPConfiguration.
+   * getBreedingThreads() threads. The slots are processed in chunks of
+   * GPConfiguration.getBreedingChunkSize() programs. In deterministic mode,
+   * each chunk gets its own random stream seeded in chunk order, so the
+   * population created does not depend on the number of threads. Then,
+   * duplicates are only avoided within each chunk.
+   * <p>
+   * The first program is created on the calling thread, as it may be the
+   * fittest program to inject or become the prototype program.
+   *
+   * @param a_offset start index for new programs
+   * @throws InvalidConfigurationException
+   *
+   * @since 3.7
+   */
+  protected void createConcurrently(final Class[] a_types,
+                                    final Class[][] a_argTypes,
+                                    final CommandGene[][] a_nodeSets,
+                                    final int[] a_minDepths,
+                                    final int[] a_maxDepths,
+                                    final int a_maxNodes,
+                                    final boolean[] a_fullModeAllowed,
+                                    final IProgramCreator a_programCreator,
+                                    final int a_offset)
+      throws InvalidConfigurationException {
+    GPConfiguration conf = getGPConfiguration();
+    int genNr = conf.getGenerationNr();
+    int genI = new Random().nextInt(m_popSize);
+    final boolean deterministic = conf.isDeterministicBreeding();
+    ConcurrentMap<Long, GPProgramInfo> created = null;
+    if (conf.isDeduplicatePrograms()) {
+      created = new ConcurrentHashMap<Long, GPProgramInfo>();
+    }
+    setGPProgram(a_offset, createProgram(a_offset, a_types, a_argTypes,
+        a_nodeSets, a_minDepths, a_maxDepths, a_maxNodes, a_fullModeAllowed,
+        a_programCreator, a_offset, true, genNr, genI, created));
+    final int start = a_offset + 1;
+    final int chunkSize = conf.getBreedingChunkSize();
+    final int chunks = (m_popSize - start + chunkSize - 1) / chunkSize;
+    int threads = Math.max(1, Math.min(conf.getBreedingThreads(), chunks));
+    // Seed the random streams from the configuration's generator, one per
+    // chunk in deterministic mode, otherwise one per thread.
+    // -------------------------------------------------------------------
+    RandomGenerator random = conf.getRandomGenerator();
+    final long[] seeds = new long[deterministic ? chunks : threads];
+    for (int i = 0; i < seeds.length; i++) {
+      seeds[i] = random.nextLong();
+    }
+    AtomicInteger nextChunk = new AtomicInteger();
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] workerThreads = new Thread[threads - 1];
+    CreationWorker master = null;
+    for (int i = 0; i < threads; i++) {
+      CreationWorker worker = new CreationWorker(a_types, a_argTypes,
+          a_nodeSets, a_minDepths, a_maxDepths, a_maxNodes, a_fullModeAllowed,
+          a_programCreator, a_offset, start, chunkSize, chunks, seeds,
+          deterministic ? -1 : i, deterministic ? null : created, nextChunk,
+          failure);
+      if (i == 0) {
+        master = worker;
+      }
+      else {
+        workerThreads[i - 1] = new Thread(worker, "GP program creator " + i);
+        workerThreads[i - 1].start();
+      }
+    }
+    // The current thread takes part in creating programs.
+    // ---------------------------------------------------
+    master.run();
+    for (int i = 0; i < workerThreads.length; i++) {
+      try {
+        workerThreads[i].join();
+      } catch (InterruptedException iex) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while creating programs");
+      }
+    }
+    Throwable t = failure.get();
+    if (t != null) {
+      if (t instanceof InvalidConfigurationException) {
+        throw (InvalidConfigurationException) t;
+      }
+      if (t instanceof RuntimeException) {
+        throw (RuntimeException) t;
+      }
+      if (t instanceof Error) {
+        throw (Error) t;
+      }
+      throw new IllegalStateException(t.getMessage());
+    }
+    if (genNr % 5 == 0 && genNr > 0 && genI > a_offset) {
+      /**@todo 5: make configurable*/
+      // Set prototype to new value after every some evolutions. Done here as
+      // programs cannot be executed concurrently.
+      // --------------------------------------------------------------------
+      IGPProgram program = getGPProgram(genI);
+      double protoFitness = conf.getPrototypeProgram().getFitnessValue();
+      if (conf.getGPFitnessEvaluator().isFitter(program.getFitnessValue(),
+          protoFitness)) {
+        conf.setPrototypeProgram(program);
+      }
+    }
+  }
+
+  /**
+   * Creates chunks of programs until none is left, see createConcurrently.
+   *
+   * @since 3.7
+   */
+  private class CreationWorker
+      implements Runnable {
+    private final Class[] m_types;
+
+    private final Class[][] m_argTypes;
+
+    private final CommandGene[][] m_nodeSets;
+
+    private final int[] m_minDepths;
+
+    private final int[] m_maxDepths;
+
+    private final int m_maxNodes;
+
+    private final boolean[] m_fullModeAllowed;
+
+    private final IProgramCreator m_programCreator;
+
+    private final int m_offset;
+
+    private final int m_start;
+
+    private final int m_chunkSize;
+
+    private final int m_chunks;
+
+    private final long[] m_seeds;
+
+    /**
+     * Index of the seed of this worker, -1 for one seed per chunk.
+     */
+    private final int m_seedIndex;
+
+    /**
+     * Programs created, shared by all workers, null for one map per chunk (or
+     * for not avoiding duplicates).
+     */
+    private final ConcurrentMap<Long, GPProgramInfo> m_created;
+
+    private final AtomicInteger m_nextChunk;
+
+    private final AtomicReference<Throwable> m_failure;
+
+    CreationWorker(Class[] a_types, Class[][] a_argTypes,
+                   CommandGene[][] a_nodeSets, int[] a_minDepths,
+                   int[] a_maxDepths, int a_maxNodes,
+                   boolean[] a_fullModeAllowed,
+                   IProgramCreator a_programCreator, int a_offset, int a_start,
+                   int a_chunkSize, int a_chunks, long[] a_seeds,
+                   int a_seedIndex,
+                   ConcurrentMap<Long, GPProgramInfo> a_created,
+                   AtomicInteger a_nextChunk,
+                   AtomicReference<Throwable> a_failure) {
+      m_types = a_types;
+      m_argTypes = a_argTypes;
+      m_nodeSets = a_nodeSets;
+      m_minDepths = a_minDepths;
+      m_maxDepths = a_maxDepths;
+      m_maxNodes = a_maxNodes;
+      m_fullModeAllowed = a_fullModeAllowed;
+      m_programCreator = a_programCreator;
+      m_offset = a_offset;
+      m_start = a_start;
+      m_chunkSize = a_chunkSize;
+      m_chunks = a_chunks;
+      m_seeds = a_seeds;
+      m_seedIndex = a_seedIndex;
+      m_created = a_created;
+      m_nextChunk = a_nextChunk;
+      m_failure = a_failure;
+    }
+
+    public void run() {
+      GPConfiguration conf = getGPConfiguration();
+      try {
+        if (m_seedIndex >= 0) {
+          conf.bindRandomGenerator(new SeededRandomGenerator(m_seeds[
+              m_seedIndex]));
+        }
+        int chunk;
+        while (m_failure.get() == null
+               && (chunk = m_nextChunk.getAndIncrement()) < m_chunks) {
+          ConcurrentMap<Long, GPProgramInfo> created = m_created;
+          if (m_seedIndex < 0) {
+            conf.bindRandomGenerator(new SeededRandomGenerator(m_seeds[chunk]));
+            if (conf.isDeduplicatePrograms()) {
+              created = new ConcurrentHashMap<Long, GPProgramInfo>();
+            }
+          }
+          int start = m_start + chunk * m_chunkSize;
+          int end = Math.min(start + m_chunkSize, m_popSize);
+          for (int i = start; i < end; i++) {
+            setGPProgram(i, createProgram(i, m_types, m_argTypes, m_nodeSets,
+                m_minDepths, m_maxDepths, m_maxNodes, m_fullModeAllowed,
+                m_programCreator, m_offset, false, 0, -1, created));
+          }
+        }
+      } catch (Throwable t) {
+        m_failure.compareAndSet(null, t);
+      } finally {
+        conf.bindRandomGenerator(null);
+      }
+    }
+  }
+
+  /**
+   * Creates the program for a slot of the population, retrying on programs
+   * violating constraints and optionally on duplicate programs.
+   *
+   * @param a_updatePrototype true: remember a prototype program in the
+   * configuration, false: leave the prototype as is (when called concurrently)
+   * @param a_genNr the current generation number
+   * @param a_genI index of the slot whose program may become the new prototype
+   * @param a_created programs created so far by structural hash, or null for
+   * not avoiding duplicates
+   * @return the program created
+   *
+   * @throws InvalidConfigurationException
+   *
+   * @since 3.7
+   */
+  private IGPProgram createProgram(int a_index, Class[] a_types,
+                                   Class[][] a_argTypes,
+                                   CommandGene[][] a_nodeSets,
+                                   int[] a_minDepths, int[] a_maxDepths,
+                                   int a_maxNodes, boolean[] a_fullModeAllowed,
+                                   IProgramCreator a_programCreator,
+                                   int a_offset, boolean a_updatePrototype,
+                                   int a_genNr, int a_genI,
+                                   ConcurrentMap<Long, GPProgramInfo>
+                                   a_created)
+      throws InvalidConfigurationException {
     int divisor;
     if (m_popSize < 2) {
       divisor = 1;
@@ -297,110 +581,122 @@ public class GPPopulation
     else {
       divisor = m_popSize - 1;
     }
-    int genNr = getGPConfiguration().getGenerationNr();
-    int genI = new Random().nextInt(m_popSize);
     RandomGenerator generator = getGPConfiguration().getRandomGenerator();
     int minDepth = getGPConfiguration().getMinInitDepth();
     int maxDepth = getGPConfiguration().getMaxInitDepth();
-    for (int i = a_offset; i < m_popSize; i++) {
-      IGPProgram program = null;
-      // Vary depth dependent on run index.
-      // ----------------------------------
-      /**@todo add element of randomness*/
-      int depth = minDepth
-          + (maxDepth - minDepth) * i
-          / divisor;
+    IGPProgram program = null;
+    // Vary depth dependent on run index.
+    // ----------------------------------
+    /**@todo add element of randomness*/
+    int depth = minDepth
+        + (maxDepth - minDepth) * a_index
+        / divisor;
 
-      // Create new GP program.
-      // ----------------------
-      int tries = 0;
-      int maxTries = getGPConfiguration().getProgramCreationMaxtries();
-      do {
-        try {
-          // Randomize grow option as growing produces a valid program
-          // more likely than the full mode.
-          // ---------------------------------------------------------
-          boolean grow;
-          if (i % 2 == 0 || generator.nextInt(8) > 6) {
-            grow = true;
-          }
-          else {
-            grow = false;
-          }
-          program = create(i, a_types, a_argTypes, a_nodeSets,
-                           a_minDepths, a_maxDepths, depth, grow,
-                           a_maxNodes, a_fullModeAllowed, tries,
-                           a_programCreator);
-          if (program != null && getGPConfiguration().getPrototypeProgram() == null) {
-            // Remember a prototype of a valid program in case generation
-            // cannot find a valid program within some few tries
-            // --> then clone the prototype.
-            // Necessary if the maxNodes parameter is chosen small or a
-            // validator is used which is quite restrictive.
-            // ----------------------------------------------------------
-            getGPConfiguration().setPrototypeProgram(program);
-            LOGGER.info("Prototype program set");
-          }
-          else if (genNr % 5 == 0 && genNr > 0 && i == genI) {
-              /**@todo 5: make configurable*/
-            // Set prototype to new value after every some evolutions.
-            // -------------------------------------------------------
-            double protoFitness = getGPConfiguration().getPrototypeProgram().
-                getFitnessValue();
-            if (getGPConfiguration().getGPFitnessEvaluator().isFitter(program.
-                getFitnessValue(), protoFitness)) {
-              getGPConfiguration().setPrototypeProgram(program);
-            }
+    // Create new GP program.
+    // ----------------------
+    int tries = 0;
+    int duplicates = 0;
+    int maxTries = getGPConfiguration().getProgramCreationMaxtries();
+    do {
+      try {
+        // Randomize grow option as growing produces a valid program
+        // more likely than the full mode.
+        // ---------------------------------------------------------
+        boolean grow;
+        if (a_index % 2 == 0 || generator.nextInt(8) > 6) {
+          grow = true;
+        }
+        else {
+          grow = false;
+        }
+        program = create(a_index, a_types, a_argTypes, a_nodeSets,
+                         a_minDepths, a_maxDepths, depth, grow,
+                         a_maxNodes, a_fullModeAllowed, tries,
+                         a_programCreator);
+        if (a_created != null && program instanceof GPProgram) {
+          // Avoid structurally equal programs. Programs merely sharing the
+          // hash of a program created before are kept.
+          // --------------------------------------------------------------
+          GPProgram prog = (GPProgram) program;
+          long hash = prog.structuralHash();
+          GPProgramInfo previous = a_created.putIfAbsent(hash,
+              new GPProgramInfo(prog, hash, false));
+          if (previous != null && previous.matches(prog)
+              && duplicates++ < MAX_DUPLICATE_TRIES) {
+            continue;
           }
+        }
+        if (!a_updatePrototype) {
           break;
-        } catch (IllegalStateException iex) {
-          if (depth < maxDepth) {
-            depth = depth + generator.nextInt(2);
+        }
+        if (program != null && getGPConfiguration().getPrototypeProgram() == null) {
+          // Remember a prototype of a valid program in case generation
+          // cannot find a valid program within some few tries
+          // --> then clone the prototype.
+          // Necessary if the maxNodes parameter is chosen small or a
+          // validator is used which is quite restrictive.
+          // ----------------------------------------------------------
+          getGPConfiguration().setPrototypeProgram(program);
+          LOGGER.info("Prototype program set");
+        }
+        else if (a_genNr % 5 == 0 && a_genNr > 0 && a_index == a_genI) {
+            /**@todo 5: make configurable*/
+          // Set prototype to new value after every some evolutions.
+          // -------------------------------------------------------
+          double protoFitness = getGPConfiguration().getPrototypeProgram().
+              getFitnessValue();
+          if (getGPConfiguration().getGPFitnessEvaluator().isFitter(program.
+              getFitnessValue(), protoFitness)) {
+            getGPConfiguration().setPrototypeProgram(program);
           }
-          else {
-            depth = depth - generator.nextInt(4);
-            if (depth < minDepth) {
-                depth = minDepth;
-            }
+        }
+        break;
+      } catch (IllegalStateException iex) {
+        if (depth < maxDepth) {
+          depth = depth + generator.nextInt(2);
+        }
+        else {
+          depth = depth - generator.nextInt(4);
+          if (depth < minDepth) {
+              depth = minDepth;
           }
-          tries++;
-          if (maxTries >=0 && tries > maxTries || (i > a_offset && tries > 40)) {
-            IGPProgram prototype = getGPConfiguration().getPrototypeProgram();
-            if (prototype != null) {
-              ICloneHandler cloner = getGPConfiguration().getJGAPFactory().
-                  getCloneHandlerFor(prototype, null);
-              if (cloner != null) {
-                try {
-                  program = (IGPProgram) cloner.perform(prototype, null, null);
-                  if (warningPrototypeReused > 0) {
-                    // Only output once.
-                    // -----------------
-                    LOGGER.warn("Prototype program reused because random"
-                                + " program did not satisfy constraints");
-                    warningPrototypeReused++;
-                  }
-                  break;
-                } catch (Exception ex) {
-                  // Rethrow original error.
-                  // -----------------------
-                  throw iex;
+        }
+        tries++;
+        if (maxTries >=0 && tries > maxTries || (a_index > a_offset && tries > 40)) {
+          IGPProgram prototype = getGPConfiguration().getPrototypeProgram();
+          if (prototype != null) {
+            ICloneHandler cloner = getGPConfiguration().getJGAPFactory().
+                getCloneHandlerFor(prototype, null);
+            if (cloner != null) {
+              try {
+                program = (IGPProgram) cloner.perform(prototype, null, null);
+                if (warningPrototypeReused > 0) {
+                  // Only output once.
+                  // -----------------
+                  LOGGER.warn("Prototype program reused because random"
+                              + " program did not satisfy constraints");
+                  warningPrototypeReused++;
                 }
+                break;
+              } catch (Exception ex) {
+                // Rethrow original error.
+                // -----------------------
+                throw iex;
               }
-              else {
-                LOGGER.warn("Warning: no clone handler found for"
-                            + " prototype program type "
-                            + prototype);
-              }
             }
-            // Rethrow original error.
-            // -----------------------
-            throw iex;
+            else {
+              LOGGER.warn("Warning: no clone handler found for"
+                          + " prototype program type "
+                          + prototype);
+            }
           }
+          // Rethrow original error.
+          // -----------------------
+          throw iex;
         }
-      } while (true);
-      setGPProgram(i, program);
-    }
-    setChanged(true);
+      }
+    } while (true);
+    return program;
   }
 
   /**
@@ -508,7 +804,14 @@ public class GPPopulation
       IGPProgram program;
       ICloneHandler cloner = getGPConfiguration().getJGAPFactory().
           getCloneHandlerFor(m_fittestToAdd, null);
-      if (cloner == null) {
+      if (m_fittestToAdd instanceof GPProgram
+          && ( (GPProgram) m_fittestToAdd).isFrozen()) {
+        // Share the immutable nodes of a snapshot, but keep programs of the
+        // population modifiable.
+        // -----------------------------------------------------------------
+        program = ( (GPProgram) m_fittestToAdd).modifiableCopy();
+      }
+      else if (cloner == null) {
         program = (IGPProgram) m_fittestToAdd;
       }
       else {
@@ -660,6 +963,10 @@ public class GPPopulation
    * Determines the fittest GPProgram in the population (the one with the
    * highest fitness value) and memorizes it. This is an optimized version
    * compared to calling determineFittesPrograms(1).
+   * <p>
+   * Since 3.7, a GPProgram is not cloned anymore. A frozen snapshot of it is
+   * returned instead (see GPProgram.snapshot()), which shares the immutable
+   * nodes with the program of the population. The latter stays modifiable.
    *
    * @return the fittest GPProgram of the population
    *
@@ -689,7 +996,12 @@ public class GPPopulation
       }
     }
     setChanged(false);
-    if (m_fittestProgram != null) {
+    if (m_fittestProgram instanceof GPProgram) {
+      // Copy-on-write snapshot instead of a deep clone.
+      // -----------------------------------------------
+      m_fittestProgram = ( (GPProgram) m_fittestProgram).snapshot();
+    }
+    else if (m_fittestProgram != null) {
       IJGAPFactory factory = getGPConfiguration().getJGAPFactory();
       if (factory == null) {
         throw new IllegalStateException("JGAPFactory must not be null!");
@@ -792,6 +1104,26 @@ public class GPPopulation
     return m_fitnessRank[a_index];
   }
 
+  /**
+   * Returns the roulette wheel for selecting programs proportionally to their
+   * fitness. The wheel is built once with the fitness evaluator of the
+   * configuration and reused until the programs of the population change.
+   * Thus, selecting n programs costs O(n + population size) instead of
+   * O(n * population size).
+   *
+   * @return the roulette wheel for the current programs
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized GPRouletteWheel getRouletteWheel() {
+    if (m_rouletteWheel == null) {
+      m_rouletteWheel = new GPRouletteWheel(m_programs,
+          getGPConfiguration().getGPFitnessEvaluator());
+    }
+    return m_rouletteWheel;
+  }
+
   /**
    * Mark that for the population the fittest program may have changed.
    *
@@ -803,6 +1135,9 @@ public class GPPopulation
    */
   protected void setChanged(final boolean a_changed) {
     m_changed = a_changed;
+    if (a_changed) {
+      m_rouletteWheel = null;
+    }
     setSorted(false);
   }
 
@@ -937,6 +1272,7 @@ public class GPPopulation
     m_changed = true;
     m_sorted = true;
     m_fittestProgram = null;
+    m_rouletteWheel = null;
   }
 
   public boolean isFirstEmpty() {
@@ -16,6 +16,7 @@ import org.jgap.IBusinessKey;
 import org.jgap.ICloneHandler;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.gp.CommandGene;
+import org.jgap.gp.GPFitnessFunction;
 import org.jgap.gp.GPProgramBase;
 import org.jgap.gp.IGPProgram;
 import org.jgap.gp.function.ADF;
@@ -47,6 +48,20 @@ public class GPProgram
    */
   private ProgramChromosome[] m_chromosomes;
 
+  /**
+   * Indicates that this program must not be modified anymore, see freeze().
+   *
+   * @since 3.7
+   */
+  private boolean m_frozen;
+
+  /**
+   * Structural hash of a frozen program, computed on first request.
+   *
+   * @since 3.7
+   */
+  private transient Long m_frozenHash;
+
   /**
    * Default constructor, only for dynamic instantiation.
    *
@@ -150,9 +165,105 @@ public class GPProgram
    * @since 3.0
    */
   public void setChromosome(int a_index, ProgramChromosome a_chrom) {
+    if (m_frozen) {
+      throw new IllegalStateException("Frozen program must not be modified,"
+                                      + " modify a clone instead!");
+    }
     m_chromosomes[a_index] = a_chrom;
   }
 
+  /**
+   * Marks this program and its chromosomes as immutable snapshot. A frozen
+   * program can be kept as elite without cloning it. Genetic operators leave
+   * frozen programs untouched and modify copies instead (copy-on-write).
+   * Clones of a frozen program are not frozen.
+   * <p>
+   * The fitness value may still be set. Programs of a population are not
+   * frozen by JGAP, which freezes snapshots instead, see snapshot().
+   *
+   * @since 3.7
+   */
+  public void freeze() {
+    if (m_frozen) {
+      return;
+    }
+    for (int i = 0; i < m_chromosomes.length; i++) {
+      if (m_chromosomes[i] != null) {
+        m_chromosomes[i].freeze();
+      }
+    }
+    m_frozen = true;
+  }
+
+  /**
+   * Returns a frozen snapshot of this program, see freeze(). Unlike clone(),
+   * the snapshot shares the immutable nodes with this program, only the node
+   * arrays and the mutable nodes are copied. This program stays modifiable.
+   * A frozen program is its own snapshot.
+   *
+   * @return frozen copy of this program
+   *
+   * @since 3.7
+   */
+  public GPProgram snapshot() {
+    if (m_frozen) {
+      return this;
+    }
+    GPProgram result = copy(false);
+    result.freeze();
+    return result;
+  }
+
+  /**
+   * Returns a copy of this program which is not frozen, sharing the immutable
+   * nodes with this program like snapshot(). Used for putting a snapshot
+   * back into a population.
+   *
+   * @return modifiable copy of this program
+   *
+   * @since 3.7
+   */
+  public GPProgram modifiableCopy() {
+    return copy(true);
+  }
+
+  private GPProgram copy(boolean a_cloneMutableNodes) {
+    try {
+      GPProgram result = new GPProgram(getGPConfiguration(),
+                                       m_chromosomes.length);
+      result.setTypes(getTypes());
+      result.setArgTypes(getArgTypes());
+      result.setNodeSets(getNodeSets());
+      result.setMinDepths(getMinDepths());
+      result.setMaxDepths(getMaxDepths());
+      result.setMaxNodes(getMaxNodes());
+      result.setFitnessValue(getFitnessValueDirectly());
+      result.setApplicationData(getApplicationData());
+      for (int i = 0; i < m_chromosomes.length; i++) {
+        if (m_chromosomes[i] == null) {
+          break;
+        }
+        ProgramChromosome chrom = m_chromosomes[i].copy(result);
+        if (a_cloneMutableNodes) {
+          chrom.cloneMutableNodes();
+        }
+        result.m_chromosomes[i] = chrom;
+      }
+      return result;
+    } catch (InvalidConfigurationException iex) {
+      throw new CloneException(iex);
+    }
+  }
+
+  /**
+   * @return true if this program must not be modified anymore, see freeze()
+   *
+   * @since 3.7
+   */
+  public boolean isFrozen() {
+    return m_frozen;
+  }
+
   /**
    * Initialize the chromosomes within this GP program using the grow or the
    * full method.
@@ -220,18 +331,6 @@ public class GPProgram
                                     getNodeSet(i), false, a_tries);
       }
     }
-    if (getGPConfiguration().isUseProgramCache()) {
-      // Cache fitness value by checking if a program with same
-      // representation was computed before.
-      // ------------------------------------------------------
-      GPProgramInfo pcInfo = getGPConfiguration().readProgramCache(this);
-      if (pcInfo == null) {
-        pcInfo = putToCache(this);
-      }
-      else {
-        setFitnessValue(pcInfo.getFitnessValue());
-      }
-    }
   }
 
   /**
@@ -292,17 +391,83 @@ public class GPProgram
       }
       chrom.redepth();
     }
-    if (getGPConfiguration().isUseProgramCache()) {
-      // Cache fitness value by checking if a program with same
-      // representation was computed before.
-      GPProgramInfo pcInfo = getGPConfiguration().readProgramCache(this);
-      if (pcInfo == null) {
-        pcInfo = putToCache(this);
+  }
+
+  /**
+   * Calculates the fitness value of this program. If the program cache is
+   * used, a structurally equal program evaluated before provides the fitness
+   * value instead, otherwise the computed value is put into the cache. The
+   * value is not cached if an execution has been aborted because of its time
+   * budget or a cancellation, as the program may succeed when executed again.
+   *
+   * @return fitness value of this program
+   *
+   * @since 3.7
+   */
+  public double calcFitnessValue() {
+    GPConfiguration conf = getGPConfiguration();
+    if (!conf.isUseProgramCache()) {
+      return super.calcFitnessValue();
+    }
+    GPProgramInfo pcInfo = conf.readProgramCache(this);
+    if (pcInfo != null) {
+      double fitness = pcInfo.getFitnessValue();
+      setFitnessValue(fitness);
+      if (Double.isInfinite(fitness)) {
+        return GPFitnessFunction.NO_FITNESS_VALUE;
       }
-      else {
-        setFitnessValue(pcInfo.getFitnessValue());
+      return fitness;
+    }
+    ExecutionGuard.clearTransientAbort();
+    double fitness = super.calcFitnessValue();
+    if (!ExecutionGuard.clearTransientAbort()) {
+      putToCache(this);
+    }
+    return fitness;
+  }
+
+  /**
+   * @return hash of the structure of all chromosomes, see
+   * ProgramChromosome.structuralHash(). If a program simplifier is
+   * configured, the simplified chromosomes are considered, thus programs
+   * differing only in redundant code get the same hash. For frozen programs,
+   * the hash is computed only once
+   *
+   * @since 3.7
+   */
+  public long structuralHash() {
+    if (m_frozen) {
+      Long frozenHash = m_frozenHash;
+      if (frozenHash == null) {
+        frozenHash = Long.valueOf(computeStructuralHash());
+        m_frozenHash = frozenHash;
       }
+      return frozenHash.longValue();
     }
+    return computeStructuralHash();
+  }
+
+  private long computeStructuralHash() {
+    long hash = 17;
+    for (int i = 0; i < m_chromosomes.length; i++) {
+      hash = hash * 0x100000001b3L + getStructuralChromosome(i).
+          structuralHash();
+    }
+    return hash;
+  }
+
+  /**
+   * @param a_index index of the chromosome
+   * @return the chromosome considered for the structural hash, see
+   * structuralHash()
+   *
+   * @since 3.7
+   */
+  ProgramChromosome getStructuralChromosome(int a_index) {
+    if (getGPConfiguration().getProgramSimplifier() != null) {
+      return getExecutable(a_index);
+    }
+    return m_chromosomes[a_index];
   }
 
   /**
@@ -394,8 +559,7 @@ public class GPProgram
    * @since 3.0
    */
   public int execute_int(int a_chromosomeNum, Object[] a_args) {
-    m_chromosomes[a_chromosomeNum].setIndividual(this);
-    return m_chromosomes[a_chromosomeNum].execute_int(a_args);
+    return getExecutable(a_chromosomeNum).execute_int(a_args);
   }
 
   /**
@@ -409,8 +573,7 @@ public class GPProgram
    * @since 3.0
    */
   public float execute_float(int a_chromosomeNum, Object[] a_args) {
-    m_chromosomes[a_chromosomeNum].setIndividual(this);
-    return m_chromosomes[a_chromosomeNum].execute_float(a_args);
+    return getExecutable(a_chromosomeNum).execute_float(a_args);
   }
 
   /**
@@ -424,8 +587,7 @@ public class GPProgram
    * @since 3.0
    */
   public double execute_double(int a_chromosomeNum, Object[] a_args) {
-    m_chromosomes[a_chromosomeNum].setIndividual(this);
-    return m_chromosomes[a_chromosomeNum].execute_double(a_args);
+    return getExecutable(a_chromosomeNum).execute_double(a_args);
   }
 
   /**
@@ -439,8 +601,7 @@ public class GPProgram
    * @since 3.2
    */
   public boolean execute_boolean(int a_chromosomeNum, Object[] a_args) {
-    m_chromosomes[a_chromosomeNum].setIndividual(this);
-    return m_chromosomes[a_chromosomeNum].execute_boolean(a_args);
+    return getExecutable(a_chromosomeNum).execute_boolean(a_args);
   }
 
   /**
@@ -454,8 +615,7 @@ public class GPProgram
    * @since 3.0
    */
   public Object execute_object(int a_chromosomeNum, Object[] a_args) {
-    m_chromosomes[a_chromosomeNum].setIndividual(this);
-    return m_chromosomes[a_chromosomeNum].execute_object(a_args);
+    return getExecutable(a_chromosomeNum).execute_object(a_args);
   }
 
   /**
@@ -468,8 +628,24 @@ public class GPProgram
    * @since 3.0
    */
   public void execute_void(int a_chromosomeNum, Object[] a_args) {
-    m_chromosomes[a_chromosomeNum].setIndividual(this);
-    m_chromosomes[a_chromosomeNum].execute_void(a_args);
+    getExecutable(a_chromosomeNum).execute_void(a_args);
+  }
+
+  /**
+   * @param a_chromosomeNum the index of the chromosome to execute
+   * @return the chromosome to execute, which is its simplified form if a
+   * program simplifier is configured
+   *
+   * @since 3.7
+   */
+  protected ProgramChromosome getExecutable(int a_chromosomeNum) {
+    ProgramChromosome chrom = m_chromosomes[a_chromosomeNum];
+    chrom.setIndividual(this);
+    ProgramChromosome simplified = chrom.getSimplified();
+    if (simplified != chrom) {
+      simplified.setIndividual(this);
+    }
+    return simplified;
   }
 
   /**
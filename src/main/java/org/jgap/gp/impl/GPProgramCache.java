@@ -0,0 +1,220 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of GP program fitness values, keyed by the structural hash of
+ * a program (see GPProgram.structuralHash()).
+ * <p>
+ * The cache is split into segments, each guarded by its own lock and evicting
+ * its least recently used entry when full. Thus, it may be accessed by
+ * concurrent fitness evaluation. Hits and misses are counted to tell whether
+ * caching pays off for a given problem.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GPProgramCache {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Default maximum number of cached programs.
+   */
+  public final static int DEFAULT_CAPACITY = 10000;
+
+  private final static int SEGMENTS = 16;
+
+  private final Segment[] m_segments;
+
+  private final int m_capacity;
+
+  private final AtomicLong m_hits = new AtomicLong();
+
+  private final AtomicLong m_misses = new AtomicLong();
+
+  private final AtomicLong m_evictions = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param a_capacity maximum number of programs to cache
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public GPProgramCache(int a_capacity) {
+    if (a_capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive!");
+    }
+    m_capacity = a_capacity;
+    int segments = Math.min(SEGMENTS, a_capacity);
+    int perSegment = (a_capacity + segments - 1) / segments;
+    m_segments = new Segment[segments];
+    for (int i = 0; i < segments; i++) {
+      m_segments[i] = new Segment(perSegment);
+    }
+  }
+
+  /**
+   * Looks up a program by its structural hash and counts a hit or a miss.
+   *
+   * @param a_hash structural hash of the program
+   * @return cached info, or null if not found
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public GPProgramInfo get(long a_hash) {
+    Segment segment = segmentFor(a_hash);
+    GPProgramInfo result;
+    synchronized (segment) {
+      result = segment.get(a_hash);
+    }
+    if (result == null) {
+      m_misses.incrementAndGet();
+    }
+    else {
+      m_hits.incrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * Stores info about a program. When the cache is full, the least recently
+   * used entry of the same segment is evicted.
+   *
+   * @param a_hash structural hash of the program
+   * @param a_info info to cache
+   * @return info previously cached for the hash, or null
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public GPProgramInfo put(long a_hash, GPProgramInfo a_info) {
+    Segment segment = segmentFor(a_hash);
+    synchronized (segment) {
+      return segment.put(a_hash, a_info);
+    }
+  }
+
+  /**
+   * Removes all entries and resets the statistics.
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void clear() {
+    for (int i = 0; i < m_segments.length; i++) {
+      synchronized (m_segments[i]) {
+        m_segments[i].clear();
+      }
+    }
+    m_hits.set(0);
+    m_misses.set(0);
+    m_evictions.set(0);
+  }
+
+  /**
+   * @return number of cached programs
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < m_segments.length; i++) {
+      synchronized (m_segments[i]) {
+        size += m_segments[i].size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return maximum number of programs to cache
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getCapacity() {
+    return m_capacity;
+  }
+
+  public long getHits() {
+    return m_hits.get();
+  }
+
+  public long getMisses() {
+    return m_misses.get();
+  }
+
+  public long getEvictions() {
+    return m_evictions.get();
+  }
+
+  /**
+   * @return share of lookups that found a cached program, between 0 and 1
+   * (0 if there were no lookups yet)
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public double getHitRate() {
+    long hits = m_hits.get();
+    long total = hits + m_misses.get();
+    if (total == 0) {
+      return 0.0d;
+    }
+    return (double) hits / total;
+  }
+
+  public String toString() {
+    return "Program cache: " + size() + "/" + m_capacity + " entries, "
+        + getHits() + " hits, " + getMisses() + " misses, "
+        + getEvictions() + " evictions, hit rate "
+        + Math.round(getHitRate() * 1000) / 10.0d + "%";
+  }
+
+  private Segment segmentFor(long a_hash) {
+    int h = (int) (a_hash ^ (a_hash >>> 32));
+    h ^= h >>> 16;
+    return m_segments[ (h & 0x7fffffff) % m_segments.length];
+  }
+
+  /**
+   * Part of the cache guarded by its own lock, holding entries in access
+   * order.
+   *
+   * @since 3.7
+   */
+  private class Segment
+      extends LinkedHashMap<Long, GPProgramInfo> {
+    private final int m_maxSize;
+
+    Segment(int a_maxSize) {
+      super(16, 0.75f, true);
+      m_maxSize = a_maxSize;
+    }
+
+    protected boolean removeEldestEntry(Map.Entry<Long,
+                                        GPProgramInfo> a_eldest) {
+      if (size() > m_maxSize) {
+        m_evictions.incrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+}
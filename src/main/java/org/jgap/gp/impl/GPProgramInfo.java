@@ -9,6 +9,9 @@
  */
 package org.jgap.gp.impl;
 
+import org.jgap.gp.CommandGene;
+import org.jgap.gp.terminal.Terminal;
+
 /**
  * Holds information about a program. Used for caching GP programs during GP
  * evolution.
@@ -26,16 +29,125 @@ public class GPProgramInfo {
 
   private boolean m_found;
 
+  private long m_structuralHash;
+
+  /**
+   * Nodes, node depths and terminal values of each chromosome, to tell apart
+   * programs with the same structural hash.
+   */
+  private CommandGene[][] m_nodes;
+
+  private int[][] m_depths;
+
+  private long[][] m_values;
+
   public GPProgramInfo(GPProgram a_prog, boolean a_found) {
     m_fitnessValue = a_prog.getFitnessValueDirectly();
     m_toStringNorm = a_prog.toStringNorm(0);
+    m_structuralHash = a_prog.structuralHash();
     m_found = a_found;
   }
 
+  /**
+   * Constructor not rendering the program as a string.
+   *
+   * @param a_prog the program to hold information about
+   * @param a_structuralHash structural hash of the program
+   * @param a_found true: program was found in the cache
+   *
+   * @since 3.7
+   */
+  public GPProgramInfo(GPProgram a_prog, long a_structuralHash,
+                       boolean a_found) {
+    m_fitnessValue = a_prog.getFitnessValueDirectly();
+    m_structuralHash = a_structuralHash;
+    m_found = a_found;
+    int size = a_prog.size();
+    m_nodes = new CommandGene[size][];
+    m_depths = new int[size][];
+    m_values = new long[size][];
+    for (int i = 0; i < size; i++) {
+      ProgramChromosome chrom = a_prog.getStructuralChromosome(i);
+      int len = chrom.size();
+      CommandGene[] nodes = new CommandGene[len];
+      System.arraycopy(chrom.getFunctions(), 0, nodes, 0, len);
+      int[] depths = new int[len];
+      long[] values = new long[len];
+      for (int j = 0; j < len; j++) {
+        depths[j] = chrom.getNodeDepth(j);
+        if (nodes[j] instanceof Terminal) {
+          // Terminals may be mutated later on.
+          // ----------------------------------
+          values[j] = ( (Terminal) nodes[j]).getValueBits();
+        }
+      }
+      m_nodes[i] = nodes;
+      m_depths[i] = depths;
+      m_values[i] = values;
+    }
+  }
+
+  /**
+   * @param a_prog a program with the structural hash of this info
+   * @return true if the program is structurally equal to the program this
+   * info was created for, false on a hash collision. Always true if the
+   * structure was not recorded
+   *
+   * @since 3.7
+   */
+  public boolean matches(GPProgram a_prog) {
+    if (m_nodes == null) {
+      return true;
+    }
+    if (a_prog.size() != m_nodes.length) {
+      return false;
+    }
+    for (int i = 0; i < m_nodes.length; i++) {
+      ProgramChromosome chrom = a_prog.getStructuralChromosome(i);
+      CommandGene[] nodes = m_nodes[i];
+      if (chrom.size() != nodes.length) {
+        return false;
+      }
+      CommandGene[] others = chrom.getFunctions();
+      for (int j = 0; j < nodes.length; j++) {
+        if (chrom.getNodeDepth(j) != m_depths[i][j]
+            || !isSameNode(nodes[j], m_values[i][j], others[j])) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSameNode(CommandGene a_node, long a_value,
+                                    CommandGene a_other) {
+    if (a_node.getClass() != a_other.getClass()
+        || a_node.getReturnType() != a_other.getReturnType()
+        || a_node.getSubReturnType() != a_other.getSubReturnType()) {
+      return false;
+    }
+    if (a_other instanceof Terminal) {
+      return a_value == ( (Terminal) a_other).getValueBits();
+    }
+    // Parameters of other nodes are only shown by the string
+    // representation.
+    // -------------------------------------------------------
+    return a_node == a_other || a_node.toString().equals(a_other.toString());
+  }
+
   public String getToStringNorm() {
     return m_toStringNorm;
   }
 
+  /**
+   * @return structural hash of the program, see GPProgram.structuralHash()
+   *
+   * @since 3.7
+   */
+  public long getStructuralHash() {
+    return m_structuralHash;
+  }
+
   public double getFitnessValue() {
     return m_fitnessValue;
   }
@@ -52,7 +164,7 @@ public class GPProgramInfo {
     GPProgramInfo other = (GPProgramInfo) a_other;
     if (m_toStringNorm == null) {
       if (other.m_toStringNorm == null) {
-        return true;
+        return m_structuralHash == other.m_structuralHash;
       }
       return false;
     }
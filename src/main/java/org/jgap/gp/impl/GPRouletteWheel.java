@@ -0,0 +1,231 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.io.Serializable;
+
+import org.jgap.RandomGenerator;
+import org.jgap.gp.IGPFitnessEvaluator;
+import org.jgap.gp.IGPProgram;
+
+/**
+ * Roulette wheel for selecting programs of a population proportionally to
+ * their fitness. Built once per population (see
+ * GPPopulation.getRouletteWheel()), each draw then takes constant time using
+ * the alias method.
+ * <p>
+ * The weight of a program depends on the fitness evaluator:
+ * <ul>
+ * <li>higher fitness values are fitter (e.g. DefaultGPFitnessEvaluator): the
+ * weight is the fitness value</li>
+ * <li>lower fitness values are fitter (e.g. DeltaGPFitnessEvaluator): the
+ * weight is the adjusted fitness 1 / (1 + fitness value)</li>
+ * </ul>
+ * If there are negative fitness values, all values are shifted so that the
+ * smallest one is zero. Programs with a fitness value not being a number or
+ * infinite get weight zero. If all weights are zero, programs are selected
+ * uniformly.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GPRouletteWheel
+    implements Serializable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final IGPProgram[] m_programs;
+
+  private final double[] m_weights;
+
+  private final double m_totalWeight;
+
+  /**
+   * Probability to keep a slot drawn instead of taking its alias.
+   */
+  private final double[] m_keep;
+
+  private final int[] m_alias;
+
+  /**
+   * Builds the roulette wheel.
+   *
+   * @param a_programs the programs to select from, null entries are ignored
+   * @param a_evaluator the fitness evaluator determining whether higher or
+   * lower fitness values are better
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public GPRouletteWheel(IGPProgram[] a_programs,
+                         IGPFitnessEvaluator a_evaluator) {
+    int count = 0;
+    for (int i = 0; i < a_programs.length; i++) {
+      if (a_programs[i] != null) {
+        count++;
+      }
+    }
+    if (count == 0) {
+      throw new IllegalArgumentException("No programs to select from!");
+    }
+    m_programs = new IGPProgram[count];
+    double[] fitness = new double[count];
+    double min = 0;
+    count = 0;
+    for (int i = 0; i < a_programs.length; i++) {
+      if (a_programs[i] != null) {
+        m_programs[count] = a_programs[i];
+        fitness[count] = a_programs[i].getFitnessValue();
+        if (isValid(fitness[count]) && fitness[count] < min) {
+          min = fitness[count];
+        }
+        count++;
+      }
+    }
+    boolean higherIsFitter = a_evaluator.isFitter(2.0d, 1.0d);
+    m_weights = new double[count];
+    double total = 0;
+    for (int i = 0; i < count; i++) {
+      if (!isValid(fitness[i])) {
+        continue;
+      }
+      double value = fitness[i] - min;
+      if (higherIsFitter) {
+        m_weights[i] = value;
+      }
+      else {
+        m_weights[i] = 1.0d / (1.0d + value);
+      }
+      total += m_weights[i];
+    }
+    if (total <= 0 || !isValid(total)) {
+      // Select uniformly.
+      // -----------------
+      for (int i = 0; i < count; i++) {
+        m_weights[i] = 1.0d;
+      }
+      total = count;
+    }
+    m_totalWeight = total;
+    m_keep = new double[count];
+    m_alias = new int[count];
+    buildAliasTable();
+  }
+
+  /**
+   * Builds the alias table (Vose's method).
+   */
+  private void buildAliasTable() {
+    int n = m_weights.length;
+    double[] scaled = new double[n];
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int ns = 0;
+    int nl = 0;
+    for (int i = 0; i < n; i++) {
+      scaled[i] = m_weights[i] * n / m_totalWeight;
+      if (scaled[i] < 1.0d) {
+        small[ns++] = i;
+      }
+      else {
+        large[nl++] = i;
+      }
+    }
+    while (ns > 0 && nl > 0) {
+      int s = small[--ns];
+      int l = large[--nl];
+      m_keep[s] = scaled[s];
+      m_alias[s] = l;
+      scaled[l] = scaled[l] + scaled[s] - 1.0d;
+      if (scaled[l] < 1.0d) {
+        small[ns++] = l;
+      }
+      else {
+        large[nl++] = l;
+      }
+    }
+    // Remaining slots are full, apart from rounding errors.
+    // -----------------------------------------------------
+    while (nl > 0) {
+      int l = large[--nl];
+      m_keep[l] = 1.0d;
+      m_alias[l] = l;
+    }
+    while (ns > 0) {
+      int s = small[--ns];
+      m_keep[s] = 1.0d;
+      m_alias[s] = s;
+    }
+  }
+
+  /**
+   * Selects a program proportionally to its weight.
+   *
+   * @param a_random the random generator to use
+   * @return the program selected
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public IGPProgram select(RandomGenerator a_random) {
+    return m_programs[selectIndex(a_random)];
+  }
+
+  /**
+   * @param a_random the random generator to use
+   * @return index of the program selected proportionally to its weight
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int selectIndex(RandomGenerator a_random) {
+    int slot = a_random.nextInt(m_keep.length);
+    if (a_random.nextDouble() < m_keep[slot]) {
+      return slot;
+    }
+    return m_alias[slot];
+  }
+
+  /**
+   * @param a_index index of a program
+   * @return probability of the program to be selected
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public double getProbability(int a_index) {
+    return m_weights[a_index] / m_totalWeight;
+  }
+
+  /**
+   * @param a_index index of a program
+   * @return the program
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public IGPProgram getProgram(int a_index) {
+    return m_programs[a_index];
+  }
+
+  /**
+   * @return number of programs to select from
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int size() {
+    return m_programs.length;
+  }
+
+  private static boolean isValid(double a_value) {
+    return !Double.isNaN(a_value) && !Double.isInfinite(a_value);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jgap.gp.CommandDynamicArity;
+import org.jgap.gp.CommandGene;
+import org.jgap.gp.function.ADF;
+import org.jgap.gp.function.SubProgram;
+
+/**
+ * Immutable lookup tables of the nodes of a function set, per return type,
+ * sub return type and kind (terminal, function, or both). Used when creating
+ * programs to pick a node by a single array draw instead of scanning the
+ * whole function set for each node.
+ * <p>
+ * Within each table, the nodes keep the order of the function set. Thus,
+ * drawing from a table yields the same node as drawing from the list built by
+ * scanning the function set.
+ * <p>
+ * Only function sets whose nodes have a fixed arity can be indexed, see
+ * isIndexable(CommandGene[]). Obtain instances via
+ * GPConfiguration.getNodeSetIndex(CommandGene[]).
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class NodeSetIndex {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final static int TERMINALS = 0;
+
+  private final static int FUNCTIONS = 1;
+
+  private final static int BOTH = 2;
+
+  private final static CommandGene[] EMPTY = new CommandGene[0];
+
+  /**
+   * Tables per return type, for any sub return type.
+   */
+  private final Map<Class, CommandGene[][]> m_byType;
+
+  /**
+   * Tables per return type and sub return type.
+   */
+  private final Map<Class, Map<Integer, CommandGene[][]>> m_bySubType;
+
+  /**
+   * Builds the tables for a function set.
+   *
+   * @param a_functionSet the function set to index, must be indexable
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public NodeSetIndex(CommandGene[] a_functionSet) {
+    if (!isIndexable(a_functionSet)) {
+      throw new IllegalArgumentException("Function set contains nodes with"
+                                         + " variable arity");
+    }
+    Map<Class, List<CommandGene>> byType =
+        new LinkedHashMap<Class, List<CommandGene>>();
+    for (int i = 0; i < a_functionSet.length; i++) {
+      CommandGene node = a_functionSet[i];
+      List<CommandGene> nodes = byType.get(node.getReturnType());
+      if (nodes == null) {
+        nodes = new ArrayList<CommandGene>();
+        byType.put(node.getReturnType(), nodes);
+      }
+      nodes.add(node);
+    }
+    m_byType = new HashMap<Class, CommandGene[][]>();
+    m_bySubType = new HashMap<Class, Map<Integer, CommandGene[][]>>();
+    for (Map.Entry<Class, List<CommandGene>> entry : byType.entrySet()) {
+      List<CommandGene> nodes = entry.getValue();
+      m_byType.put(entry.getKey(), createTables(nodes, 0));
+      Map<Integer, CommandGene[][]> subTables =
+          new HashMap<Integer, CommandGene[][]>();
+      for (CommandGene node : nodes) {
+        Integer subType = Integer.valueOf(node.getSubReturnType());
+        if (subType.intValue() != 0 && !subTables.containsKey(subType)) {
+          subTables.put(subType, createTables(nodes, subType.intValue()));
+        }
+      }
+      m_bySubType.put(entry.getKey(), subTables);
+    }
+  }
+
+  /**
+   * Returns the candidates for a node, in the order of the function set. The
+   * result is the same as determined by ProgramChromosome.selectNode without a
+   * single node validator.
+   *
+   * @param a_returnType the return type of the node
+   * @param a_subReturnType the sub return type of the node, 0 for any
+   * @param a_function true to choose a function, false to choose a terminal
+   * @param a_growing true to also consider terminals if a_function is true
+   * @return the candidates, must not be modified
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public CommandGene[] getNodes(Class a_returnType, int a_subReturnType,
+                                boolean a_function, boolean a_growing) {
+    CommandGene[][] tables;
+    if (a_subReturnType == 0) {
+      tables = m_byType.get(a_returnType);
+    }
+    else {
+      Map<Integer, CommandGene[][]> subTables = m_bySubType.get(a_returnType);
+      tables = subTables == null ? null
+          : subTables.get(Integer.valueOf(a_subReturnType));
+    }
+    if (tables == null) {
+      return EMPTY;
+    }
+    if (!a_function) {
+      return tables[TERMINALS];
+    }
+    return a_growing ? tables[BOTH] : tables[FUNCTIONS];
+  }
+
+  /**
+   * A function set can be indexed if the arity of its nodes neither changes
+   * during evolution nor depends on the individual.
+   *
+   * @param a_functionSet the function set to check
+   * @return true if the function set can be indexed
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static boolean isIndexable(CommandGene[] a_functionSet) {
+    for (int i = 0; i < a_functionSet.length; i++) {
+      CommandGene node = a_functionSet[i];
+      if (node == null || node instanceof CommandDynamicArity
+          || node instanceof SubProgram || node instanceof ADF) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static CommandGene[][] createTables(List<CommandGene> a_nodes,
+      int a_subReturnType) {
+    List<CommandGene> terminals = new ArrayList<CommandGene>();
+    List<CommandGene> functions = new ArrayList<CommandGene>();
+    List<CommandGene> both = new ArrayList<CommandGene>();
+    for (CommandGene node : a_nodes) {
+      if (a_subReturnType != 0 && node.getSubReturnType() != a_subReturnType) {
+        continue;
+      }
+      if (node.getArity(null) == 0) {
+        terminals.add(node);
+      }
+      else {
+        functions.add(node);
+      }
+      both.add(node);
+    }
+    CommandGene[][] tables = new CommandGene[3][];
+    tables[TERMINALS] = terminals.toArray(new CommandGene[terminals.size()]);
+    tables[FUNCTIONS] = functions.toArray(new CommandGene[functions.size()]);
+    tables[BOTH] = both.toArray(new CommandGene[both.size()]);
+    return tables;
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.jgap.gp.CommandDynamicArity;
+import org.jgap.gp.CommandGene;
+import org.jgap.gp.IMutateable;
+import org.jgap.gp.function.ADF;
+import org.jgap.gp.function.SubProgram;
+import org.jgap.gp.terminal.Terminal;
+import org.jgap.util.ICloneable;
+
+/**
+ * Table of nodes shared by compact programs (see CompactProgram), which
+ * refer to a node by its index (opcode) in this table.
+ * <p>
+ * Nodes are interned: equal nodes get the same opcode. Two nodes are
+ * considered equal if they are of the same class, have the same return type
+ * and sub return type and the same string representation. For terminals
+ * holding an ephemeral random constant (Terminal), the value is ignored, as
+ * it is stored per node in the compact program.
+ * <p>
+ * The table only grows; an opcode, once assigned, always refers to the same
+ * node. Mutable nodes are copied when added, and nodes in the table must not
+ * be modified. Obtain the table of a configuration via
+ * GPConfiguration.getNodeTable().
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class NodeTable
+    implements Serializable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Entries of the table, replaced as a whole when a node is added.
+   */
+  private volatile Entries m_entries = new Entries(new CommandGene[0],
+      new int[0], new boolean[0]);
+
+  private transient Map<CommandGene, Integer> m_byIdentity;
+
+  private transient Map<String, Integer> m_byKey;
+
+  /**
+   * Returns the opcode of the given node, adding the node to the table if no
+   * equal node is contained yet.
+   *
+   * @param a_node the node to intern
+   * @return the opcode of the node
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized int intern(CommandGene a_node) {
+    if (!isSupported(a_node)) {
+      throw new IllegalArgumentException("Node with variable arity not"
+                                         + " supported: " + a_node);
+    }
+    if (m_byIdentity == null) {
+      rebuildMaps();
+    }
+    // Mutable nodes may change after having been interned, thus they are
+    // looked up by key only.
+    // ------------------------------------------------------------------
+    boolean mutable = a_node instanceof IMutateable;
+    Integer opcode;
+    if (!mutable) {
+      opcode = m_byIdentity.get(a_node);
+      if (opcode != null) {
+        return opcode.intValue();
+      }
+    }
+    String key = getKey(a_node);
+    opcode = m_byKey.get(key);
+    if (opcode == null) {
+      CommandGene node = a_node;
+      if (mutable && node instanceof ICloneable) {
+        // Keep the table immutable.
+        // -------------------------
+        node = (CommandGene) ( (ICloneable) node).clone();
+      }
+      opcode = Integer.valueOf(add(node));
+      m_byKey.put(key, opcode);
+    }
+    if (!mutable) {
+      m_byIdentity.put(a_node, opcode);
+    }
+    return opcode.intValue();
+  }
+
+  private int add(CommandGene a_node) {
+    Entries old = m_entries;
+    int n = old.m_nodes.length;
+    CommandGene[] nodes = new CommandGene[n + 1];
+    int[] arities = new int[n + 1];
+    boolean[] constants = new boolean[n + 1];
+    System.arraycopy(old.m_nodes, 0, nodes, 0, n);
+    System.arraycopy(old.m_arities, 0, arities, 0, n);
+    System.arraycopy(old.m_constants, 0, constants, 0, n);
+    nodes[n] = a_node;
+    arities[n] = a_node.getArity(null);
+    constants[n] = isConstant(a_node);
+    m_entries = new Entries(nodes, arities, constants);
+    return n;
+  }
+
+  private void rebuildMaps() {
+    m_byIdentity = new IdentityHashMap<CommandGene, Integer>();
+    m_byKey = new HashMap<String, Integer>();
+    CommandGene[] nodes = m_entries.m_nodes;
+    for (int i = 0; i < nodes.length; i++) {
+      m_byIdentity.put(nodes[i], Integer.valueOf(i));
+      m_byKey.put(getKey(nodes[i]), Integer.valueOf(i));
+    }
+  }
+
+  /**
+   * @param a_opcode the opcode
+   * @return the node, must not be modified
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public CommandGene getNode(int a_opcode) {
+    return m_entries.m_nodes[a_opcode];
+  }
+
+  /**
+   * @param a_opcode the opcode
+   * @return the number of children of the node
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getArity(int a_opcode) {
+    return m_entries.m_arities[a_opcode];
+  }
+
+  /**
+   * @param a_opcode the opcode
+   * @return true if the node holds an ephemeral random constant, the value of
+   * which is stored per node of a compact program
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public boolean isConstant(int a_opcode) {
+    return m_entries.m_constants[a_opcode];
+  }
+
+  /**
+   * @return the number of nodes in the table
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int size() {
+    return m_entries.m_nodes.length;
+  }
+
+  /**
+   * @param a_node the node to check
+   * @return true if the node can be put into a table, i.e. its arity is fixed
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static boolean isSupported(CommandGene a_node) {
+    return a_node != null && ! (a_node instanceof CommandDynamicArity)
+        && ! (a_node instanceof SubProgram) && ! (a_node instanceof ADF);
+  }
+
+  /**
+   * @param a_node the node to check
+   * @return true if the node holds an ephemeral random constant
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static boolean isConstant(CommandGene a_node) {
+    return a_node instanceof Terminal;
+  }
+
+  static String getKey(CommandGene a_node) {
+    StringBuffer key = new StringBuffer(a_node.getClass().getName());
+    key.append('|').append(a_node.getReturnType().getName());
+    key.append('|').append(a_node.getSubReturnType()).append('|');
+    if (isConstant(a_node)) {
+      Terminal term = (Terminal) a_node;
+      key.append(term.getLowerBounds()).append('|');
+      key.append(term.getUpperBounds()).append('|');
+      key.append(term.isWholeNumbers());
+    }
+    else {
+      key.append(a_node.toString());
+    }
+    return key.toString();
+  }
+
+  private static class Entries
+      implements Serializable {
+    private final CommandGene[] m_nodes;
+
+    private final int[] m_arities;
+
+    private final boolean[] m_constants;
+
+    Entries(CommandGene[] a_nodes, int[] a_arities, boolean[] a_constants) {
+      m_nodes = a_nodes;
+      m_arities = a_arities;
+      m_constants = a_constants;
+    }
+  }
+}
@@ -9,11 +9,12 @@
  */
 package org.jgap.gp.impl;
 
-import java.lang.reflect.Constructor;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
@@ -32,8 +33,13 @@ import org.jgap.gp.IMutateable;
 import org.jgap.gp.ISingleNodeValidator;
 import org.jgap.gp.IUniqueCommand;
 import org.jgap.gp.terminal.Argument;
+import org.jgap.gp.terminal.Constant;
 import org.jgap.gp.terminal.NOP;
+import org.jgap.gp.terminal.Terminal;
+import org.jgap.gp.terminal.Variable;
+import org.jgap.util.ConstructorCache;
 import org.jgap.util.ICloneable;
+import org.jgap.util.RepresentationCursor;
 import org.jgap.util.StringKit;
 
 /**
@@ -81,6 +87,54 @@ public class ProgramChromosome
    */
   private CommandGene[] m_genes;
 
+  /**
+   * Simplified form of this chromosome used for execution, see
+   * getSimplified().
+   *
+   * @since 3.7
+   */
+  private transient volatile ProgramChromosome m_simplified;
+
+  /**
+   * Number of nodes of the subtree starting at each node, see
+   * getSubtreeSizes().
+   *
+   * @since 3.7
+   */
+  private transient int[] m_subtreeSize;
+
+  /**
+   * Depth of the subtree starting at each node, see getSubtreeDepths().
+   *
+   * @since 3.7
+   */
+  private transient int[] m_subtreeDepth;
+
+  /**
+   * Function set shared by programs the lookup tables in m_nodeSetIndex
+   * belong to, null if none.
+   *
+   * @since 3.7
+   */
+  private transient CommandGene[] m_indexedFunctionSet;
+
+  private transient NodeSetIndex m_nodeSetIndex;
+
+  /**
+   * Indicates that this chromosome must not be modified anymore, see
+   * freeze().
+   *
+   * @since 3.7
+   */
+  private boolean m_frozen;
+
+  /**
+   * Structural hash of a frozen chromosome, computed on first request.
+   *
+   * @since 3.7
+   */
+  private transient Long m_frozenHash;
+
   /**
    * Application-specific data that is attached to this Chromosome.
    * This data may assist the application in evaluating this Chromosome
@@ -261,12 +315,27 @@ public class ProgramChromosome
                          int a_tries) {
     try {
       argTypes = a_argTypes;
-      setFunctionSet(new CommandGene[a_functionSet.length + a_argTypes.length]);
-      System.arraycopy(a_functionSet, 0, getFunctionSet(), 0,
-                       a_functionSet.length);
-      for (int i = 0; i < a_argTypes.length; i++) {
-        m_functionSet[a_functionSet.length + i]
-            = new Argument(getGPConfiguration(), i, a_argTypes[i]);
+      if (a_argTypes.length == 0) {
+        // Share the function set, which is not modified, so that its lookup
+        // tables are reused for all programs (see NodeSetIndex).
+        // ------------------------------------------------------------------
+        setFunctionSet(a_functionSet);
+        m_indexedFunctionSet = a_functionSet;
+        m_nodeSetIndex = getGPConfiguration().getNodeSetIndex(a_functionSet);
+      }
+      else {
+        // The function set including the arguments is not shared.
+        // -------------------------------------------------------
+        m_indexedFunctionSet = null;
+        m_nodeSetIndex = null;
+        setFunctionSet(new CommandGene[a_functionSet.length
+                       + a_argTypes.length]);
+        System.arraycopy(a_functionSet, 0, getFunctionSet(), 0,
+                         a_functionSet.length);
+        for (int i = 0; i < a_argTypes.length; i++) {
+          m_functionSet[a_functionSet.length + i]
+              = new Argument(getGPConfiguration(), i, a_argTypes[i]);
+        }
       }
       // Initialization of genotype according to specific problem requirements.
       // ----------------------------------------------------------------------
@@ -511,38 +580,27 @@ public class ProgramChromosome
                                    boolean a_function, boolean a_growing) {
     // Determine possible functions.
     // -----------------------------
-    Vector<CommandGene> possibleFunctions=new Vector<CommandGene>(0);
-    IGPProgram ind = getIndividual();
+    CommandGene[] possibleFunctions = null;
     ISingleNodeValidator singleNodeValidator = getGPConfiguration().
         getSingleNodeValidator();
-    for (int i = 0; i < a_functionSet.length; i++) {
-      if (a_functionSet[i].getReturnType() == a_returnType
-          && (a_subReturnType == 0
-              || a_subReturnType == a_functionSet[i].getSubReturnType())) {
-        if (a_functionSet[i].getArity(ind) == 0 && (!a_function || a_growing)) {
-          // Verify if function/terminal is allowed here.
-          // --------------------------------------------
-          if (singleNodeValidator == null ||
-              singleNodeValidator.isAllowed(a_chromIndex, this, a_functionSet,
-              a_functionSet[i], a_returnType, a_subReturnType, m_index)) {
-            possibleFunctions.add(a_functionSet[i]);
-          }
-        }
-        if (a_functionSet[i].getArity(ind) != 0 && a_function) {
-          // Verify if function/terminal is allowed here.
-          // --------------------------------------------
-          if (singleNodeValidator == null ||
-              singleNodeValidator.isAllowed(a_chromIndex, this, a_functionSet,
-              a_functionSet[i],
-              a_returnType, a_subReturnType, m_index)) {
-            possibleFunctions.add(a_functionSet[i]);
-          }
-        }
+    if (singleNodeValidator == null) {
+      // Without validator, the candidates only depend on the function set
+      // and can be looked up.
+      // -----------------------------------------------------------------
+      NodeSetIndex index = getNodeSetIndex(a_functionSet);
+      if (index != null) {
+        possibleFunctions = index.getNodes(a_returnType, a_subReturnType,
+                                           a_function, a_growing);
       }
     }
+    if (possibleFunctions == null) {
+      possibleFunctions = scanNodes(a_chromIndex, a_returnType,
+                                    a_subReturnType, a_functionSet, a_function,
+                                    a_growing, singleNodeValidator);
+    }
     // Error handing in case no valid function found.
     // ----------------------------------------------
-    if (possibleFunctions.isEmpty()) {
+    if (possibleFunctions.length == 0) {
       if (a_growing && (a_returnType == CommandGene.VoidClass
                         || a_returnType == Void.class)) {
         // We simply return a NOP, it does nothing :-)
@@ -579,11 +637,71 @@ public class ProgramChromosome
     // Select a function randomly.
     // ---------------------------
     int index = getGPConfiguration().getRandomGenerator().nextInt(
-        possibleFunctions.size());
-    CommandGene n = possibleFunctions.elementAt(index);
+        possibleFunctions.length);
+    CommandGene n = possibleFunctions[index];
     return n;
   }
 
+  /**
+   * Determines the candidates for a node by scanning the function set.
+   *
+   * @return the candidates, in the order of the function set
+   *
+   * @since 3.7
+   */
+  private CommandGene[] scanNodes(int a_chromIndex, Class a_returnType,
+                                  int a_subReturnType,
+                                  CommandGene[] a_functionSet,
+                                  boolean a_function, boolean a_growing,
+                                  ISingleNodeValidator a_singleNodeValidator) {
+    Vector<CommandGene> possibleFunctions=new Vector<CommandGene>(0);
+    IGPProgram ind = getIndividual();
+    for (int i = 0; i < a_functionSet.length; i++) {
+      if (a_functionSet[i].getReturnType() == a_returnType
+          && (a_subReturnType == 0
+              || a_subReturnType == a_functionSet[i].getSubReturnType())) {
+        if (a_functionSet[i].getArity(ind) == 0 && (!a_function || a_growing)) {
+          // Verify if function/terminal is allowed here.
+          // --------------------------------------------
+          if (a_singleNodeValidator == null ||
+              a_singleNodeValidator.isAllowed(a_chromIndex, this,
+              a_functionSet, a_functionSet[i], a_returnType, a_subReturnType,
+              m_index)) {
+            possibleFunctions.add(a_functionSet[i]);
+          }
+        }
+        if (a_functionSet[i].getArity(ind) != 0 && a_function) {
+          // Verify if function/terminal is allowed here.
+          // --------------------------------------------
+          if (a_singleNodeValidator == null ||
+              a_singleNodeValidator.isAllowed(a_chromIndex, this,
+              a_functionSet, a_functionSet[i],
+              a_returnType, a_subReturnType, m_index)) {
+            possibleFunctions.add(a_functionSet[i]);
+          }
+        }
+      }
+    }
+    return possibleFunctions.toArray(new CommandGene[possibleFunctions.
+                                     size()]);
+  }
+
+  /**
+   * Only the function set shared by programs is indexed. Arrays derived from
+   * it while creating a program (after removing a rejected or unique node)
+   * are used for a single program, thus they are scanned instead of
+   * building lookup tables for them.
+   *
+   * @param a_functionSet the function set to pick nodes from
+   * @return lookup tables for the function set, or null if not indexed
+   */
+  private NodeSetIndex getNodeSetIndex(CommandGene[] a_functionSet) {
+    if (a_functionSet != m_indexedFunctionSet) {
+      return null;
+    }
+    return m_nodeSetIndex;
+  }
+
   /**
    * Create a tree of nodes using the grow or the full method.
    *
@@ -618,9 +736,11 @@ public class ProgramChromosome
       int tries = 0;
       int evolutionRound = getGPConfiguration().getGenerationNr();
       boolean aFunction = a_depth >= 1;
-      // Clone the array, not the content of the array.
-      // ----------------------------------------------
-      CommandGene[] localFunctionSet = (CommandGene[]) a_functionSet.clone();
+      // No need to clone the array, as removing a node creates a new array.
+      // Keeping the array allows to use the lookup tables of the function
+      // set until a node is removed.
+      // -------------------------------------------------------------------
+      CommandGene[] localFunctionSet = a_functionSet;
       int len = a_functionSet.length;
       do {
         CommandGene node = selectNode(a_num, a_returnType, a_subReturnType,
@@ -648,7 +768,14 @@ public class ProgramChromosome
         if (random.nextDouble() <= conf.getMutationProb()) {
           if (IMutateable.class.isAssignableFrom(node.getClass())) {
             try {
-              CommandGene node2 = ( (IMutateable) node).applyMutation(0,
+              CommandGene toMutate = node;
+              if (conf.isConcurrentBreeding() && node instanceof ICloneable) {
+                // Mutate a clone as the node of the function set is shared
+                // with programs bred concurrently.
+                // --------------------------------------------------------
+                toMutate = (CommandGene) ( (ICloneable) node).clone();
+              }
+              CommandGene node2 = ( (IMutateable) toMutate).applyMutation(0,
                   random.nextDouble());
               // Check if mutant's function is allowed.
               // --------------------------------------
@@ -684,6 +811,14 @@ public class ProgramChromosome
     // -------------------------------------------------------------------
     boolean dynamize = random.nextDouble() <= conf.getDynamizeArityProb();
     if (dynamize) {
+      if (uncloned && conf.isConcurrentBreeding()
+          && a_rootNode instanceof ICloneable) {
+        // The node may be shared with programs bred concurrently, so clone
+        // it before changing its arity.
+        // ----------------------------------------------------------------
+        a_rootNode = (CommandGene) ( (ICloneable) a_rootNode).clone();
+        uncloned = false;
+      }
       a_rootNode.dynamizeArity();
     }
     // Clone node if possible and not already done via mutation.
@@ -744,6 +879,13 @@ public class ProgramChromosome
    * @since 3.0
    */
   public void redepth() {
+    if (m_frozen) {
+      // The depths of a frozen chromosome cannot change anymore.
+      // --------------------------------------------------------
+      return;
+    }
+    m_simplified = null;
+    m_subtreeSize = null;
     m_depth[0] = 0;
     redepth(0);
   }
@@ -859,9 +1001,134 @@ public class ProgramChromosome
 
   public void setFunctions(CommandGene[] a_functions)
       throws InvalidConfigurationException {
+    checkNotFrozen();
     m_genes = a_functions;
   }
 
+  /**
+   * Marks this chromosome as immutable. Then, it can be shared by programs
+   * of different generations instead of being cloned, e.g. for elitism.
+   * Operators must not modify a frozen chromosome but a copy of it
+   * (copy-on-write). Clones of a frozen chromosome are not frozen.
+   * <p>
+   * As mutable nodes may be shared with other chromosomes which could mutate
+   * them in place, the frozen chromosome gets its own copies of them.
+   *
+   * @since 3.7
+   */
+  public void freeze() {
+    if (m_frozen) {
+      return;
+    }
+    cloneMutableNodes();
+    m_frozen = true;
+  }
+
+  /**
+   * @param a_ind the program the copy belongs to
+   * @return copy of this chromosome with its own node and depth arrays, but
+   * sharing the nodes, see GPProgram.snapshot()
+   *
+   * @throws InvalidConfigurationException
+   *
+   * @since 3.7
+   */
+  ProgramChromosome copy(IGPProgram a_ind)
+      throws InvalidConfigurationException {
+    ProgramChromosome chrom = new ProgramChromosome(getGPConfiguration(),
+        m_genes.length, m_functionSet, argTypes, a_ind);
+    chrom.m_genes = (CommandGene[]) m_genes.clone();
+    chrom.m_depth = (int[]) m_depth.clone();
+    chrom.m_applicationData = m_applicationData;
+    chrom.m_compareAppData = m_compareAppData;
+    return chrom;
+  }
+
+  /**
+   * Replaces each mutable node by a clone of it. Thus, mutating the nodes of
+   * this chromosome in place leaves other chromosomes untouched, even if
+   * they were created from the same nodes, e.g. by crossover.
+   *
+   * @since 3.7
+   */
+  public void cloneMutableNodes() {
+    checkNotFrozen();
+    for (int i = 0; i < m_genes.length && m_genes[i] != null; i++) {
+      CommandGene node = m_genes[i];
+      if (node instanceof IMutateable && node instanceof ICloneable) {
+        m_genes[i] = (CommandGene) ( (ICloneable) node).clone();
+      }
+    }
+    m_simplified = null;
+  }
+
+  /**
+   * @return true if this chromosome must not be modified anymore, see
+   * freeze()
+   *
+   * @since 3.7
+   */
+  public boolean isFrozen() {
+    return m_frozen;
+  }
+
+  private void checkNotFrozen() {
+    if (m_frozen) {
+      throw new IllegalStateException("Frozen chromosome must not be"
+                                      + " modified, modify a clone instead!");
+    }
+  }
+
+  /**
+   * Writes the nodes and depths compactly if written by GPBinaryCodec,
+   * otherwise uses default serialization.
+   *
+   * @param a_out the stream to write to
+   * @throws IOException
+   *
+   * @since 3.7
+   */
+  private void writeObject(ObjectOutputStream a_out)
+      throws IOException {
+    if (! (a_out instanceof GPBinaryCodec.Output)) {
+      a_out.defaultWriteObject();
+      return;
+    }
+    ObjectOutputStream.PutField fields = a_out.putFields();
+    fields.put("m_functionSet", m_functionSet);
+    fields.put("argTypes", argTypes);
+    fields.put("m_frozen", m_frozen);
+    fields.put("m_applicationData", m_applicationData);
+    fields.put("m_compareAppData", m_compareAppData);
+    a_out.writeFields();
+    GPBinaryCodec.Output out = (GPBinaryCodec.Output) a_out;
+    out.writeNodes(m_genes);
+    int count = 0;
+    while (count < m_genes.length && m_genes[count] != null) {
+      count++;
+    }
+    out.writeDepths(m_depth, Math.min(count, m_depth.length));
+  }
+
+  /**
+   * Counterpart of writeObject.
+   *
+   * @param a_in the stream to read from
+   * @throws IOException
+   * @throws ClassNotFoundException
+   *
+   * @since 3.7
+   */
+  private void readObject(ObjectInputStream a_in)
+      throws IOException, ClassNotFoundException {
+    a_in.defaultReadObject();
+    if (a_in instanceof GPBinaryCodec.Input) {
+      GPBinaryCodec.Input in = (GPBinaryCodec.Input) a_in;
+      m_genes = in.readNodes();
+      m_depth = in.readDepths();
+    }
+  }
+
   /**
    * Gets the number of nodes in the branch starting at the a_index'th node.
    *
@@ -883,6 +1150,61 @@ public class ProgramChromosome
     return i - a_index;
   }
 
+  /**
+   * Returns the number of nodes of the branch starting at each node, computed
+   * in one pass and kept until the chromosome changes. Equal to getSize(i) for
+   * each node i, without scanning the chromosome again.
+   *
+   * @return number of nodes of the branch starting at each node, must not be
+   * modified
+   *
+   * @since 3.7
+   */
+  public synchronized int[] getSubtreeSizes() {
+    indexSubtrees();
+    return m_subtreeSize;
+  }
+
+  /**
+   * Returns the depth of the branch starting at each node, computed in one
+   * pass and kept until the chromosome changes. Equal to getDepth(i) for each
+   * node i.
+   *
+   * @return depth of the branch starting at each node, must not be modified
+   *
+   * @since 3.7
+   */
+  public synchronized int[] getSubtreeDepths() {
+    indexSubtrees();
+    return m_subtreeDepth;
+  }
+
+  private void indexSubtrees() {
+    if (m_subtreeSize == null) {
+      int[] sizes = new int[m_genes.length];
+      int[] depths = new int[m_genes.length];
+      if (m_genes[0] != null) {
+        indexSubtree(0, sizes, depths);
+      }
+      m_subtreeDepth = depths;
+      m_subtreeSize = sizes;
+    }
+  }
+
+  private int indexSubtree(int a_index, int[] a_sizes, int[] a_depths) {
+    int num = a_index + 1;
+    int depth = 0;
+    int arity = getNode(a_index).getArity(getIndividual());
+    for (int i = 0; i < arity; i++) {
+      int child = num;
+      num = indexSubtree(child, a_sizes, a_depths);
+      depth = Math.max(depth, a_depths[child] + 1);
+    }
+    a_sizes[a_index] = num - a_index;
+    a_depths[a_index] = depth;
+    return num;
+  }
+
   /**
    * Gets the depth of the branch starting at the a_index'th node.
    *
@@ -980,9 +1302,14 @@ public class ProgramChromosome
    * @since 3.0
    */
   public boolean execute_boolean(Object[] args) {
-    boolean rtn = m_genes[0].execute_boolean(this, 0, args);
-    cleanup();
-    return rtn;
+    ExecutionGuard guard = enterExecution();
+    try {
+      boolean rtn = m_genes[0].execute_boolean(this, 0, args);
+      cleanup();
+      return rtn;
+    } finally {
+      exitExecution(guard);
+    }
   }
 
   /**
@@ -999,6 +1326,7 @@ public class ProgramChromosome
    * @since 3.0
    */
   public boolean execute_boolean(int n, int child, Object[] args) {
+    ExecutionGuard.stepCurrent(getGPConfiguration());
     if (child == 0) {
       return m_genes[n + 1].execute_boolean(this, n + 1, args);
     }
@@ -1016,11 +1344,17 @@ public class ProgramChromosome
    * @since 3.0
    */
   public void execute_void(Object[] args) {
-    m_genes[0].execute_void(this, 0, args);
-    cleanup();
+    ExecutionGuard guard = enterExecution();
+    try {
+      m_genes[0].execute_void(this, 0, args);
+      cleanup();
+    } finally {
+      exitExecution(guard);
+    }
   }
 
   public void execute_void(int n, int child, Object[] args) {
+    ExecutionGuard.stepCurrent(getGPConfiguration());
     if (child == 0) {
       m_genes[n + 1].execute_void(this, n + 1, args);
     }
@@ -1042,12 +1376,18 @@ public class ProgramChromosome
    * @since 3.0
    */
   public int execute_int(Object[] args) {
-    int rtn = m_genes[0].execute_int(this, 0, args);
-    cleanup();
-    return rtn;
+    ExecutionGuard guard = enterExecution();
+    try {
+      int rtn = m_genes[0].execute_int(this, 0, args);
+      cleanup();
+      return rtn;
+    } finally {
+      exitExecution(guard);
+    }
   }
 
   public int execute_int(int n, int child, Object[] args) {
+    ExecutionGuard.stepCurrent(getGPConfiguration());
     if (child == 0) {
       return m_genes[n + 1].execute_int(this, n + 1, args);
     }
@@ -1068,12 +1408,18 @@ public class ProgramChromosome
    * @since 3.0
    */
   public long execute_long(Object[] args) {
-    long rtn = m_genes[0].execute_long(this, 0, args);
-    cleanup();
-    return rtn;
+    ExecutionGuard guard = enterExecution();
+    try {
+      long rtn = m_genes[0].execute_long(this, 0, args);
+      cleanup();
+      return rtn;
+    } finally {
+      exitExecution(guard);
+    }
   }
 
   public long execute_long(int n, int child, Object[] args) {
+    ExecutionGuard.stepCurrent(getGPConfiguration());
     if (child == 0) {
       return m_genes[n + 1].execute_long(this, n + 1, args);
     }
@@ -1092,12 +1438,18 @@ public class ProgramChromosome
    * @since 3.0
    */
   public float execute_float(Object[] args) {
-    float rtn = m_genes[0].execute_float(this, 0, args);
-    cleanup();
-    return rtn;
+    ExecutionGuard guard = enterExecution();
+    try {
+      float rtn = m_genes[0].execute_float(this, 0, args);
+      cleanup();
+      return rtn;
+    } finally {
+      exitExecution(guard);
+    }
   }
 
   public float execute_float(int n, int child, Object[] args) {
+    ExecutionGuard.stepCurrent(getGPConfiguration());
     if (child == 0) {
       return m_genes[n + 1].execute_float(this, n + 1, args);
     }
@@ -1116,12 +1468,18 @@ public class ProgramChromosome
    * @since 3.0
    */
   public double execute_double(Object[] args) {
-    double rtn = m_genes[0].execute_double(this, 0, args);
-    cleanup();
-    return rtn;
+    ExecutionGuard guard = enterExecution();
+    try {
+      double rtn = m_genes[0].execute_double(this, 0, args);
+      cleanup();
+      return rtn;
+    } finally {
+      exitExecution(guard);
+    }
   }
 
   public double execute_double(int n, int child, Object[] args) {
+    ExecutionGuard.stepCurrent(getGPConfiguration());
     if (child == 0) {
       return m_genes[n + 1].execute_double(this, n + 1, args);
     }
@@ -1141,12 +1499,18 @@ public class ProgramChromosome
    * @since 3.0
    */
   public Object execute_object(Object[] args) {
-    Object rtn = m_genes[0].execute_object(this, 0, args);
-    cleanup();
-    return rtn;
+    ExecutionGuard guard = enterExecution();
+    try {
+      Object rtn = m_genes[0].execute_object(this, 0, args);
+      cleanup();
+      return rtn;
+    } finally {
+      exitExecution(guard);
+    }
   }
 
   public Object execute_object(int n, int child, Object[] args) {
+    ExecutionGuard.stepCurrent(getGPConfiguration());
     if (child == 0) {
       return m_genes[n + 1].execute_object(this, n + 1, args);
     }
@@ -1165,7 +1529,32 @@ public class ProgramChromosome
    * @since 3.0
    */
   public Object execute(Object[] args) {
-    return m_genes[0].execute_object(this, 0, args);
+    ExecutionGuard guard = enterExecution();
+    try {
+      return m_genes[0].execute_object(this, 0, args);
+    } finally {
+      exitExecution(guard);
+    }
+  }
+
+  /**
+   * Starts supervising an execution if the configuration limits executions
+   * or allows to cancel them (see GPConfiguration.isExecutionGuarded()).
+   * The nodes executed are counted by the guard of the current thread, see
+   * ExecutionGuard.stepCurrent(GPConfiguration).
+   *
+   * @return the guard of the execution, or null
+   *
+   * @since 3.7
+   */
+  private ExecutionGuard enterExecution() {
+    return ExecutionGuard.enter(getGPConfiguration());
+  }
+
+  private void exitExecution(ExecutionGuard a_guard) {
+    if (a_guard != null) {
+      a_guard.exit();
+    }
   }
 
   public Object execute(int n, int child, Object[] args) {
@@ -1176,7 +1565,38 @@ public class ProgramChromosome
     if (a_gene == null) {
       throw new IllegalArgumentException("Gene must not be null!");
     }
+    checkNotFrozen();
     m_genes[index] = a_gene;
+    m_simplified = null;
+    m_subtreeSize = null;
+  }
+
+  /**
+   * Returns the form of this chromosome to be executed. If a program
+   * simplifier is configured, this is the simplified form, computed once and
+   * discarded when the chromosome changes. Otherwise, it is the chromosome
+   * itself.
+   *
+   * @return the chromosome to execute instead of this one
+   *
+   * @since 3.7
+   */
+  public ProgramChromosome getSimplified() {
+    ProgramSimplifier simplifier = getGPConfiguration().getProgramSimplifier();
+    if (simplifier == null) {
+      return this;
+    }
+    ProgramChromosome simplified = m_simplified;
+    if (simplified == null) {
+      try {
+        simplified = simplifier.simplify(this);
+      } catch (InvalidConfigurationException iex) {
+        LOGGER.warn("Simplification of program failed", iex);
+        simplified = this;
+      }
+      m_simplified = simplified;
+    }
+    return simplified;
   }
 
   public Class[] getArgTypes() {
@@ -1201,6 +1621,81 @@ public class ProgramChromosome
     return i;
   }
 
+  /**
+   * Computes a hash of the structure of this chromosome directly from the
+   * nodes and the depth table, without rendering it as a string. Two
+   * chromosomes with equal normalized string representation (see
+   * toStringNorm) and equal depths have the same hash. Besides class and
+   * types, the value of terminals and constants, the name of variables and
+   * the string representation of other nodes are considered for a node. As
+   * with any hash, different chromosomes may collide, GPProgramInfo.matches
+   * tells them apart. For frozen chromosomes, the hash is computed only once.
+   *
+   * @return 64 bit structural hash
+   *
+   * @since 3.7
+   */
+  public long structuralHash() {
+    if (m_frozen) {
+      // The structure cannot change anymore.
+      // ------------------------------------
+      Long frozenHash = m_frozenHash;
+      if (frozenHash == null) {
+        frozenHash = Long.valueOf(computeStructuralHash());
+        m_frozenHash = frozenHash;
+      }
+      return frozenHash.longValue();
+    }
+    return computeStructuralHash();
+  }
+
+  private long computeStructuralHash() {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < m_genes.length && m_genes[i] != null; i++) {
+      CommandGene node = m_genes[i];
+      hash = mixHash(hash, node.getClass().getName().hashCode());
+      hash = mixHash(hash, node.getReturnType().getName().hashCode());
+      if (node instanceof Terminal) {
+        long bits = ( (Terminal) node).getValueBits();
+        hash = mixHash(hash, (int) bits);
+        hash = mixHash(hash, (int) (bits >>> 32));
+      }
+      else if (node instanceof Constant) {
+        hash = mixHash(hash, ( (Constant) node).getValue().hashCode());
+      }
+      else if (node instanceof Variable) {
+        hash = mixHash(hash, ( (Variable) node).getName().hashCode());
+      }
+      else if (node instanceof ProgramSimplifier.FoldedConstant) {
+        hash = mixHash(hash, ( (ProgramSimplifier.FoldedConstant) node).
+                       getValue().hashCode());
+      }
+      else {
+        // Parameters of other nodes are only shown by the string
+        // representation.
+        // -------------------------------------------------------
+        hash = mixHash(hash, node.toString().hashCode());
+      }
+      hash = mixHash(hash, node.getSubReturnType());
+      hash = mixHash(hash, m_depth[i]);
+    }
+    return hash;
+  }
+
+  private static long mixHash(long a_hash, int a_value) {
+    return (a_hash ^ a_value) * 0x100000001b3L;
+  }
+
+  /**
+   * @param a_index index of a node
+   * @return the depth of the node within the tree, 0 for the root
+   *
+   * @since 3.7
+   */
+  int getNodeDepth(int a_index) {
+    return m_depth[a_index];
+  }
+
   /**
    * Compares the given chromosome to this chromosome. This chromosome is
    * considered to be "less than" the given chromosome if it has a fewer
@@ -1413,23 +1908,15 @@ public class ProgramChromosome
       throws UnsupportedRepresentationException {
     if (a_representation != null) {
       try {
-        List r = split(a_representation);
-        Iterator iter = r.iterator();
-        StringTokenizer st;
-        String clas;
-        String representation;
-        String g;
+        RepresentationCursor cursor = new RepresentationCursor(
+            a_representation);
+        String[] st;
         CommandGene gene;
-        List genes = new Vector();
-        while (iter.hasNext()) {
-          g = decode( (String) iter.next());
-          st = new StringTokenizer(g, GENE_DELIMITER);
-          if (st.countTokens() != 2)
-            throw new UnsupportedRepresentationException("In " + g + ", " +
-                "expecting two tokens, separated by " + GENE_DELIMITER);
-          clas = st.nextToken();
-          representation = st.nextToken();
-          gene = createGene(clas, representation);
+        List genes = new ArrayList();
+        while (cursor.hasNext()) {
+          st = RepresentationCursor.splitPair(cursor.nextElement(
+              GENE_DELIMITER_HEADING, GENE_DELIMITER_CLOSING), GENE_DELIMITER);
+          gene = createGene(st[0], st[1]);
           genes.add(gene);
         }
         m_genes = (CommandGene[]) genes.toArray(new CommandGene[0]);
@@ -1455,10 +1942,8 @@ public class ProgramChromosome
   protected CommandGene createGene(String a_geneClassName,
                                    String a_persistentRepresentation)
       throws Exception {
-    Class geneClass = Class.forName(a_geneClassName);
-    Constructor constr = geneClass.getConstructor(new Class[] {GPConfiguration.class});
-    CommandGene gene = (CommandGene) constr.newInstance(new Object[] {
-        getGPConfiguration()});
+    CommandGene gene = (CommandGene) ConstructorCache.newInstance(
+        a_geneClassName, GPConfiguration.class, getGPConfiguration());
     gene.setValueFromPersistentRepresentation(a_persistentRepresentation);
     return gene;
   }
@@ -0,0 +1,613 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jgap.InvalidConfigurationException;
+import org.jgap.gp.CommandGene;
+import org.jgap.gp.IGPProgram;
+import org.jgap.gp.function.Abs;
+import org.jgap.gp.function.Add;
+import org.jgap.gp.function.Add3;
+import org.jgap.gp.function.Add4;
+import org.jgap.gp.function.And;
+import org.jgap.gp.function.ArcCosine;
+import org.jgap.gp.function.ArcSine;
+import org.jgap.gp.function.ArcTangent;
+import org.jgap.gp.function.Ceil;
+import org.jgap.gp.function.Cosine;
+import org.jgap.gp.function.Divide;
+import org.jgap.gp.function.Equals;
+import org.jgap.gp.function.Exp;
+import org.jgap.gp.function.Floor;
+import org.jgap.gp.function.GreaterThan;
+import org.jgap.gp.function.If;
+import org.jgap.gp.function.IfElse;
+import org.jgap.gp.function.Increment;
+import org.jgap.gp.function.LesserThan;
+import org.jgap.gp.function.Log;
+import org.jgap.gp.function.Max;
+import org.jgap.gp.function.Min;
+import org.jgap.gp.function.Modulo;
+import org.jgap.gp.function.Multiply;
+import org.jgap.gp.function.Multiply3;
+import org.jgap.gp.function.Not;
+import org.jgap.gp.function.Or;
+import org.jgap.gp.function.Pow;
+import org.jgap.gp.function.Round;
+import org.jgap.gp.function.Sine;
+import org.jgap.gp.function.Subtract;
+import org.jgap.gp.function.Tangent;
+import org.jgap.gp.function.Xor;
+import org.jgap.gp.terminal.Argument;
+import org.jgap.gp.terminal.Constant;
+import org.jgap.gp.terminal.False;
+import org.jgap.gp.terminal.Terminal;
+import org.jgap.gp.terminal.True;
+import org.jgap.gp.terminal.Variable;
+
+/**
+ * Algebraic simplification of program chromosomes, producing a smaller form
+ * only used for execution. The chromosome itself is left untouched.
+ * <p>
+ * The following rules are applied bottom-up:
+ * <ul>
+ * <li>Constant folding: a side-effect free math command with constant
+ * children only is replaced by its result.</li>
+ * <li>Neutral operations: x - 0, x * 1, 1 * x and x / 1 become x. For whole
+ * number types, x + 0, 0 + x become x and x - x, x * 0, 0 * x become 0 if x
+ * cannot throw an exception (e.g. no integer division by zero).</li>
+ * <li>Dead branches: If and IfElse with a constant condition are replaced by
+ * the branch taken (or the default value of If).</li>
+ * </ul>
+ * Only commands known to be deterministic and free of side effects are
+ * considered. All values are computed by executing the original commands, so
+ * the simplified form returns the same results as the original.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class ProgramSimplifier
+    implements Serializable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final static Object[] NO_ARGS = new Object[0];
+
+  /**
+   * Deterministic functions without side effects.
+   */
+  private final static Set<Class> PURE_FUNCTIONS = new HashSet<Class>(Arrays.
+      asList(new Class[] {Abs.class, Add.class, Add3.class, Add4.class,
+             And.class, ArcCosine.class, ArcSine.class, ArcTangent.class,
+             Ceil.class, Cosine.class, Divide.class, Equals.class, Exp.class,
+             Floor.class, GreaterThan.class, If.class, IfElse.class,
+             Increment.class, LesserThan.class, Log.class, Max.class,
+             Min.class, Modulo.class, Multiply.class, Multiply3.class,
+             Not.class, Or.class, Pow.class, Round.class, Sine.class,
+             Subtract.class, Tangent.class, Xor.class}));
+
+  /**
+   * Functions which may throw an exception, e.g. on a division by zero or on a
+   * type they cannot process.
+   */
+  private final static Set<Class> THROWING_FUNCTIONS = new HashSet<Class>(
+      Arrays.asList(new Class[] {Divide.class, Equals.class, GreaterThan.class,
+                    If.class, IfElse.class, LesserThan.class, Modulo.class}));
+
+  /**
+   * Terminals returning a constant value.
+   */
+  private final static Set<Class> CONSTANTS = new HashSet<Class>(Arrays.
+      asList(new Class[] {Constant.class, True.class, False.class,
+             Terminal.class, FoldedConstant.class}));
+
+  /**
+   * Terminals returning the same value whenever executed with the same
+   * arguments.
+   */
+  private final static Set<Class> PURE_TERMINALS = new HashSet<Class>(Arrays.
+      asList(new Class[] {Variable.class, Argument.class}));
+
+  /**
+   * @param a_command the command to check
+   * @return true: command is a function known to be deterministic and free of
+   * side effects
+   *
+   * @since 3.7
+   */
+  public static boolean isPureFunction(CommandGene a_command) {
+    return PURE_FUNCTIONS.contains(a_command.getClass())
+        && !a_command.isAffectGlobalState();
+  }
+
+  /**
+   * @param a_command the command to check
+   * @return true: command is a function known to be deterministic, free of
+   * side effects and never throwing an exception
+   *
+   * @since 3.7
+   */
+  public static boolean isSafeFunction(CommandGene a_command) {
+    return isPureFunction(a_command)
+        && !THROWING_FUNCTIONS.contains(a_command.getClass());
+  }
+
+  /**
+   * @param a_command the command to check
+   * @return true: command is a terminal always returning the same value
+   *
+   * @since 3.7
+   */
+  public static boolean isConstantTerminal(CommandGene a_command) {
+    return CONSTANTS.contains(a_command.getClass());
+  }
+
+  /**
+   * Simplifies the given chromosome.
+   *
+   * @param a_chrom the chromosome to simplify, with its individual set
+   * @return simplified copy of the chromosome, or the chromosome itself if
+   * no simplification was possible
+   *
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public ProgramChromosome simplify(ProgramChromosome a_chrom)
+      throws InvalidConfigurationException {
+    if (a_chrom.size() < 2) {
+      return a_chrom;
+    }
+    IGPProgram ind = a_chrom.getIndividual();
+    Node root = buildTree(a_chrom.getFunctions(), new int[1], ind);
+    Node simplified = simplify(root, a_chrom);
+    if (simplified == root) {
+      return a_chrom;
+    }
+    return toChromosome(simplified, a_chrom, a_chrom.getFunctions().length);
+  }
+
+  /**
+   * Simplifies the subtree starting at the given node.
+   *
+   * @param a_node root of the subtree
+   * @param a_chrom the chromosome being simplified
+   * @return the given node if nothing was simplified, otherwise the root of
+   * the simplified subtree
+   *
+   * @throws InvalidConfigurationException
+   */
+  protected Node simplify(Node a_node, ProgramChromosome a_chrom)
+      throws InvalidConfigurationException {
+    if (a_node.m_children.length == 0) {
+      return a_node;
+    }
+    // Simplify children first.
+    // ------------------------
+    Node[] children = null;
+    for (int i = 0; i < a_node.m_children.length; i++) {
+      Node child = simplify(a_node.m_children[i], a_chrom);
+      if (child != a_node.m_children[i]) {
+        if (children == null) {
+          children = (Node[]) a_node.m_children.clone();
+        }
+        children[i] = child;
+      }
+    }
+    Node node = a_node;
+    if (children != null) {
+      node = new Node(a_node.m_gene, children);
+    }
+    CommandGene gene = node.m_gene;
+    Class type = gene.getReturnType();
+    if (!PURE_FUNCTIONS.contains(gene.getClass())) {
+      return node;
+    }
+    // Constant folding.
+    // -----------------
+    boolean allConstant = true;
+    for (int i = 0; i < node.m_children.length; i++) {
+      if (!isConstant(node.m_children[i])) {
+        allConstant = false;
+        break;
+      }
+    }
+    if (allConstant && isFoldableType(type)) {
+      Object value = evaluate(node, a_chrom, type);
+      if (value != null) {
+        return constant(a_chrom, gene, value);
+      }
+    }
+    // Dead branches.
+    // --------------
+    if (gene.getClass() == IfElse.class || gene.getClass() == If.class) {
+      if (isConstant(node.m_children[0])) {
+        Node replacement = collapseIf(node, a_chrom);
+        if (replacement != null) {
+          return replacement;
+        }
+      }
+      return node;
+    }
+    // Neutral operations.
+    // -------------------
+    if (node.m_children.length != 2) {
+      return node;
+    }
+    boolean wholeNumbers = type == CommandGene.IntegerClass
+        || type == CommandGene.LongClass;
+    boolean floatingPoint = type == CommandGene.FloatClass
+        || type == CommandGene.DoubleClass;
+    if (!wholeNumbers && !floatingPoint) {
+      return node;
+    }
+    Node left = node.m_children[0];
+    Node right = node.m_children[1];
+    if (gene.getClass() == Add.class && wholeNumbers) {
+      if (isConstant(right, 0, a_chrom)) {
+        return left;
+      }
+      if (isConstant(left, 0, a_chrom)) {
+        return right;
+      }
+    }
+    else if (gene.getClass() == Subtract.class) {
+      if (isConstant(right, 0, a_chrom)) {
+        return left;
+      }
+      if (wholeNumbers && cannotThrow(left) && left.equals(right)) {
+        return constant(a_chrom, gene, zero(type));
+      }
+    }
+    else if (gene.getClass() == Multiply.class) {
+      if (isConstant(right, 1, a_chrom)) {
+        return left;
+      }
+      if (isConstant(left, 1, a_chrom)) {
+        return right;
+      }
+      if (wholeNumbers) {
+        if ( (isConstant(right, 0, a_chrom) && cannotThrow(left))
+            || (isConstant(left, 0, a_chrom) && cannotThrow(right))) {
+          return constant(a_chrom, gene, zero(type));
+        }
+      }
+    }
+    else if (gene.getClass() == Divide.class) {
+      if (isConstant(right, 1, a_chrom)) {
+        return left;
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Replaces an If or IfElse with constant condition by the branch taken. The
+   * branch is determined by executing the command with marker values in
+   * place of its branches.
+   *
+   * @param a_node the If or IfElse node
+   * @param a_chrom the chromosome being simplified
+   * @return replacement or null if the node cannot be collapsed
+   *
+   * @throws InvalidConfigurationException
+   */
+  private Node collapseIf(Node a_node, ProgramChromosome a_chrom)
+      throws InvalidConfigurationException {
+    CommandGene gene = a_node.m_gene;
+    GPConfiguration conf = a_chrom.getGPConfiguration();
+    if (gene.getClass() == IfElse.class) {
+      Node probe = new Node(gene, new Node[] {a_node.m_children[0],
+                            marker(conf, CommandGene.IntegerClass,
+                                   Integer.valueOf(1)),
+                            marker(conf, CommandGene.IntegerClass,
+                                   Integer.valueOf(2))});
+      Object branch = evaluate(probe, a_chrom, CommandGene.IntegerClass);
+      if (branch == null) {
+        return null;
+      }
+      return a_node.m_children[ ( (Integer) branch).intValue()];
+    }
+    Class type = gene.getReturnType();
+    if (!isFoldableType(type)) {
+      return null;
+    }
+    Object mark;
+    if (type == CommandGene.BooleanClass) {
+      mark = Boolean.TRUE;
+    }
+    else {
+      mark = toType(type, 1);
+    }
+    Node probe = new Node(gene, new Node[] {a_node.m_children[0],
+                          marker(conf, type, mark)});
+    Object value = evaluate(probe, a_chrom, type);
+    if (value == null) {
+      return null;
+    }
+    if (value.equals(mark)) {
+      return a_node.m_children[1];
+    }
+    // Condition false: If returns its default value.
+    // ----------------------------------------------
+    return constant(a_chrom, gene, value);
+  }
+
+  private Node marker(GPConfiguration a_conf, Class a_type, Object a_value)
+      throws InvalidConfigurationException {
+    return new Node(new FoldedConstant(a_conf, a_type, 0, a_value),
+                    new Node[0]);
+  }
+
+  private Node constant(ProgramChromosome a_chrom, CommandGene a_gene,
+                        Object a_value)
+      throws InvalidConfigurationException {
+    return new Node(new FoldedConstant(a_chrom.getGPConfiguration(),
+                                       a_gene.getReturnType(),
+                                       a_gene.getSubReturnType(), a_value),
+                    new Node[0]);
+  }
+
+  /**
+   * Executes the subtree starting at the given node.
+   *
+   * @param a_node root of the subtree
+   * @param a_chrom the chromosome being simplified
+   * @param a_type the type to execute the subtree as
+   * @return result, or null if the subtree could not be executed
+   *
+   * @throws InvalidConfigurationException
+   */
+  protected Object evaluate(Node a_node, ProgramChromosome a_chrom,
+                            Class a_type)
+      throws InvalidConfigurationException {
+    ProgramChromosome sub = toChromosome(a_node, a_chrom, a_node.size() + 1);
+    CommandGene root = sub.getNode(0);
+    try {
+      if (a_type == CommandGene.IntegerClass) {
+        return Integer.valueOf(root.execute_int(sub, 0, NO_ARGS));
+      }
+      if (a_type == CommandGene.LongClass) {
+        return Long.valueOf(root.execute_long(sub, 0, NO_ARGS));
+      }
+      if (a_type == CommandGene.FloatClass) {
+        return Float.valueOf(root.execute_float(sub, 0, NO_ARGS));
+      }
+      if (a_type == CommandGene.DoubleClass) {
+        return Double.valueOf(root.execute_double(sub, 0, NO_ARGS));
+      }
+      if (a_type == CommandGene.BooleanClass) {
+        return Boolean.valueOf(root.execute_boolean(sub, 0, NO_ARGS));
+      }
+    } catch (RuntimeException rex) {
+      // E.g. division by zero: leave it to the original program.
+      // --------------------------------------------------------
+    }
+    return null;
+  }
+
+  private boolean isFoldableType(Class a_type) {
+    return a_type == CommandGene.IntegerClass
+        || a_type == CommandGene.LongClass
+        || a_type == CommandGene.FloatClass
+        || a_type == CommandGene.DoubleClass
+        || a_type == CommandGene.BooleanClass;
+  }
+
+  private boolean isConstant(Node a_node) {
+    return a_node.m_children.length == 0
+        && CONSTANTS.contains(a_node.m_gene.getClass());
+  }
+
+  private boolean isConstant(Node a_node, int a_value,
+                             ProgramChromosome a_chrom)
+      throws InvalidConfigurationException {
+    if (!isConstant(a_node)) {
+      return false;
+    }
+    Class type = a_node.m_gene.getReturnType();
+    if (!isFoldableType(type) || type == CommandGene.BooleanClass) {
+      return false;
+    }
+    Object value = evaluate(a_node, a_chrom, type);
+    return value != null && ( (Number) value).doubleValue() == a_value;
+  }
+
+  /**
+   * @param a_node root of a subtree
+   * @return true: subtree always returns the same value for the same
+   * arguments, has no side effects and never throws an exception. Only such
+   * subtrees may be dropped, as the original program would fail otherwise
+   */
+  private boolean cannotThrow(Node a_node) {
+    Class clazz = a_node.m_gene.getClass();
+    if (a_node.m_gene.isAffectGlobalState()) {
+      return false;
+    }
+    if (a_node.m_children.length == 0) {
+      return CONSTANTS.contains(clazz) || PURE_TERMINALS.contains(clazz);
+    }
+    if (!PURE_FUNCTIONS.contains(clazz)
+        || THROWING_FUNCTIONS.contains(clazz)) {
+      return false;
+    }
+    for (int i = 0; i < a_node.m_children.length; i++) {
+      if (!cannotThrow(a_node.m_children[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Object zero(Class a_type) {
+    return toType(a_type, 0);
+  }
+
+  private Object toType(Class a_type, int a_value) {
+    if (a_type == CommandGene.LongClass) {
+      return Long.valueOf(a_value);
+    }
+    if (a_type == CommandGene.FloatClass) {
+      return Float.valueOf(a_value);
+    }
+    if (a_type == CommandGene.DoubleClass) {
+      return Double.valueOf(a_value);
+    }
+    return Integer.valueOf(a_value);
+  }
+
+  private Node buildTree(CommandGene[] a_genes, int[] a_pos, IGPProgram a_ind) {
+    CommandGene gene = a_genes[a_pos[0]++];
+    int arity = gene.getArity(a_ind);
+    Node[] children = new Node[arity];
+    for (int i = 0; i < arity; i++) {
+      children[i] = buildTree(a_genes, a_pos, a_ind);
+    }
+    return new Node(gene, children);
+  }
+
+  private ProgramChromosome toChromosome(Node a_root,
+                                         ProgramChromosome a_template,
+                                         int a_size)
+      throws InvalidConfigurationException {
+    List<CommandGene> genes = new ArrayList<CommandGene>(a_size);
+    a_root.flatten(genes);
+    ProgramChromosome result = new ProgramChromosome(a_template.
+        getGPConfiguration(), a_size, a_template.getFunctionSet(),
+        a_template.getArgTypes(), a_template.getIndividual());
+    for (int i = 0; i < genes.size(); i++) {
+      result.setGene(i, genes.get(i));
+    }
+    result.redepth();
+    return result;
+  }
+
+  /**
+   * Node of a program tree.
+   *
+   * @since 3.7
+   */
+  protected static class Node {
+    private final CommandGene m_gene;
+
+    private final Node[] m_children;
+
+    Node(CommandGene a_gene, Node[] a_children) {
+      m_gene = a_gene;
+      m_children = a_children;
+    }
+
+    int size() {
+      int size = 1;
+      for (int i = 0; i < m_children.length; i++) {
+        size += m_children[i].size();
+      }
+      return size;
+    }
+
+    void flatten(List<CommandGene> a_genes) {
+      a_genes.add(m_gene);
+      for (int i = 0; i < m_children.length; i++) {
+        m_children[i].flatten(a_genes);
+      }
+    }
+
+    /**
+     * Structural equality: same commands in the same tree shape.
+     *
+     * @param a_other the node to compare with
+     * @return true: both subtrees are structurally equal
+     */
+    public boolean equals(Object a_other) {
+      if (! (a_other instanceof Node)) {
+        return false;
+      }
+      Node other = (Node) a_other;
+      if (m_gene.getClass() != other.m_gene.getClass()
+          || m_children.length != other.m_children.length
+          || !m_gene.toString().equals(other.m_gene.toString())) {
+        return false;
+      }
+      for (int i = 0; i < m_children.length; i++) {
+        if (!m_children[i].equals(other.m_children[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    public int hashCode() {
+      return m_gene.getClass().hashCode() * 31 + m_children.length;
+    }
+  }
+
+  /**
+   * Constant value computed by simplification. Returns its value for any
+   * type of execution it is compatible with.
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static class FoldedConstant
+      extends CommandGene {
+    private final Object m_value;
+
+    public FoldedConstant(final GPConfiguration a_conf, Class a_type,
+                          int a_subReturnType, Object a_value)
+        throws InvalidConfigurationException {
+      super(a_conf, 0, a_type, a_subReturnType, null);
+      m_value = a_value;
+    }
+
+    public Object getValue() {
+      return m_value;
+    }
+
+    public String toString() {
+      return String.valueOf(m_value);
+    }
+
+    public String getName() {
+      return "Folded Constant";
+    }
+
+    public int execute_int(ProgramChromosome c, int n, Object[] args) {
+      return ( (Number) m_value).intValue();
+    }
+
+    public long execute_long(ProgramChromosome c, int n, Object[] args) {
+      return ( (Number) m_value).longValue();
+    }
+
+    public float execute_float(ProgramChromosome c, int n, Object[] args) {
+      return ( (Number) m_value).floatValue();
+    }
+
+    public double execute_double(ProgramChromosome c, int n, Object[] args) {
+      return ( (Number) m_value).doubleValue();
+    }
+
+    public boolean execute_boolean(ProgramChromosome c, int n, Object[] args) {
+      return ( (Boolean) m_value).booleanValue();
+    }
+
+    public Object execute_object(ProgramChromosome c, int n, Object[] args) {
+      return m_value;
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of subtree outputs over a fixed set of fitness cases, keyed by the
+ * structural hash of the subtree. Used by SubtreeEvaluator to share the
+ * results of subtrees common to several programs of a population. Each output
+ * is stored with the signature of its subtree, so a hash collision is
+ * treated as a miss instead of returning the output of another subtree.
+ * <p>
+ * A column is a long[] for integer, long and boolean outputs and a double[]
+ * for float and double outputs. The cache is bounded by a memory budget.
+ * When exceeded, the least recently used output columns are evicted.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class SubtreeCache {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Estimated memory used per entry besides the output column (map entry,
+   * key and array header).
+   */
+  private final static int ENTRY_OVERHEAD = 80;
+
+  private final long m_budget;
+
+  private long m_used;
+
+  private long m_hits;
+
+  private long m_misses;
+
+  private long m_evictions;
+
+  private final LinkedHashMap<Long, Entry> m_columns;
+
+  /**
+   * Constructor.
+   *
+   * @param a_budget maximum number of bytes to use for cached columns
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public SubtreeCache(long a_budget) {
+    if (a_budget < 1) {
+      throw new IllegalArgumentException("Memory budget must be positive!");
+    }
+    m_budget = a_budget;
+    m_columns = new LinkedHashMap<Long, Entry>(256, 0.75f, true);
+  }
+
+  /**
+   * @param a_hash structural hash of the subtree
+   * @param a_signature signature of the subtree, see SubtreeEvaluator
+   * @return output column of the subtree over all fitness cases (long[] or
+   * double[]), or null if not cached
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized Object get(long a_hash, String a_signature) {
+    Entry entry = m_columns.get(a_hash);
+    if (entry == null || !entry.m_signature.equals(a_signature)) {
+      m_misses++;
+      return null;
+    }
+    m_hits++;
+    return entry.m_column;
+  }
+
+  /**
+   * Caches the output column of a subtree. Columns exceeding the budget on
+   * their own are not cached.
+   *
+   * @param a_hash structural hash of the subtree
+   * @param a_signature signature of the subtree, see SubtreeEvaluator
+   * @param a_column output of the subtree over all fitness cases as long[] or
+   * double[], must not be modified afterwards
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void put(long a_hash, String a_signature,
+                               Object a_column) {
+    if (! (a_column instanceof long[]) && ! (a_column instanceof double[])) {
+      throw new IllegalArgumentException("Column must be long[] or"
+                                         + " double[]!");
+    }
+    Entry entry = new Entry(a_signature, a_column);
+    long size = entry.sizeOf();
+    if (size > m_budget) {
+      return;
+    }
+    Entry previous = m_columns.put(a_hash, entry);
+    if (previous != null) {
+      m_used -= previous.sizeOf();
+    }
+    m_used += size;
+    Iterator<Map.Entry<Long, Entry>> it = m_columns.entrySet().iterator();
+    while (m_used > m_budget && it.hasNext()) {
+      Map.Entry<Long, Entry> eldest = it.next();
+      m_used -= eldest.getValue().sizeOf();
+      it.remove();
+      m_evictions++;
+    }
+  }
+
+  /**
+   * Removes all columns, e.g. when the fitness cases change. Statistics are
+   * kept.
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void clear() {
+    m_columns.clear();
+    m_used = 0;
+  }
+
+  public synchronized int size() {
+    return m_columns.size();
+  }
+
+  /**
+   * @return estimated number of bytes used by the cached columns
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized long getMemoryUsed() {
+    return m_used;
+  }
+
+  public long getMemoryBudget() {
+    return m_budget;
+  }
+
+  public synchronized long getHits() {
+    return m_hits;
+  }
+
+  public synchronized long getMisses() {
+    return m_misses;
+  }
+
+  public synchronized long getEvictions() {
+    return m_evictions;
+  }
+
+  /**
+   * @return share of lookups that found a cached column, between 0 and 1
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized double getHitRate() {
+    long total = m_hits + m_misses;
+    if (total == 0) {
+      return 0.0d;
+    }
+    return (double) m_hits / total;
+  }
+
+  public synchronized String toString() {
+    return "Subtree cache: " + m_columns.size() + " columns, " + m_used + "/"
+        + m_budget + " bytes, " + m_hits + " hits, " + m_misses + " misses, "
+        + m_evictions + " evictions";
+  }
+
+  /**
+   * Output column of a subtree together with the signature of the subtree.
+   *
+   * @since 3.7
+   */
+  private static class Entry {
+    private final String m_signature;
+
+    private final Object m_column;
+
+    Entry(String a_signature, Object a_column) {
+      m_signature = a_signature;
+      m_column = a_column;
+    }
+
+    long sizeOf() {
+      // Both long and double values take 8 bytes, characters take 2 bytes.
+      // ------------------------------------------------------------------
+      return ENTRY_OVERHEAD + 8L * Array.getLength(m_column)
+          + 2L * m_signature.length();
+    }
+  }
+}
@@ -0,0 +1,534 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgap.InvalidConfigurationException;
+import org.jgap.gp.CommandGene;
+import org.jgap.gp.IGPProgram;
+import org.jgap.gp.function.And;
+import org.jgap.gp.function.If;
+import org.jgap.gp.function.IfElse;
+import org.jgap.gp.function.Or;
+import org.jgap.gp.terminal.Variable;
+
+/**
+ * Evaluates programs over a fixed set of fitness cases, column-wise. The
+ * output of every subtree which is deterministic, free of side effects, never
+ * throws an exception and always executes all of its children is kept in a
+ * SubtreeCache, keyed by the structural hash of the subtree. As
+ * crossing over copies branches between programs, many programs of a
+ * population share subtrees, which are then executed only once.
+ * <p>
+ * Use one instance for the whole run, e.g. held by the fitness function:
+ * <pre>
+ * double[] output = m_evaluator.evaluate(a_subject, 0);
+ * for (int i = 0; i &lt; output.length; i++) {
+ *   error += Math.abs(output[i] - m_expected[i]);
+ * }
+ * </pre>
+ * Subtrees containing other commands (e.g. ones using memory or the stack,
+ * conditions or divisions) are executed case by case, as usual, with their
+ * cacheable subtrees taken from the cache. Outputs of integer, long and
+ * boolean subtrees are kept as long values, thus they equal those of
+ * executing the program directly.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class SubtreeEvaluator {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final static Object[] NO_ARGS = new Object[0];
+
+  /**
+   * Functions not executing all of their children for every fitness case.
+   * Computing the output columns of their children beforehand could fail for
+   * cases the children are never executed for.
+   */
+  private final static Set<Class> CONDITIONAL_FUNCTIONS = new HashSet<Class>(
+      Arrays.asList(new Class[] {And.class, If.class, IfElse.class,
+                    Or.class}));
+
+  private final Variable[] m_inputs;
+
+  /**
+   * Values of the inputs, one column per input over all fitness cases (see
+   * newColumn for the type of a column).
+   */
+  private final Object[] m_inputColumns;
+
+  private final Map<String, Integer> m_inputIndex;
+
+  private final int m_cases;
+
+  private final SubtreeCache m_cache;
+
+  /**
+   * Constructor.
+   *
+   * @param a_inputs the variables the fitness cases provide values for
+   * @param a_cases values of the inputs, one row per fitness case, in the
+   * order of a_inputs
+   * @param a_memoryBudget maximum number of bytes used for caching subtree
+   * outputs
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public SubtreeEvaluator(Variable[] a_inputs, double[][] a_cases,
+                          long a_memoryBudget) {
+    m_inputs = a_inputs;
+    m_cases = a_cases.length;
+    m_inputColumns = new Object[a_inputs.length];
+    m_inputIndex = new HashMap<String, Integer>();
+    for (int j = 0; j < a_inputs.length; j++) {
+      m_inputIndex.put(a_inputs[j].getName(), Integer.valueOf(j));
+      Class type = a_inputs[j].getReturnType();
+      Object column = newColumn(type);
+      for (int i = 0; i < m_cases; i++) {
+        double value = a_cases[i][j];
+        if (type == CommandGene.IntegerClass) {
+          ( (long[]) column)[i] = (int) value;
+        }
+        else if (type == CommandGene.LongClass) {
+          ( (long[]) column)[i] = (long) value;
+        }
+        else if (type == CommandGene.BooleanClass) {
+          ( (long[]) column)[i] = value != 0 ? 1 : 0;
+        }
+        else if (type == CommandGene.FloatClass) {
+          ( (double[]) column)[i] = (float) value;
+        }
+        else {
+          ( (double[]) column)[i] = value;
+        }
+      }
+      m_inputColumns[j] = column;
+    }
+    m_cache = new SubtreeCache(a_memoryBudget);
+  }
+
+  /**
+   * Executes a chromosome of a program for all fitness cases. If a program
+   * simplifier is configured, the simplified form is executed.
+   *
+   * @param a_program the program to execute
+   * @param a_chromosomeNum index of the chromosome to execute
+   * @return output for each fitness case (boolean results as 1 or 0)
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public double[] evaluate(IGPProgram a_program, int a_chromosomeNum) {
+    ProgramChromosome chrom = a_program.getChromosome(a_chromosomeNum);
+    chrom.setIndividual(a_program);
+    chrom = chrom.getSimplified();
+    chrom.setIndividual(a_program);
+    int size = chrom.size();
+    long[] hashes = new long[size];
+    String[] tokens = new String[size];
+    boolean[] cacheable = new boolean[size];
+    int[] next = new int[size];
+    analyze(chrom, 0, a_program, hashes, tokens, cacheable, next);
+    CommandGene root = chrom.getNode(0);
+    Object result;
+    if (!cacheable[0]) {
+      result = evaluateByCase(chrom, a_program, hashes, tokens, cacheable,
+                              next);
+    }
+    else if (root.getArity(a_program) == 0) {
+      result = leafColumn(chrom, root);
+    }
+    else {
+      result = column(chrom, 0, a_program, hashes, tokens, next);
+    }
+    if (result instanceof long[]) {
+      long[] values = (long[]) result;
+      double[] output = new double[values.length];
+      for (int i = 0; i < values.length; i++) {
+        output[i] = values[i];
+      }
+      return output;
+    }
+    return (double[]) ( (double[]) result).clone();
+  }
+
+  /**
+   * @return the cache holding the subtree outputs
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public SubtreeCache getCache() {
+    return m_cache;
+  }
+
+  /**
+   * @return number of fitness cases
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getCaseCount() {
+    return m_cases;
+  }
+
+  /**
+   * Computes structural hash, signature tokens and cacheability of the
+   * subtree at the given index.
+   *
+   * @return index after the subtree
+   */
+  private int analyze(ProgramChromosome a_chrom, int a_index,
+                      IGPProgram a_ind, long[] a_hashes, String[] a_tokens,
+                      boolean[] a_cacheable, int[] a_next) {
+    CommandGene node = a_chrom.getNode(a_index);
+    int arity = node.getArity(a_ind);
+    String name = node.toString();
+    long hash = 0xcbf29ce484222325L;
+    hash = mix(hash, node.getClass().getName().hashCode());
+    hash = mix(hash, name.hashCode());
+    hash = mix(hash, node.getReturnType().getName().hashCode());
+    hash = mix(hash, node.getSubReturnType());
+    a_tokens[a_index] = node.getClass().getName() + ' '
+        + node.getReturnType().getName() + ' ' + node.getSubReturnType() + ' '
+        + arity + ' ' + name.length() + ':' + name;
+    boolean cacheable = isSupportedType(node.getReturnType());
+    if (arity == 0) {
+      cacheable &= ProgramSimplifier.isConstantTerminal(node)
+          || (node instanceof Variable
+              && m_inputIndex.containsKey( ( (Variable) node).getName()));
+    }
+    else {
+      cacheable &= ProgramSimplifier.isSafeFunction(node)
+          && !CONDITIONAL_FUNCTIONS.contains(node.getClass());
+    }
+    int child = a_index + 1;
+    for (int i = 0; i < arity; i++) {
+      int end = analyze(a_chrom, child, a_ind, a_hashes, a_tokens,
+                        a_cacheable, a_next);
+      hash = mix(hash, (int) a_hashes[child]);
+      hash = mix(hash, (int) (a_hashes[child] >>> 32));
+      cacheable &= a_cacheable[child];
+      child = end;
+    }
+    a_hashes[a_index] = hash;
+    a_cacheable[a_index] = cacheable;
+    a_next[a_index] = child;
+    return child;
+  }
+
+  /**
+   * Returns the output column of a cacheable function node, from the cache
+   * if possible.
+   */
+  private Object column(ProgramChromosome a_chrom, int a_index,
+                        IGPProgram a_ind, long[] a_hashes, String[] a_tokens,
+                        int[] a_next) {
+    String signature = signature(a_tokens, a_index, a_next);
+    Object cached = m_cache.get(a_hashes[a_index], signature);
+    if (cached != null) {
+      return cached;
+    }
+    CommandGene node = a_chrom.getNode(a_index);
+    int arity = node.getArity(a_ind);
+    int[] cursor = new int[1];
+    try {
+      ProgramChromosome sub = new ProgramChromosome(a_chrom.
+          getGPConfiguration(), arity + 2, a_chrom.getFunctionSet(),
+          a_chrom.getArgTypes(), a_ind);
+      sub.setGene(0, node);
+      int child = a_index + 1;
+      for (int i = 0; i < arity; i++) {
+        CommandGene childNode = a_chrom.getNode(child);
+        if (ProgramSimplifier.isConstantTerminal(childNode)) {
+          sub.setGene(i + 1, childNode);
+        }
+        else {
+          Object values;
+          if (childNode.getArity(a_ind) == 0) {
+            values = leafColumn(a_chrom, childNode);
+          }
+          else {
+            values = column(a_chrom, child, a_ind, a_hashes, a_tokens,
+                            a_next);
+          }
+          sub.setGene(i + 1, new Column(a_chrom.getGPConfiguration(),
+                                        childNode.getReturnType(),
+                                        childNode.getSubReturnType(), values,
+                                        cursor));
+        }
+        child = a_next[child];
+      }
+      sub.redepth();
+      Class type = node.getReturnType();
+      Object result = newColumn(type);
+      for (int i = 0; i < m_cases; i++) {
+        cursor[0] = i;
+        execute(node, sub, type, result, i);
+      }
+      m_cache.put(a_hashes[a_index], signature, result);
+      return result;
+    } catch (InvalidConfigurationException iex) {
+      throw new IllegalStateException(iex.getMessage());
+    }
+  }
+
+  /**
+   * @return output column of a cacheable terminal
+   */
+  private Object leafColumn(ProgramChromosome a_chrom, CommandGene a_leaf) {
+    if (a_leaf instanceof Variable) {
+      int index = m_inputIndex.get( ( (Variable) a_leaf).getName()).intValue();
+      return m_inputColumns[index];
+    }
+    Class type = a_leaf.getReturnType();
+    Object result = newColumn(type);
+    execute(a_leaf, a_chrom, type, result, 0);
+    if (result instanceof long[]) {
+      long[] values = (long[]) result;
+      Arrays.fill(values, values[0]);
+    }
+    else {
+      double[] values = (double[]) result;
+      Arrays.fill(values, values[0]);
+    }
+    return result;
+  }
+
+  /**
+   * Executes a chromosome which is not cacheable as a whole case by case,
+   * setting the input variables for each case. Its cacheable subtrees are
+   * replaced by their output columns beforehand.
+   */
+  private Object evaluateByCase(ProgramChromosome a_chrom, IGPProgram a_ind,
+                                long[] a_hashes, String[] a_tokens,
+                                boolean[] a_cacheable, int[] a_next) {
+    int[] cursor = new int[1];
+    ProgramChromosome chrom = a_chrom;
+    try {
+      int size = a_chrom.size();
+      ProgramChromosome replaced = new ProgramChromosome(a_chrom.
+          getGPConfiguration(), size + 1, a_chrom.getFunctionSet(),
+          a_chrom.getArgTypes(), a_ind);
+      int count = 0;
+      boolean anyReplaced = false;
+      int i = 0;
+      while (i < size) {
+        CommandGene node = a_chrom.getNode(i);
+        if (a_cacheable[i] && node.getArity(a_ind) > 0) {
+          Object values = column(a_chrom, i, a_ind, a_hashes, a_tokens,
+                                 a_next);
+          replaced.setGene(count++, new Column(a_chrom.getGPConfiguration(),
+              node.getReturnType(), node.getSubReturnType(), values, cursor));
+          anyReplaced = true;
+          i = a_next[i];
+        }
+        else {
+          replaced.setGene(count++, node);
+          i++;
+        }
+      }
+      if (anyReplaced) {
+        replaced.redepth();
+        chrom = replaced;
+      }
+    } catch (InvalidConfigurationException iex) {
+      throw new IllegalStateException(iex.getMessage());
+    }
+    Class type = chrom.getNode(0).getReturnType();
+    Object result = newColumn(type);
+    for (int i = 0; i < m_cases; i++) {
+      for (int j = 0; j < m_inputs.length; j++) {
+        m_inputs[j].set(toValue(m_inputs[j].getReturnType(),
+                                m_inputColumns[j], i));
+      }
+      cursor[0] = i;
+      if (result instanceof long[]) {
+        long[] values = (long[]) result;
+        if (type == CommandGene.IntegerClass) {
+          values[i] = chrom.execute_int(NO_ARGS);
+        }
+        else if (type == CommandGene.LongClass) {
+          values[i] = chrom.execute_long(NO_ARGS);
+        }
+        else {
+          values[i] = chrom.execute_boolean(NO_ARGS) ? 1 : 0;
+        }
+      }
+      else if (type == CommandGene.FloatClass) {
+        ( (double[]) result)[i] = chrom.execute_float(NO_ARGS);
+      }
+      else {
+        ( (double[]) result)[i] = chrom.execute_double(NO_ARGS);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Executes a node and stores its output for a fitness case.
+   */
+  private void execute(CommandGene a_node, ProgramChromosome a_chrom,
+                       Class a_type, Object a_column, int a_case) {
+    if (a_column instanceof long[]) {
+      long[] values = (long[]) a_column;
+      if (a_type == CommandGene.IntegerClass) {
+        values[a_case] = a_node.execute_int(a_chrom, 0, NO_ARGS);
+      }
+      else if (a_type == CommandGene.LongClass) {
+        values[a_case] = a_node.execute_long(a_chrom, 0, NO_ARGS);
+      }
+      else {
+        values[a_case] = a_node.execute_boolean(a_chrom, 0, NO_ARGS) ? 1 : 0;
+      }
+    }
+    else if (a_type == CommandGene.FloatClass) {
+      ( (double[]) a_column)[a_case] = a_node.execute_float(a_chrom, 0,
+          NO_ARGS);
+    }
+    else {
+      ( (double[]) a_column)[a_case] = a_node.execute_double(a_chrom, 0,
+          NO_ARGS);
+    }
+  }
+
+  /**
+   * @param a_type the return type of a subtree
+   * @return new output column over all fitness cases: long[] for integer,
+   * long and boolean (as 1 or 0) outputs, double[] for float and double
+   * outputs
+   */
+  private Object newColumn(Class a_type) {
+    if (a_type == CommandGene.IntegerClass
+        || a_type == CommandGene.LongClass
+        || a_type == CommandGene.BooleanClass) {
+      return new long[m_cases];
+    }
+    return new double[m_cases];
+  }
+
+  private static Object toValue(Class a_type, Object a_column, int a_case) {
+    if (a_type == CommandGene.IntegerClass) {
+      return Integer.valueOf( (int) ( (long[]) a_column)[a_case]);
+    }
+    if (a_type == CommandGene.LongClass) {
+      return Long.valueOf( ( (long[]) a_column)[a_case]);
+    }
+    if (a_type == CommandGene.BooleanClass) {
+      return Boolean.valueOf( ( (long[]) a_column)[a_case] != 0);
+    }
+    if (a_type == CommandGene.FloatClass) {
+      return Float.valueOf( (float) ( (double[]) a_column)[a_case]);
+    }
+    return Double.valueOf( ( (double[]) a_column)[a_case]);
+  }
+
+  private static boolean isSupportedType(Class a_type) {
+    return a_type == CommandGene.IntegerClass
+        || a_type == CommandGene.LongClass
+        || a_type == CommandGene.FloatClass
+        || a_type == CommandGene.DoubleClass
+        || a_type == CommandGene.BooleanClass;
+  }
+
+  /**
+   * @return signature of the subtree at the given index, telling it apart
+   * from other subtrees with the same structural hash: class, types, arity
+   * and string representation of each node in prefix order
+   */
+  private static String signature(String[] a_tokens, int a_index,
+                                  int[] a_next) {
+    StringBuffer signature = new StringBuffer();
+    for (int i = a_index; i < a_next[a_index]; i++) {
+      signature.append(a_tokens[i]).append(';');
+    }
+    return signature.toString();
+  }
+
+  private static long mix(long a_hash, int a_value) {
+    return (a_hash ^ a_value) * 0x100000001b3L;
+  }
+
+  /**
+   * Terminal returning the value of a column for the current fitness case.
+   *
+   * @since 3.7
+   */
+  private static class Column
+      extends CommandGene {
+    private final long[] m_longs;
+
+    private final double[] m_doubles;
+
+    private final int[] m_cursor;
+
+    Column(GPConfiguration a_conf, Class a_type, int a_subReturnType,
+           Object a_values, int[] a_cursor)
+        throws InvalidConfigurationException {
+      super(a_conf, 0, a_type, a_subReturnType, null);
+      if (a_values instanceof long[]) {
+        m_longs = (long[]) a_values;
+        m_doubles = null;
+      }
+      else {
+        m_longs = null;
+        m_doubles = (double[]) a_values;
+      }
+      m_cursor = a_cursor;
+    }
+
+    public String toString() {
+      return "column";
+    }
+
+    public int execute_int(ProgramChromosome c, int n, Object[] args) {
+      if (m_longs != null) {
+        return (int) m_longs[m_cursor[0]];
+      }
+      return (int) m_doubles[m_cursor[0]];
+    }
+
+    public long execute_long(ProgramChromosome c, int n, Object[] args) {
+      if (m_longs != null) {
+        return m_longs[m_cursor[0]];
+      }
+      return (long) m_doubles[m_cursor[0]];
+    }
+
+    public float execute_float(ProgramChromosome c, int n, Object[] args) {
+      if (m_longs != null) {
+        return m_longs[m_cursor[0]];
+      }
+      return (float) m_doubles[m_cursor[0]];
+    }
+
+    public double execute_double(ProgramChromosome c, int n, Object[] args) {
+      if (m_longs != null) {
+        return m_longs[m_cursor[0]];
+      }
+      return m_doubles[m_cursor[0]];
+    }
+
+    public boolean execute_boolean(ProgramChromosome c, int n, Object[] args) {
+      if (m_longs != null) {
+        return m_longs[m_cursor[0]] != 0;
+      }
+      return m_doubles[m_cursor[0]] != 0;
+    }
+  }
+}
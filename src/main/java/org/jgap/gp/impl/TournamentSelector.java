@@ -17,10 +17,22 @@ import org.jgap.RandomGenerator;
 import org.jgap.gp.IGPFitnessEvaluator;
 import org.jgap.gp.IGPProgram;
 import org.jgap.gp.INaturalGPSelector;
+import org.jgap.gp.IThreadSafe;
 
 /**
  * A GP tournament selector. The winner is determined by letting fight a number
  * of opponents against each other. The best of all wins.
+ * <p>
+ * Optionally, the size of the programs (number of nodes) is considered to
+ * control bloat:
+ * <ul>
+ * <li>lexicographic parsimony: of two equally fit programs, the smaller one
+ * wins</li>
+ * <li>double tournament: the winners of two tournaments compete by size, the
+ * smaller one wins with a given probability</li>
+ * <li>Tarpeian method: programs larger than the average of the population are
+ * excluded from a tournament with a given probability</li>
+ * </ul>
  *
  * @author Javier Meseguer
  * @author Enrique D. Mart
@@ -28,12 +40,48 @@ import org.jgap.gp.INaturalGPSelector;
  * @since 3.2
  */
 public class TournamentSelector
-    implements INaturalGPSelector, Serializable, Cloneable {
+    implements INaturalGPSelector, IThreadSafe, Serializable, Cloneable {
   /** String containing the CVS revision. Read out via reflection!*/
   private final static String CVS_REVISION = "$Revision: 1.7 $";
 
+  /**
+   * Program size is not considered.
+   *
+   * @since 3.7
+   */
+  public final static int PARSIMONY_NONE = 0;
+
+  /**
+   * Of two equally fit programs, the smaller one wins.
+   *
+   * @since 3.7
+   */
+  public final static int PARSIMONY_LEXICOGRAPHIC = 1;
+
+  /**
+   * The winners of two fitness tournaments compete by size.
+   *
+   * @since 3.7
+   */
+  public final static int PARSIMONY_DOUBLE_TOURNAMENT = 2;
+
   private int m_tournament_size;
 
+  private int m_parsimony = PARSIMONY_NONE;
+
+  private double m_parsimonyPressure = 1.4d;
+
+  private double m_tarpeianProbability;
+
+  /**
+   * Population the average program size was computed for.
+   */
+  private transient GPPopulation m_sizedPopulation;
+
+  private transient int m_sizedGeneration = -1;
+
+  private transient double m_averageSize;
+
   /**
    * Constructor with default tournament size.
    *
@@ -64,6 +112,67 @@ public class TournamentSelector
     m_tournament_size = a_tournament_size;
   }
 
+  /**
+   * Sets how the size of programs is considered in selection.
+   *
+   * @param a_parsimony one of the PARSIMONY_* constants
+   *
+   * @since 3.7
+   */
+  public void setParsimony(int a_parsimony) {
+    if (a_parsimony < PARSIMONY_NONE || a_parsimony > PARSIMONY_DOUBLE_TOURNAMENT) {
+      throw new IllegalArgumentException("Unknown parsimony mode "
+                                         + a_parsimony);
+    }
+    m_parsimony = a_parsimony;
+  }
+
+  public int getParsimony() {
+    return m_parsimony;
+  }
+
+  /**
+   * Sets the size pressure for double tournament: the smaller of the two
+   * finalists wins with probability a_pressure / 2.
+   *
+   * @param a_pressure between 1 (no pressure) and 2 (smaller program always
+   * wins), 1.4 by default
+   *
+   * @since 3.7
+   */
+  public void setParsimonyPressure(double a_pressure) {
+    if (a_pressure < 1.0d || a_pressure > 2.0d) {
+      throw new IllegalArgumentException(
+          "Parsimony pressure must be between 1 and 2");
+    }
+    m_parsimonyPressure = a_pressure;
+  }
+
+  public double getParsimonyPressure() {
+    return m_parsimonyPressure;
+  }
+
+  /**
+   * Sets the probability of excluding a program larger than the average of the
+   * population from a tournament (Tarpeian method). An excluded program only
+   * wins if all other opponents are excluded as well.
+   *
+   * @param a_probability between 0 (default, disabled) and 1
+   *
+   * @since 3.7
+   */
+  public void setTarpeianProbability(double a_probability) {
+    if (a_probability < 0.0d || a_probability > 1.0d) {
+      throw new IllegalArgumentException(
+          "Probability must be between 0 and 1");
+    }
+    m_tarpeianProbability = a_probability;
+  }
+
+  public double getTarpeianProbability() {
+    return m_tarpeianProbability;
+  }
+
   /**
    * Does the tournament selection.
    *
@@ -76,7 +185,40 @@ public class TournamentSelector
    * @since 3.2
    */
   public IGPProgram select(GPGenotype a_genotype) {
+    IGPProgram winner = tournament(a_genotype);
+    if (m_parsimony == PARSIMONY_DOUBLE_TOURNAMENT) {
+      // Let the winner of a second tournament compete by size.
+      // ------------------------------------------------------
+      IGPProgram other = tournament(a_genotype);
+      int size = getProgramSize(winner);
+      int otherSize = getProgramSize(other);
+      if (size != otherSize) {
+        RandomGenerator random = a_genotype.getGPConfiguration().
+            getRandomGenerator();
+        boolean smallerWins = random.nextDouble() < m_parsimonyPressure / 2;
+        if ( (otherSize < size) == smallerWins) {
+          winner = other;
+        }
+      }
+    }
+    return winner;
+  }
+
+  /**
+   * Does one tournament by fitness.
+   *
+   * @param a_genotype the genotype containing the competers
+   * @return program that won the tournament
+   *
+   * @since 3.7
+   */
+  protected IGPProgram tournament(GPGenotype a_genotype) {
     GPPopulation pop = a_genotype.getGPPopulation();
+    double averageSize = 0;
+    if (m_tarpeianProbability > 0) {
+      averageSize = getAverageSize(a_genotype);
+    }
+    boolean bestExcluded = false;
     IGPProgram bestProgram = null;
     int index = 0;
     RandomGenerator random = a_genotype.getGPConfiguration().getRandomGenerator();
@@ -92,15 +234,23 @@ public class TournamentSelector
     for (int i = 0; i < m_tournament_size; i++) {
       index = (int) (random.nextDouble() * indexes.size());
       int realIndex = indexes.get(index);
+      IGPProgram prog = pop.getGPProgram(realIndex);
+      boolean excluded = m_tarpeianProbability > 0
+          && getProgramSize(prog) > averageSize
+          && random.nextDouble() < m_tarpeianProbability;
       if (bestProgram == null) {
-        bestProgram = pop.getGPProgram(realIndex);
+        bestProgram = prog;
+        bestExcluded = excluded;
       }
-      else {
-        IGPProgram prog = pop.getGPProgram(realIndex);
-        if (evaluator.isFitter(prog, bestProgram)) {
+      else if (bestExcluded != excluded) {
+        if (bestExcluded) {
           bestProgram = prog;
+          bestExcluded = false;
         }
       }
+      else if (isBetter(evaluator, prog, bestProgram)) {
+        bestProgram = prog;
+      }
       if (i < m_tournament_size - 1) {
         indexes.remove(index);
       }
@@ -116,6 +266,62 @@ public class TournamentSelector
    */
   public Object clone() {
     TournamentSelector sel = new TournamentSelector(m_tournament_size);
+    sel.m_parsimony = m_parsimony;
+    sel.m_parsimonyPressure = m_parsimonyPressure;
+    sel.m_tarpeianProbability = m_tarpeianProbability;
     return sel;
   }
+
+  /**
+   * @param a_evaluator the fitness evaluator to use
+   * @param a_prog the challenger
+   * @param a_best the best program so far
+   * @return true if the challenger wins against the best program so far
+   */
+  private boolean isBetter(IGPFitnessEvaluator a_evaluator, IGPProgram a_prog,
+                           IGPProgram a_best) {
+    if (a_evaluator.isFitter(a_prog, a_best)) {
+      return true;
+    }
+    if (m_parsimony == PARSIMONY_LEXICOGRAPHIC
+        && !a_evaluator.isFitter(a_best, a_prog)) {
+      return getProgramSize(a_prog) < getProgramSize(a_best);
+    }
+    return false;
+  }
+
+  /**
+   * @param a_genotype the genotype containing the current population
+   * @return average number of nodes of the programs of the population,
+   * computed once per population and generation
+   */
+  private synchronized double getAverageSize(GPGenotype a_genotype) {
+    GPPopulation pop = a_genotype.getGPPopulation();
+    int generation = a_genotype.getGPConfiguration().getGenerationNr();
+    if (pop != m_sizedPopulation || generation != m_sizedGeneration) {
+      long total = 0;
+      int popSize = pop.getPopSize();
+      for (int i = 0; i < popSize; i++) {
+        total += getProgramSize(pop.getGPProgram(i));
+      }
+      m_averageSize = popSize == 0 ? 0 : (double) total / popSize;
+      m_sizedPopulation = pop;
+      m_sizedGeneration = generation;
+    }
+    return m_averageSize;
+  }
+
+  /**
+   * @param a_program the program to measure
+   * @return number of nodes of all chromosomes of the program
+   *
+   * @since 3.7
+   */
+  public static int getProgramSize(IGPProgram a_program) {
+    int size = 0;
+    for (int i = 0; i < a_program.size(); i++) {
+      size += a_program.getChromosome(i).getSubtreeSizes()[0];
+    }
+    return size;
+  }
 }
@@ -0,0 +1,69 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.io.Serializable;
+
+import org.jgap.gp.IGPProgram;
+import org.jgap.gp.INaturalGPSelector;
+import org.jgap.gp.IThreadSafe;
+
+/**
+ * A GP roulette wheel selector: the probability of a program to be selected
+ * is proportional to its fitness. Works with both higher fitness values being
+ * fitter (e.g. DefaultGPFitnessEvaluator) and lower ones being fitter (e.g.
+ * DeltaGPFitnessEvaluator), see GPRouletteWheel.
+ * <p>
+ * The wheel is built once per population, each selection then takes constant
+ * time. Selection is thread-safe as long as each thread uses its own random
+ * generator.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class WeightedGPRouletteSelector
+    implements INaturalGPSelector, IThreadSafe, Serializable, Cloneable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Constructor.
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public WeightedGPRouletteSelector() {
+  }
+
+  /**
+   * Selects a program proportionally to its fitness.
+   *
+   * @param a_genotype the genotype used
+   * @return the program chosen from the genotype's population
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public IGPProgram select(GPGenotype a_genotype) {
+    GPPopulation pop = a_genotype.getGPPopulation();
+    return pop.getRouletteWheel().select(a_genotype.getGPConfiguration().
+                                         getRandomGenerator());
+  }
+
+  /**
+   * @return deep clone of this instance
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Object clone() {
+    return new WeightedGPRouletteSelector();
+  }
+}
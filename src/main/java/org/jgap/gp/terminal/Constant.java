@@ -29,6 +29,22 @@ public class Constant
 
   private Object m_value;
 
+  /**
+   * Numeric values are also held unboxed to avoid unboxing on each
+   * execution.
+   *
+   * @since 3.7
+   */
+  private boolean m_numeric;
+
+  private int m_intValue;
+
+  private long m_longValue;
+
+  private float m_floatValue;
+
+  private double m_doubleValue;
+
   public Constant(final GPConfiguration a_conf, Class a_type, Object a_value)
       throws InvalidConfigurationException {
     this(a_conf, a_type, a_value, 0);
@@ -39,6 +55,14 @@ public class Constant
       throws InvalidConfigurationException {
     super(a_conf, 0, a_type, a_subReturnType, null);
     m_value = a_value;
+    if (a_value instanceof Number) {
+      Number number = (Number) a_value;
+      m_numeric = true;
+      m_intValue = number.intValue();
+      m_longValue = number.longValue();
+      m_floatValue = number.floatValue();
+      m_doubleValue = number.doubleValue();
+    }
   }
 
   public String toString() {
@@ -55,19 +79,40 @@ public class Constant
     return "Constant";
   }
 
+  /**
+   * @return the value of this constant
+   *
+   * @since 3.7
+   */
+  public Object getValue() {
+    return m_value;
+  }
+
   public int execute_int(ProgramChromosome c, int n, Object[] args) {
+    if (m_numeric) {
+      return m_intValue;
+    }
     return ( (Integer) m_value).intValue();
   }
 
   public long execute_long(ProgramChromosome c, int n, Object[] args) {
-    return ( (Long) m_value).intValue();
+    if (m_numeric) {
+      return m_longValue;
+    }
+    return ( (Long) m_value).longValue();
   }
 
   public float execute_float(ProgramChromosome c, int n, Object[] args) {
+    if (m_numeric) {
+      return m_floatValue;
+    }
     return ( (Float) m_value).floatValue();
   }
 
   public double execute_double(ProgramChromosome c, int n, Object[] args) {
+    if (m_numeric) {
+      return m_doubleValue;
+    }
     return ( (Double) m_value).doubleValue();
   }
 
@@ -0,0 +1,83 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.terminal;
+
+import org.jgap.InvalidConfigurationException;
+import org.jgap.gp.CommandGene;
+import org.jgap.gp.impl.GPConfiguration;
+import org.jgap.gp.impl.ProgramChromosome;
+
+/**
+ * A variable of type double, holding its value unboxed in a slot of the
+ * VariableContext of the configuration.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class DoubleVariable
+    extends PrimitiveVariable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public DoubleVariable(final GPConfiguration a_conf, String a_varName)
+      throws InvalidConfigurationException {
+    super(a_conf, a_varName, CommandGene.DoubleClass,
+          a_conf.getVariableContext().allocateDouble());
+  }
+
+  /**
+   * Returns the double variable of the given name registered with the
+   * configuration, or creates it.
+   *
+   * @param a_conf the configuration to use
+   * @param a_name the name of the variable
+   * @return the variable
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static DoubleVariable create(GPConfiguration a_conf, String a_name)
+      throws InvalidConfigurationException {
+    Variable var = a_conf.getVariable(a_name);
+    if (var instanceof DoubleVariable) {
+      return (DoubleVariable) var;
+    }
+    return new DoubleVariable(a_conf, a_name);
+  }
+
+  public void set(double a_value) {
+    getContext().setDouble(getSlot(), a_value);
+  }
+
+  public double getDouble() {
+    return getContext().getDouble(getSlot());
+  }
+
+  public void set(Object a_value) {
+    set( ( (Number) a_value).doubleValue());
+  }
+
+  public Object getValue() {
+    return Double.valueOf(getDouble());
+  }
+
+  public float execute_float(ProgramChromosome c, int n, Object[] args) {
+    return (float) getContext().getDouble(getSlot());
+  }
+
+  public double execute_double(ProgramChromosome c, int n, Object[] args) {
+    return getContext().getDouble(getSlot());
+  }
+
+  public Object execute_object(ProgramChromosome c, int n, Object[] args) {
+    return getValue();
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.terminal;
+
+import org.jgap.InvalidConfigurationException;
+import org.jgap.gp.CommandGene;
+import org.jgap.gp.impl.GPConfiguration;
+import org.jgap.gp.impl.ProgramChromosome;
+
+/**
+ * A variable of type long, holding its value unboxed in a slot of the
+ * VariableContext of the configuration.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class LongVariable
+    extends PrimitiveVariable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public LongVariable(final GPConfiguration a_conf, String a_varName)
+      throws InvalidConfigurationException {
+    super(a_conf, a_varName, CommandGene.LongClass,
+          a_conf.getVariableContext().allocateLong());
+  }
+
+  /**
+   * Returns the long variable of the given name registered with the
+   * configuration, or creates it.
+   *
+   * @param a_conf the configuration to use
+   * @param a_name the name of the variable
+   * @return the variable
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static LongVariable create(GPConfiguration a_conf, String a_name)
+      throws InvalidConfigurationException {
+    Variable var = a_conf.getVariable(a_name);
+    if (var instanceof LongVariable) {
+      return (LongVariable) var;
+    }
+    return new LongVariable(a_conf, a_name);
+  }
+
+  public void set(long a_value) {
+    getContext().setLong(getSlot(), a_value);
+  }
+
+  public long getLong() {
+    return getContext().getLong(getSlot());
+  }
+
+  public void set(Object a_value) {
+    set( ( (Number) a_value).longValue());
+  }
+
+  public Object getValue() {
+    return Long.valueOf(getLong());
+  }
+
+  public long execute_long(ProgramChromosome c, int n, Object[] args) {
+    return getContext().getLong(getSlot());
+  }
+
+  public float execute_float(ProgramChromosome c, int n, Object[] args) {
+    return getContext().getLong(getSlot());
+  }
+
+  public double execute_double(ProgramChromosome c, int n, Object[] args) {
+    return getContext().getLong(getSlot());
+  }
+
+  public Object execute_object(ProgramChromosome c, int n, Object[] args) {
+    return getValue();
+  }
+}
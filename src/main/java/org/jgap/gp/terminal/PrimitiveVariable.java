@@ -0,0 +1,75 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.terminal;
+
+import org.jgap.InvalidConfigurationException;
+import org.jgap.gp.impl.GPConfiguration;
+
+/**
+ * Base class for variables holding a primitive value in a slot of the
+ * VariableContext of the configuration. Compared to Variable, setting and
+ * reading the value does not box it. The value may be set via the variable or
+ * directly via the context, using the slot index returned by getSlot().
+ * <p>
+ * The variable is registered with the configuration, like variables created
+ * via Variable.create.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public abstract class PrimitiveVariable
+    extends Variable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final VariableContext m_context;
+
+  private final int m_slot;
+
+  /**
+   * @param a_conf the configuration to use
+   * @param a_varName the name of the variable
+   * @param a_type the return type of the variable
+   * @param a_slot the slot of the value within the variable context of the
+   * configuration
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  protected PrimitiveVariable(final GPConfiguration a_conf, String a_varName,
+                              Class a_type, int a_slot)
+      throws InvalidConfigurationException {
+    super(a_conf, a_varName, a_type);
+    m_context = a_conf.getVariableContext();
+    m_slot = a_slot;
+    a_conf.putVariable(this);
+  }
+
+  /**
+   * @return the context holding the value
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public VariableContext getContext() {
+    return m_context;
+  }
+
+  /**
+   * @return index of the slot within the context holding the value
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getSlot() {
+    return m_slot;
+  }
+}
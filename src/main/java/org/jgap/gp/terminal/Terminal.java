@@ -206,6 +206,65 @@ public class Terminal
     m_value_long = a_value;
   }
 
+  /**
+   * @return the value of this terminal for its return type, as raw bits:
+   * the value itself for int and long terminals, the IEEE 754 bits for float
+   * and double terminals
+   *
+   * @since 3.7
+   */
+  public long getValueBits() {
+    Class retType = getReturnType();
+    if (retType == CommandGene.FloatClass) {
+      return Float.floatToRawIntBits(m_value_float);
+    }
+    else if (retType == CommandGene.IntegerClass) {
+      return m_value_int;
+    }
+    else if (retType == CommandGene.LongClass) {
+      return m_value_long;
+    }
+    else {
+      return Double.doubleToRawLongBits(m_value_double);
+    }
+  }
+
+  /**
+   * Sets the value of this terminal for its return type from raw bits, as
+   * returned by getValueBits(). The value is taken as is.
+   *
+   * @param a_bits the raw bits of the value
+   *
+   * @since 3.7
+   */
+  public void setValueBits(long a_bits) {
+    Class retType = getReturnType();
+    if (retType == CommandGene.FloatClass) {
+      m_value_float = Float.intBitsToFloat( (int) a_bits);
+    }
+    else if (retType == CommandGene.IntegerClass) {
+      m_value_int = (int) a_bits;
+    }
+    else if (retType == CommandGene.LongClass) {
+      m_value_long = a_bits;
+    }
+    else {
+      m_value_double = Double.longBitsToDouble(a_bits);
+    }
+  }
+
+  public double getLowerBounds() {
+    return m_lowerBounds;
+  }
+
+  public double getUpperBounds() {
+    return m_upperBounds;
+  }
+
+  public boolean isWholeNumbers() {
+    return m_wholeNumbers;
+  }
+
   public CommandGene applyMutation(int index, double a_percentage)
       throws InvalidConfigurationException {
     // If percentage is very high: do mutation not relying on
@@ -0,0 +1,161 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.terminal;
+
+import java.io.Serializable;
+
+/**
+ * Holds the values of primitive variables (DoubleVariable, IntegerVariable,
+ * LongVariable) in typed slots. Each variable is bound to its slot by index
+ * when created, thus setting and reading a value neither boxes it nor looks up
+ * the variable by name.
+ * <p>
+ * Slots of a type are allocated in the order the variables are created. So,
+ * if the variables of a problem are created in the order of the columns of
+ * the fitness cases, a whole case can be set at once with setDoubles(double[]).
+ * <p>
+ * Obtain the instance of a configuration via
+ * GPConfiguration.getVariableContext().
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class VariableContext
+    implements Serializable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private double[] m_doubles = new double[4];
+
+  private int m_doubleCount;
+
+  private int[] m_ints = new int[4];
+
+  private int m_intCount;
+
+  private long[] m_longs = new long[4];
+
+  private int m_longCount;
+
+  /**
+   * @return index of a newly allocated slot for a double value
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized int allocateDouble() {
+    if (m_doubleCount == m_doubles.length) {
+      double[] doubles = new double[m_doubles.length * 2];
+      System.arraycopy(m_doubles, 0, doubles, 0, m_doubleCount);
+      m_doubles = doubles;
+    }
+    return m_doubleCount++;
+  }
+
+  /**
+   * @return index of a newly allocated slot for an int value
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized int allocateInt() {
+    if (m_intCount == m_ints.length) {
+      int[] ints = new int[m_ints.length * 2];
+      System.arraycopy(m_ints, 0, ints, 0, m_intCount);
+      m_ints = ints;
+    }
+    return m_intCount++;
+  }
+
+  /**
+   * @return index of a newly allocated slot for a long value
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized int allocateLong() {
+    if (m_longCount == m_longs.length) {
+      long[] longs = new long[m_longs.length * 2];
+      System.arraycopy(m_longs, 0, longs, 0, m_longCount);
+      m_longs = longs;
+    }
+    return m_longCount++;
+  }
+
+  public double getDouble(int a_slot) {
+    return m_doubles[a_slot];
+  }
+
+  public void setDouble(int a_slot, double a_value) {
+    m_doubles[a_slot] = a_value;
+  }
+
+  /**
+   * Sets the values of the first double slots at once.
+   *
+   * @param a_values the values to set, the i-th value is set to slot i
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void setDoubles(double[] a_values) {
+    if (a_values.length > m_doubleCount) {
+      throw new IllegalArgumentException("Only " + m_doubleCount
+                                         + " double slots allocated!");
+    }
+    System.arraycopy(a_values, 0, m_doubles, 0, a_values.length);
+  }
+
+  public int getInt(int a_slot) {
+    return m_ints[a_slot];
+  }
+
+  public void setInt(int a_slot, int a_value) {
+    m_ints[a_slot] = a_value;
+  }
+
+  public long getLong(int a_slot) {
+    return m_longs[a_slot];
+  }
+
+  public void setLong(int a_slot, long a_value) {
+    m_longs[a_slot] = a_value;
+  }
+
+  /**
+   * @return number of double slots allocated
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getDoubleCount() {
+    return m_doubleCount;
+  }
+
+  /**
+   * @return number of int slots allocated
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getIntCount() {
+    return m_intCount;
+  }
+
+  /**
+   * @return number of long slots allocated
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getLongCount() {
+    return m_longCount;
+  }
+}
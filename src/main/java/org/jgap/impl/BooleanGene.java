@@ -9,10 +9,15 @@
  */
 package org.jgap.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.nio.ByteBuffer;
+
 import org.jgap.BaseGene;
 import org.jgap.Configuration;
 import org.jgap.Gene;
 import org.jgap.Genotype;
+import org.jgap.IBinaryRepresentation;
 import org.jgap.IPersistentRepresentation;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.RandomGenerator;
@@ -34,7 +39,8 @@ import org.jgap.UnsupportedRepresentationException;
  * @since 1.0
  */
 public class BooleanGene
-    extends BaseGene implements IPersistentRepresentation {
+    extends BaseGene implements IPersistentRepresentation,
+    IBinaryRepresentation {
   /** String containing the CVS revision. Read out via reflection!*/
   private final static String CVS_REVISION = "$Revision: 1.32 $";
 
@@ -416,4 +422,56 @@ public class BooleanGene
     }
     return s;
   }
+
+  /**
+   * A boolean gene has no state shared with other genes.
+   *
+   * @param a_out the output to write to
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeSchema(DataOutput a_out) {
+  }
+
+  public void readSchema(DataInput a_in) {
+  }
+
+  /**
+   * @return 1: 0 for false, 1 for true, 2 for null
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getAlleleSize() {
+    return 1;
+  }
+
+  public void writeAllele(ByteBuffer a_out) {
+    if (m_value == null) {
+      a_out.put( (byte) 2);
+    }
+    else {
+      a_out.put(m_value.booleanValue() ? (byte) 1 : (byte) 0);
+    }
+  }
+
+  public void readAllele(ByteBuffer a_in)
+      throws UnsupportedRepresentationException {
+    byte value = a_in.get();
+    switch (value) {
+      case 0:
+        m_value = FALSE_BOOLEAN;
+        break;
+      case 1:
+        m_value = TRUE_BOOLEAN;
+        break;
+      case 2:
+        m_value = null;
+        break;
+      default:
+        throw new UnsupportedRepresentationException("Invalid allele "
+            + value);
+    }
+  }
 }
@@ -9,7 +9,10 @@
  */
 package org.jgap.impl;
 
-import java.lang.reflect.Constructor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -21,12 +24,16 @@ import org.jgap.BaseGene;
 import org.jgap.Configuration;
 import org.jgap.Gene;
 import org.jgap.Genotype;
+import org.jgap.IBinaryRepresentation;
 import org.jgap.IBusinessKey;
 import org.jgap.ICompositeGene;
 import org.jgap.IPersistentRepresentation;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.RandomGenerator;
 import org.jgap.UnsupportedRepresentationException;
+import org.jgap.data.ChromosomeSchema;
+import org.jgap.util.ConstructorCache;
+import org.jgap.util.RepresentationCursor;
 
 /**
  * Ordered container for multiple genes
@@ -52,7 +59,8 @@ import org.jgap.UnsupportedRepresentationException;
  */
 public class CompositeGene
     extends BaseGene
-    implements ICompositeGene, IPersistentRepresentation  {
+    implements ICompositeGene, IPersistentRepresentation,
+    IBinaryRepresentation {
   /** String containing the CVS revision. Read out via reflection!*/
   private final static String CVS_REVISION = "$Revision: 1.60 $";
 
@@ -294,22 +302,14 @@ public class CompositeGene
         // Remove the old content.
         // -----------------------
         m_genes.clear();
-        List r = split(a_representation);
-        Iterator iter = r.iterator();
-        StringTokenizer st;
-        String clas;
-        String representation;
-        String g;
+        RepresentationCursor cursor = new RepresentationCursor(
+            a_representation);
+        String[] st;
         Gene gene;
-        while (iter.hasNext()) {
-          g = decode( (String) iter.next());
-          st = new StringTokenizer(g, GENE_DELIMITER);
-          if (st.countTokens() != 2)
-            throw new UnsupportedRepresentationException("In " + g + ", " +
-                "expecting two tokens, separated by " + GENE_DELIMITER);
-          clas = st.nextToken();
-          representation = st.nextToken();
-          gene = createGene(clas, representation);
+        while (cursor.hasNext()) {
+          st = RepresentationCursor.splitPair(cursor.nextElement(
+              GENE_DELIMITER_HEADING, GENE_DELIMITER_CLOSING), GENE_DELIMITER);
+          gene = createGene(st[0], st[1]);
           addGene(gene);
         }
       }
@@ -334,9 +334,8 @@ public class CompositeGene
   protected Gene createGene(String a_geneClassName,
                             String a_persistentRepresentation)
       throws Exception {
-    Class geneClass = Class.forName(a_geneClassName);
-    Constructor constr = geneClass.getConstructor(new Class[] {Configuration.class});
-    Gene gene = (Gene) constr.newInstance(new Object[] {getConfiguration()});
+    Gene gene = (Gene) ConstructorCache.newInstance(a_geneClassName,
+        Configuration.class, getConfiguration());
     gene.setValueFromPersistentRepresentation(a_persistentRepresentation);
     return gene;
   }
@@ -728,4 +727,78 @@ public class CompositeGene
     }
     return b.toString();
   }
+
+  /**
+   * Writes the number of contained genes and their classes and schemas.
+   *
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeSchema(DataOutput a_out)
+      throws IOException {
+    int size = m_genes.size();
+    a_out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      ChromosomeSchema.writeGeneSchema(m_genes.get(i), a_out);
+    }
+  }
+
+  /**
+   * Replaces the contained genes by the ones read.
+   *
+   * @param a_in the input to read from
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void readSchema(DataInput a_in)
+      throws IOException {
+    int size = a_in.readInt();
+    if (size < 0) {
+      throw new IOException("Invalid number of genes " + size);
+    }
+    m_genes.clear();
+    for (int i = 0; i < size; i++) {
+      m_genes.add(ChromosomeSchema.readGeneSchema(a_in, getConfiguration()));
+    }
+  }
+
+  /**
+   * @return sum of the allele sizes of the contained genes, -1 if any of them
+   * varies
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getAlleleSize() {
+    int result = 0;
+    int size = m_genes.size();
+    for (int i = 0; i < size; i++) {
+      int alleleSize = ChromosomeSchema.getAlleleSize(m_genes.get(i));
+      if (alleleSize < 0) {
+        return -1;
+      }
+      result += alleleSize;
+    }
+    return result;
+  }
+
+  public void writeAllele(ByteBuffer a_out) {
+    int size = m_genes.size();
+    for (int i = 0; i < size; i++) {
+      ChromosomeSchema.writeAllele(m_genes.get(i), a_out);
+    }
+  }
+
+  public void readAllele(ByteBuffer a_in)
+      throws UnsupportedRepresentationException {
+    int size = m_genes.size();
+    for (int i = 0; i < size; i++) {
+      ChromosomeSchema.readAllele(m_genes.get(i), a_in);
+    }
+  }
 }
@@ -9,11 +9,16 @@
  */
 package org.jgap.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.StringTokenizer;
 
 import org.jgap.Configuration;
 import org.jgap.Gene;
 import org.jgap.Genotype;
+import org.jgap.IBinaryRepresentation;
 import org.jgap.IPersistentRepresentation;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.RandomGenerator;
@@ -29,7 +34,8 @@ import org.jgap.UnsupportedRepresentationException;
  * @since 1.1
  */
 public class DoubleGene
-    extends NumberGene implements IPersistentRepresentation {
+    extends NumberGene implements IPersistentRepresentation,
+    IBinaryRepresentation {
   /** String containing the CVS revision. Read out via reflection!*/
   private final static String CVS_REVISION = "$Revision: 1.40 $";
 
@@ -391,4 +397,61 @@ public class DoubleGene
   public double getUpperBound() {
     return m_upperBound;
   }
+
+  /**
+   * Writes the bounds.
+   *
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeSchema(DataOutput a_out)
+      throws IOException {
+    a_out.writeDouble(m_lowerBound);
+    a_out.writeDouble(m_upperBound);
+  }
+
+  public void readSchema(DataInput a_in)
+      throws IOException {
+    m_lowerBound = a_in.readDouble();
+    m_upperBound = a_in.readDouble();
+  }
+
+  /**
+   * @return 9: a byte telling whether the allele is null and the double value
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getAlleleSize() {
+    return 9;
+  }
+
+  public void writeAllele(ByteBuffer a_out) {
+    Object value = getInternalValue();
+    if (value == null) {
+      a_out.put( (byte) 0).putDouble(0.0d);
+    }
+    else {
+      a_out.put( (byte) 1).putDouble( ( (Double) value).doubleValue());
+    }
+  }
+
+  public void readAllele(ByteBuffer a_in)
+      throws UnsupportedRepresentationException {
+    byte flag = a_in.get();
+    double value = a_in.getDouble();
+    if (flag == 0) {
+      setAllele(null);
+    }
+    else if (flag == 1) {
+      setAllele(Double.valueOf(value));
+    }
+    else {
+      throw new UnsupportedRepresentationException("Invalid allele flag "
+          + flag);
+    }
+  }
 }
@@ -9,11 +9,16 @@
  */
 package org.jgap.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.StringTokenizer;
 
 import org.jgap.BaseGene;
 import org.jgap.Configuration;
 import org.jgap.Gene;
+import org.jgap.IBinaryRepresentation;
 import org.jgap.IPersistentRepresentation;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.RandomGenerator;
@@ -37,7 +42,8 @@ import org.jgap.UnsupportedRepresentationException;
  * @since 2.0
  */
 public class FixedBinaryGene
-    extends BaseGene implements IPersistentRepresentation {
+    extends BaseGene implements IPersistentRepresentation,
+    IBinaryRepresentation {
   /** String containing the CVS revision. Read out via reflection!*/
   private final static String CVS_REVISION = "$Revision: 1.40 $";
 
@@ -73,6 +79,21 @@ public class FixedBinaryGene
     }
   }
 
+  /**
+   * Constructs a gene of length 1, e.g. for creating it by its class name
+   * before reading its state (see readSchema).
+   *
+   * @param a_config the configuration to use
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public FixedBinaryGene(final Configuration a_config)
+      throws InvalidConfigurationException {
+    this(a_config, 1);
+  }
+
   protected Gene newGeneInternal() {
     try {
       FixedBinaryGene result = new FixedBinaryGene(getConfiguration(), m_length);
@@ -502,4 +523,54 @@ public class FixedBinaryGene
     return result;
   }
 
+
+  /**
+   * Writes the length.
+   *
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeSchema(DataOutput a_out)
+      throws IOException {
+    a_out.writeInt(m_length);
+  }
+
+  public void readSchema(DataInput a_in)
+      throws IOException {
+    int length = a_in.readInt();
+    if (length < 1) {
+      throw new IOException("Invalid length " + length);
+    }
+    m_length = length;
+    int bufSize = m_length / WORD_LEN_BITS;
+    if (0 != m_length % WORD_LEN_BITS) {
+      ++bufSize;
+    }
+    m_value = new int[bufSize];
+  }
+
+  /**
+   * @return 4 bytes per 32 bits
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getAlleleSize() {
+    return m_value.length * 4;
+  }
+
+  public void writeAllele(ByteBuffer a_out) {
+    for (int i = 0; i < m_value.length; i++) {
+      a_out.putInt(m_value[i]);
+    }
+  }
+
+  public void readAllele(ByteBuffer a_in) {
+    for (int i = 0; i < m_value.length; i++) {
+      m_value[i] = a_in.getInt();
+    }
+  }
 }
@@ -10,6 +10,8 @@
 package org.jgap.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
@@ -20,6 +22,7 @@ import org.jgap.BreederBase;
 import org.jgap.BulkFitnessFunction;
 import org.jgap.Chromosome;
 import org.jgap.Configuration;
+import org.jgap.FitnessEvaluator;
 import org.jgap.FitnessFunction;
 import org.jgap.Gene;
 import org.jgap.IChromosome;
@@ -62,6 +65,50 @@ public class GABreederMulti extends BreederBase {
 	 */
 	CountDownLatch fitnessLatch;
 
+	/**
+	 * Surrogate model pre-screening chromosomes without fitness value, null
+	 * for evaluating all of them with the fitness function
+	 */
+	private ISurrogateModel m_surrogate;
+
+	/**
+	 * Fraction of the chromosomes screened that is evaluated with the fitness
+	 * function
+	 */
+	private double m_evaluatedFraction = 1.0d;
+
+	/**
+	 * Number of samples the surrogate model needs before screening starts
+	 */
+	private int m_minSurrogateSamples;
+
+	/**
+	 * Racing evaluator determining fitness values, null for evaluating with
+	 * the fitness function of the configuration
+	 */
+	private RacingEvaluator m_racing;
+
+	/**
+	 * Statistics of the surrogate model for the current generation
+	 */
+	private int m_evaluatedCount;
+
+	private int m_estimatedCount;
+
+	private int m_assessedCount;
+
+	private double m_errorSum;
+
+	private double m_sumPredicted;
+
+	private double m_sumActual;
+
+	private double m_sumPredictedSq;
+
+	private double m_sumActualSq;
+
+	private double m_sumProduct;
+
 	/**
 	 * Default constructor, number of threads equals to: <br/>
 	 * <code>Runtime.getRuntime().availableProcessors();</code>
@@ -107,6 +154,7 @@ public class GABreederMulti extends BreederBase {
 				.getBulkFitnessFunction();
 		final boolean monitorActive = a_conf.getMonitor() != null;
 		IChromosome fittest = null;
+		resetSurrogateStatistics();
 		// If first generation: Set age to one to allow genetic operations,
 		// see CrossoverOperator for an illustration.
 		// ----------------------------------------------------------------
@@ -334,7 +382,12 @@ public class GABreederMulti extends BreederBase {
 	 */
 	@Override
 	public Object clone() {
-		return new GABreederMulti();
+		final GABreederMulti result = new GABreederMulti(cores);
+		result.m_surrogate = m_surrogate;
+		result.m_evaluatedFraction = m_evaluatedFraction;
+		result.m_minSurrogateSamples = m_minSurrogateSamples;
+		result.m_racing = m_racing;
+		return result;
 	}
 
 	/**
@@ -380,38 +433,344 @@ public class GABreederMulti extends BreederBase {
 		final boolean bulkFitFunc = bulkFunction != null;
 
 		if (!bulkFitFunc) {
-			// Multithread this part
-			// Create the threads for fitness computation
-			for (int i = 0; i < cores; i++) {
-				final Thread t = new Thread(new FitnessThread());
-				t.setName("Fitness-" + i);
-				t.start();
-			}
-			fitnessLatch = new CountDownLatch(currentPopSize);
+			final List<IChromosome> chroms = new ArrayList<IChromosome>(
+					currentPopSize);
 			for (int i = 0; i < currentPopSize; i++) {
-				final IChromosome chrom = a_pop.getChromosome(i);
-				try {
-					fitnessQueue.put(chrom);
-				} catch (final InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
+				chroms.add(a_pop.getChromosome(i));
+			}
+			if (m_surrogate != null) {
+				evaluateWithSurrogate(chroms, a_conf);
+			} else {
+				computeFitness(chroms, a_conf);
 			}
-			// Wait for latch to be down
+		}
+	}
+
+	/**
+	 * Determines the fitness values of the given chromosomes in parallel.
+	 *
+	 * @param a_chroms
+	 *            the chromosomes to evaluate
+	 *
+	 * @since 3.7
+	 */
+	protected void evaluate(final List<IChromosome> a_chroms) {
+		// Multithread this part
+		// Create the threads for fitness computation
+		for (int i = 0; i < cores; i++) {
+			final Thread t = new Thread(new FitnessThread());
+			t.setName("Fitness-" + i);
+			t.start();
+		}
+		fitnessLatch = new CountDownLatch(a_chroms.size());
+		for (final IChromosome chrom : a_chroms) {
 			try {
-				fitnessLatch.await();
-			} catch (final InterruptedException e1) {
-				e1.printStackTrace();
+				fitnessQueue.put(chrom);
+			} catch (final InterruptedException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
 			}
-			// Kill the threads
-			for (int i = 0; i < cores; i++) {
-				try {
-					fitnessQueue.put(new PoisonChromo());
-				} catch (final InterruptedException e) {
-					e.printStackTrace();
+		}
+		// Wait for latch to be down
+		try {
+			fitnessLatch.await();
+		} catch (final InterruptedException e1) {
+			e1.printStackTrace();
+		}
+		// Kill the threads
+		for (int i = 0; i < cores; i++) {
+			try {
+				fitnessQueue.put(new PoisonChromo());
+			} catch (final InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Determines the fitness values of the given chromosomes, by racing if a
+	 * racing evaluator is set, otherwise by evaluate(List).
+	 *
+	 * @param a_chroms
+	 *            the chromosomes to evaluate
+	 * @param a_conf
+	 *            the configuration to use
+	 *
+	 * @since 3.7
+	 */
+	protected void computeFitness(final List<IChromosome> a_chroms,
+			final Configuration a_conf) {
+		if (m_racing != null) {
+			m_racing.evaluate(a_chroms, a_conf.getFitnessEvaluator());
+		} else {
+			evaluate(a_chroms);
+		}
+	}
+
+	/**
+	 * Pre-screens the chromosomes without computed fitness value with the
+	 * surrogate model. Only the fraction of them predicted best is evaluated
+	 * with the fitness function, the others get the predicted fitness value as
+	 * estimated fitness value (see Chromosome.setFitnessValueEstimated).
+	 * Chromosomes with an estimated fitness value are screened again. The
+	 * model is trained with all fitness values computed.
+	 * <p>
+	 * As long as the model holds fewer samples than required, all chromosomes
+	 * are evaluated with the fitness function.
+	 *
+	 * @param a_chroms
+	 *            the chromosomes to evaluate
+	 * @param a_conf
+	 *            the configuration to use
+	 *
+	 * @since 3.7
+	 */
+	protected void evaluateWithSurrogate(final List<IChromosome> a_chroms,
+			final Configuration a_conf) {
+		final List<IChromosome> toEvaluate = new ArrayList<IChromosome>();
+		final List<Chromosome> candidates = new ArrayList<Chromosome>();
+		for (final IChromosome chrom : a_chroms) {
+			if (chrom instanceof Chromosome
+					&& (chrom.getFitnessValueDirectly() < 0 || ((Chromosome) chrom)
+							.isFitnessEstimated())) {
+				candidates.add((Chromosome) chrom);
+			} else {
+				toEvaluate.add(chrom);
+			}
+		}
+		final int count = candidates.size();
+		final double[][] features = new double[count][];
+		for (int i = 0; i < count; i++) {
+			features[i] = getFeatures(candidates.get(i));
+		}
+		final boolean screening = m_surrogate.size() > 0
+				&& m_surrogate.size() >= m_minSurrogateSamples;
+		final double[] predicted = new double[count];
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = Integer.valueOf(i);
+		}
+		int evaluated = count;
+		if (screening) {
+			for (int i = 0; i < count; i++) {
+				predicted[i] = m_surrogate.predict(features[i]);
+			}
+			// Best predictions first.
+			// -----------------------
+			final FitnessEvaluator evaluator = a_conf.getFitnessEvaluator();
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(final Integer a_o1, final Integer a_o2) {
+					final double p1 = predicted[a_o1.intValue()];
+					final double p2 = predicted[a_o2.intValue()];
+					if (evaluator.isFitter(p1, p2)) {
+						return -1;
+					}
+					if (evaluator.isFitter(p2, p1)) {
+						return 1;
+					}
+					return 0;
+				}
+			});
+			evaluated = (int) Math.ceil(count * m_evaluatedFraction);
+		}
+		for (int i = 0; i < count; i++) {
+			final int index = order[i].intValue();
+			final Chromosome chrom = candidates.get(index);
+			if (i < evaluated) {
+				if (chrom.isFitnessEstimated()) {
+					chrom.setFitnessValueDirectly(FitnessFunction.NO_FITNESS_VALUE);
 				}
+				toEvaluate.add(chrom);
+			} else {
+				chrom.setFitnessValueEstimated(Math.max(0.0d, predicted[index]));
 			}
 		}
+		computeFitness(toEvaluate, a_conf);
+		m_evaluatedCount += evaluated;
+		m_estimatedCount += count - evaluated;
+		for (int i = 0; i < evaluated; i++) {
+			final int index = order[i].intValue();
+			final double fitness = candidates.get(index)
+					.getFitnessValueDirectly();
+			if (fitness < 0 || Double.isNaN(fitness)
+					|| Double.isInfinite(fitness)) {
+				continue;
+			}
+			if (screening) {
+				assessPrediction(predicted[index], fitness);
+			}
+			m_surrogate.train(features[index], fitness);
+		}
+	}
+
+	private void assessPrediction(final double a_predicted,
+			final double a_actual) {
+		m_assessedCount++;
+		m_errorSum += Math.abs(a_predicted - a_actual);
+		m_sumPredicted += a_predicted;
+		m_sumActual += a_actual;
+		m_sumPredictedSq += a_predicted * a_predicted;
+		m_sumActualSq += a_actual * a_actual;
+		m_sumProduct += a_predicted * a_actual;
+	}
+
+	private void resetSurrogateStatistics() {
+		m_evaluatedCount = 0;
+		m_estimatedCount = 0;
+		m_assessedCount = 0;
+		m_errorSum = 0;
+		m_sumPredicted = 0;
+		m_sumActual = 0;
+		m_sumPredictedSq = 0;
+		m_sumActualSq = 0;
+		m_sumProduct = 0;
+	}
+
+	/**
+	 * Builds the feature vector of a chromosome for the surrogate model: one
+	 * feature per gene, see getFeature(Gene).
+	 *
+	 * @param a_chrom
+	 *            the chromosome
+	 * @return the feature vector
+	 *
+	 * @since 3.7
+	 */
+	protected double[] getFeatures(final IChromosome a_chrom) {
+		final Gene[] genes = a_chrom.getGenes();
+		final double[] features = new double[genes.length];
+		for (int i = 0; i < genes.length; i++) {
+			features[i] = getFeature(genes[i]);
+		}
+		return features;
+	}
+
+	/**
+	 * Returns the feature of a gene for the surrogate model: the numeric value
+	 * of its allele, 0 or 1 for a boolean allele. Other alleles are skipped,
+	 * i.e. always give 0, as there is no meaningful numeric value for them.
+	 * Override to encode such alleles.
+	 *
+	 * @param a_gene
+	 *            the gene
+	 * @return the feature of the gene
+	 *
+	 * @since 3.7
+	 */
+	protected double getFeature(final Gene a_gene) {
+		final Object allele = a_gene.getAllele();
+		if (allele instanceof Number) {
+			return ((Number) allele).doubleValue();
+		}
+		if (allele instanceof Boolean) {
+			return ((Boolean) allele).booleanValue() ? 1 : 0;
+		}
+		return 0;
+	}
+
+	/**
+	 * Lets a surrogate model pre-screen chromosomes without computed fitness
+	 * value, see evaluateWithSurrogate. Only used without a bulk fitness
+	 * function.
+	 *
+	 * @param a_model
+	 *            the surrogate model, null for evaluating all chromosomes
+	 *            with the fitness function
+	 * @param a_evaluatedFraction
+	 *            fraction of the chromosomes screened to evaluate with the
+	 *            fitness function, between 0 (exclusive) and 1
+	 * @param a_minSamples
+	 *            number of samples the model needs before screening starts
+	 *
+	 * @since 3.7
+	 */
+	public void setSurrogate(final ISurrogateModel a_model,
+			final double a_evaluatedFraction, final int a_minSamples) {
+		if (a_evaluatedFraction <= 0 || a_evaluatedFraction > 1) {
+			throw new IllegalArgumentException(
+					"Fraction to evaluate must be greater than 0 and not"
+							+ " greater than 1!");
+		}
+		m_surrogate = a_model;
+		m_evaluatedFraction = a_evaluatedFraction;
+		m_minSurrogateSamples = a_minSamples;
+	}
+
+	/**
+	 * Lets a racing evaluator determine the fitness values of chromosomes
+	 * without computed fitness value, see RacingEvaluator. Only used without
+	 * a bulk fitness function, use RacingBulkFitnessFunction otherwise.
+	 *
+	 * @param a_racing
+	 *            the racing evaluator, null for evaluating all chromosomes
+	 *            with the fitness function of the configuration
+	 *
+	 * @since 3.7
+	 */
+	public void setRacing(final RacingEvaluator a_racing) {
+		m_racing = a_racing;
+	}
+
+	public RacingEvaluator getRacing() {
+		return m_racing;
+	}
+
+	public ISurrogateModel getSurrogate() {
+		return m_surrogate;
+	}
+
+	/**
+	 * @return number of chromosomes evaluated with the fitness function after
+	 *         screening during the last generation
+	 *
+	 * @since 3.7
+	 */
+	public int getSurrogateEvaluatedCount() {
+		return m_evaluatedCount;
+	}
+
+	/**
+	 * @return number of chromosomes that got an estimated fitness value
+	 *         during the last generation
+	 *
+	 * @since 3.7
+	 */
+	public int getSurrogateEstimatedCount() {
+		return m_estimatedCount;
+	}
+
+	/**
+	 * @return mean absolute difference between predicted and computed fitness
+	 *         values of the chromosomes evaluated during the last generation,
+	 *         NaN if none was screened
+	 *
+	 * @since 3.7
+	 */
+	public double getSurrogateError() {
+		if (m_assessedCount == 0) {
+			return Double.NaN;
+		}
+		return m_errorSum / m_assessedCount;
+	}
+
+	/**
+	 * @return correlation coefficient of predicted and computed fitness values
+	 *         of the chromosomes evaluated during the last generation, NaN if
+	 *         undefined
+	 *
+	 * @since 3.7
+	 */
+	public double getSurrogateCorrelation() {
+		final int n = m_assessedCount;
+		final double cov = n * m_sumProduct - m_sumPredicted * m_sumActual;
+		final double varPredicted = n * m_sumPredictedSq - m_sumPredicted
+				* m_sumPredicted;
+		final double varActual = n * m_sumActualSq - m_sumActual * m_sumActual;
+		if (n < 2 || varPredicted <= 0 || varActual <= 0) {
+			return Double.NaN;
+		}
+		return cov / Math.sqrt(varPredicted * varActual);
 	}
 
 	private Population removeEvaluatedChromosomes(final Population a_from_pop,
@@ -0,0 +1,52 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+/**
+ * Cheap model of a fitness function, trained online with the fitness values
+ * computed so far and used to estimate the fitness of new chromosomes (see
+ * GABreederMulti.setSurrogate). Chromosomes are represented by feature
+ * vectors, see GABreederMulti.getFeatures(IChromosome).
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public interface ISurrogateModel {
+  /** String containing the CVS revision. Read out via reflection!*/
+  final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Adds a sample to the model.
+   *
+   * @param a_features the feature vector of a chromosome
+   * @param a_fitness the fitness value computed for the chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  void train(double[] a_features, double a_fitness);
+
+  /**
+   * @param a_features the feature vector of a chromosome
+   * @return the estimated fitness value of the chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  double predict(double[] a_features);
+
+  /**
+   * @return number of samples the model holds
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  int size();
+}
@@ -9,11 +9,16 @@
  */
 package org.jgap.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.StringTokenizer;
 
 import org.jgap.Configuration;
 import org.jgap.Gene;
 import org.jgap.Genotype;
+import org.jgap.IBinaryRepresentation;
 import org.jgap.IPersistentRepresentation;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.RandomGenerator;
@@ -29,7 +34,8 @@ import org.jgap.UnsupportedRepresentationException;
  * @since 1.0
  */
 public class IntegerGene
-    extends NumberGene implements IPersistentRepresentation {
+    extends NumberGene implements IPersistentRepresentation,
+    IBinaryRepresentation {
   /** String containing the CVS revision. Read out via reflection!*/
   private static final String CVS_REVISION = "$Revision: 1.46 $";
 
@@ -401,4 +407,61 @@ public class IntegerGene
   public int getUpperBounds() {
     return m_upperBounds;
   }
+
+  /**
+   * Writes the bounds.
+   *
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeSchema(DataOutput a_out)
+      throws IOException {
+    a_out.writeInt(m_lowerBounds);
+    a_out.writeInt(m_upperBounds);
+  }
+
+  public void readSchema(DataInput a_in)
+      throws IOException {
+    m_lowerBounds = a_in.readInt();
+    m_upperBounds = a_in.readInt();
+  }
+
+  /**
+   * @return 5: a byte telling whether the allele is null and the int value
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getAlleleSize() {
+    return 5;
+  }
+
+  public void writeAllele(ByteBuffer a_out) {
+    Object value = getInternalValue();
+    if (value == null) {
+      a_out.put( (byte) 0).putInt(0);
+    }
+    else {
+      a_out.put( (byte) 1).putInt( ( (Integer) value).intValue());
+    }
+  }
+
+  public void readAllele(ByteBuffer a_in)
+      throws UnsupportedRepresentationException {
+    byte flag = a_in.get();
+    int value = a_in.getInt();
+    if (flag == 0) {
+      setAllele(null);
+    }
+    else if (flag == 1) {
+      setAllele(Integer.valueOf(value));
+    }
+    else {
+      throw new UnsupportedRepresentationException("Invalid allele flag "
+          + flag);
+    }
+  }
 }
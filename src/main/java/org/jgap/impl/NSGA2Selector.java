@@ -0,0 +1,369 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.jgap.Chromosome;
+import org.jgap.Configuration;
+import org.jgap.Genotype;
+import org.jgap.IChromosome;
+import org.jgap.ICloneHandler;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.NaturalSelectorExt;
+import org.jgap.Population;
+import org.jgap.util.CloneException;
+import org.jgap.util.ICloneable;
+
+/**
+ * Multi-objective selector following NSGA-II (Deb et al., 2002). The
+ * objective values are taken from Chromosome.getMultiObjectives(), which the
+ * fitness function has to set. Chromosomes are ranked by fast non-dominated
+ * sorting; the front not fitting completely into the next generation is cut
+ * by crowding distance, preferring chromosomes in less crowded regions.
+ * <p>
+ * As the population to select from contains both the parents and the
+ * offspring produced by the genetic operators, this is the elitist
+ * environmental selection of NSGA-II.
+ * <p>
+ * By default, all objectives are minimized, see setMaximized(boolean[]).
+ * Optionally, the non-dominated chromosomes are collected in a bounded
+ * ParetoArchive across generations, see setArchiveSize(int).
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class NSGA2Selector
+    extends NaturalSelectorExt implements ICloneable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private transient static Logger LOGGER = Logger.getLogger(
+      NSGA2Selector.class);
+
+  /**
+   * Stores the chromosomes to be taken into account for selection
+   */
+  private Population m_chromosomes;
+
+  /**
+   * Objectives to maximize, null for minimizing all of them
+   */
+  private boolean[] m_maximized;
+
+  private ParetoArchive m_archive;
+
+  /**
+   * Minimum number of chromosomes for sorting them with several threads
+   */
+  private int m_parallelThreshold = 1000;
+
+  private int m_threads;
+
+  /**
+   * Default constructor.
+   * Attention: The configuration used is the one set with the static method
+   * Genotype.setConfiguration.
+   *
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public NSGA2Selector()
+      throws InvalidConfigurationException {
+    this(Genotype.getStaticConfiguration());
+  }
+
+  /**
+   * @param a_config the configuration to use
+   * @throws InvalidConfigurationException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public NSGA2Selector(final Configuration a_config)
+      throws InvalidConfigurationException {
+    super(a_config);
+    m_chromosomes = new Population(a_config);
+    m_threads = Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Add a Chromosome instance to this selector's working pool of Chromosomes.
+   * @param a_chromosomeToAdd the specimen to add to the pool
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  protected void add(final IChromosome a_chromosomeToAdd) {
+    if (!getDoubletteChromosomesAllowed()
+        && m_chromosomes.getChromosomes().contains(a_chromosomeToAdd)) {
+      return;
+    }
+    a_chromosomeToAdd.setIsSelectedForNextGeneration(false);
+    m_chromosomes.addChromosome(a_chromosomeToAdd);
+  }
+
+  /**
+   * Selects the chromosomes of the best fronts. The chromosomes of the first
+   * front not fitting completely are selected by descending crowding
+   * distance.
+   *
+   * @param a_howManyToSelect the number of chromosomes to select
+   * @param a_to_pop the population the chromosomes will be added to
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  protected void selectChromosomes(final int a_howManyToSelect,
+                                   Population a_to_pop) {
+    int size = m_chromosomes.size();
+    if (size == 0) {
+      return;
+    }
+    IChromosome[] chroms = (IChromosome[]) m_chromosomes.getChromosomes().
+        toArray(new IChromosome[size]);
+    double[][] objectives = getObjectives(chroms);
+    int threads = size >= m_parallelThreshold ? m_threads : 1;
+    int[][] fronts = NonDominatedSorting.sort(objectives, threads);
+    if (m_archive != null) {
+      int[] first = fronts[0];
+      IChromosome[] candidates = new IChromosome[first.length];
+      double[][] candidateObjectives = new double[first.length][];
+      for (int i = 0; i < first.length; i++) {
+        candidates[i] = chroms[first[i]];
+        candidateObjectives[i] = objectives[first[i]];
+      }
+      m_archive.update(candidates, candidateObjectives);
+    }
+    int[] selected = new int[Math.min(a_howManyToSelect, size)];
+    int count = 0;
+    for (int f = 0; f < fronts.length && count < selected.length; f++) {
+      int[] front = fronts[f];
+      if (front.length > selected.length - count) {
+        double[] distance = NonDominatedSorting.crowdingDistance(objectives,
+            front);
+        front = NonDominatedSorting.sortByCrowding(front, distance);
+      }
+      for (int i = 0; i < front.length && count < selected.length; i++) {
+        selected[count++] = front[i];
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      IChromosome chrom = chroms[selected[i]];
+      chrom.setIsSelectedForNextGeneration(true);
+      a_to_pop.addChromosome(chrom);
+    }
+    if (getDoubletteChromosomesAllowed()) {
+      // Fill up with copies of the chromosomes selected, best first.
+      // --------------------------------------------------------------
+      for (int i = count; i < a_howManyToSelect; i++) {
+        IChromosome chrom = chroms[selected[i % count]];
+        ICloneHandler cloner = getConfiguration().getJGAPFactory().
+            getCloneHandlerFor(chrom, null);
+        if (cloner != null) {
+          try {
+            IChromosome cloned = (IChromosome) cloner.perform(chrom, null,
+                null);
+            cloned.setIsSelectedForNextGeneration(true);
+            if (m_monitorActive) {
+              cloned.setUniqueIDTemplate(chrom.getUniqueID(), 1);
+            }
+            chrom = cloned;
+          } catch (Exception ex) {
+            LOGGER.warn("Cloning chromosome failed, adding it as is", ex);
+          }
+        }
+        a_to_pop.addChromosome(chrom);
+      }
+    }
+  }
+
+  /**
+   * Builds the objective matrix of the given chromosomes, all objectives
+   * being minimized. The fitness value of each chromosome is determined
+   * first, as the fitness function sets the objective values.
+   *
+   * @param a_chroms the chromosomes
+   * @return the objective values, one row per chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  protected double[][] getObjectives(IChromosome[] a_chroms) {
+    double[][] objectives = new double[a_chroms.length][];
+    int count = -1;
+    for (int i = 0; i < a_chroms.length; i++) {
+      a_chroms[i].getFitnessValue();
+      List values = null;
+      if (a_chroms[i] instanceof Chromosome) {
+        values = ( (Chromosome) a_chroms[i]).getMultiObjectives();
+      }
+      if (values == null || values.isEmpty()) {
+        throw new IllegalStateException("Chromosome has no objective values,"
+                                        + " see"
+                                        + " Chromosome.setMultiObjectives");
+      }
+      if (count < 0) {
+        count = values.size();
+      }
+      else if (values.size() != count) {
+        throw new IllegalStateException("Number of objective values differs"
+                                        + " between chromosomes!");
+      }
+      double[] row = new double[count];
+      for (int k = 0; k < count; k++) {
+        row[k] = ( (Number) values.get(k)).doubleValue();
+        if (m_maximized != null && k < m_maximized.length && m_maximized[k]) {
+          row[k] = -row[k];
+        }
+      }
+      objectives[i] = row;
+    }
+    return objectives;
+  }
+
+  /**
+   * Empties out the working pool of Chromosomes.
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void empty() {
+    m_chromosomes.getChromosomes().clear();
+  }
+
+  /**
+   * @return always true as no Chromosome can be returnd multiple times
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public boolean returnsUniqueChromosomes() {
+    return true;
+  }
+
+  /**
+   * @param a_maximized per objective: true to maximize it, false to
+   * minimize it. Objectives without an entry are minimized
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void setMaximized(boolean[] a_maximized) {
+    m_maximized = a_maximized == null ? null : (boolean[]) a_maximized.clone();
+  }
+
+  public boolean[] getMaximized() {
+    return m_maximized == null ? null : (boolean[]) m_maximized.clone();
+  }
+
+  /**
+   * @param a_size maximum number of non-dominated chromosomes to keep across
+   * generations, 0 for not keeping an archive
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void setArchiveSize(int a_size) {
+    if (a_size < 0) {
+      throw new IllegalArgumentException("Archive size must not be"
+                                         + " negative!");
+    }
+    m_archive = a_size == 0 ? null : new ParetoArchive(a_size);
+  }
+
+  public int getArchiveSize() {
+    return m_archive == null ? 0 : m_archive.getMaxSize();
+  }
+
+  /**
+   * @return the archive of non-dominated chromosomes, null if none is kept
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public ParetoArchive getArchive() {
+    return m_archive;
+  }
+
+  /**
+   * @param a_threads number of threads to use for sorting large populations
+   * @param a_threshold minimum number of chromosomes for using several
+   * threads
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void setParallelism(int a_threads, int a_threshold) {
+    if (a_threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be"
+                                         + " positive!");
+    }
+    m_threads = a_threads;
+    m_parallelThreshold = a_threshold;
+  }
+
+  public int getThreads() {
+    return m_threads;
+  }
+
+  public int getParallelThreshold() {
+    return m_parallelThreshold;
+  }
+
+  public boolean equals(Object a_o) {
+    if (! (a_o instanceof NSGA2Selector)) {
+      return false;
+    }
+    NSGA2Selector other = (NSGA2Selector) a_o;
+    if (getDoubletteChromosomesAllowed() !=
+        other.getDoubletteChromosomesAllowed()) {
+      return false;
+    }
+    if (!Arrays.equals(m_maximized, other.m_maximized)) {
+      return false;
+    }
+    if (getArchiveSize() != other.getArchiveSize()) {
+      return false;
+    }
+    return m_chromosomes.equals(other.m_chromosomes);
+  }
+
+  public int hashCode() {
+    // The chromosomes added are left out, as they may change.
+    // -------------------------------------------------------
+    int hash = Arrays.hashCode(m_maximized);
+    hash = 31 * hash + getArchiveSize();
+    return 31 * hash + (getDoubletteChromosomesAllowed() ? 1 : 0);
+  }
+
+  /**
+   * @return a selector with the same settings and an empty archive
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Object clone() {
+    try {
+      NSGA2Selector sel = new NSGA2Selector(getConfiguration());
+      sel.setDoubletteChromosomesAllowed(getDoubletteChromosomesAllowed());
+      sel.setMaximized(m_maximized);
+      sel.setArchiveSize(getArchiveSize());
+      sel.setParallelism(m_threads, m_parallelThreshold);
+      return sel;
+    } catch (Throwable t) {
+      throw new CloneException(t);
+    }
+  }
+}
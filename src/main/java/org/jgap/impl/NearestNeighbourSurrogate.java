@@ -0,0 +1,158 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Surrogate model estimating the fitness of a chromosome by the k nearest
+ * samples, weighted by inverse distance. Each feature is scaled to the range
+ * of values seen so far, so that features of different magnitude count
+ * alike.
+ * <p>
+ * The model holds a bounded number of samples; when full, the oldest sample
+ * is replaced, so the model follows the region the population moves to.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class NearestNeighbourSurrogate
+    implements ISurrogateModel, Serializable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final int m_k;
+
+  private final double[][] m_samples;
+
+  private final double[] m_values;
+
+  private int m_size;
+
+  /**
+   * Slot to write the next sample to.
+   */
+  private int m_next;
+
+  private double[] m_min;
+
+  private double[] m_max;
+
+  /**
+   * Uses 5 neighbours and holds up to 2000 samples.
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public NearestNeighbourSurrogate() {
+    this(5, 2000);
+  }
+
+  /**
+   * @param a_k number of neighbours to consider
+   * @param a_capacity maximum number of samples to hold
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public NearestNeighbourSurrogate(int a_k, int a_capacity) {
+    if (a_k < 1 || a_capacity < a_k) {
+      throw new IllegalArgumentException("Number of neighbours must be"
+                                         + " positive and not exceed the"
+                                         + " capacity!");
+    }
+    m_k = a_k;
+    m_samples = new double[a_capacity][];
+    m_values = new double[a_capacity];
+  }
+
+  public synchronized void train(double[] a_features, double a_fitness) {
+    if (m_min == null) {
+      m_min = (double[]) a_features.clone();
+      m_max = (double[]) a_features.clone();
+    }
+    else if (a_features.length != m_min.length) {
+      throw new IllegalArgumentException("Expected " + m_min.length
+                                         + " features but got "
+                                         + a_features.length);
+    }
+    for (int i = 0; i < a_features.length; i++) {
+      m_min[i] = Math.min(m_min[i], a_features[i]);
+      m_max[i] = Math.max(m_max[i], a_features[i]);
+    }
+    m_samples[m_next] = (double[]) a_features.clone();
+    m_values[m_next] = a_fitness;
+    m_next = (m_next + 1) % m_samples.length;
+    if (m_size < m_samples.length) {
+      m_size++;
+    }
+  }
+
+  public synchronized double predict(double[] a_features) {
+    if (m_size == 0) {
+      throw new IllegalStateException("Model has not been trained yet!");
+    }
+    int k = Math.min(m_k, m_size);
+    // The k nearest samples found so far, ordered by ascending distance.
+    // ------------------------------------------------------------------
+    double[] distances = new double[k];
+    int[] nearest = new int[k];
+    Arrays.fill(distances, Double.POSITIVE_INFINITY);
+    for (int s = 0; s < m_size; s++) {
+      double distance = distance(a_features, m_samples[s]);
+      if (distance >= distances[k - 1]) {
+        continue;
+      }
+      int pos = k - 1;
+      while (pos > 0 && distances[pos - 1] > distance) {
+        distances[pos] = distances[pos - 1];
+        nearest[pos] = nearest[pos - 1];
+        pos--;
+      }
+      distances[pos] = distance;
+      nearest[pos] = s;
+    }
+    if (distances[0] == 0) {
+      return m_values[nearest[0]];
+    }
+    double weightSum = 0;
+    double sum = 0;
+    for (int i = 0; i < k; i++) {
+      if (Double.isInfinite(distances[i])) {
+        break;
+      }
+      double weight = 1.0d / distances[i];
+      weightSum += weight;
+      sum += weight * m_values[nearest[i]];
+    }
+    return sum / weightSum;
+  }
+
+  /**
+   * @return Euclidean distance of the scaled feature vectors
+   */
+  private double distance(double[] a_x, double[] a_y) {
+    double sum = 0;
+    for (int i = 0; i < a_x.length; i++) {
+      double range = m_max[i] - m_min[i];
+      double diff = a_x[i] - a_y[i];
+      if (range > 0) {
+        diff /= range;
+      }
+      sum += diff * diff;
+    }
+    return Math.sqrt(sum);
+  }
+
+  public synchronized int size() {
+    return m_size;
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fast non-dominated sorting and crowding distance as introduced by NSGA-II
+ * (Deb et al., 2002), working on plain objective matrices: row i holds the
+ * objective values of individual i. All objectives are minimized.
+ * <p>
+ * Determining which individuals dominate each other takes O(M * N^2) for N
+ * individuals and M objectives and can be spread over several threads. The
+ * crowding distance of a front of size K takes O(M * K log K).
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class NonDominatedSorting {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private NonDominatedSorting() {
+  }
+
+  /**
+   * @param a_x objective values of the first individual
+   * @param a_y objective values of the second individual
+   * @return true if the first individual is not worse than the second one in
+   * all objectives and better in at least one (minimization)
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static boolean dominates(double[] a_x, double[] a_y) {
+    boolean better = false;
+    for (int k = 0; k < a_x.length; k++) {
+      if (a_x[k] > a_y[k]) {
+        return false;
+      }
+      if (a_x[k] < a_y[k]) {
+        better = true;
+      }
+    }
+    return better;
+  }
+
+  /**
+   * Sorts individuals into non-dominated fronts.
+   *
+   * @param a_objectives the objective values, one row per individual
+   * @param a_threads number of threads to use for the dominance comparisons,
+   * the current thread being one of them
+   * @return the fronts, starting with the non-dominated individuals. Each
+   * front holds row indices in ascending order
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static int[][] sort(final double[][] a_objectives, int a_threads) {
+    final int n = a_objectives.length;
+    // For each individual: the individuals it dominates and the number of
+    // individuals dominating it.
+    // ---------------------------------------------------------------------
+    final int[][] dominated = new int[n][];
+    final int[] dominatedByCount = new int[n];
+    int threads = Math.max(1, Math.min(a_threads, n / 64));
+    if (threads == 1) {
+      compare(a_objectives, 0, n, dominated, dominatedByCount);
+    }
+    else {
+      final AtomicInteger nextRow = new AtomicInteger();
+      final int block = Math.max(16, n / (threads * 8));
+      Runnable worker = new Runnable() {
+        public void run() {
+          int start;
+          while ( (start = nextRow.getAndAdd(block)) < n) {
+            compare(a_objectives, start, Math.min(n, start + block), dominated,
+                    dominatedByCount);
+          }
+        }
+      };
+      Thread[] workerThreads = new Thread[threads - 1];
+      for (int i = 0; i < workerThreads.length; i++) {
+        workerThreads[i] = new Thread(worker, "Non-dominated sorting "
+                                      + (i + 1));
+        workerThreads[i].start();
+      }
+      // The current thread takes part in comparing.
+      // -------------------------------------------
+      worker.run();
+      for (int i = 0; i < workerThreads.length; i++) {
+        try {
+          workerThreads[i].join();
+        } catch (InterruptedException iex) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while sorting");
+        }
+      }
+    }
+    // Peel off the fronts.
+    // --------------------
+    int[] front = new int[n];
+    int size = 0;
+    for (int i = 0; i < n; i++) {
+      if (dominatedByCount[i] == 0) {
+        front[size++] = i;
+      }
+    }
+    int[][] fronts = new int[n][];
+    int count = 0;
+    int[] next = new int[n];
+    while (size > 0) {
+      fronts[count++] = Arrays.copyOf(front, size);
+      int nextSize = 0;
+      for (int i = 0; i < size; i++) {
+        int[] worse = dominated[front[i]];
+        for (int j = 0; j < worse.length; j++) {
+          if (--dominatedByCount[worse[j]] == 0) {
+            next[nextSize++] = worse[j];
+          }
+        }
+      }
+      Arrays.sort(next, 0, nextSize);
+      int[] tmp = front;
+      front = next;
+      next = tmp;
+      size = nextSize;
+    }
+    return Arrays.copyOf(fronts, count);
+  }
+
+  /**
+   * Compares the rows a_start (inclusive) to a_end (exclusive) with all rows.
+   */
+  private static void compare(double[][] a_objectives, int a_start, int a_end,
+                              int[][] a_dominated, int[] a_dominatedByCount) {
+    int n = a_objectives.length;
+    int[] buffer = new int[n];
+    for (int i = a_start; i < a_end; i++) {
+      double[] row = a_objectives[i];
+      int size = 0;
+      int dominatedBy = 0;
+      for (int j = 0; j < n; j++) {
+        if (j == i) {
+          continue;
+        }
+        if (dominates(row, a_objectives[j])) {
+          buffer[size++] = j;
+        }
+        else if (dominates(a_objectives[j], row)) {
+          dominatedBy++;
+        }
+      }
+      a_dominated[i] = Arrays.copyOf(buffer, size);
+      a_dominatedByCount[i] = dominatedBy;
+    }
+  }
+
+  /**
+   * Computes the crowding distance of the individuals of a front. Boundary
+   * individuals of each objective get an infinite distance.
+   *
+   * @param a_objectives the objective values, one row per individual
+   * @param a_front row indices of the individuals of the front
+   * @return the crowding distances, aligned with a_front
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static double[] crowdingDistance(double[][] a_objectives,
+                                          int[] a_front) {
+    int size = a_front.length;
+    double[] distance = new double[size];
+    if (size < 3) {
+      Arrays.fill(distance, Double.POSITIVE_INFINITY);
+      return distance;
+    }
+    int objectives = a_objectives[a_front[0]].length;
+    Integer[] order = new Integer[size];
+    final double[] values = new double[size];
+    Comparator<Integer> byValue = new Comparator<Integer>() {
+      public int compare(Integer a_o1, Integer a_o2) {
+        return Double.compare(values[a_o1.intValue()],
+                              values[a_o2.intValue()]);
+      }
+    };
+    for (int k = 0; k < objectives; k++) {
+      for (int i = 0; i < size; i++) {
+        order[i] = Integer.valueOf(i);
+        values[i] = a_objectives[a_front[i]][k];
+      }
+      Arrays.sort(order, byValue);
+      int first = order[0].intValue();
+      int last = order[size - 1].intValue();
+      distance[first] = Double.POSITIVE_INFINITY;
+      distance[last] = Double.POSITIVE_INFINITY;
+      double range = values[last] - values[first];
+      if (range <= 0 || Double.isInfinite(range) || Double.isNaN(range)) {
+        continue;
+      }
+      for (int i = 1; i < size - 1; i++) {
+        int index = order[i].intValue();
+        distance[index] += (values[order[i + 1].intValue()]
+                            - values[order[i - 1].intValue()]) / range;
+      }
+    }
+    return distance;
+  }
+
+  /**
+   * @param a_front row indices of the individuals of a front
+   * @param a_distance crowding distances, aligned with a_front
+   * @return the row indices ordered by descending crowding distance, ties
+   * keeping the order of the front
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static int[] sortByCrowding(int[] a_front,
+                                     final double[] a_distance) {
+    Integer[] order = new Integer[a_front.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = Integer.valueOf(i);
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a_o1, Integer a_o2) {
+        return Double.compare(a_distance[a_o2.intValue()],
+                              a_distance[a_o1.intValue()]);
+      }
+    });
+    int[] result = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      result[i] = a_front[order[i].intValue()];
+    }
+    return result;
+  }
+}
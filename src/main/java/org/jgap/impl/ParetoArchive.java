@@ -0,0 +1,149 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jgap.IChromosome;
+
+/**
+ * Bounded archive of the non-dominated chromosomes found so far, kept across
+ * generations. When there are more non-dominated chromosomes than the
+ * archive can hold, those in the most crowded regions of the front are
+ * discarded (see NonDominatedSorting.crowdingDistance).
+ * <p>
+ * Objective values are minimized, as in NonDominatedSorting. Chromosomes are
+ * cloned when entering the archive, thus later changes of the population do
+ * not affect it.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class ParetoArchive
+    implements Serializable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final int m_maxSize;
+
+  private List<IChromosome> m_members;
+
+  private List<double[]> m_objectives;
+
+  /**
+   * @param a_maxSize maximum number of chromosomes to keep
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public ParetoArchive(int a_maxSize) {
+    if (a_maxSize < 1) {
+      throw new IllegalArgumentException("Archive size must be positive!");
+    }
+    m_maxSize = a_maxSize;
+    m_members = new ArrayList<IChromosome>();
+    m_objectives = new ArrayList<double[]>();
+  }
+
+  /**
+   * Adds the candidates not dominated by any other candidate or member and
+   * removes the members dominated by a candidate. Candidates with the same
+   * objective values as a member are ignored.
+   *
+   * @param a_candidates the chromosomes to offer
+   * @param a_objectives the objective values of the candidates, aligned with
+   * a_candidates
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized void update(IChromosome[] a_candidates,
+                                  double[][] a_objectives) {
+    List<IChromosome> chroms = new ArrayList<IChromosome>(m_members);
+    List<double[]> objectives = new ArrayList<double[]>(m_objectives);
+    int members = chroms.size();
+    for (int i = 0; i < a_candidates.length; i++) {
+      if (!contains(objectives, a_objectives[i])) {
+        chroms.add(a_candidates[i]);
+        objectives.add(a_objectives[i]);
+      }
+    }
+    if (chroms.size() == members) {
+      return;
+    }
+    double[][] matrix = objectives.toArray(new double[objectives.size()][]);
+    int[] front = NonDominatedSorting.sort(matrix, 1)[0];
+    if (front.length > m_maxSize) {
+      double[] distance = NonDominatedSorting.crowdingDistance(matrix, front);
+      front = Arrays.copyOf(NonDominatedSorting.sortByCrowding(front,
+          distance), m_maxSize);
+      Arrays.sort(front);
+    }
+    List<IChromosome> newMembers = new ArrayList<IChromosome>(front.length);
+    List<double[]> newObjectives = new ArrayList<double[]>(front.length);
+    for (int i = 0; i < front.length; i++) {
+      IChromosome chrom = chroms.get(front[i]);
+      if (front[i] >= members) {
+        chrom = (IChromosome) chrom.clone();
+      }
+      newMembers.add(chrom);
+      newObjectives.add(matrix[front[i]]);
+    }
+    m_members = newMembers;
+    m_objectives = newObjectives;
+  }
+
+  private static boolean contains(List<double[]> a_objectives,
+                                  double[] a_values) {
+    for (double[] values : a_objectives) {
+      if (Arrays.equals(values, a_values)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the chromosomes of the archive, must not be modified
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized List<IChromosome> getMembers() {
+    return m_members;
+  }
+
+  /**
+   * @param a_index index of a member
+   * @return the objective values of the member, as minimized
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public synchronized double[] getObjectives(int a_index) {
+    return m_objectives.get(a_index);
+  }
+
+  public synchronized int size() {
+    return m_members.size();
+  }
+
+  public int getMaxSize() {
+    return m_maxSize;
+  }
+
+  public synchronized void clear() {
+    m_members = new ArrayList<IChromosome>();
+    m_objectives = new ArrayList<double[]>();
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jgap.BulkFitnessFunction;
+import org.jgap.FitnessEvaluator;
+import org.jgap.IChromosome;
+import org.jgap.Population;
+
+/**
+ * Bulk fitness function evaluating the chromosomes of a population by racing,
+ * see RacingEvaluator. Chromosomes already having a fitness value are not
+ * sampled again but count for the selection threshold.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class RacingBulkFitnessFunction
+    extends BulkFitnessFunction {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private RacingEvaluator m_racing;
+
+  /**
+   * @param a_racing the racing evaluator to use
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public RacingBulkFitnessFunction(RacingEvaluator a_racing) {
+    if (a_racing == null) {
+      throw new IllegalArgumentException("Racing evaluator must not be null!");
+    }
+    m_racing = a_racing;
+  }
+
+  public void evaluate(Population a_chromosomes) {
+    int size = a_chromosomes.size();
+    List<IChromosome> chroms = new ArrayList<IChromosome>(size);
+    for (int i = 0; i < size; i++) {
+      chroms.add(a_chromosomes.getChromosome(i));
+    }
+    FitnessEvaluator evaluator = a_chromosomes.getConfiguration().
+        getFitnessEvaluator();
+    m_racing.evaluate(chroms, evaluator);
+  }
+
+  public RacingEvaluator getRacingEvaluator() {
+    return m_racing;
+  }
+}
@@ -0,0 +1,403 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jgap.Chromosome;
+import org.jgap.FitnessEvaluator;
+import org.jgap.IChromosome;
+import org.jgap.SampledFitnessFunction;
+
+/**
+ * Evaluates individuals with a sampled fitness function by racing: all
+ * individuals still in the race get their next sample in rounds. After a
+ * minimum number of samples, an individual drops out as soon as the
+ * confidence interval of its mean shows it is worse than the selection
+ * threshold, i.e. its optimistic bound is worse than the pessimistic bound of
+ * the k-th best individual, k being the number of individuals selected. The
+ * individuals left get all samples.
+ * <p>
+ * The fitness value of an individual is the mean of the samples it got and is
+ * set via IChromosome.setFitnessValue. Individuals that dropped out keep a
+ * (less exact) fitness value that is worse than the threshold with the
+ * confidence chosen. For instances of Chromosome, it is set via
+ * Chromosome.setFitnessValueEstimated, thus isFitnessEstimated() tells them
+ * apart. Individuals that already have a fitness value take part as reference
+ * with a known fitness value.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class RacingEvaluator
+    implements Serializable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private SampledFitnessFunction m_function;
+
+  /**
+   * Fraction of all individuals making it through selection, determines the
+   * threshold.
+   */
+  private double m_selectedFraction;
+
+  private int m_minSamples = 3;
+
+  /**
+   * Width of the confidence interval in standard errors.
+   */
+  private double m_confidence = 1.96d;
+
+  private int m_threads = 1;
+
+  private transient long m_samplesTaken;
+
+  private transient long m_samplesSaved;
+
+  private transient int m_droppedOut;
+
+  /**
+   * @param a_function the fitness function to sample
+   * @param a_selectedFraction fraction of the individuals making it through
+   * selection, greater than 0 and not greater than 1
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public RacingEvaluator(SampledFitnessFunction a_function,
+                         double a_selectedFraction) {
+    if (a_function == null) {
+      throw new IllegalArgumentException("Fitness function must not be null!");
+    }
+    if (a_selectedFraction <= 0 || a_selectedFraction > 1) {
+      throw new IllegalArgumentException("Selected fraction must be greater"
+                                         + " than 0 and not greater than 1!");
+    }
+    m_function = a_function;
+    m_selectedFraction = a_selectedFraction;
+  }
+
+  /**
+   * Evaluates the individuals without fitness value by racing. Individuals
+   * with a fitness value are taken into account for the threshold.
+   *
+   * @param a_chroms the individuals
+   * @param a_evaluator determines whether higher or lower values are fitter
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void evaluate(List<IChromosome> a_chroms,
+                       FitnessEvaluator a_evaluator) {
+    int racing = 0;
+    for (IChromosome chrom : a_chroms) {
+      if (chrom.getFitnessValueDirectly() < 0) {
+        racing++;
+      }
+    }
+    IChromosome[] chroms = new IChromosome[racing];
+    double[] reference = new double[a_chroms.size() - racing];
+    racing = 0;
+    int refs = 0;
+    for (IChromosome chrom : a_chroms) {
+      double fitness = chrom.getFitnessValueDirectly();
+      if (fitness < 0) {
+        chroms[racing++] = chrom;
+      }
+      else {
+        reference[refs++] = fitness;
+      }
+    }
+    int[] count = new int[racing];
+    double[] fitness = race(chroms, reference, a_evaluator, count);
+    int samples = m_function.getSampleCount();
+    for (int i = 0; i < chroms.length; i++) {
+      if (count[i] < samples && chroms[i] instanceof Chromosome) {
+        // Dropped out, the mean of a part of the samples only.
+        // ----------------------------------------------------
+        ( (Chromosome) chroms[i]).setFitnessValueEstimated(fitness[i]);
+      }
+      else {
+        chroms[i].setFitnessValue(fitness[i]);
+      }
+    }
+  }
+
+  /**
+   * Races the given individuals without setting their fitness values.
+   *
+   * @param a_chroms the individuals to race
+   * @param a_reference known fitness values of other individuals competing
+   * for selection
+   * @param a_evaluator determines whether higher or lower values are fitter
+   * @return mean of the samples taken per individual
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public double[] race(IChromosome[] a_chroms, double[] a_reference,
+                       FitnessEvaluator a_evaluator) {
+    return race(a_chroms, a_reference, a_evaluator,
+                new int[a_chroms.length]);
+  }
+
+  /**
+   * @param a_count receives the number of samples taken per individual
+   */
+  private double[] race(IChromosome[] a_chroms, double[] a_reference,
+                        FitnessEvaluator a_evaluator, int[] a_count) {
+    int n = a_chroms.length;
+    int samples = m_function.getSampleCount();
+    m_samplesTaken = 0;
+    m_samplesSaved = 0;
+    m_droppedOut = 0;
+    double[] sum = new double[n];
+    double[] sumSq = new double[n];
+    int[] count = a_count;
+    if (n == 0) {
+      return sum;
+    }
+    // Compare "goodness", being the value if higher values are fitter and
+    // the negated value otherwise.
+    // --------------------------------------------------------------------
+    final double sign = a_evaluator.isFitter(2.0d, 1.0d) ? 1.0d : -1.0d;
+    int total = n + a_reference.length;
+    int selected = Math.max(1, (int) Math.ceil(total * m_selectedFraction));
+    boolean[] active = new boolean[n];
+    Arrays.fill(active, true);
+    int activeCount = n;
+    double[] lower = new double[total];
+    for (int round = 0; round < samples; round++) {
+      int[] indices = new int[activeCount];
+      int k = 0;
+      for (int i = 0; i < n; i++) {
+        if (active[i]) {
+          indices[k++] = i;
+        }
+      }
+      double[] values = sample(a_chroms, indices, round);
+      for (int j = 0; j < indices.length; j++) {
+        int i = indices[j];
+        sum[i] += values[j];
+        sumSq[i] += values[j] * values[j];
+        count[i]++;
+      }
+      m_samplesTaken += indices.length;
+      if (round + 1 < m_minSamples || round + 1 == samples
+          || activeCount <= selected) {
+        continue;
+      }
+      // Threshold: k-th largest pessimistic bound.
+      // ------------------------------------------
+      for (int i = 0; i < n; i++) {
+        lower[i] = sign * mean(sum[i], count[i])
+            - halfWidth(sum[i], sumSq[i], count[i]);
+      }
+      for (int i = 0; i < a_reference.length; i++) {
+        lower[n + i] = sign * a_reference[i];
+      }
+      double[] sorted = lower.clone();
+      Arrays.sort(sorted);
+      double threshold = sorted[total - selected];
+      for (int i = 0; i < n; i++) {
+        if (active[i]) {
+          double upper = sign * mean(sum[i], count[i])
+              + halfWidth(sum[i], sumSq[i], count[i]);
+          if (upper < threshold) {
+            active[i] = false;
+            activeCount--;
+            m_droppedOut++;
+            m_samplesSaved += samples - count[i];
+          }
+        }
+      }
+    }
+    double[] result = new double[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = mean(sum[i], count[i]);
+    }
+    return result;
+  }
+
+  private double[] sample(final IChromosome[] a_chroms, final int[] a_indices,
+                          final int a_sample) {
+    final double[] values = new double[a_indices.length];
+    int threads = Math.min(m_threads, a_indices.length);
+    if (threads <= 1) {
+      for (int j = 0; j < a_indices.length; j++) {
+        values[j] = sampleValue(a_chroms[a_indices[j]], a_sample);
+      }
+      return values;
+    }
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicReference<RuntimeException> failure =
+        new AtomicReference<RuntimeException>();
+    Runnable worker = new Runnable() {
+      public void run() {
+        int j;
+        while ( (j = next.getAndIncrement()) < a_indices.length
+               && failure.get() == null) {
+          try {
+            values[j] = sampleValue(a_chroms[a_indices[j]], a_sample);
+          } catch (RuntimeException rex) {
+            failure.compareAndSet(null, rex);
+          }
+        }
+      }
+    };
+    Thread[] workerThreads = new Thread[threads - 1];
+    for (int i = 0; i < workerThreads.length; i++) {
+      workerThreads[i] = new Thread(worker, "Racing " + (i + 1));
+      workerThreads[i].start();
+    }
+    // The current thread takes part in sampling.
+    // ------------------------------------------
+    worker.run();
+    for (int i = 0; i < workerThreads.length; i++) {
+      try {
+        workerThreads[i].join();
+      } catch (InterruptedException iex) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while racing");
+      }
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+    return values;
+  }
+
+  private double sampleValue(IChromosome a_chrom, int a_sample) {
+    double value = m_function.evaluateSample(a_chrom, a_sample);
+    if (value < 0 || Double.isNaN(value)) {
+      throw new RuntimeException("Sample values must be positive! Received"
+                                 + " value: " + value);
+    }
+    return value;
+  }
+
+  private static double mean(double a_sum, int a_count) {
+    return a_sum / a_count;
+  }
+
+  /**
+   * @return half width of the confidence interval of the mean
+   */
+  private double halfWidth(double a_sum, double a_sumSq, int a_count) {
+    if (a_count < 2) {
+      return Double.POSITIVE_INFINITY;
+    }
+    double mean = a_sum / a_count;
+    double variance = (a_sumSq - a_count * mean * mean) / (a_count - 1);
+    if (variance <= 0) {
+      return 0;
+    }
+    return m_confidence * Math.sqrt(variance / a_count);
+  }
+
+  /**
+   * @param a_minSamples number of samples every individual gets before it can
+   * drop out, at least 2
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void setMinSamples(int a_minSamples) {
+    if (a_minSamples < 2) {
+      throw new IllegalArgumentException("At least two samples needed!");
+    }
+    m_minSamples = a_minSamples;
+  }
+
+  public int getMinSamples() {
+    return m_minSamples;
+  }
+
+  /**
+   * @param a_confidence width of the confidence interval in standard errors,
+   * e.g. 1.96 for 95 percent (default), larger values drop out fewer
+   * individuals
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void setConfidence(double a_confidence) {
+    if (a_confidence < 0) {
+      throw new IllegalArgumentException("Confidence must not be negative!");
+    }
+    m_confidence = a_confidence;
+  }
+
+  public double getConfidence() {
+    return m_confidence;
+  }
+
+  /**
+   * @param a_threads number of threads computing the samples of a round,
+   * including the calling thread
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void setThreads(int a_threads) {
+    if (a_threads < 1) {
+      throw new IllegalArgumentException("At least one thread needed!");
+    }
+    m_threads = a_threads;
+  }
+
+  public int getThreads() {
+    return m_threads;
+  }
+
+  public SampledFitnessFunction getFitnessFunction() {
+    return m_function;
+  }
+
+  public double getSelectedFraction() {
+    return m_selectedFraction;
+  }
+
+  /**
+   * @return number of samples computed during the last race
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public long getSamplesTaken() {
+    return m_samplesTaken;
+  }
+
+  /**
+   * @return number of samples not computed during the last race because
+   * individuals dropped out
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public long getSamplesSaved() {
+    return m_samplesSaved;
+  }
+
+  /**
+   * @return number of individuals that dropped out of the last race
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getDroppedOut() {
+    return m_droppedOut;
+  }
+}
@@ -9,17 +9,23 @@
  */
 package org.jgap.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.StringTokenizer;
 
 import org.jgap.BaseGene;
 import org.jgap.Configuration;
 import org.jgap.Gene;
 import org.jgap.Genotype;
+import org.jgap.IBinaryRepresentation;
 import org.jgap.IBusinessKey;
 import org.jgap.IPersistentRepresentation;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.RandomGenerator;
 import org.jgap.UnsupportedRepresentationException;
+import org.jgap.data.ChromosomeSchema;
 
 /**
  * A Gene implementation that supports a string for its allele. The valid
@@ -34,7 +40,8 @@ import org.jgap.UnsupportedRepresentationException;
  * @since 1.1
  */
 public class StringGene
-    extends BaseGene implements IPersistentRepresentation, IBusinessKey {
+    extends BaseGene implements IPersistentRepresentation, IBusinessKey,
+    IBinaryRepresentation {
   //Constants for ready-to-use alphabets or serving as part of concetenation
   public static final String ALPHABET_CHARACTERS_UPPER =
       "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
@@ -625,4 +632,54 @@ public class StringGene
   protected Object getInternalValue() {
     return m_value;
   }
+
+  /**
+   * Writes the minimum and maximum length and the alphabet.
+   *
+   * @param a_out the output to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeSchema(DataOutput a_out)
+      throws IOException {
+    a_out.writeInt(m_minLength);
+    a_out.writeInt(m_maxLength);
+    ChromosomeSchema.writeString(a_out, m_alphabet);
+  }
+
+  public void readSchema(DataInput a_in)
+      throws IOException {
+    m_minLength = a_in.readInt();
+    m_maxLength = a_in.readInt();
+    m_alphabet = ChromosomeSchema.readString(a_in);
+  }
+
+  /**
+   * @return -1 as the length of the value varies
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getAlleleSize() {
+    return -1;
+  }
+
+  public void writeAllele(ByteBuffer a_out) {
+    ChromosomeSchema.putString(a_out, m_value);
+  }
+
+  /**
+   * Sets the value read without validating it, as it was written by a valid
+   * gene of the same schema.
+   *
+   * @param a_in the buffer to read from
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void readAllele(ByteBuffer a_in) {
+    m_value = ChromosomeSchema.getString(a_in);
+  }
 }
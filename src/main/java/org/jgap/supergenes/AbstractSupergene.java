@@ -13,7 +13,6 @@ import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -27,6 +26,8 @@ import org.jgap.IPersistentRepresentation;
 import org.jgap.InvalidConfigurationException;
 import org.jgap.RandomGenerator;
 import org.jgap.UnsupportedRepresentationException;
+import org.jgap.util.ConstructorCache;
+import org.jgap.util.RepresentationCursor;
 
 /**
  * Combined implementation of both Supergene and SupergeneValidator.
@@ -428,29 +429,21 @@ public abstract class AbstractSupergene
       try {
         /// Remove the old content.
         // ------------------------
-        List r = split(a_representation);
-        Iterator iter = r.iterator();
-        m_genes = new Gene[r.size() - 1];
+        RepresentationCursor cursor = new RepresentationCursor(
+            a_representation);
         // The first member in array is a validator representation.
         // --------------------------------------------------------
-        StringTokenizer st;
-        String clas;
-        String representation;
-        String g;
-        Gene gene;
-        String validator = (String) iter.next();
-        setValidator(createValidator(decode(validator)));
-        for (int i = 0; i < m_genes.length; i++) {
-          g = decode( (String) iter.next());
-          st = new StringTokenizer(g, GENE_DELIMITER);
-          if (st.countTokens() != 2)
-            throw new UnsupportedRepresentationException("In " + g + ", " +
-                "expecting two tokens, separated by " + GENE_DELIMITER);
-          clas = st.nextToken();
-          representation = st.nextToken();
-          gene = createGene(clas, representation);
-          m_genes[i] = gene;
+        String validator = cursor.nextElement(GENE_DELIMITER_HEADING,
+                                              GENE_DELIMITER_CLOSING);
+        setValidator(createValidator(validator));
+        String[] st;
+        List genes = new ArrayList();
+        while (cursor.hasNext()) {
+          st = RepresentationCursor.splitPair(cursor.nextElement(
+              GENE_DELIMITER_HEADING, GENE_DELIMITER_CLOSING), GENE_DELIMITER);
+          genes.add(createGene(st[0], st[1]));
         }
+        m_genes = (Gene[]) genes.toArray(new Gene[genes.size()]);
       }
       catch (Exception ex) {
         ex.printStackTrace();
@@ -502,9 +495,8 @@ public abstract class AbstractSupergene
   protected Gene createGene(String a_geneClassName,
                             String a_persistentRepresentation)
       throws Exception {
-    Class geneClass = Class.forName(a_geneClassName);
-    Constructor constr = geneClass.getConstructor(new Class[] {Configuration.class});
-    Gene gene = (Gene) constr.newInstance(new Object[] {getConfiguration()});
+    Gene gene = (Gene) ConstructorCache.newInstance(a_geneClassName,
+        Configuration.class, getConfiguration());
     gene.setValueFromPersistentRepresentation(a_persistentRepresentation);
     return gene;
   }
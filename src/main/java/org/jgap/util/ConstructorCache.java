@@ -0,0 +1,86 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.util;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates instances of classes given by name via their constructor taking a
+ * single parameter (e.g. the configuration). The class and constructor are
+ * looked up once per class, which makes instantiating many genes or
+ * chromosomes from their persistent representation considerably faster.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class ConstructorCache {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Constructors by parameter type and class name.
+   */
+  private final static ConcurrentHashMap<Class, ConcurrentHashMap<String,
+      Constructor>> CONSTRUCTORS = new ConcurrentHashMap<Class,
+      ConcurrentHashMap<String, Constructor>>();
+
+  private ConstructorCache() {
+  }
+
+  /**
+   * @param a_className name of the class to instantiate
+   * @param a_parameterType type of the constructor's parameter
+   * @param a_parameter the parameter to pass to the constructor
+   * @return newly created instance
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static Object newInstance(String a_className, Class a_parameterType,
+                                   Object a_parameter)
+      throws Exception {
+    return getConstructor(a_className, a_parameterType).newInstance(
+        new Object[] {a_parameter});
+  }
+
+  /**
+   * @param a_className name of the class
+   * @param a_parameterType type of the constructor's parameter
+   * @return the constructor of the class taking a single parameter of the
+   * given type
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static Constructor getConstructor(String a_className,
+      Class a_parameterType)
+      throws Exception {
+    ConcurrentHashMap<String, Constructor> constructors = CONSTRUCTORS.get(
+        a_parameterType);
+    if (constructors == null) {
+      constructors = new ConcurrentHashMap<String, Constructor>();
+      ConcurrentHashMap<String, Constructor> old = CONSTRUCTORS.putIfAbsent(
+          a_parameterType, constructors);
+      if (old != null) {
+        constructors = old;
+      }
+    }
+    Constructor constr = constructors.get(a_className);
+    if (constr == null) {
+      Class clazz = Class.forName(a_className);
+      constr = clazz.getConstructor(new Class[] {a_parameterType});
+      constructors.put(a_className, constr);
+    }
+    return constr;
+  }
+}
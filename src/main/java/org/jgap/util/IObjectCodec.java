@@ -0,0 +1,68 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Interface for codecs writing objects to a stream and reading them back,
+ * e.g. for persisting results (see PersistableObject) as an alternative to
+ * XStream.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public interface IObjectCodec {
+  /** String containing the CVS revision. Read out via reflection!*/
+  final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Number of leading bytes needed by isEncoded.
+   */
+  final static int HEADER_LENGTH = 4;
+
+  /**
+   * Writes an object to a stream, which is not closed.
+   *
+   * @param a_object the object to write
+   * @param a_out the stream to write to
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  void encode(Object a_object, OutputStream a_out)
+      throws IOException;
+
+  /**
+   * Reads an object written by encode from a stream, which is not closed.
+   *
+   * @param a_in the stream to read from
+   * @return the object read
+   * @throws IOException
+   * @throws ClassNotFoundException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  Object decode(InputStream a_in)
+      throws IOException, ClassNotFoundException;
+
+  /**
+   * @param a_header the first HEADER_LENGTH bytes of a stream
+   * @return true if the stream was written by this codec
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  boolean isEncoded(byte[] a_header);
+}
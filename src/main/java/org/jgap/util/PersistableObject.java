@@ -9,9 +9,15 @@
  */
 package org.jgap.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import org.apache.log4j.Logger;
 import org.jgap.distr.grid.gp.JGAPGPXStream;
@@ -42,6 +48,13 @@ public class PersistableObject {
 
   private File m_file;
 
+  /**
+   * Codec to write with, null for XStream.
+   *
+   * @since 3.7
+   */
+  private IObjectCodec m_codec;
+
   public PersistableObject(File a_file) {
     m_file = a_file;
   }
@@ -66,6 +79,16 @@ public class PersistableObject {
     public void save(boolean a_omitConfig, Object[][] a_omitFields)
         throws Exception {
     log.info("Saving object to file "+m_file.getName());
+    if (m_codec != null) {
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(
+          m_file));
+      try {
+        m_codec.encode(m_object, out);
+      } finally {
+        out.close();
+      }
+      return;
+    }
     JGAPGPXStream xstream = new JGAPGPXStream();
     init(xstream);
     if (a_omitConfig) {
@@ -97,18 +120,72 @@ public class PersistableObject {
 
   public Object load(File a_file) {
     log.info("Loading object from file "+a_file.getName());
-    JGAPGPXStream xstream = new JGAPGPXStream();
-    init(xstream);
     try {
-      FileInputStream fis = new FileInputStream(a_file);
-      m_object = (Object) xstream.fromXML(fis);
-      fis.close();
+      InputStream fis = new BufferedInputStream(new FileInputStream(a_file));
+      try {
+        // Files written by the codec set are recognized by their first
+        // bytes, all others are expected to be written by XStream.
+        // --------------------------------------------------------------
+        IObjectCodec codec = getCodecFor(fis);
+        if (codec != null) {
+          m_object = codec.decode(fis);
+        }
+        else {
+          JGAPGPXStream xstream = new JGAPGPXStream();
+          init(xstream);
+          m_object = (Object) xstream.fromXML(fis);
+        }
+      } finally {
+        fis.close();
+      }
       return m_object;
     } catch (Exception ex) {
       return null;
     }
   }
 
+  /**
+   * @param a_in stream supporting mark and reset
+   * @return the codec the stream was written with, null for XStream
+   * @throws IOException
+   *
+   * @since 3.7
+   */
+  protected IObjectCodec getCodecFor(InputStream a_in)
+      throws IOException {
+    byte[] header = new byte[IObjectCodec.HEADER_LENGTH];
+    a_in.mark(header.length);
+    int len = 0;
+    int n;
+    while (len < header.length
+           && (n = a_in.read(header, len, header.length - len)) > 0) {
+      len += n;
+    }
+    a_in.reset();
+    if (m_codec != null && m_codec.isEncoded(header)) {
+      return m_codec;
+    }
+    return null;
+  }
+
+  /**
+   * Sets the codec to write the object with. Files written by the codec or
+   * by XStream can be loaded, thus set the codec before loading files written
+   * by it. The fields to omit given to save are not considered by a codec,
+   * GPBinaryCodec can omit configurations itself.
+   *
+   * @param a_codec the codec to use, null for XStream
+   *
+   * @since 3.7
+   */
+  public void setCodec(IObjectCodec a_codec) {
+    m_codec = a_codec;
+  }
+
+  public IObjectCodec getCodec() {
+    return m_codec;
+  }
+
   public Object getObject() {
     return m_object;
   }
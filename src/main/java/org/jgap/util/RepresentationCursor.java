@@ -0,0 +1,183 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.jgap.UnsupportedRepresentationException;
+
+/**
+ * Single-pass decoder for persistent representations of the form
+ * <code>&lt;element&gt;&lt;element&gt;...</code> as written by Population,
+ * Chromosome, CompositeGene, AbstractSupergene and ProgramChromosome.
+ * <p>
+ * In contrast to splitting the representation into a list of strings with a
+ * StringTokenizer, the cursor moves over the text once and only creates the
+ * decoded string of each element when it is requested. As the elements are
+ * encoded (see StringKit.encode), they never contain a delimiter.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class RepresentationCursor {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final CharSequence m_text;
+
+  private final int m_end;
+
+  private int m_pos;
+
+  /**
+   * @param a_text the persistent representation to decode
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public RepresentationCursor(CharSequence a_text) {
+    m_text = a_text;
+    m_end = a_text.length();
+  }
+
+  /**
+   * Reads the persistent representation from a reader, which is not closed.
+   *
+   * @param a_reader the reader to read the persistent representation from
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public RepresentationCursor(Reader a_reader)
+      throws IOException {
+    StringBuilder b = new StringBuilder(8192);
+    char[] buf = new char[8192];
+    int n;
+    while ( (n = a_reader.read(buf)) >= 0) {
+      b.append(buf, 0, n);
+    }
+    m_text = b;
+    m_end = b.length();
+  }
+
+  /**
+   * @return true if there is text left to decode
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public boolean hasNext() {
+    return m_pos < m_end;
+  }
+
+  /**
+   * Reads the text up to the next delimiter, which is skipped.
+   *
+   * @param a_delimiter the delimiter (one character) ending the field
+   * @return the undecoded field
+   * @throws UnsupportedRepresentationException if there is no text left
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public String nextField(String a_delimiter)
+      throws UnsupportedRepresentationException {
+    if (m_pos >= m_end) {
+      throw new UnsupportedRepresentationException("Field expected!");
+    }
+    char delim = a_delimiter.charAt(0);
+    int start = m_pos;
+    while (m_pos < m_end && m_text.charAt(m_pos) != delim) {
+      m_pos++;
+    }
+    String field = m_text.subSequence(start, m_pos).toString();
+    if (m_pos < m_end) {
+      m_pos++;
+    }
+    return field;
+  }
+
+  /**
+   * Reads the next element enclosed in a_heading and a_closing.
+   *
+   * @param a_heading the delimiter (one character) opening an element
+   * @param a_closing the delimiter (one character) closing an element
+   * @return the decoded element
+   * @throws UnsupportedRepresentationException if the element is not enclosed
+   * properly
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public String nextElement(String a_heading, String a_closing)
+      throws UnsupportedRepresentationException {
+    char heading = a_heading.charAt(0);
+    char closing = a_closing.charAt(0);
+    if (m_pos >= m_end || m_text.charAt(m_pos) != heading) {
+      throw new UnsupportedRepresentationException(m_text + " no open tag");
+    }
+    int start = ++m_pos;
+    while (m_pos < m_end) {
+      char c = m_text.charAt(m_pos);
+      if (c == closing) {
+        return StringKit.decode(m_text, start, m_pos++);
+      }
+      if (c == heading) {
+        break;
+      }
+      m_pos++;
+    }
+    throw new UnsupportedRepresentationException(m_text + " no close tag");
+  }
+
+  /**
+   * Splits an element into the two tokens separated by a_delimiter, with the
+   * semantics of a StringTokenizer: empty tokens are ignored.
+   *
+   * @param a_element the decoded element to split
+   * @param a_delimiter the delimiter (one character) separating the tokens
+   * @return the two tokens
+   * @throws UnsupportedRepresentationException if there are not exactly two
+   * tokens
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static String[] splitPair(String a_element, String a_delimiter)
+      throws UnsupportedRepresentationException {
+    char delim = a_delimiter.charAt(0);
+    int len = a_element.length();
+    int start1 = skip(a_element, 0, delim);
+    int end1 = a_element.indexOf(delim, start1);
+    if (end1 < 0) {
+      end1 = len;
+    }
+    int start2 = skip(a_element, end1, delim);
+    int end2 = a_element.indexOf(delim, start2);
+    if (end2 < 0) {
+      end2 = len;
+    }
+    if (start1 == len || start2 == len || skip(a_element, end2, delim) < len) {
+      throw new UnsupportedRepresentationException("In " + a_element + ", "
+          + "expecting two tokens, separated by " + a_delimiter);
+    }
+    return new String[] {
+        a_element.substring(start1, end1), a_element.substring(start2, end2)};
+  }
+
+  private static int skip(String a_text, int a_pos, char a_delimiter) {
+    while (a_pos < a_text.length() && a_text.charAt(a_pos) == a_delimiter) {
+      a_pos++;
+    }
+    return a_pos;
+  }
+}
@@ -10,6 +10,7 @@
 package org.jgap.util;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.net.URLCodec;
@@ -24,6 +25,8 @@ public class StringKit {
   /** String containing the CVS revision. Read out via reflection!*/
   private final static String CVS_REVISION = "$Revision: 1.2 $";
 
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
   /**
    * Encodes a string.
    *
@@ -60,6 +63,71 @@ public class StringKit {
     }
   }
 
+  /**
+   * Decodes a range of an encoded character sequence. Yields the same result
+   * as decode(a_text.subSequence(a_start, a_end).toString()), but avoids the
+   * intermediate objects and copies the characters only once if nothing needs
+   * to be decoded.
+   *
+   * @param a_text the text containing the encoded string
+   * @param a_start index of the first character of the encoded string
+   * @param a_end index after the last character of the encoded string
+   * @return decoded string
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static String decode(CharSequence a_text, int a_start, int a_end) {
+    int i = a_start;
+    while (i < a_end) {
+      char c = a_text.charAt(i);
+      if (c == '%' || c == '+' || c > 127) {
+        break;
+      }
+      i++;
+    }
+    if (i == a_end) {
+      return a_text.subSequence(a_start, a_end).toString();
+    }
+    // Same as URLCodec: characters not being ASCII become '?', '+' becomes
+    // a space and escaped bytes are decoded as UTF-8.
+    // --------------------------------------------------------------------
+    byte[] bytes = new byte[a_end - a_start];
+    int len = 0;
+    for (int j = a_start; j < i; j++) {
+      bytes[len++] = (byte) a_text.charAt(j);
+    }
+    while (i < a_end) {
+      char c = a_text.charAt(i++);
+      if (c > 127) {
+        bytes[len++] = '?';
+      }
+      else if (c == '+') {
+        bytes[len++] = ' ';
+      }
+      else if (c == '%') {
+        int hi = i < a_end ? hexDigit(a_text.charAt(i++)) : -1;
+        int lo = i < a_end ? hexDigit(a_text.charAt(i++)) : -1;
+        if (hi < 0 || lo < 0) {
+          throw new Error("UTF-8 encoding should always be supported!",
+                          new DecoderException("Invalid URL encoding"));
+        }
+        bytes[len++] = (byte) ( (hi << 4) + lo);
+      }
+      else {
+        bytes[len++] = (byte) c;
+      }
+    }
+    return new String(bytes, 0, len, UTF8);
+  }
+
+  private static int hexDigit(char a_char) {
+    if (a_char > 127) {
+      return -1;
+    }
+    return Character.digit(a_char, 16);
+  }
+
   /**
    * Attempts to find a pattern in the given String. Taken from UUID
    *
@@ -0,0 +1,297 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.xml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.jgap.Chromosome;
+import org.jgap.Configuration;
+import org.jgap.Gene;
+import org.jgap.IChromosome;
+import org.jgap.InvalidConfigurationException;
+import org.jgap.UnsupportedRepresentationException;
+
+/**
+ * Reads the chromosomes of a genotype from XML one at a time, without
+ * building a DOM document. Thus, files too large to be held in memory can be
+ * processed. Reads the format written by
+ * XMLManager.representGenotypeAsDocument and by XMLGenotypeWriter. A document
+ * with a single chromosome as root element (see
+ * XMLManager.representChromosomeAsDocument) is read as well.
+ * <p>
+ * Use it as an iterator or via hasNext and nextChromosome, the latter
+ * throwing the exceptions known from XMLManager. The iterator wraps them into
+ * a RuntimeException.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class XMLGenotypeReader
+    implements Iterator<IChromosome>, Closeable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final static XMLInputFactory FACTORY;
+
+  static {
+    FACTORY = XMLInputFactory.newInstance();
+    FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+  }
+
+  private final Configuration m_conf;
+
+  private final InputStream m_in;
+
+  private final XMLStreamReader m_reader;
+
+  /**
+   * Number of chromosomes declared by the genotype element, -1 if unknown.
+   */
+  private int m_size = -1;
+
+  /**
+   * True if the reader is positioned at the start of a chromosome.
+   */
+  private boolean m_pending;
+
+  /**
+   * @param a_activeConfiguration the configuration to construct the
+   * chromosomes and genes with
+   * @param a_in the stream to read from
+   * @throws ImproperXMLException if the root element is neither a genotype
+   * nor a chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public XMLGenotypeReader(Configuration a_activeConfiguration,
+                           InputStream a_in)
+      throws ImproperXMLException {
+    m_conf = a_activeConfiguration;
+    m_in = a_in;
+    try {
+      m_reader = FACTORY.createXMLStreamReader(a_in);
+      while (m_reader.hasNext()
+             && m_reader.next() != XMLStreamReader.START_ELEMENT) {
+        ;
+      }
+      if (!m_reader.isStartElement()) {
+        throw new ImproperXMLException("Unable to read Genotype from XML: "
+                                       + "no root element.");
+      }
+      String root = m_reader.getLocalName();
+      if (root.equals(XMLManager.CHROMOSOME_TAG)) {
+        m_size = 1;
+        m_pending = true;
+      }
+      else if (root.equals(XMLManager.GENOTYPE_TAG)) {
+        String size = m_reader.getAttributeValue(null,
+            XMLManager.SIZE_ATTRIBUTE);
+        if (size != null) {
+          try {
+            m_size = Integer.parseInt(size);
+          } catch (NumberFormatException nex) {
+            m_size = -1;
+          }
+        }
+        advance();
+      }
+      else {
+        throw new ImproperXMLException("Unable to read Genotype from XML: "
+                                       + "'genotype' element must be at "
+                                       + "root of document.");
+      }
+    } catch (XMLStreamException xex) {
+      throw new ImproperXMLException(xex.getMessage());
+    }
+  }
+
+  /**
+   * Moves to the start of the next chromosome, if any.
+   *
+   * @throws XMLStreamException
+   */
+  private void advance()
+      throws XMLStreamException {
+    m_pending = false;
+    while (m_reader.hasNext()) {
+      if (m_reader.next() == XMLStreamReader.START_ELEMENT
+          && m_reader.getLocalName().equals(XMLManager.CHROMOSOME_TAG)) {
+        m_pending = true;
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return number of chromosomes declared by the genotype element, -1 if
+   * not declared
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public int getSize() {
+    return m_size;
+  }
+
+  /**
+   * @return true if there is a further chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public boolean hasNext() {
+    return m_pending;
+  }
+
+  /**
+   * @return the next chromosome
+   *
+   * @throws ImproperXMLException if the chromosome is improperly structured
+   * or missing data
+   * @throws InvalidConfigurationException if the configuration is in an
+   * inconsistent state
+   * @throws UnsupportedRepresentationException if a gene does not support
+   * the representation of its allele
+   * @throws GeneCreationException if there is a problem creating or
+   * populating a gene
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public Chromosome nextChromosome()
+      throws ImproperXMLException, InvalidConfigurationException,
+      UnsupportedRepresentationException, GeneCreationException {
+    if (!m_pending) {
+      throw new NoSuchElementException();
+    }
+    try {
+      Gene[] genes = readGenes();
+      advance();
+      return new Chromosome(m_conf, genes);
+    } catch (XMLStreamException xex) {
+      m_pending = false;
+      throw new ImproperXMLException(xex.getMessage());
+    }
+  }
+
+  /**
+   * Reads the genes of the chromosome the reader is positioned at, up to the
+   * end of the chromosome element.
+   *
+   * @return the genes read
+   */
+  private Gene[] readGenes()
+      throws XMLStreamException, ImproperXMLException,
+      UnsupportedRepresentationException, GeneCreationException {
+    List<Gene> genes = new ArrayList<Gene>();
+    // Only the first genes element counts, as for XMLManager.
+    // --------------------------------------------------------
+    int genesElements = 0;
+    Gene gene = null;
+    String allele = null;
+    StringBuilder text = null;
+    while (m_reader.hasNext()) {
+      int event = m_reader.next();
+      if (event == XMLStreamReader.START_ELEMENT) {
+        String tag = m_reader.getLocalName();
+        if (tag.equals(XMLManager.GENES_TAG)) {
+          genesElements++;
+        }
+        else if (genesElements == 1 && tag.equals(XMLManager.GENE_TAG)) {
+          gene = XMLManager.newGene(m_conf, m_reader.getAttributeValue(null,
+              XMLManager.CLASS_ATTRIBUTE));
+          allele = null;
+          text = new StringBuilder();
+        }
+        else if (gene != null && tag.equals(XMLManager.ALLELE_TAG)) {
+          allele = m_reader.getAttributeValue(null,
+                                              XMLManager.VALUE_ATTRIBUTE);
+        }
+      }
+      else if (event == XMLStreamReader.CHARACTERS && gene != null) {
+        text.append(m_reader.getText());
+      }
+      else if (event == XMLStreamReader.END_ELEMENT) {
+        String tag = m_reader.getLocalName();
+        if (gene != null && tag.equals(XMLManager.GENE_TAG)) {
+          if (allele == null && text.toString().trim().length() > 0) {
+            allele = text.toString();
+          }
+          XMLManager.setAllele(gene, allele);
+          genes.add(gene);
+          gene = null;
+        }
+        else if (tag.equals(XMLManager.CHROMOSOME_TAG)) {
+          if (genesElements == 0) {
+            throw new ImproperXMLException(
+                "Unable to build Chromosome instance from XML Element: " +
+                "'genes' sub-element not found.");
+          }
+          return genes.toArray(new Gene[genes.size()]);
+        }
+      }
+    }
+    throw new ImproperXMLException("Unable to build Chromosome instance from"
+                                   + " XML: end of chromosome not found.");
+  }
+
+  /**
+   * @return the next chromosome
+   * @throws RuntimeException wrapping the exception of nextChromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public IChromosome next() {
+    try {
+      return nextChromosome();
+    } catch (RuntimeException rex) {
+      throw rex;
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Closes the reader and the underlying stream.
+   *
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void close()
+      throws IOException {
+    m_pending = false;
+    try {
+      m_reader.close();
+    } catch (XMLStreamException xex) {
+      throw new IOException(xex.getMessage(), xex);
+    } finally {
+      m_in.close();
+    }
+  }
+}
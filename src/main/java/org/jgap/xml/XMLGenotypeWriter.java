@@ -0,0 +1,175 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.xml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.jgap.Gene;
+import org.jgap.IChromosome;
+
+/**
+ * Writes a genotype to XML one chromosome at a time, without building a
+ * DOM document. The format is the same as the one of
+ * XMLManager.representGenotypeAsDocument, thus the output can be read by
+ * XMLManager.getGenotypeFromDocument as well as by XMLGenotypeReader.
+ * <p>
+ * Usage: call writeStartGenotype, then writeChromosome for each chromosome
+ * and finally close.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class XMLGenotypeWriter
+    implements Closeable {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private final static XMLOutputFactory m_factory = XMLOutputFactory.
+      newInstance();
+
+  private final OutputStream m_out;
+
+  private final XMLStreamWriter m_writer;
+
+  private boolean m_started;
+
+  private boolean m_ended;
+
+  /**
+   * @param a_out the stream to write to, encoded as UTF-8
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public XMLGenotypeWriter(OutputStream a_out)
+      throws IOException {
+    m_out = a_out;
+    try {
+      m_writer = m_factory.createXMLStreamWriter(a_out, "UTF-8");
+    } catch (XMLStreamException xex) {
+      throw new IOException(xex.getMessage(), xex);
+    }
+  }
+
+  /**
+   * Writes the start of the document and the genotype element.
+   *
+   * @param a_size number of chromosomes that will be written
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeStartGenotype(int a_size)
+      throws IOException {
+    if (m_started) {
+      throw new IllegalStateException("Genotype already started");
+    }
+    m_started = true;
+    try {
+      m_writer.writeStartDocument("UTF-8", "1.0");
+      m_writer.writeStartElement(XMLManager.GENOTYPE_TAG);
+      m_writer.writeAttribute(XMLManager.SIZE_ATTRIBUTE,
+                              Integer.toString(a_size));
+    } catch (XMLStreamException xex) {
+      throw new IOException(xex.getMessage(), xex);
+    }
+  }
+
+  /**
+   * Writes a chromosome with its genes.
+   *
+   * @param a_chromosome the chromosome to write
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeChromosome(IChromosome a_chromosome)
+      throws IOException {
+    if (!m_started || m_ended) {
+      throw new IllegalStateException("Genotype not started or ended");
+    }
+    try {
+      m_writer.writeStartElement(XMLManager.CHROMOSOME_TAG);
+      m_writer.writeAttribute(XMLManager.SIZE_ATTRIBUTE,
+                              Integer.toString(a_chromosome.size()));
+      m_writer.writeStartElement(XMLManager.GENES_TAG);
+      Gene[] genes = a_chromosome.getGenes();
+      for (int i = 0; i < genes.length; i++) {
+        String className = genes[i].getClass().getName();
+        m_writer.writeStartElement(XMLManager.GENE_TAG);
+        m_writer.writeAttribute(XMLManager.CLASS_ATTRIBUTE, className);
+        m_writer.writeEmptyElement(XMLManager.ALLELE_TAG);
+        m_writer.writeAttribute(XMLManager.CLASS_ATTRIBUTE, className);
+        m_writer.writeAttribute(XMLManager.VALUE_ATTRIBUTE,
+                                genes[i].getPersistentRepresentation());
+        m_writer.writeEndElement();
+      }
+      m_writer.writeEndElement();
+      m_writer.writeEndElement();
+    } catch (XMLStreamException xex) {
+      throw new IOException(xex.getMessage(), xex);
+    }
+  }
+
+  /**
+   * Writes the end of the genotype element and of the document.
+   *
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void writeEndGenotype()
+      throws IOException {
+    if (!m_started || m_ended) {
+      throw new IllegalStateException("Genotype not started or ended");
+    }
+    m_ended = true;
+    try {
+      m_writer.writeEndElement();
+      m_writer.writeEndDocument();
+      m_writer.flush();
+    } catch (XMLStreamException xex) {
+      throw new IOException(xex.getMessage(), xex);
+    }
+  }
+
+  /**
+   * Ends the genotype if started and not ended yet and closes the
+   * underlying stream.
+   *
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void close()
+      throws IOException {
+    try {
+      if (m_started && !m_ended) {
+        writeEndGenotype();
+      }
+      m_writer.close();
+    } catch (XMLStreamException xex) {
+      throw new IOException(xex.getMessage(), xex);
+    } finally {
+      m_out.close();
+    }
+  }
+}
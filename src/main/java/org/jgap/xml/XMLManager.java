@@ -9,7 +9,10 @@
  */
 package org.jgap.xml;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
@@ -60,36 +63,42 @@ public class XMLManager {
   /**
    * Constant representing the name of the genotype XML element tag.
    */
-  private static final String GENOTYPE_TAG = "genotype";
+  static final String GENOTYPE_TAG = "genotype";
 
   /**
    * Constant representing the name of the chromosome XML element tag.
    */
-  private static final String CHROMOSOME_TAG = "chromosome";
+  static final String CHROMOSOME_TAG = "chromosome";
 
   /**
    * Constant representing the name of the gene XML element tag.
    */
-  private static final String GENES_TAG = "genes";
+  static final String GENES_TAG = "genes";
 
   /**
    * Constant representing the name of the gene XML element tag.
    */
-  private static final String GENE_TAG = "gene";
+  static final String GENE_TAG = "gene";
 
-  private static final String ALLELE_TAG = "allele";
+  static final String ALLELE_TAG = "allele";
+
+  /**
+   * Constant representing the name of the attribute of the allele element
+   * holding the persistent representation of the gene.
+   */
+  static final String VALUE_ATTRIBUTE = "value";
 
   /**
    * Constant representing the name of the size XML attribute that is
    * added to genotype and chromosome elements to describe their size.
    */
-  private static final String SIZE_ATTRIBUTE = "size";
+  static final String SIZE_ATTRIBUTE = "size";
 
   /**
    * Constant representing the fully-qualified name of the concrete
    * Gene class that was marshalled.
    */
-  private static final String CLASS_ATTRIBUTE = "class";
+  static final String CLASS_ATTRIBUTE = "class";
 
   /**
    * Shared DocumentBuilder, which is used to create new DOM Document
@@ -232,8 +241,9 @@ public class XMLManager {
   private static Element representAlleleAsElement(final Gene a_gene,
       final Document a_xmlDocument) {
     Element alleleElement = a_xmlDocument.createElement(ALLELE_TAG);
-    alleleElement.setAttribute("class", a_gene.getClass().getName());
-    alleleElement.setAttribute("value", a_gene.getPersistentRepresentation());
+    alleleElement.setAttribute(CLASS_ATTRIBUTE, a_gene.getClass().getName());
+    alleleElement.setAttribute(VALUE_ATTRIBUTE,
+                               a_gene.getPersistentRepresentation());
     return alleleElement;
   }
 
@@ -373,26 +383,7 @@ public class XMLManager {
       // --------------------------------------------------------
       String geneClassName =
           thisGeneElement.getAttribute(CLASS_ATTRIBUTE);
-      Gene thisGeneObject;
-      Class geneClass = null;
-      try {
-        geneClass = Class.forName(geneClassName);
-        try {
-          Constructor constr = geneClass.getConstructor(new Class[] {
-              Configuration.class});
-          thisGeneObject = (Gene) constr.newInstance(new Object[] {
-              a_activeConfiguration});
-        } catch (NoSuchMethodException nsme) {
-          // Try it by calling method newGeneInternal.
-          // -----------------------------------------
-          Constructor constr = geneClass.getConstructor(new Class[] {});
-          thisGeneObject = (Gene) constr.newInstance(new Object[] {});
-          thisGeneObject = (Gene) PrivateAccessor.invoke(thisGeneObject,
-              "newGeneInternal", new Class[] {}, new Object[] {});
-        }
-      } catch (Throwable e) {
-        throw new GeneCreationException(geneClass, e);
-      }
+      Gene thisGeneObject = newGene(a_activeConfiguration, geneClassName);
       // Find the text node and fetch the string representation of
       // the allele.
       // ---------------------------------------------------------
@@ -402,7 +393,7 @@ public class XMLManager {
       for (int j = 0; j < childrenSize; j++) {
         Element alleleElem = (Element) children.item(j);
         if (alleleElem.getTagName().equals(ALLELE_TAG)) {
-          alleleRepresentation = alleleElem.getAttribute("value");
+          alleleRepresentation = alleleElem.getAttribute(VALUE_ATTRIBUTE);
         }
         if (children.item(j).getNodeType() == Node.TEXT_NODE) {
           // We found the text node. Extract the representation.
@@ -411,24 +402,7 @@ public class XMLManager {
           break;
         }
       }
-      // Sanity check: Make sure the representation isn't null.
-      // ------------------------------------------------------
-      if (alleleRepresentation == null) {
-        throw new ImproperXMLException(
-            "Unable to build Gene instance from XML Element: " +
-            "value (allele) is missing representation.");
-      }
-      // Now set the value of the gene to that reflect the
-      // string representation.
-      // -------------------------------------------------
-      try {
-        thisGeneObject.setValueFromPersistentRepresentation(
-            alleleRepresentation);
-      } catch (UnsupportedOperationException e) {
-        throw new GeneCreationException(
-            "Unable to build Gene because it does not support the " +
-            "setValueFromPersistentRepresentation() method.");
-      }
+      setAllele(thisGeneObject, alleleRepresentation);
       // Finally, add the current gene object to the list of genes.
       // ----------------------------------------------------------
       genes.add(thisGeneObject);
@@ -436,6 +410,80 @@ public class XMLManager {
     return (Gene[]) genes.toArray(new Gene[genes.size()]);
   }
 
+  /**
+   * Creates an instance of a gene class.
+   *
+   * @param a_activeConfiguration current Configuration object
+   * @param a_geneClassName name of the gene class
+   * @return the new gene
+   *
+   * @throws GeneCreationException if the gene cannot be created
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  static Gene newGene(Configuration a_activeConfiguration,
+                      String a_geneClassName)
+      throws GeneCreationException {
+    Class geneClass = null;
+    try {
+      geneClass = Class.forName(a_geneClassName);
+      try {
+        Constructor constr = geneClass.getConstructor(new Class[] {
+            Configuration.class});
+        return (Gene) constr.newInstance(new Object[] {
+            a_activeConfiguration});
+      } catch (NoSuchMethodException nsme) {
+        // Try it by calling method newGeneInternal.
+        // -----------------------------------------
+        Constructor constr = geneClass.getConstructor(new Class[] {});
+        Gene gene = (Gene) constr.newInstance(new Object[] {});
+        return (Gene) PrivateAccessor.invoke(gene,
+            "newGeneInternal", new Class[] {}, new Object[] {});
+      }
+    } catch (Throwable e) {
+      throw new GeneCreationException(geneClass, e);
+    }
+  }
+
+  /**
+   * Sets the value of a gene from its persistent representation.
+   *
+   * @param a_gene the gene to set the value of
+   * @param a_alleleRepresentation the persistent representation, null if
+   * missing
+   *
+   * @throws ImproperXMLException if the representation is missing
+   * @throws UnsupportedRepresentationException if the gene does not support
+   * the representation
+   * @throws GeneCreationException if the gene does not support persistent
+   * representations
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  static void setAllele(Gene a_gene, String a_alleleRepresentation)
+      throws ImproperXMLException, UnsupportedRepresentationException,
+      GeneCreationException {
+    // Sanity check: Make sure the representation isn't null.
+    // ------------------------------------------------------
+    if (a_alleleRepresentation == null) {
+      throw new ImproperXMLException(
+          "Unable to build Gene instance from XML Element: " +
+          "value (allele) is missing representation.");
+    }
+    // Now set the value of the gene to that reflect the
+    // string representation.
+    // -------------------------------------------------
+    try {
+      a_gene.setValueFromPersistentRepresentation(a_alleleRepresentation);
+    } catch (UnsupportedOperationException e) {
+      throw new GeneCreationException(
+          "Unable to build Gene because it does not support the " +
+          "setValueFromPersistentRepresentation() method.");
+    }
+  }
+
   /**
    * Unmarshall a Chromosome instance from a given XML Element
    * representation.
@@ -680,4 +728,103 @@ public class XMLManager {
       throw new IOException(tex.getMessage());
     }
   }
+
+  /**
+   * Writes a Genotype to an XML file one chromosome at a time, without
+   * building a DOM document. The format is the same as the one of
+   * representGenotypeAsDocument.
+   *
+   * @param a_subject the genotype to write
+   * @param a_file the file to be written
+   * @throws IOException
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static void writeGenotype(Genotype a_subject, File a_file)
+      throws IOException {
+    Population population = a_subject.getPopulation();
+    XMLGenotypeWriter writer = new XMLGenotypeWriter(
+        new BufferedOutputStream(new FileOutputStream(a_file), 65536));
+    try {
+      writer.writeStartGenotype(population.size());
+      for (int i = 0; i < population.size(); i++) {
+        writer.writeChromosome(population.getChromosome(i));
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Reads a Genotype from an XML file one chromosome at a time, without
+   * building a DOM document.
+   *
+   * @param a_activeConfiguration the current active Configuration object that
+   * is to be used during construction of the Genotype and Chromosome instances
+   * @param a_file the file to be read
+   * @return a new Genotype instance, complete with a population of Chromosomes
+   *
+   * @throws IOException
+   * @throws ImproperXMLException if the file is improperly structured or
+   * missing data
+   * @throws InvalidConfigurationException if the given Configuration is in an
+   * inconsistent state
+   * @throws UnsupportedRepresentationException if the actively configured Gene
+   * implementation does not support the string representation of the alleles
+   * used in the given XML document
+   * @throws GeneCreationException if there is a problem creating or populating
+   * a Gene instance
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static Genotype readGenotype(Configuration a_activeConfiguration,
+                                      File a_file)
+      throws IOException, ImproperXMLException, InvalidConfigurationException,
+      UnsupportedRepresentationException, GeneCreationException {
+    XMLGenotypeReader reader = readChromosomes(a_activeConfiguration, a_file);
+    try {
+      // The declared size is a hint only.
+      // ---------------------------------
+      int size = Math.min(Math.max(reader.getSize(), 0), 1 << 16);
+      Population population = new Population(a_activeConfiguration, size);
+      while (reader.hasNext()) {
+        population.addChromosome(reader.nextChromosome());
+      }
+      return new Genotype(a_activeConfiguration, population);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Opens an XML file for reading its chromosomes one at a time, e.g. for
+   * processing files too large to be held in memory. Close the reader
+   * returned after usage.
+   *
+   * @param a_activeConfiguration the current active Configuration object that
+   * is to be used during construction of the Chromosome instances
+   * @param a_file the file to be read
+   * @return reader of the chromosomes, usable as an iterator
+   *
+   * @throws IOException
+   * @throws ImproperXMLException if the root element is neither a genotype
+   * nor a chromosome
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public static XMLGenotypeReader readChromosomes(Configuration
+      a_activeConfiguration, File a_file)
+      throws IOException, ImproperXMLException {
+    BufferedInputStream in = new BufferedInputStream(new FileInputStream(
+        a_file), 65536);
+    try {
+      return new XMLGenotypeReader(a_activeConfiguration, in);
+    } catch (ImproperXMLException iex) {
+      in.close();
+      throw iex;
+    }
+  }
 }
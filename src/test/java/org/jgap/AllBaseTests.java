@@ -33,6 +33,7 @@ public class AllBaseTests
     suite.addTest(DeltaFitnessEvaluatorTest.suite());
     suite.addTest(FitnessFunctionTest.suite());
     suite.addTest(GenotypeTest.suite());
+    suite.addTest(OffHeapPopulationTest.suite());
     suite.addTest(PopulationTest.suite());
     return suite;
   }
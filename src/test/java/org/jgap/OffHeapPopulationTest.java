@@ -0,0 +1,193 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap;
+
+import java.util.*;
+import org.jgap.impl.*;
+import junit.framework.*;
+
+/**
+ * Tests the OffHeapPopulation class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class OffHeapPopulationTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(OffHeapPopulationTest.class);
+    return suite;
+  }
+
+  private IChromosome createSample()
+      throws Exception {
+    return new Chromosome(conf, new Gene[] {
+        new IntegerGene(conf, 0, 1000), new DoubleGene(conf, -1.0d, 1.0d),
+        new BooleanGene(conf), new FixedBinaryGene(conf, 40)});
+  }
+
+  private IChromosome createRandom(IChromosome a_sample)
+      throws Exception {
+    IChromosome chrom = (IChromosome) a_sample.clone();
+    for (int i = 0; i < chrom.size(); i++) {
+      chrom.getGene(i).setToRandomValue(new StockRandomGenerator());
+    }
+    return chrom;
+  }
+
+  /**
+   * Chromosomes spanning several segments are read back unchanged.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testAdd_0()
+      throws Exception {
+    IChromosome sample = createSample();
+    OffHeapPopulation pop = new OffHeapPopulation(sample, 100, false);
+    List chroms = new ArrayList();
+    for (int i = 0; i < 25; i++) {
+      IChromosome chrom = createRandom(sample);
+      chrom.setFitnessValueDirectly(i);
+      chroms.add(chrom);
+      assertEquals(i, pop.add(chrom));
+    }
+    assertEquals(25, pop.size());
+    assertTrue(pop.getAllocatedBytes() >= 25 * (8 + 5 + 9 + 1 + 8));
+    for (int i = 0; i < 25; i++) {
+      IChromosome chrom = pop.getChromosome(i);
+      assertEquals(Chromosome.class, chrom.getClass());
+      assertEquals(chroms.get(i), chrom);
+      assertEquals(i, chrom.getFitnessValueDirectly(), DELTA);
+      assertEquals(i, pop.getFitnessValue(i), DELTA);
+    }
+    pop.set(3, (IChromosome) chroms.get(4));
+    assertEquals(chroms.get(4), pop.getChromosome(3));
+    try {
+      pop.getFitnessValue(25);
+      fail();
+    } catch (IndexOutOfBoundsException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * Genes without fixed binary size are not supported.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testConstruct_0()
+      throws Exception {
+    IChromosome sample = new Chromosome(conf, new Gene[] {
+        new StringGene(conf, 1, 5)});
+    try {
+      new OffHeapPopulation(sample, 1000, false);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * The view shows the alleles of a slot and writes fitness values and
+   * saved alleles to it.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testView_0()
+      throws Exception {
+    IChromosome sample = createSample();
+    OffHeapPopulation pop = new OffHeapPopulation(sample, 1 << 16, true);
+    IChromosome first = createRandom(sample);
+    pop.add(first);
+    pop.add(createRandom(sample));
+    OffHeapPopulation.ChromosomeView view = pop.newView();
+    assertEquals(-1, view.getIndex());
+    view.moveTo(0);
+    assertEquals(first, view);
+    assertEquals(FitnessFunction.NO_FITNESS_VALUE,
+                 view.getFitnessValueDirectly(), DELTA);
+    view.setFitnessValue(7.5d);
+    assertEquals(7.5d, pop.getFitnessValue(0), DELTA);
+    view.getGene(0).setAllele(new Integer(42));
+    view.moveTo(1);
+    assertEquals(first.getGene(0), pop.getChromosome(0).getGene(0));
+    view.moveTo(0);
+    view.getGene(0).setAllele(new Integer(42));
+    view.save();
+    assertEquals(new Integer(42), pop.getChromosome(0).getGene(0).getAllele());
+    assertEquals(7.5d, pop.getChromosome(0).getFitnessValueDirectly(), DELTA);
+    int count = 0;
+    for (Iterator it = pop.iterator(); it.hasNext(); count++) {
+      assertEquals(count, ( (OffHeapPopulation.ChromosomeView) it.next()).
+                   getIndex());
+    }
+    assertEquals(2, count);
+  }
+
+  /**
+   * Fitness values are computed for all chromosomes without one and the
+   * fittest are determined from the store.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvaluate_0()
+      throws Exception {
+    conf.reset();
+    conf.setSampleChromosome(createSample());
+    conf.reset();
+    conf.setFitnessFunction(new FitnessFunction() {
+      public double evaluate(IChromosome a_subject) {
+        return ( (Integer) a_subject.getGene(0).getAllele()).intValue();
+      }
+    });
+    OffHeapPopulation pop = new OffHeapPopulation(conf);
+    assertEquals(-1, pop.getFittestIndex());
+    assertEquals(0, pop.addRandom(500));
+    assertEquals(500, pop.size());
+    assertEquals(500, pop.evaluate());
+    assertEquals(0, pop.evaluate());
+    double[] fitness = new double[pop.size()];
+    for (int i = 0; i < fitness.length; i++) {
+      fitness[i] = pop.getFitnessValue(i);
+      assertEquals( ( (Integer) pop.getChromosome(i).getGene(0).getAllele()).
+                   intValue(), fitness[i], DELTA);
+    }
+    Arrays.sort(fitness);
+    int[] fittest = pop.getFittestIndices(10);
+    assertEquals(10, fittest.length);
+    for (int i = 0; i < fittest.length; i++) {
+      assertEquals(fitness[fitness.length - 1 - i],
+                   pop.getFitnessValue(fittest[i]), DELTA);
+    }
+    // Several chromosomes may share the best fitness value.
+    // ---------------------------------------------------
+    assertEquals(pop.getFitnessValue(fittest[0]),
+                 pop.getFitnessValue(pop.getFittestIndex()), DELTA);
+    Population best = pop.toPopulation(fittest);
+    assertEquals(10, best.size());
+    assertEquals(fitness[fitness.length - 1],
+                 best.determineFittestChromosome().getFitnessValue(), DELTA);
+  }
+}
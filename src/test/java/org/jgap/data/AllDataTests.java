@@ -29,6 +29,9 @@ public class AllDataTests
     suite.addTest(DataElementTest.suite());
     suite.addTest(DataElementsDocumentTest.suite());
     suite.addTest(DataTreeBuilderTest.suite());
+    suite.addTest(CheckpointServiceTest.suite());
+    suite.addTest(GenotypeCheckpointTest.suite());
+    suite.addTest(ChromosomeSchemaTest.suite());
 
     suite.addTest(AllConfigTests.suite());
 
@@ -0,0 +1,146 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.data;
+
+import java.io.*;
+import org.jgap.*;
+import org.jgap.impl.*;
+import junit.framework.*;
+
+/**
+ * Tests the CheckpointService class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class CheckpointServiceTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(CheckpointServiceTest.class);
+    return suite;
+  }
+
+  /**
+   * Checkpoints are written every second generation and can be resumed from.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvolve_0()
+      throws Exception {
+    FitnessFunction fitness = new SumFitness();
+    conf.resetProperty(Configuration.PROPERTY_FITFUNC_INST);
+    conf.resetProperty(Configuration.PROPERTY_SAMPLE_CHROM_INST);
+    conf.setFitnessFunction(fitness);
+    conf.setSampleChromosome(new Chromosome(conf, new IntegerGene(conf, 0, 9),
+                                            4));
+    conf.setPopulationSize(20);
+    Genotype genotype = Genotype.randomInitialGenotype(conf);
+    File file = File.createTempFile("jgap", ".ckpt");
+    try {
+      CheckpointService service = new CheckpointService(file, 2, 0);
+      genotype.setCheckpointService(service);
+      for (int i = 0; i < 4; i++) {
+        genotype.evolve();
+        service.flush();
+      }
+      service.close();
+      assertEquals(2, service.getCheckpointsWritten());
+      assertEquals(4, service.getLastGenerationWritten());
+      assertNull(service.getLastError());
+      assertFalse(new File(file.getPath() + ".tmp").exists());
+      Configuration.reset("resumed");
+      Configuration conf2 = new DefaultConfiguration("resumed", "resumed");
+      conf2.setFitnessFunction(fitness);
+      conf2.setSampleChromosome(new Chromosome(conf2, new IntegerGene(conf2,
+          0, 9), 4));
+      conf2.setPopulationSize(20);
+      Genotype resumed = CheckpointService.resume(file, conf2);
+      assertEquals(4, conf2.getGenerationNr());
+      assertEquals(genotype.getPopulation().size(),
+                   resumed.getPopulation().size());
+      resumed.evolve();
+      assertEquals(5, conf2.getGenerationNr());
+    } finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * Invalid intervals are rejected.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testConstruct_0()
+      throws Exception {
+    try {
+      new CheckpointService(new File("x"), 0, 0);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+    CheckpointService service = new CheckpointService(new File("x"), 0, 1);
+    Thread.sleep(5);
+    assertTrue(service.isDue(1));
+    service.close();
+  }
+
+  /**
+   * Runtime exceptions thrown while writing a checkpoint are recorded.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSubmit_0()
+      throws Exception {
+    File file = File.createTempFile("jgap", ".ckpt");
+    try {
+      CheckpointService service = new CheckpointService(file, 1, 0);
+      final RuntimeException failure = new IllegalStateException("failed");
+      service.submit(new ICheckpoint() {
+        public int getGenerationNr() {
+          return 1;
+        }
+
+        public void write(OutputStream a_out) {
+          throw failure;
+        }
+      });
+      service.flush();
+      service.close();
+      assertSame(failure, service.getLastError());
+      assertEquals(0, service.getCheckpointsWritten());
+    } finally {
+      file.delete();
+      new File(file.getPath() + ".tmp").delete();
+    }
+  }
+
+  private class SumFitness
+      extends FitnessFunction {
+    public double evaluate(IChromosome a_subject) {
+      double sum = 1;
+      for (int i = 0; i < a_subject.size(); i++) {
+        sum += ( (Integer) a_subject.getGene(i).getAllele()).intValue();
+      }
+      return sum;
+    }
+  }
+}
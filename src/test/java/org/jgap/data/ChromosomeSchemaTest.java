@@ -0,0 +1,185 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.data;
+
+import java.io.*;
+import java.nio.*;
+import org.jgap.*;
+import org.jgap.impl.*;
+import junit.framework.*;
+
+/**
+ * Tests the ChromosomeSchema class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class ChromosomeSchemaTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(ChromosomeSchemaTest.class);
+    return suite;
+  }
+
+  private Gene[] createFixedGenes()
+      throws Exception {
+    CompositeGene composite = new CompositeGene(conf);
+    composite.addGene(new IntegerGene(conf, -5, 5));
+    composite.addGene(new BooleanGene(conf));
+    return new Gene[] {
+        new IntegerGene(conf, 0, 100), new DoubleGene(conf, -2.0d, 3.0d),
+        new BooleanGene(conf), new FixedBinaryGene(conf, 40), composite};
+  }
+
+  private IChromosome createRandom(ChromosomeSchema a_schema)
+      throws Exception {
+    RandomGenerator random = new StockRandomGenerator();
+    IChromosome chrom = a_schema.newChromosome();
+    for (int i = 0; i < chrom.size(); i++) {
+      chrom.getGene(i).setToRandomValue(random);
+    }
+    return chrom;
+  }
+
+  /**
+   * Alleles of fixed size are written into a reused buffer and read back.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEncodeDecode_0()
+      throws Exception {
+    Chromosome sample = new Chromosome(conf, createFixedGenes());
+    ChromosomeSchema schema = new ChromosomeSchema(sample);
+    assertEquals(5 + 9 + 1 + 8 + 6, schema.getRecordSize());
+    ByteBuffer buffer = ByteBuffer.allocate(schema.getRecordSize());
+    for (int i = 0; i < 20; i++) {
+      IChromosome chrom = createRandom(schema);
+      if (i == 0) {
+        chrom.getGene(0).setAllele(null);
+        chrom.getGene(2).setAllele(null);
+      }
+      buffer.clear();
+      schema.encode(chrom, buffer);
+      assertEquals(schema.getRecordSize(), buffer.position());
+      buffer.flip();
+      IChromosome copy = schema.newChromosome();
+      schema.decode(buffer, copy);
+      assertEquals(chrom, copy);
+    }
+  }
+
+  /**
+   * The schema is written once, bounds and lengths are restored from it.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testWriteRead_0()
+      throws Exception {
+    Chromosome sample = new Chromosome(conf, createFixedGenes());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new ChromosomeSchema(sample).write(new DataOutputStream(bytes));
+    ChromosomeSchema schema = ChromosomeSchema.read(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())), conf);
+    assertEquals(5, schema.size());
+    IntegerGene intGene = (IntegerGene) schema.getGene(0);
+    assertEquals(0, intGene.getLowerBounds());
+    assertEquals(100, intGene.getUpperBounds());
+    DoubleGene doubleGene = (DoubleGene) schema.getGene(1);
+    assertEquals(3.0d, doubleGene.getUpperBound(), DELTA);
+    assertEquals(40, ( (FixedBinaryGene) schema.getGene(3)).getLength());
+    assertEquals(2, ( (CompositeGene) schema.getGene(4)).size());
+    assertEquals(new ChromosomeSchema(sample).getRecordSize(),
+                 schema.getRecordSize());
+  }
+
+  /**
+   * Round trip of a population with genes of varying size and genes not
+   * supporting binary representation.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testWritePopulation_0()
+      throws Exception {
+    Gene[] genes = new Gene[] {
+        new StringGene(conf, 1, 8, "abcXYZ"), new IntegerGene(conf, 1, 9),
+        new MutipleIntegerGene(conf, 0, 100, 5)};
+    Chromosome sample = new Chromosome(conf, genes);
+    ChromosomeSchema schema = new ChromosomeSchema(sample);
+    assertEquals( -1, schema.getRecordSize());
+    IChromosome[] chroms = new IChromosome[30];
+    for (int i = 0; i < chroms.length; i++) {
+      chroms[i] = createRandom(schema);
+      chroms[i].setFitnessValueDirectly(i * 1.5d);
+    }
+    Population pop = new Population(conf, chroms);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    schema.writePopulation(pop, new DataOutputStream(bytes));
+    Population pop2 = ChromosomeSchema.readPopulation(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())), conf);
+    assertEquals(chroms.length, pop2.size());
+    for (int i = 0; i < chroms.length; i++) {
+      IChromosome chrom = pop2.getChromosome(i);
+      assertEquals(chroms[i], chrom);
+      assertEquals(i * 1.5d, chrom.getFitnessValueDirectly(), DELTA);
+    }
+  }
+
+  /**
+   * The alleles of each gene position are written as a column over all
+   * chromosomes and read back.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testWriteColumn_0()
+      throws Exception {
+    Gene[] genes = new Gene[] {
+        new StringGene(conf, 1, 8, "abcXYZ"), new IntegerGene(conf, 1, 9)};
+    Chromosome sample = new Chromosome(conf, genes);
+    ChromosomeSchema schema = new ChromosomeSchema(sample);
+    IChromosome[] chroms = new IChromosome[300];
+    for (int i = 0; i < chroms.length; i++) {
+      chroms[i] = createRandom(schema);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    schema.writeColumn(chroms, 1, out);
+    // A column of fixed size holds nothing but the alleles.
+    // -----------------------------------------------------
+    int alleleSize = ChromosomeSchema.getAlleleSize(genes[1]);
+    assertEquals(4 + chroms.length * alleleSize, bytes.size());
+    schema.writeColumn(chroms, 0, out);
+    ByteBuffer in = ByteBuffer.wrap(bytes.toByteArray());
+    IChromosome[] copies = new IChromosome[chroms.length];
+    for (int i = 0; i < chroms.length; i++) {
+      copies[i] = schema.newChromosome();
+    }
+    schema.readColumn(in, copies, 1);
+    schema.readColumn(in, copies, 0);
+    assertFalse(in.hasRemaining());
+    for (int i = 0; i < chroms.length; i++) {
+      assertEquals(chroms[i], copies[i]);
+    }
+  }
+}
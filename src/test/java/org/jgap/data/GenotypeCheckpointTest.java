@@ -0,0 +1,197 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.data;
+
+import java.io.*;
+import org.jgap.*;
+import org.jgap.impl.*;
+import junit.framework.*;
+
+/**
+ * Tests the GenotypeCheckpoint class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GenotypeCheckpointTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private File m_file;
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(GenotypeCheckpointTest.class);
+    return suite;
+  }
+
+  public void setUp() {
+    super.setUp();
+    try {
+      m_file = File.createTempFile("jgap", ".ckpt");
+    } catch (IOException iex) {
+      throw new RuntimeException(iex);
+    }
+  }
+
+  public void tearDown() {
+    m_file.delete();
+  }
+
+  /**
+   * Population, fitness values, generation number and random generator are
+   * restored.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testWriteRead_0()
+      throws Exception {
+    FitnessFunction fitness = new TestFitnessFunction();
+    Genotype genotype = createGenotype(conf, fitness);
+    Population pop = genotype.getPopulation();
+    for (int i = 0; i < pop.size(); i++) {
+      if (i % 3 != 0) {
+        pop.getChromosome(i).setFitnessValueDirectly(i * 1.5d);
+      }
+    }
+    pop.getChromosome(1).getGene(0).setAllele(null);
+    conf.setGenerationNr(17);
+    GenotypeCheckpoint.write(genotype, m_file);
+    int nextRandom = conf.getRandomGenerator().nextInt();
+    Configuration.reset("resumed");
+    Configuration conf2 = new DefaultConfiguration("resumed", "resumed");
+    conf2.setFitnessFunction(fitness);
+    conf2.setSampleChromosome(createSample(conf2));
+    conf2.setPopulationSize(5);
+    Genotype resumed = GenotypeCheckpoint.read(m_file, conf2);
+    assertEquals(17, conf2.getGenerationNr());
+    assertEquals(nextRandom, conf2.getRandomGenerator().nextInt());
+    Population pop2 = resumed.getPopulation();
+    assertEquals(pop.size(), pop2.size());
+    for (int i = 0; i < pop.size(); i++) {
+      IChromosome chrom = pop.getChromosome(i);
+      IChromosome chrom2 = pop2.getChromosome(i);
+      assertSame(conf2, chrom2.getConfiguration());
+      assertEquals(chrom.getFitnessValueDirectly(),
+                   chrom2.getFitnessValueDirectly(), DELTA);
+      for (int j = 0; j < chrom.size(); j++) {
+        assertEquals(chrom.getGene(j).getPersistentRepresentation(),
+                     chrom2.getGene(j).getPersistentRepresentation());
+      }
+    }
+    assertNull(pop2.getChromosome(1).getGene(0).getAllele());
+  }
+
+  /**
+   * Capturing the state of the random generator does not change it.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCaptureRandomState_0()
+      throws Exception {
+    StockRandomGenerator random = new StockRandomGenerator();
+    random.setSeed(42);
+    random.nextInt();
+    byte[] state = GenotypeCheckpoint.captureRandomState(random);
+    java.util.Random expected = new java.util.Random(42);
+    expected.nextInt();
+    int next = expected.nextInt();
+    assertEquals(next, random.nextInt());
+    // The state captured continues with the same number.
+    // --------------------------------------------------
+    StockRandomGenerator restored = new StockRandomGenerator();
+    conf.setRandomGenerator(restored);
+    GenotypeCheckpoint.restoreRandomState(state, conf);
+    assertEquals(next, restored.nextInt());
+  }
+
+  /**
+   * Corrupted, truncated and unfitting checkpoints are rejected.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testRead_0()
+      throws Exception {
+    Genotype genotype = createGenotype(conf, new TestFitnessFunction());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GenotypeCheckpoint.write(genotype, bytes);
+    byte[] data = bytes.toByteArray();
+    data[data.length / 2] ^= 1;
+    assertUnreadable(data, conf);
+    data = bytes.toByteArray();
+    byte[] truncated = new byte[data.length - 10];
+    System.arraycopy(data, 0, truncated, 0, truncated.length);
+    assertUnreadable(truncated, conf);
+    Configuration.reset("other");
+    Configuration conf2 = new DefaultConfiguration("other", "other");
+    conf2.setSampleChromosome(new Chromosome(conf2, new IntegerGene(conf2), 5));
+    assertUnreadable(data, conf2);
+    // Intact checkpoint is readable.
+    // ------------------------------
+    Population pop = GenotypeCheckpoint.readPopulation(java.nio.ByteBuffer.
+        wrap(data), conf);
+    assertEquals(genotype.getPopulation().size(), pop.size());
+  }
+
+  private void assertUnreadable(byte[] a_data, Configuration a_conf)
+      throws Exception {
+    FileOutputStream out = new FileOutputStream(m_file);
+    out.write(a_data);
+    out.close();
+    try {
+      GenotypeCheckpoint.readPopulation(m_file, a_conf);
+      fail();
+    } catch (IOException iex) {
+      ; //this is OK
+    }
+  }
+
+  private Genotype createGenotype(Configuration a_conf,
+                                  FitnessFunction a_fitness)
+      throws Exception {
+    a_conf.resetProperty(Configuration.PROPERTY_FITFUNC_INST);
+    a_conf.resetProperty(Configuration.PROPERTY_SAMPLE_CHROM_INST);
+    a_conf.setFitnessFunction(a_fitness);
+    a_conf.setSampleChromosome(createSample(a_conf));
+    a_conf.setPopulationSize(5);
+    return Genotype.randomInitialGenotype(a_conf);
+  }
+
+  private IChromosome createSample(Configuration a_conf)
+      throws Exception {
+    CompositeGene composite = new CompositeGene(a_conf);
+    composite.addGene(new IntegerGene(a_conf, 0, 9));
+    composite.addGene(new BooleanGene(a_conf));
+    Gene[] genes = new Gene[] {
+        new IntegerGene(a_conf, -50, 50),
+        new DoubleGene(a_conf, 0, 1),
+        new BooleanGene(a_conf),
+        new StringGene(a_conf, 2, 6, StringGene.ALPHABET_CHARACTERS_LOWER),
+        new FixedBinaryGene(a_conf, 40),
+        composite};
+    return new Chromosome(a_conf, genes);
+  }
+
+  private class TestFitnessFunction
+      extends FitnessFunction {
+    public double evaluate(IChromosome a_subject) {
+      return 1;
+    }
+  }
+}
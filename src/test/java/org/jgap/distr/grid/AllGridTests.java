@@ -9,6 +9,8 @@
  */
 package org.jgap.distr.grid;
 
+import org.jgap.distr.grid.common.*;
+
 import junit.framework.*;
 
 /**
@@ -25,6 +27,7 @@ public class AllGridTests
   public static Test suite() {
     TestSuite suite = new TestSuite("AllGridTests");
     suite.addTest(DefaultGenotypeInitializerTest.suite());
+    suite.addTest(ResultStoreTest.suite());
     return suite;
   }
 }
@@ -0,0 +1,248 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.distr.grid.common;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.jgap.JGAPTestCase;
+import org.jgap.gp.impl.GPBinaryCodec;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the ResultStore class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class ResultStoreTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private File m_file;
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(ResultStoreTest.class);
+    return suite;
+  }
+
+  public void setUp() {
+    super.setUp();
+    try {
+      m_file = File.createTempFile("jgap", ".log");
+      m_file.delete();
+    } catch (Exception ex) {
+      fail(ex.getMessage());
+    }
+  }
+
+  public void tearDown()
+      throws Exception {
+    m_file.delete();
+    new File(m_file.getPath() + ".compact").delete();
+    super.tearDown();
+  }
+
+  private ResultStore open(boolean a_higherIsFitter)
+      throws Exception {
+    return new ResultStore(m_file, new GPBinaryCodec(false, null),
+                           a_higherIsFitter);
+  }
+
+  /**
+   * Results are read back and ranked by fitness.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testPutGet_0()
+      throws Exception {
+    ResultStore store = open(true);
+    try {
+      store.put("a", 2.0d, "result a");
+      store.put("b", 5.0d, "result b");
+      store.put("c", Double.NaN, null);
+      store.put("d", 3.0d, "result d");
+      assertEquals(4, store.size());
+      assertEquals("result b", store.get("b"));
+      assertNull(store.get("c"));
+      assertTrue(store.contains("c"));
+      assertNull(store.get("x"));
+      assertFalse(store.contains("x"));
+      assertEquals(3.0d, store.getFitness("d"), DELTA);
+      assertTrue(Double.isNaN(store.getFitness("x")));
+      assertEquals(Arrays.asList("b", "d", "a", "c"), store.getIds());
+      assertEquals(Arrays.asList("b", "d"), store.getTopIds(2));
+      assertEquals(0, store.getRank("b"));
+      assertEquals(2, store.getRank("a"));
+      assertEquals( -1, store.getRank("x"));
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * Lower fitness values may be fitter.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testPutGet_1()
+      throws Exception {
+    ResultStore store = open(false);
+    try {
+      store.put("a", 2.0d, "a");
+      store.put("b", 5.0d, "b");
+      store.put("c", 2.0d, "c");
+      assertEquals(Arrays.asList("a", "c", "b"), store.getIds());
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * Replacing and removing results, also after reopening.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testRemove_0()
+      throws Exception {
+    ResultStore store = open(true);
+    store.put("a", 1.0d, "first");
+    store.put("b", 2.0d, "b");
+    store.put("a", 3.0d, "second");
+    assertTrue(store.remove("b"));
+    assertFalse(store.remove("b"));
+    assertEquals("second", store.get("a"));
+    assertEquals(1, store.size());
+    assertTrue(store.getGarbageBytes() > 0);
+    store.close();
+    store = open(true);
+    try {
+      assertEquals(1, store.size());
+      assertEquals("second", store.get("a"));
+      assertEquals(3.0d, store.getFitness("a"), DELTA);
+      assertFalse(store.contains("b"));
+      store.put("c", 0.5d, "c");
+      assertEquals(Arrays.asList("a", "c"), store.getIds());
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * A record not written completely is discarded when reopening.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testRecover_0()
+      throws Exception {
+    ResultStore store = open(true);
+    store.put("a", 1.0d, "a");
+    long size = store.getLogSize();
+    store.put("b", 2.0d, "b");
+    store.close();
+    RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+    raf.setLength(raf.length() - 3);
+    raf.close();
+    store = open(true);
+    try {
+      assertEquals(1, store.size());
+      assertEquals("a", store.get("a"));
+      assertEquals(size, store.getLogSize());
+      assertEquals(size, m_file.length());
+      store.put("c", 3.0d, "c");
+      assertEquals("c", store.get("c"));
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * A corrupt record and everything after it is discarded when reopening.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testRecover_1()
+      throws Exception {
+    ResultStore store = open(true);
+    store.put("a", 1.0d, "a");
+    long size = store.getLogSize();
+    store.put("b", 2.0d, "b");
+    store.put("c", 3.0d, "c");
+    store.close();
+    RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+    raf.seek(size + 12);
+    raf.write(raf.read() ^ 0xFF);
+    raf.close();
+    store = open(true);
+    try {
+      assertEquals(Arrays.asList("a"), store.getIds());
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * Compacting keeps the current results only.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCompact_0()
+      throws Exception {
+    ResultStore store = open(true);
+    store.setAutoCompact(false);
+    for (int i = 0; i < 50; i++) {
+      store.put("r" + (i % 5), i, "result " + i);
+    }
+    store.remove("r0");
+    long before = store.getLogSize();
+    store.compact();
+    try {
+      assertTrue(store.getLogSize() < before);
+      assertEquals(0, store.getGarbageBytes());
+      assertEquals(store.getLogSize(), m_file.length());
+      assertEquals(Arrays.asList("r4", "r3", "r2", "r1"), store.getIds());
+      assertEquals("result 48", store.get("r3"));
+      store.put("r5", 100.0d, "new");
+    } finally {
+      store.close();
+    }
+    store = open(true);
+    try {
+      assertEquals(5, store.size());
+      assertEquals("result 46", store.get("r1"));
+      assertEquals(0, store.getRank("r5"));
+      assertFalse(new File(m_file.getPath() + ".compact").exists());
+    } finally {
+      store.close();
+    }
+  }
+}
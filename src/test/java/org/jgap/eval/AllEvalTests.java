@@ -26,6 +26,7 @@ public class AllEvalTests
   public static Test suite() {
     TestSuite suite = new TestSuite("AllEvalTests");
     suite.addTest(PopulationHistoryTest.suite());
+    suite.addTest(MappedPopulationHistoryTest.suite());
     return suite;
   }
 }
@@ -0,0 +1,187 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.eval;
+
+import java.io.*;
+import java.util.*;
+import org.jgap.*;
+import org.jgap.data.*;
+import org.jgap.impl.*;
+import junit.framework.*;
+
+/**
+ * Tests the MappedPopulationHistory class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class MappedPopulationHistoryTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private File m_file;
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(MappedPopulationHistoryTest.class);
+    return suite;
+  }
+
+  public void setUp() {
+    super.setUp();
+    try {
+      m_file = File.createTempFile("jgap", ".hist");
+    } catch (IOException iex) {
+      throw new RuntimeException(iex);
+    }
+  }
+
+  public void tearDown() {
+    m_file.delete();
+  }
+
+  private Population createPopulation(IChromosome a_sample, int a_size,
+                                      RandomGenerator a_random)
+      throws Exception {
+    ChromosomeSchema schema = new ChromosomeSchema(a_sample);
+    IChromosome[] chroms = new IChromosome[a_size];
+    for (int i = 0; i < a_size; i++) {
+      chroms[i] = schema.newChromosome();
+      for (int j = 0; j < chroms[i].size(); j++) {
+        chroms[i].getGene(j).setToRandomValue(a_random);
+      }
+      chroms[i].setFitnessValueDirectly(a_random.nextDouble() * 10);
+    }
+    return new Population(conf, chroms);
+  }
+
+  private void assertGeneration(MappedPopulationHistory a_history,
+                                int a_generation, Population a_pop)
+      throws Exception {
+    assertEquals(a_pop.size(), a_history.getPopulationSize(a_generation));
+    for (int i = 0; i < a_pop.size(); i++) {
+      IChromosome chrom = a_history.getChromosome(a_generation, i);
+      assertEquals(a_pop.getChromosome(i), chrom);
+      assertEquals(a_pop.getChromosome(i).getFitnessValueDirectly(),
+                   chrom.getFitnessValueDirectly(), DELTA);
+      assertEquals(a_pop.getChromosome(i).getFitnessValueDirectly(),
+                   a_history.getFitnessValue(a_generation, i), DELTA);
+    }
+  }
+
+  /**
+   * Generations spanning several segments, including one larger than a
+   * segment, are read back, also after reopening.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testAddGet_0()
+      throws Exception {
+    Chromosome sample = new Chromosome(conf, new Gene[] {
+        new IntegerGene(conf, 0, 3), new BooleanGene(conf),
+        new DoubleGene(conf, 0.0d, 1.0d)});
+    RandomGenerator random = new StockRandomGenerator();
+    MappedPopulationHistory history = new MappedPopulationHistory(m_file,
+        sample, 1024);
+    Population[] pops = new Population[6];
+    for (int g = 0; g < pops.length; g++) {
+      pops[g] = createPopulation(sample, g == 3 ? 100 : 20, random);
+      history.addPopulation(g * 10, pops[g]);
+    }
+    assertEquals(pops.length, history.size());
+    for (int g = 0; g < pops.length; g++) {
+      assertEquals(g * 10, history.getGenerationNr(g));
+      assertGeneration(history, g, pops[g]);
+    }
+    assertEquals(pops[2], history.getPopulation(2));
+    history.close();
+    history = MappedPopulationHistory.open(m_file, conf);
+    try {
+      assertEquals(pops.length, history.size());
+      for (int g = 0; g < pops.length; g++) {
+        assertGeneration(history, g, pops[g]);
+      }
+      Population pop = createPopulation(sample, 30, random);
+      history.addPopulation(60, pop);
+      assertEquals(pops.length + 1, history.size());
+      assertGeneration(history, pops.length, pop);
+    } finally {
+      history.close();
+    }
+  }
+
+  /**
+   * Fitness trajectories and allele frequencies.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testQueries_0()
+      throws Exception {
+    Chromosome sample = new Chromosome(conf, new Gene[] {
+        new StringGene(conf, 1, 3, "ab"), new IntegerGene(conf, 0, 3)});
+    MappedPopulationHistory history = new MappedPopulationHistory(m_file,
+        sample, 4096);
+    try {
+      for (int g = 0; g < 3; g++) {
+        IChromosome[] chroms = new IChromosome[4];
+        for (int i = 0; i < chroms.length; i++) {
+          chroms[i] = history.getSchema().newChromosome();
+          chroms[i].getGene(0).setAllele(i % 2 == 0 ? "a" : "bb");
+          chroms[i].getGene(1).setAllele(new Integer(i < 3 ? 1 : g));
+          chroms[i].setFitnessValueDirectly(g + i);
+        }
+        history.addPopulation(g, new Population(conf, chroms));
+      }
+      double[] best = history.getBestFitnessTrajectory(
+          new DefaultFitnessEvaluator());
+      assertEquals(3, best.length);
+      assertEquals(5.0d, best[2], DELTA);
+      assertEquals(1.0d, history.getBestFitnessTrajectory(
+          new DeltaFitnessEvaluator())[1], DELTA);
+      assertEquals(2.5d, history.getMeanFitnessTrajectory()[1], DELTA);
+      assertEquals(4, history.getFitnessValues(0).length);
+      Map<Object, Double> freq = history.getAlleleFrequencies(2, 1);
+      assertEquals(2, freq.size());
+      assertEquals(0.75d, freq.get(new Integer(1)).doubleValue(), DELTA);
+      assertEquals(0.25d, freq.get(new Integer(2)).doubleValue(), DELTA);
+      freq = history.getAlleleFrequencies(1, 0);
+      assertEquals(0.5d, freq.get("bb").doubleValue(), DELTA);
+      assertEquals(1.0d, history.getAlleleFrequencies(1, 1).get(
+          new Integer(1)).doubleValue(), DELTA);
+    } finally {
+      history.close();
+    }
+  }
+
+  /**
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testOpen_0()
+      throws Exception {
+    FileWriter fw = new FileWriter(m_file);
+    fw.write("no history");
+    fw.close();
+    try {
+      MappedPopulationHistory.open(m_file, conf);
+      fail();
+    } catch (IOException iex) {
+      ; //this is OK
+    }
+  }
+}
@@ -12,6 +12,7 @@ package org.jgap.gp;
 import junit.framework.*;
 import org.jgap.gp.impl.*;
 import org.jgap.gp.function.*;
+import org.jgap.gp.terminal.*;
 
 /**
  * Test suite for all tests of package org.jgap.gp.
@@ -29,6 +30,7 @@ public class AllGPTests
     TestSuite suite = new TestSuite("AllGPTests");
     suite.addTest(AllGPFunctionTests.suite());
     suite.addTest(AllGPImplTests.suite());
+    suite.addTest(AllGPTerminalTests.suite());
     suite.addTest(CommandGeneTest.suite());
     suite.addTest(CommandDynamicArityTest2.suite());
     return suite;
@@ -26,13 +26,23 @@ public class AllGPImplTests
   public static Test suite() {
     TestSuite suite = new TestSuite("AllGPImplTests");
     suite.addTest(BranchTypingCrossTest.suite());
+    suite.addTest(CompactProgramTest.suite());
     suite.addTest(DefaultGPFitnessEvaluatorTest.suite());
     suite.addTest(DeltaGPFitnessEvaluatorTest.suite());
+    suite.addTest(ExecutionGuardTest.suite());
+    suite.addTest(GPGenotypeCheckpointTest.suite());
+    suite.addTest(GPBinaryCodecTest.suite());
     suite.addTest(GPConfigurationTest.suite());
     suite.addTest(GPGenotypeTest2.suite());
     suite.addTest(GPPopulationTest.suite());
+    suite.addTest(GPProgramCacheTest.suite());
     suite.addTest(GPProgramTest2.suite());
+    suite.addTest(GPRouletteWheelTest.suite());
+    suite.addTest(NodeSetIndexTest.suite());
     suite.addTest(ProgramChromosomeTest2.suite());
+    suite.addTest(ProgramSimplifierTest.suite());
+    suite.addTest(SubtreeEvaluatorTest.suite());
+    suite.addTest(TournamentSelectorTest.suite());
     return suite;
   }
 }
@@ -11,6 +11,8 @@ package org.jgap.gp.impl;
 
 import org.jgap.gp.*;
 import org.jgap.gp.function.*;
+import org.jgap.gp.terminal.*;
+import org.jgap.impl.*;
 
 import junit.framework.*;
 
@@ -246,6 +248,126 @@ public class BranchTypingCrossTest
     assertSame(CMD_CONST2, chrom2.getGene(6));
   }
 
+  /**
+   * With size checking, only crossover points leading to offspring within the
+   * maximum number of nodes are chosen.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testOperate_3()
+      throws Exception {
+    BranchTypingCross btc = new BranchTypingCross(m_gpconf, false, true);
+    assertTrue(btc.isSizeChecked());
+    Class[] types = new Class[]{Add.class};//needed for init. only
+    // First program, room for five nodes.
+    // -----------------------------------
+    GPProgram prog1 = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc1 = new ProgramChromosome(m_gpconf, 6, prog1);
+    pc1.setGene(0, CMD_ADD);
+    pc1.setGene(1, CMD_CONST0);
+    pc1.setGene(2, CMD_CONST1);
+    pc1.redepth();
+    prog1.setChromosome(0, pc1);
+    prog1.setTypes(types);
+    // Second program.
+    // ---------------
+    GPProgram prog2 = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc2 = new ProgramChromosome(m_gpconf, 8, prog2);
+    pc2.setGene(0, CMD_ADD);
+    pc2.setGene(1, CMD_ADD);
+    pc2.setGene(2, CMD_CONST0);
+    pc2.setGene(3, CMD_CONST1);
+    pc2.setGene(4, CMD_ADD);
+    pc2.setGene(5, CMD_CONST2);
+    pc2.setGene(6, CMD_CONST3);
+    pc2.redepth();
+    prog2.setChromosome(0, pc2);
+    prog2.setTypes(types);
+    int[] sizes = pc2.getSubtreeSizes();
+    int[] depths = pc2.getSubtreeDepths();
+    for (int i = 0; i < 7; i++) {
+      assertEquals(pc2.getSize(i), sizes[i]);
+      assertEquals(pc2.getDepth(i), depths[i]);
+    }
+    // Do crossing over.
+    // -----------------
+    rn.setNextIntSequence(new int[] {
+                          0, // a node in pc1
+                          1, // index of terminal to choose (p0 = CMD_CONST1)
+                          1 // index of compatible function (p1 = second ADD)
+    });
+    rn.setNextFloatSequence(new float[] {
+                            0.95f, // Choose a terminal when crossing over
+                            0.5f // Choose a function when crossing over
+    });
+    rn.setNextDouble(0.99d);
+    IGPProgram[] result = btc.operate(prog1, prog2);
+    ProgramChromosome chrom1 = result[0].getChromosome(0);
+    ProgramChromosome chrom2 = result[1].getChromosome(0);
+    // The root of pc2 would not fit into pc1, thus only the functions at
+    // index 1 and 4 were candidates.
+    // ------------------------------------------------------------------
+    assertEquals(5, chrom1.size());
+    assertSame(CMD_ADD, chrom1.getGene(0));
+    assertSame(CMD_CONST0, chrom1.getGene(1));
+    assertSame(CMD_ADD, chrom1.getGene(2));
+    assertSame(CMD_CONST2, chrom1.getGene(3));
+    assertSame(CMD_CONST3, chrom1.getGene(4));
+    assertEquals(5, chrom2.size());
+    assertSame(CMD_CONST1, chrom2.getGene(4));
+  }
+
+  /**
+   * Terminals of a frozen parent are mutated as a copy, also via offspring
+   * crossed later on.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testOperate_Frozen_0()
+      throws Exception {
+    StockRandomGenerator random = new StockRandomGenerator();
+    random.setSeed(5);
+    m_gpconf.setRandomGenerator(random);
+    m_gpconf.setMutationProb(1.0f);
+    m_gpconf.setFunctionProb(0.0d);
+    BranchTypingCross btc = new BranchTypingCross(m_gpconf);
+    GPProgram elite = createProgram(1);
+    GPProgram other = createProgram(4);
+    elite.freeze();
+    String norm = elite.toStringNorm(0);
+    for (int i = 0; i < 20; i++) {
+      IGPProgram[] result = btc.operate(elite, other);
+      other = (GPProgram) result[i % 2];
+      assertFalse(other.isFrozen());
+      result = btc.operate(other, createProgram(7));
+      other = (GPProgram) result[0];
+    }
+    assertEquals(norm, elite.toStringNorm(0));
+  }
+
+  private GPProgram createProgram(int a_value)
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 50, prog);
+    pc.setGene(0, CMD_ADD);
+    for (int i = 1; i < 3; i++) {
+      Terminal term = new Terminal(m_gpconf, CommandGene.IntegerClass, 0, 100,
+                                   true, 0, false);
+      term.setValue(a_value + i);
+      pc.setGene(i, term);
+    }
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    prog.setTypes(new Class[] {CommandGene.IntegerClass});
+    return prog;
+  }
+
   /**
    * @throws Exception
    *
@@ -258,4 +380,22 @@ public class BranchTypingCrossTest
     BranchTypingCross btc2 = (BranchTypingCross) doSerialize(btc);
     assertEquals(btc, btc2);
   }
+
+  /**
+   * Options are kept when cloning.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testClone_0()
+      throws Exception {
+    BranchTypingCross btc = new BranchTypingCross(m_gpconf, true, true);
+    BranchTypingCross btc2 = (BranchTypingCross) btc.clone();
+    assertTrue(btc2.isSizeChecked());
+    btc.setSizeChecked(false);
+    assertFalse(btc.isSizeChecked());
+    assertTrue(btc2.isSizeChecked());
+  }
 }
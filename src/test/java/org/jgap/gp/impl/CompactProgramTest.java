@@ -0,0 +1,171 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import junit.framework.*;
+import org.jgap.gp.*;
+import org.jgap.gp.terminal.*;
+
+/**
+ * Tests the CompactProgram class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class CompactProgramTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(CompactProgramTest.class);
+    return suite;
+  }
+
+  /**
+   * Converting to the compact form and back yields an equal chromosome,
+   * with own copies of the constants.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCompact_0()
+      throws Exception {
+    Terminal erc = new Terminal(m_gpconf, CommandGene.IntegerClass, 0, 20);
+    erc.setValue(7);
+    ProgramChromosome pc = createChromosome(new CommandGene[] {
+        CMD_ADD, CMD_CONST1, CMD_ADD, erc, CMD_CONST2});
+    NodeTable table = m_gpconf.getNodeTable();
+    CompactProgram cp = CompactProgram.compact(pc, table);
+    assertEquals(5, cp.size());
+    assertEquals(10, cp.getCapacity());
+    assertEquals(cp.getOpcode(0), cp.getOpcode(2));
+    assertTrue(table.isConstant(cp.getOpcode(3)));
+    assertFalse(table.isConstant(cp.getOpcode(0)));
+    assertEquals(5, cp.getSubtreeEnd(0));
+    assertEquals(2, cp.getSubtreeEnd(1));
+    assertEquals(5, cp.getSubtreeEnd(2));
+    ProgramChromosome pc2 = cp.toProgramChromosome(m_gpconf, null);
+    assertEquals(pc.toStringNorm(0), pc2.toStringNorm(0));
+    assertEquals(pc.size(), pc2.size());
+    for (int i = 0; i < pc.size(); i++) {
+      assertEquals(pc.getDepth(i), pc2.getDepth(i));
+    }
+    assertEquals(10, pc2.execute_int(new Object[0]));
+    assertNotSame(erc, pc2.getGene(3));
+    assertSame(CMD_CONST1, pc2.getGene(1));
+    assertEquals(cp, CompactProgram.compact(pc2, table));
+    assertEquals(cp.hashCode(), CompactProgram.compact(pc2, table).hashCode());
+    // Another value of the constant shares the opcode, not the value.
+    // -----------------------------------------------------------------
+    erc.setValue(8);
+    CompactProgram cp2 = CompactProgram.compact(pc, table);
+    assertEquals(cp.getOpcode(3), cp2.getOpcode(3));
+    assertFalse(cp.equals(cp2));
+    assertEquals(11, cp2.toProgramChromosome(m_gpconf, null)
+                 .execute_int(new Object[0]));
+  }
+
+  /**
+   * Crossover exchanges subtrees and leaves the parents unchanged.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCrossover_0()
+      throws Exception {
+    Terminal erc = new Terminal(m_gpconf, CommandGene.IntegerClass, 0, 20);
+    erc.setValue(7);
+    NodeTable table = m_gpconf.getNodeTable();
+    CompactProgram cp0 = CompactProgram.compact(createChromosome(
+        new CommandGene[] {CMD_ADD, CMD_CONST1, CMD_CONST2}), table);
+    CompactProgram cp1 = CompactProgram.compact(createChromosome(
+        new CommandGene[] {CMD_ADD, CMD_ADD, erc, CMD_CONST3, CMD_CONST4}),
+        table);
+    CompactProgram[] children = CompactProgram.crossover(cp0, 2, cp1, 1);
+    ProgramChromosome c0 = children[0].toProgramChromosome(m_gpconf, null);
+    ProgramChromosome c1 = children[1].toProgramChromosome(m_gpconf, null);
+    assertEquals(5, c0.size());
+    assertEquals(1 + 7 + 3, c0.execute_int(new Object[0]));
+    assertEquals(3, c1.size());
+    assertEquals(2 + 4, c1.execute_int(new Object[0]));
+    assertEquals(3, cp0.size());
+    assertEquals(5, cp1.size());
+    assertEquals(0, children[1].getConstantBits(1));
+    // Result too big.
+    // ---------------
+    CompactProgram big = cp1;
+    try {
+      for (int i = 0; i < 3; i++) {
+        big = big.replaceSubtree(big.size() - 1, cp1, 0);
+      }
+      fail();
+    } catch (IllegalStateException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * Mutation returns a new program.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testMutate_0()
+      throws Exception {
+    Terminal erc = new Terminal(m_gpconf, CommandGene.IntegerClass, 0, 20,
+                                true, 0, false);
+    erc.setValue(7);
+    NodeTable table = m_gpconf.getNodeTable();
+    CompactProgram cp = CompactProgram.compact(createChromosome(
+        new CommandGene[] {CMD_ADD, erc, CMD_CONST2}), table);
+    rn.setNextDouble(0.0d);
+    rn.setNextFloat(0.0f);
+    rn.setNextInt(12);
+    CompactProgram mutated = cp.mutateConstant(1, 0.9d);
+    assertEquals(7 + 2, cp.toProgramChromosome(m_gpconf, null)
+                 .execute_int(new Object[0]));
+    assertEquals(cp.getOpcode(1), mutated.getOpcode(1));
+    assertFalse(cp.getConstantBits(1) == mutated.getConstantBits(1));
+    CompactProgram replaced = cp.replaceNode(2, table.intern(CMD_CONST4), 0);
+    assertEquals(7 + 4, replaced.toProgramChromosome(m_gpconf, null)
+                 .execute_int(new Object[0]));
+    try {
+      cp.replaceNode(2, cp.getOpcode(0), 0);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+    try {
+      cp.mutateConstant(2, 0.5d);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  private ProgramChromosome createChromosome(CommandGene[] a_nodes)
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 10, prog);
+    for (int i = 0; i < a_nodes.length; i++) {
+      pc.setGene(i, a_nodes[i]);
+    }
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    return pc;
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import junit.framework.*;
+import org.jgap.gp.*;
+
+/**
+ * Tests the ExecutionGuard class and the supervision of program executions.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class ExecutionGuardTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(ExecutionGuardTest.class);
+    return suite;
+  }
+
+  /**
+   * Executions exceeding the step budget are aborted and counted.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testStepBudget_0()
+      throws Exception {
+    ProgramChromosome pc = createProgram().getChromosome(0);
+    m_gpconf.setMaxExecutionSteps(4);
+    assertEquals(1 + 2 + 3, pc.execute_int(new Object[0]));
+    m_gpconf.setMaxExecutionSteps(3);
+    try {
+      pc.execute_int(new Object[0]);
+      fail();
+    } catch (ExecutionAbortedException aex) {
+      assertEquals(ExecutionAbortedException.STEP_BUDGET, aex.getReason());
+      assertEquals(4, aex.getSteps());
+    }
+    assertEquals(1, m_gpconf.getAbortedExecutions());
+    // The guard has been released.
+    // ----------------------------
+    m_gpconf.setMaxExecutionSteps(0);
+    assertFalse(m_gpconf.isExecutionGuarded());
+    assertEquals(1 + 2 + 3, pc.execute_int(new Object[0]));
+    m_gpconf.incrementGenerationNr();
+    assertEquals(0, m_gpconf.getAbortedExecutions());
+    assertEquals(1, m_gpconf.getAbortedExecutionsPreviousGeneration());
+  }
+
+  /**
+   * Aborted programs get the penalty fitness, by default the worst one for
+   * the fitness evaluator.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testPenalty_0()
+      throws Exception {
+    m_gpconf.setFitnessFunction(new ExecutingFitness());
+    m_gpconf.setGPFitnessEvaluator(new DefaultGPFitnessEvaluator());
+    m_gpconf.setMaxExecutionSteps(2);
+    assertEquals(0.0d, createProgram().getFitnessValue(), DELTA);
+    m_gpconf.setGPFitnessEvaluator(new DeltaGPFitnessEvaluator());
+    assertEquals(GPFitnessFunction.MAX_FITNESS_VALUE,
+                 createProgram().getFitnessValue(), DELTA);
+    m_gpconf.setAbortedExecutionFitness(1000.0d);
+    assertEquals(1000.0d, createProgram().getFitnessValue(), DELTA);
+    assertEquals(3, m_gpconf.getAbortedExecutions());
+    try {
+      m_gpconf.setAbortedExecutionFitness( -1.0d);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * Executions are cancelled when requested, checked periodically.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCancel_0()
+      throws Exception {
+    m_gpconf.setCancellableExecution(true);
+    ExecutionGuard guard = ExecutionGuard.enter(m_gpconf);
+    try {
+      for (int i = 0; i < 300; i++) {
+        guard.step();
+      }
+      m_gpconf.cancelExecutions();
+      try {
+        for (int i = 0; i < 300; i++) {
+          guard.step();
+        }
+        fail();
+      } catch (ExecutionAbortedException aex) {
+        assertEquals(ExecutionAbortedException.CANCELLED, aex.getReason());
+        assertEquals(512, aex.getSteps());
+      }
+      // Once aborted, the execution stays aborted.
+      // ------------------------------------------
+      try {
+        guard.step();
+        fail();
+      } catch (ExecutionAbortedException aex) {
+        ; //this is OK
+      }
+    } finally {
+      assertTrue(guard.exit());
+    }
+    // Executions started afterwards are not affected.
+    // -----------------------------------------------
+    guard = ExecutionGuard.enter(m_gpconf);
+    for (int i = 0; i < 600; i++) {
+      guard.step();
+    }
+    assertTrue(guard.exit());
+    assertEquals(1, m_gpconf.getAbortedExecutions());
+  }
+
+  /**
+   * Nested executions share the guard of the outermost one.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testNested_0()
+      throws Exception {
+    assertNull(ExecutionGuard.enter(m_gpconf));
+    m_gpconf.setMaxExecutionSteps(10);
+    ExecutionGuard guard = ExecutionGuard.enter(m_gpconf);
+    guard.step();
+    ExecutionGuard inner = ExecutionGuard.enter(m_gpconf);
+    assertSame(guard, inner);
+    inner.step();
+    assertFalse(inner.exit());
+    assertEquals(2, guard.getSteps());
+    assertTrue(guard.exit());
+    inner = ExecutionGuard.enter(m_gpconf);
+    assertNotSame(guard, inner);
+    assertTrue(inner.exit());
+  }
+
+  /**
+   * The penalty of a cancelled program is not cached.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testProgramCache_0()
+      throws Exception {
+    m_gpconf.setUseProgramCache(true);
+    m_gpconf.setGPFitnessEvaluator(new DefaultGPFitnessEvaluator());
+    m_gpconf.setFitnessFunction(new CancellingFitness());
+    m_gpconf.setCancellableExecution(true);
+    GPProgram prog = createProgram();
+    assertEquals(0.0d, prog.calcFitnessValue(), DELTA);
+    assertNull(m_gpconf.readProgramCache(prog));
+    // The flag has been reset by the evaluation.
+    // ------------------------------------------
+    assertFalse(ExecutionGuard.clearTransientAbort());
+  }
+
+  /**
+   * The penalty of a program exceeding its step budget is cached, as the
+   * program would be aborted again.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testProgramCache_1()
+      throws Exception {
+    m_gpconf.setUseProgramCache(true);
+    m_gpconf.setGPFitnessEvaluator(new DefaultGPFitnessEvaluator());
+    m_gpconf.setFitnessFunction(new ExecutingFitness());
+    m_gpconf.setMaxExecutionSteps(2);
+    GPProgram prog = createProgram();
+    assertEquals(0.0d, prog.calcFitnessValue(), DELTA);
+    assertNotNull(m_gpconf.readProgramCache(prog));
+  }
+
+  private GPProgram createProgram()
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 10, prog);
+    pc.setGene(0, CMD_ADD);
+    pc.setGene(1, CMD_CONST1);
+    pc.setGene(2, CMD_ADD);
+    pc.setGene(3, CMD_CONST2);
+    pc.setGene(4, CMD_CONST3);
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    return prog;
+  }
+
+  static class ExecutingFitness
+      extends GPFitnessFunction {
+    protected double evaluate(IGPProgram a_subject) {
+      return a_subject.execute_int(0, new Object[] {});
+    }
+  }
+
+  static class CancellingFitness
+      extends GPFitnessFunction {
+    protected double evaluate(IGPProgram a_subject) {
+      GPConfiguration conf = a_subject.getGPConfiguration();
+      ExecutionGuard guard = ExecutionGuard.enter(conf);
+      try {
+        conf.cancelExecutions();
+        for (int i = 0; i < 300; i++) {
+          guard.step();
+        }
+      } finally {
+        guard.exit();
+      }
+      return 1.0d;
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.io.*;
+import junit.framework.*;
+import org.jgap.distr.grid.gp.*;
+import org.jgap.gp.*;
+import org.jgap.gp.function.*;
+import org.jgap.gp.terminal.*;
+import org.jgap.impl.*;
+import org.jgap.util.*;
+
+/**
+ * Tests the GPBinaryCodec class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GPBinaryCodecTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(GPBinaryCodecTest.class);
+    return suite;
+  }
+
+  /**
+   * A population including its configuration is restored, and the encoding
+   * is smaller than plain serialization.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEncode_0()
+      throws Exception {
+    GPPopulation pop = createPopulation();
+    for (int compress = 0; compress < 2; compress++) {
+      GPBinaryCodec codec = new GPBinaryCodec(compress == 1, null);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      codec.encode(pop, bytes);
+      assertTrue(codec.isEncoded(bytes.toByteArray()));
+      GPPopulation pop2 = (GPPopulation) codec.decode(
+          new ByteArrayInputStream(bytes.toByteArray()));
+      assertNotSame(m_gpconf, pop2.getGPConfiguration());
+      assertSamePrograms(pop, pop2);
+      ByteArrayOutputStream plain = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(plain);
+      out.writeObject(pop);
+      out.close();
+      assertTrue(bytes.size() < plain.size());
+    }
+  }
+
+  /**
+   * Configurations are omitted and replaced by the one given when reading.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEncode_1()
+      throws Exception {
+    GPPopulation pop = createPopulation();
+    GPBinaryCodec codec = new GPBinaryCodec(true, m_gpconf);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    codec.encode(pop, bytes);
+    GPPopulation pop2 = (GPPopulation) codec.decode(
+        new ByteArrayInputStream(bytes.toByteArray()));
+    assertSame(m_gpconf, pop2.getGPConfiguration());
+    assertSame(m_gpconf, pop2.getGPProgram(0).getGPConfiguration());
+    assertSame(m_gpconf,
+               pop2.getGPProgram(0).getChromosome(0).getGPConfiguration());
+    assertSamePrograms(pop, pop2);
+    // Grid results are encoded the same way.
+    // --------------------------------------
+    JGAPResultGP result = new JGAPResultGP("session", "id1", 3, pop, 7);
+    bytes = new ByteArrayOutputStream();
+    codec.encode(result, bytes);
+    JGAPResultGP result2 = (JGAPResultGP) codec.decode(
+        new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals("id1", result2.getID());
+    assertEquals(3, result2.getChunk());
+    assertEquals(7, result2.getUnitDone());
+    assertSamePrograms(pop, result2.getPopulation());
+    // A codec without configuration cannot read it.
+    // ---------------------------------------------
+    try {
+      new GPBinaryCodec().decode(new ByteArrayInputStream(
+          bytes.toByteArray()));
+      fail();
+    } catch (IOException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * Programs written by a codec are loaded by PersistableObject given the
+   * codec.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testPersistableObject_0()
+      throws Exception {
+    GPPopulation pop = createPopulation();
+    IGPProgram prog = pop.getGPProgram(0);
+    File file = File.createTempFile("jgap", ".bin");
+    try {
+      PersistableObject po = new PersistableObject(file);
+      po.setCodec(new GPBinaryCodec());
+      po.setObject(prog);
+      po.save();
+      PersistableObject po2 = new PersistableObject(file);
+      po2.setCodec(new GPBinaryCodec());
+      IGPProgram prog2 = (IGPProgram) po2.load();
+      assertEquals(prog.toStringNorm(0), prog2.toStringNorm(0));
+      assertEquals(prog.getFitnessValue(), prog2.getFitnessValue(), DELTA);
+    } finally {
+      file.delete();
+    }
+  }
+
+  private void assertSamePrograms(GPPopulation a_pop1, GPPopulation a_pop2) {
+    assertEquals(a_pop1.size(), a_pop2.size());
+    for (int i = 0; i < a_pop1.size(); i++) {
+      IGPProgram prog1 = a_pop1.getGPProgram(i);
+      IGPProgram prog2 = a_pop2.getGPProgram(i);
+      assertEquals(prog1.toStringNorm(0), prog2.toStringNorm(0));
+      assertEquals(prog1.getFitnessValue(), prog2.getFitnessValue(), DELTA);
+      ProgramChromosome chrom1 = prog1.getChromosome(0);
+      ProgramChromosome chrom2 = prog2.getChromosome(0);
+      assertSame(prog2, chrom2.getIndividual());
+      assertEquals(chrom1.getFunctions().length, chrom2.getFunctions().length);
+      for (int j = 0; j < chrom1.size(); j++) {
+        assertEquals(chrom1.getDepth(j), chrom2.getDepth(j));
+      }
+    }
+    // Nodes shared in the original are shared in the copy.
+    // ----------------------------------------------------
+    assertSame(a_pop2.getGPProgram(0).getChromosome(0).getFunctionSet()[0],
+               a_pop2.getGPProgram(1).getChromosome(0).getFunctionSet()[0]);
+  }
+
+  private GPPopulation createPopulation()
+      throws Exception {
+    StockRandomGenerator random = new StockRandomGenerator();
+    random.setSeed(11);
+    m_gpconf.setRandomGenerator(random);
+    m_gpconf.setPopulationSize(15);
+    m_gpconf.setFitnessFunction(new SizeFitness());
+    Class[] types = {CommandGene.IntegerClass};
+    Class[][] argTypes = { {}
+    };
+    CommandGene[][] nodeSets = { {
+        new Add(m_gpconf, CommandGene.IntegerClass),
+        new Multiply(m_gpconf, CommandGene.IntegerClass),
+        new Terminal(m_gpconf, CommandGene.IntegerClass, 1.0d, 100.0d, true),
+        new Constant(m_gpconf, CommandGene.IntegerClass, new Integer(7)),
+    }
+    };
+    GPGenotype gen = GPGenotype.randomInitialGenotype(m_gpconf, types,
+        argTypes, nodeSets, 20, false);
+    GPPopulation pop = gen.getGPPopulation();
+    for (int i = 0; i < pop.size(); i++) {
+      pop.getGPProgram(i).setFitnessValue(i * 1.5d);
+    }
+    return pop;
+  }
+
+  public static class SizeFitness
+      extends GPFitnessFunction {
+    protected double evaluate(IGPProgram a_subject) {
+      return a_subject.getChromosome(0).size();
+    }
+  }
+}
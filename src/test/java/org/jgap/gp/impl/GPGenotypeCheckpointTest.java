@@ -0,0 +1,197 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import java.io.*;
+import java.nio.*;
+import junit.framework.*;
+import org.jgap.data.*;
+import org.jgap.gp.*;
+import org.jgap.gp.function.*;
+import org.jgap.gp.terminal.*;
+import org.jgap.impl.*;
+
+/**
+ * Tests the GPGenotypeCheckpoint class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GPGenotypeCheckpointTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(GPGenotypeCheckpointTest.class);
+    return suite;
+  }
+
+  /**
+   * Programs, constants, fitness values and generation number are restored
+   * into a genotype set up the same way.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testResume_0()
+      throws Exception {
+    StockRandomGenerator random = new StockRandomGenerator();
+    random.setSeed(23);
+    m_gpconf.setRandomGenerator(random);
+    m_gpconf.setPopulationSize(12);
+    m_gpconf.setFitnessFunction(new SizeFitness());
+    GPGenotype gen = createGenotype();
+    GPPopulation pop = gen.getGPPopulation();
+    for (int i = 0; i < pop.size(); i++) {
+      pop.getGPProgram(i).setFitnessValue(i * 2.5d);
+    }
+    m_gpconf.setGenerationNr(42);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ICheckpoint checkpoint = GPGenotypeCheckpoint.capture(gen);
+    assertEquals(42, checkpoint.getGenerationNr());
+    // Modifying the genotype after capturing does not affect the checkpoint.
+    // ----------------------------------------------------------------------
+    String first = pop.getGPProgram(0).toStringNorm(0);
+    pop.setGPProgram(0, pop.getGPProgram(1));
+    checkpoint.write(bytes);
+    int nextRandom = random.nextInt();
+    GPGenotype gen2 = createGenotype();
+    m_gpconf.setGenerationNr(0);
+    GPGenotypeCheckpoint.resume(ByteBuffer.wrap(bytes.toByteArray()), gen2);
+    assertEquals(42, m_gpconf.getGenerationNr());
+    assertEquals(nextRandom, random.nextInt());
+    GPPopulation pop2 = gen2.getGPPopulation();
+    assertEquals(pop.size(), pop2.size());
+    assertEquals(first, pop2.getGPProgram(0).toStringNorm(0));
+    for (int i = 1; i < pop.size(); i++) {
+      assertEquals(pop.getGPProgram(i).toStringNorm(0),
+                   pop2.getGPProgram(i).toStringNorm(0));
+      assertEquals(i * 2.5d, pop2.getGPProgram(i).getFitnessValue(), DELTA);
+    }
+    // Corrupted checkpoints are rejected.
+    // -----------------------------------
+    byte[] data = bytes.toByteArray();
+    data[data.length / 2] ^= 1;
+    try {
+      GPGenotypeCheckpoint.resume(ByteBuffer.wrap(data), gen2);
+      fail();
+    } catch (IOException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * The checkpoint service writes checkpoints of an evolving genotype.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCheckpointService_0()
+      throws Exception {
+    StockRandomGenerator random = new StockRandomGenerator();
+    random.setSeed(5);
+    m_gpconf.setRandomGenerator(random);
+    m_gpconf.setPopulationSize(10);
+    m_gpconf.setFitnessFunction(new SizeFitness());
+    GPGenotype gen = createGenotype();
+    File file = File.createTempFile("jgap", ".gpckpt");
+    try {
+      CheckpointService service = new CheckpointService(file, 2, 0);
+      gen.setCheckpointService(service);
+      gen.evolve(4);
+      service.close();
+      assertNull(service.getLastError());
+      assertTrue(service.getCheckpointsWritten() >= 1);
+      assertFalse(new File(file.getPath() + ".tmp").exists());
+      GPGenotype gen2 = createGenotype();
+      GPGenotypeCheckpoint.resume(file, gen2);
+      assertEquals(service.getLastGenerationWritten(),
+                   m_gpconf.getGenerationNr());
+      assertEquals(10, gen2.getGPPopulation().size());
+    } finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * Genotypes using ADFs cannot be captured, thus a checkpoint service is
+   * rejected for them.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testADF_0()
+      throws Exception {
+    StockRandomGenerator random = new StockRandomGenerator();
+    random.setSeed(11);
+    m_gpconf.setRandomGenerator(random);
+    m_gpconf.setPopulationSize(5);
+    m_gpconf.setFitnessFunction(new SizeFitness());
+    Class[] types = {CommandGene.IntegerClass, CommandGene.IntegerClass};
+    Class[][] argTypes = { {}, {}
+    };
+    CommandGene[][] nodeSets = { {
+        new Add(m_gpconf, CommandGene.IntegerClass),
+        new ADF(m_gpconf, 1, 0),
+        new Terminal(m_gpconf, CommandGene.IntegerClass, 1.0d, 100.0d, true),
+    }, {
+        new Multiply(m_gpconf, CommandGene.IntegerClass),
+        new Terminal(m_gpconf, CommandGene.IntegerClass, 1.0d, 100.0d, true),
+    }
+    };
+    assertFalse(GPGenotypeCheckpoint.isSupported(nodeSets));
+    GPGenotype gen = GPGenotype.randomInitialGenotype(m_gpconf, types,
+        argTypes, nodeSets, 20, false);
+    File file = File.createTempFile("jgap", ".gpckpt");
+    try {
+      gen.setCheckpointService(new CheckpointService(file, 2, 0));
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    } finally {
+      file.delete();
+    }
+    assertNull(gen.getCheckpointService());
+    // Without checkpoints, the genotype evolves as usual.
+    // ---------------------------------------------------
+    gen.setCheckpointService(null);
+    gen.evolve(1);
+  }
+
+  private GPGenotype createGenotype()
+      throws Exception {
+    Class[] types = {CommandGene.IntegerClass};
+    Class[][] argTypes = { {}
+    };
+    CommandGene[][] nodeSets = { {
+        new Add(m_gpconf, CommandGene.IntegerClass),
+        new Multiply(m_gpconf, CommandGene.IntegerClass),
+        new Terminal(m_gpconf, CommandGene.IntegerClass, 1.0d, 100.0d, true),
+        new Constant(m_gpconf, CommandGene.IntegerClass, new Integer(7)),
+    }
+    };
+    return GPGenotype.randomInitialGenotype(m_gpconf, types, argTypes,
+        nodeSets, 20, false);
+  }
+
+  class SizeFitness
+      extends GPFitnessFunction {
+    protected double evaluate(IGPProgram a_subject) {
+      return a_subject.getChromosome(0).size();
+    }
+  }
+}
@@ -320,6 +320,170 @@ public class GPGenotypeTest2
     gen.outputSolution(null);
   }
 
+  /**
+   * Deterministic breeding must produce the same programs, regardless of the
+   * number of breeding threads.
+   *
+   * @throws Exception
+   *
+   * @since 3.7
+   */
+  public void testEvolve_Deterministic_0()
+      throws Exception {
+    GPGenotype gen1 = evolveDeterministic(1);
+    GPGenotype gen2 = evolveDeterministic(4);
+    GPPopulation pop1 = gen1.getGPPopulation();
+    GPPopulation pop2 = gen2.getGPPopulation();
+    assertEquals(pop1.size(), pop2.size());
+    for (int i = 0; i < pop1.size(); i++) {
+      assertEquals(pop1.getGPProgram(i).toStringNorm(0),
+                   pop2.getGPProgram(i).toStringNorm(0));
+    }
+  }
+
+  /**
+   * Breeding with more than one thread is rejected for selection methods not
+   * declared thread-safe.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvolve_Concurrent_0()
+      throws Exception {
+    GPGenotype gen = evolveDeterministic(3);
+    GPConfiguration conf = gen.getGPConfiguration();
+    final INaturalGPSelector selector = conf.getSelectionMethod();
+    assertTrue(selector instanceof IThreadSafe);
+    assertTrue(conf.getCrossMethod() instanceof IThreadSafe);
+    conf.setSelectionMethod(new INaturalGPSelector() {
+      public IGPProgram select(GPGenotype a_genotype) {
+        return selector.select(a_genotype);
+      }
+    });
+    GPPopulation pop = gen.getGPPopulation();
+    try {
+      gen.evolve();
+      fail();
+    } catch (IllegalStateException iex) {
+      ; //this is OK
+    }
+    assertSame(pop, gen.getGPPopulation());
+    // A single thread may use any selection method.
+    // ---------------------------------------------
+    conf.setBreedingThreads(1);
+    gen.evolve();
+    assertNotSame(pop, gen.getGPPopulation());
+  }
+
+  private GPGenotype evolveDeterministic(int a_threads)
+      throws Exception {
+    GPConfiguration conf = new GPConfiguration(m_gpconf.getId() + "_"
+        + a_threads, "noname");
+    conf.setPopulationSize(40);
+    conf.setGPFitnessEvaluator(new DeltaGPFitnessEvaluator());
+    conf.setFitnessFunction(new TargetValue());
+    conf.setRandomGenerator(new SeededRandomGenerator(4711));
+    conf.setBreedingThreads(a_threads);
+    conf.setBreedingChunkSize(6);
+    conf.setDeterministicBreeding(true);
+    conf.setNewChromsPercent(0.2d);
+    Class[] types = {
+        CommandGene.IntegerClass};
+    Class[][] argTypes = { {}
+    };
+    CommandGene[][] nodeSets = { {
+        new Add(conf, CommandGene.IntegerClass),
+        new Increment(conf, CommandGene.IntegerClass, 1),
+        new Terminal(conf, CommandGene.IntegerClass, 1.0d, 20.0d, true),
+    }
+    };
+    GPGenotype gen = GPGenotype.randomInitialGenotype(conf, types, argTypes,
+        nodeSets, 20, false);
+    gen.evolve(5);
+    return gen;
+  }
+
+  /**
+   * The initial population created in parallel does not depend on the number
+   * of threads in deterministic mode.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testRandomInitialize_Concurrent_0()
+      throws Exception {
+    GPPopulation pop1 = createConcurrently(1, false).getGPPopulation();
+    GPPopulation pop2 = createConcurrently(3, false).getGPPopulation();
+    assertEquals(60, pop2.size());
+    for (int i = 0; i < pop1.size(); i++) {
+      assertNotNull(pop2.getGPProgram(i));
+      assertEquals(pop1.getGPProgram(i).toStringNorm(0),
+                   pop2.getGPProgram(i).toStringNorm(0));
+    }
+  }
+
+  /**
+   * Structurally equal programs are avoided on creation if requested. In
+   * deterministic mode, duplicates are avoided within each chunk.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testRandomInitialize_Deduplicate_0()
+      throws Exception {
+    GPPopulation pop = createConcurrently(2, true).getGPPopulation();
+    // The first program is created before the chunks.
+    // -----------------------------------------------
+    for (int start = 1; start < pop.size(); start += 8) {
+      java.util.Set<Long> hashes = new java.util.HashSet<Long>();
+      int end = Math.min(start + 8, pop.size());
+      for (int i = start; i < end; i++) {
+        hashes.add( ( (GPProgram) pop.getGPProgram(i)).structuralHash());
+      }
+      assertEquals(end - start, hashes.size());
+    }
+  }
+
+  private GPGenotype createConcurrently(int a_threads, boolean a_deduplicate)
+      throws Exception {
+    GPConfiguration conf = new GPConfiguration(m_gpconf.getId() + "_c"
+        + a_threads + a_deduplicate, "noname");
+    conf.setPopulationSize(60);
+    conf.setGPFitnessEvaluator(new DeltaGPFitnessEvaluator());
+    conf.setFitnessFunction(new TargetValue());
+    conf.setRandomGenerator(new SeededRandomGenerator(17));
+    conf.setMaxInitDepth(4);
+    conf.setBreedingThreads(a_threads);
+    conf.setBreedingChunkSize(8);
+    conf.setDeterministicBreeding(true);
+    conf.setDeduplicatePrograms(a_deduplicate);
+    Class[] types = {
+        CommandGene.IntegerClass};
+    Class[][] argTypes = { {}
+    };
+    CommandGene[][] nodeSets = { {
+        new Add(conf, CommandGene.IntegerClass),
+        new Increment(conf, CommandGene.IntegerClass, 1),
+        new Terminal(conf, CommandGene.IntegerClass, 1.0d, 3.0d, true),
+    }
+    };
+    return GPGenotype.randomInitialGenotype(conf, types, argTypes, nodeSets,
+                                            40, false);
+  }
+
+  class TargetValue
+      extends GPFitnessFunction {
+    protected double evaluate(IGPProgram a_subject) {
+      return Math.abs(a_subject.execute_int(0, new Object[] {}) - 42);
+    }
+  }
+
   class TerminalsOnly
       extends GPFitnessFunction {
     protected double evaluate(IGPProgram a_subject) {
@@ -207,6 +207,48 @@ public class GPPopulationTest
     pop.sort(new GPProgramFitnessComparator());
   }
 
+  /**
+   * A frozen snapshot of the fittest program is returned instead of a clone.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testDetermineFittestProgram_0()
+      throws Exception {
+    GPPopulation pop = new GPPopulation(m_gpconf, 2);
+    for (int i = 0; i < 2; i++) {
+      GPProgram prog = new GPProgram(m_gpconf, 1);
+      ProgramChromosome chrom = new ProgramChromosome(m_gpconf, 2, prog);
+      chrom.setGene(0, CMD_CONST1);
+      chrom.redepth();
+      prog.setChromosome(0, chrom);
+      prog.setFitnessValue(i + 1);
+      pop.setGPProgram(i, prog);
+    }
+    IGPProgram fittest = pop.determineFittestProgram();
+    GPProgram member = (GPProgram) pop.getGPProgram(1);
+    assertNotSame(member, fittest);
+    assertEquals(2, fittest.getFitnessValue(), DELTA);
+    assertTrue( ( (GPProgram) fittest).isFrozen());
+    assertSame(CMD_CONST1, fittest.getChromosome(0).getNode(0));
+    // The program of the population stays modifiable.
+    // -----------------------------------------------
+    assertFalse(member.isFrozen());
+    member.getChromosome(0).setGene(0, CMD_CONST2);
+    assertSame(CMD_CONST1, fittest.getChromosome(0).getNode(0));
+    // A frozen program to add is injected as modifiable copy.
+    // -------------------------------------------------------
+    GPPopulation pop2 = new GPPopulation(m_gpconf, 2);
+    pop2.addFittestProgram(fittest);
+    GPProgram added = (GPProgram) pop2.create(0, null, null, null, null, null,
+        0, true, 0, null, 0, null);
+    assertNotSame(fittest, added);
+    assertFalse(added.isFrozen());
+    assertSame(CMD_CONST1, added.getChromosome(0).getNode(0));
+  }
+
   public void testSetPrototype_0()
       throws Exception {
     /**@todo assert that prototype is only set automatically if none is preset*/
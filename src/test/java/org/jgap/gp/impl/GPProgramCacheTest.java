@@ -0,0 +1,230 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import junit.framework.*;
+import org.jgap.gp.*;
+import org.jgap.gp.function.*;
+import org.jgap.gp.terminal.*;
+
+/**
+ * Tests the GPProgramCache class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GPProgramCacheTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(GPProgramCacheTest.class);
+    return suite;
+  }
+
+  /**
+   * Structurally equal programs have the same hash, programs differing in a
+   * terminal value do not.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testStructuralHash_0()
+      throws Exception {
+    GPProgram prog1 = createProgram(1, 2);
+    GPProgram prog2 = createProgram(1, 2);
+    GPProgram prog3 = createProgram(2, 1);
+    assertEquals(prog1.toStringNorm(0), prog2.toStringNorm(0));
+    assertEquals(prog1.structuralHash(), prog2.structuralHash());
+    assertFalse(prog1.structuralHash() == prog3.structuralHash());
+  }
+
+  /**
+   * Programs differing only in a variable or in the value of a folded
+   * constant have different hashes.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testStructuralHash_1()
+      throws Exception {
+    Variable x = Variable.create(m_gpconf, "X", CommandGene.IntegerClass);
+    Variable y = Variable.create(m_gpconf, "Y", CommandGene.IntegerClass);
+    assertFalse(createProgram(x).structuralHash()
+                == createProgram(y).structuralHash());
+    CommandGene folded1 = new ProgramSimplifier.FoldedConstant(m_gpconf,
+        CommandGene.IntegerClass, 0, Integer.valueOf(1));
+    CommandGene folded2 = new ProgramSimplifier.FoldedConstant(m_gpconf,
+        CommandGene.IntegerClass, 0, Integer.valueOf(2));
+    assertFalse(createProgram(folded1).structuralHash()
+                == createProgram(folded2).structuralHash());
+  }
+
+  /**
+   * Hits and misses are counted.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testHitRate_0()
+      throws Exception {
+    GPProgramCache cache = new GPProgramCache(100);
+    assertEquals(0.0d, cache.getHitRate(), DELTA);
+    GPProgram prog = createProgram(1, 2);
+    prog.setFitnessValue(3.5d);
+    long hash = prog.structuralHash();
+    assertNull(cache.get(hash));
+    cache.put(hash, new GPProgramInfo(prog, hash, true));
+    GPProgramInfo info = cache.get(hash);
+    assertNotNull(info);
+    assertEquals(3.5d, info.getFitnessValue(), DELTA);
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(0.5d, cache.getHitRate(), DELTA);
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getHits());
+  }
+
+  /**
+   * The cache does not grow beyond its capacity.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCapacity_0()
+      throws Exception {
+    GPProgramCache cache = new GPProgramCache(32);
+    GPProgram prog = createProgram(1, 2);
+    for (long i = 0; i < 1000; i++) {
+      cache.put(i, new GPProgramInfo(prog, i, true));
+    }
+    assertTrue(cache.size() <= 32);
+    assertEquals(1000 - cache.size(), cache.getEvictions());
+    try {
+      new GPProgramCache(0);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * With the program cache enabled, the fitness of a structurally equal
+   * program is taken from the cache.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCalcFitnessValue_0()
+      throws Exception {
+    m_gpconf.setUseProgramCache(true);
+    m_gpconf.setFitnessFunction(new CountingFitness());
+    GPProgram prog1 = createProgram(1, 2);
+    GPProgram prog2 = createProgram(1, 2);
+    assertEquals(3.0d, prog1.getFitnessValue(), DELTA);
+    assertEquals(3.0d, prog2.getFitnessValue(), DELTA);
+    assertEquals(1, CountingFitness.m_calls);
+    assertEquals(1, m_gpconf.getProgramCache().getHits());
+  }
+
+  /**
+   * Programs differing only in a parameter of a function have different
+   * hashes. On a hash collision, they are told apart on a cache hit.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testReadProgramCache_0()
+      throws Exception {
+    m_gpconf.setUseProgramCache(true);
+    GPProgram prog1 = createIncrement(1);
+    GPProgram prog2 = createIncrement(2);
+    long hash = prog2.structuralHash();
+    assertFalse(prog1.structuralHash() == hash);
+    prog1.setFitnessValue(4.0d);
+    m_gpconf.putToProgramCache(prog1);
+    GPProgramInfo info = m_gpconf.readProgramCache(createIncrement(1));
+    assertNotNull(info);
+    assertEquals(4.0d, info.getFitnessValue(), DELTA);
+    assertNull(m_gpconf.readProgramCache(prog2));
+    // Simulate a collision.
+    // ---------------------
+    m_gpconf.getProgramCache().put(hash, new GPProgramInfo(prog1, hash, true));
+    assertNull(m_gpconf.readProgramCache(prog2));
+  }
+
+  private GPProgram createProgram(CommandGene a_terminal)
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 5, prog);
+    pc.getFunctions()[0] = new Add(m_gpconf, CommandGene.IntegerClass);
+    pc.getFunctions()[1] = a_terminal;
+    pc.getFunctions()[2] = new Constant(m_gpconf, CommandGene.IntegerClass,
+                                        Integer.valueOf(3));
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    return prog;
+  }
+
+  private GPProgram createIncrement(int a_increment)
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 5, prog);
+    pc.getFunctions()[0] = new Increment(m_gpconf, CommandGene.IntegerClass,
+                                         a_increment);
+    pc.getFunctions()[1] = new Constant(m_gpconf, CommandGene.IntegerClass,
+                                        Integer.valueOf(3));
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    return prog;
+  }
+
+  private GPProgram createProgram(int a_const1, int a_const2)
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 5, prog);
+    pc.getFunctions()[0] = new Add(m_gpconf, CommandGene.IntegerClass);
+    pc.getFunctions()[1] = new Constant(m_gpconf, CommandGene.IntegerClass,
+                                        new Integer(a_const1));
+    pc.getFunctions()[2] = new Constant(m_gpconf, CommandGene.IntegerClass,
+                                        new Integer(a_const2));
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    return prog;
+  }
+
+  static class CountingFitness
+      extends GPFitnessFunction {
+    static int m_calls;
+
+    CountingFitness() {
+      m_calls = 0;
+    }
+
+    protected double evaluate(IGPProgram a_subject) {
+      m_calls++;
+      return a_subject.execute_int(0, new Object[] {});
+    }
+  }
+}
@@ -129,4 +129,114 @@ public class GPProgramTest2
     GPProgram prog2 = (GPProgram) doSerialize(prog);
     assertEquals(prog, prog2);
   }
+
+  /**
+   * A frozen program cannot be modified, owns its mutable nodes, and keeps
+   * its hash. Clones are not frozen.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testFreeze_0()
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 5, prog);
+    Terminal term = new Terminal(m_gpconf, CommandGene.IntegerClass, 1, 5,
+                                 true);
+    pc.setGene(0, CMD_ADD);
+    pc.setGene(1, term);
+    pc.setGene(2, CMD_CONST2);
+    pc.setArgTypes(new Class[0]);
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    prog.setTypes(new Class[] {CommandGene.IntegerClass});
+    prog.setArgTypes(new Class[][] { {}
+    });
+    prog.setNodeSets(new CommandGene[][] { {CMD_ADD, term}
+    });
+    long hash = prog.structuralHash();
+    assertFalse(prog.isFrozen());
+    prog.freeze();
+    assertTrue(prog.isFrozen());
+    assertTrue(pc.isFrozen());
+    assertEquals(hash, prog.structuralHash());
+    // Mutable nodes are copied, others are kept.
+    // ------------------------------------------
+    assertNotSame(term, pc.getNode(1));
+    assertEquals(term.toString(), pc.getNode(1).toString());
+    assertSame(CMD_CONST2, pc.getNode(2));
+    try {
+      pc.setGene(2, CMD_CONST3);
+      fail();
+    } catch (IllegalStateException iex) {
+      ; //this is OK
+    }
+    try {
+      prog.setChromosome(0, pc);
+      fail();
+    } catch (IllegalStateException iex) {
+      ; //this is OK
+    }
+    GPProgram prog2 = (GPProgram) prog.clone();
+    assertFalse(prog2.isFrozen());
+    assertFalse(prog2.getChromosome(0).isFrozen());
+    assertEquals(hash, prog2.structuralHash());
+    prog2.getChromosome(0).setGene(2, CMD_CONST3);
+  }
+
+  /**
+   * A snapshot is frozen and shares the immutable nodes, whereas the program
+   * it was taken of stays modifiable.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSnapshot_0()
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 5, prog);
+    Terminal term = new Terminal(m_gpconf, CommandGene.IntegerClass, 1, 5,
+                                 true);
+    pc.setGene(0, CMD_ADD);
+    pc.setGene(1, term);
+    pc.setGene(2, CMD_CONST2);
+    pc.setArgTypes(new Class[0]);
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    prog.setTypes(new Class[] {CommandGene.IntegerClass});
+    prog.setArgTypes(new Class[][] { {}
+    });
+    prog.setNodeSets(new CommandGene[][] { {CMD_ADD, term}
+    });
+    prog.setFitnessValue(3);
+    long hash = prog.structuralHash();
+    GPProgram snapshot = prog.snapshot();
+    assertNotSame(prog, snapshot);
+    assertTrue(snapshot.isFrozen());
+    assertFalse(prog.isFrozen());
+    assertEquals(hash, snapshot.structuralHash());
+    assertEquals(3, snapshot.getFitnessValue(), DELTA);
+    assertSame(snapshot, snapshot.snapshot());
+    assertSame(snapshot, snapshot.getChromosome(0).getIndividual());
+    assertNotSame(term, snapshot.getChromosome(0).getNode(1));
+    assertSame(CMD_CONST2, snapshot.getChromosome(0).getNode(2));
+    // Modifying the program leaves the snapshot untouched.
+    // ----------------------------------------------------
+    pc.setGene(2, CMD_CONST3);
+    pc.redepth();
+    assertSame(term, pc.getNode(1));
+    assertSame(CMD_CONST2, snapshot.getChromosome(0).getNode(2));
+    assertEquals(hash, snapshot.structuralHash());
+    // A modifiable copy of the snapshot is not frozen.
+    // ------------------------------------------------
+    GPProgram copy = snapshot.modifiableCopy();
+    assertFalse(copy.isFrozen());
+    assertSame(CMD_CONST2, copy.getChromosome(0).getNode(2));
+    copy.getChromosome(0).setGene(2, CMD_CONST3);
+    assertSame(CMD_CONST2, snapshot.getChromosome(0).getNode(2));
+  }
 }
@@ -0,0 +1,178 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import junit.framework.*;
+import org.jgap.gp.*;
+import org.jgap.impl.*;
+
+/**
+ * Tests the GPRouletteWheel class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GPRouletteWheelTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(GPRouletteWheelTest.class);
+    return suite;
+  }
+
+  /**
+   * With higher fitness values being fitter, the weight is the fitness value.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testProbability_0()
+      throws Exception {
+    IGPProgram[] progs = createPrograms(new double[] {1, 3, 0, 4});
+    GPRouletteWheel wheel = new GPRouletteWheel(progs,
+        new DefaultGPFitnessEvaluator());
+    assertEquals(4, wheel.size());
+    assertEquals(0.125d, wheel.getProbability(0), DELTA);
+    assertEquals(0.375d, wheel.getProbability(1), DELTA);
+    assertEquals(0.0d, wheel.getProbability(2), DELTA);
+    assertEquals(0.5d, wheel.getProbability(3), DELTA);
+  }
+
+  /**
+   * With lower fitness values being fitter, the weight is the adjusted
+   * fitness.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testProbability_1()
+      throws Exception {
+    IGPProgram[] progs = createPrograms(new double[] {0, 1, 3});
+    GPRouletteWheel wheel = new GPRouletteWheel(progs,
+        new DeltaGPFitnessEvaluator());
+    // Weights 1, 1/2 and 1/4.
+    // -----------------------
+    assertEquals(4 / 7.0d, wheel.getProbability(0), DELTA);
+    assertEquals(2 / 7.0d, wheel.getProbability(1), DELTA);
+    assertEquals(1 / 7.0d, wheel.getProbability(2), DELTA);
+  }
+
+  /**
+   * Negative fitness values are shifted, invalid ones get no weight, null
+   * programs are skipped. Without any weight, selection is uniform.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testProbability_2()
+      throws Exception {
+    IGPProgram[] progs = createPrograms(new double[] {-1, Double.NaN, 1});
+    progs = new IGPProgram[] {progs[0], null, progs[1], progs[2]};
+    GPRouletteWheel wheel = new GPRouletteWheel(progs,
+        new DefaultGPFitnessEvaluator());
+    assertEquals(3, wheel.size());
+    assertSame(progs[2], wheel.getProgram(1));
+    assertEquals(0.0d, wheel.getProbability(0), DELTA);
+    assertEquals(0.0d, wheel.getProbability(1), DELTA);
+    assertEquals(1.0d, wheel.getProbability(2), DELTA);
+    progs = createPrograms(new double[] {0, 0});
+    wheel = new GPRouletteWheel(progs, new DefaultGPFitnessEvaluator());
+    assertEquals(0.5d, wheel.getProbability(0), DELTA);
+    try {
+      new GPRouletteWheel(new IGPProgram[1], new DefaultGPFitnessEvaluator());
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * Programs are drawn according to their probability.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSelect_0()
+      throws Exception {
+    IGPProgram[] progs = createPrograms(new double[] {1, 3, 0, 4});
+    GPRouletteWheel wheel = new GPRouletteWheel(progs,
+        new DefaultGPFitnessEvaluator());
+    StockRandomGenerator random = new StockRandomGenerator();
+    random.setSeed(11);
+    int[] counts = new int[progs.length];
+    int draws = 20000;
+    for (int i = 0; i < draws; i++) {
+      counts[wheel.selectIndex(random)]++;
+    }
+    assertEquals(0, counts[2]);
+    for (int i = 0; i < progs.length; i++) {
+      assertEquals(wheel.getProbability(i), counts[i] / (double) draws, 0.02d);
+    }
+  }
+
+  /**
+   * The population reuses its wheel until its programs change. The selectors
+   * draw from it.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testPopulation_0()
+      throws Exception {
+    IGPProgram[] progs = createPrograms(new double[] {0, 2});
+    m_gpconf.setGPFitnessEvaluator(new DeltaGPFitnessEvaluator());
+    GPPopulation pop = new GPPopulation(m_gpconf, 2);
+    pop.setGPProgram(0, progs[0]);
+    pop.setGPProgram(1, progs[1]);
+    GPRouletteWheel wheel = pop.getRouletteWheel();
+    assertSame(wheel, pop.getRouletteWheel());
+    pop.sortByFitness();
+    assertSame(wheel, pop.getRouletteWheel());
+    pop.setGPProgram(1, progs[1]);
+    assertNotSame(wheel, pop.getRouletteWheel());
+    rn.setNextIntSequence(new int[] {1, 1});
+    rn.setNextDouble(0.0d);
+    GPGenotype gen = new GPGenotype(m_gpconf, pop, null, null, null, null,
+                                    null, 1);
+    assertSame(progs[1], new WeightedGPRouletteSelector().select(gen));
+    // Program 1 has weight 1/3, program 0 weight 1.
+    // ----------------------------------------------
+    rn.setNextDouble(0.9d);
+    assertSame(progs[0], new WeightedGPRouletteSelector().select(gen));
+    assertSame(progs[0], new FitnessProportionateSelection().select(gen));
+  }
+
+  private IGPProgram[] createPrograms(double[] a_fitness)
+      throws Exception {
+    IGPProgram[] progs = new IGPProgram[a_fitness.length];
+    for (int i = 0; i < progs.length; i++) {
+      GPProgram prog = new GPProgram(m_gpconf, 1);
+      ProgramChromosome pc = new ProgramChromosome(m_gpconf, 5, prog);
+      pc.setGene(0, CMD_CONST1);
+      pc.redepth();
+      prog.setChromosome(0, pc);
+      prog.setFitnessValue(a_fitness[i]);
+      progs[i] = prog;
+    }
+    return progs;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import junit.framework.*;
+import org.jgap.gp.*;
+import org.jgap.gp.function.*;
+import org.jgap.gp.terminal.*;
+
+/**
+ * Tests the NodeSetIndex class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class NodeSetIndexTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(NodeSetIndexTest.class);
+    return suite;
+  }
+
+  /**
+   * Candidates are grouped by type and kind, keeping the order of the
+   * function set.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testGetNodes_0()
+      throws Exception {
+    Add addInt = new Add(m_gpconf, CommandGene.IntegerClass);
+    Add addDouble = new Add(m_gpconf, CommandGene.DoubleClass);
+    Terminal sub3 = new Terminal(m_gpconf, CommandGene.IntegerClass, 0, 10,
+                                 true, 3);
+    CommandGene[] set = new CommandGene[] {
+        CMD_CONST1, addInt, addDouble, sub3, CMD_CONST2};
+    NodeSetIndex index = new NodeSetIndex(set);
+    CommandGene[] nodes = index.getNodes(CommandGene.IntegerClass, 0, false,
+                                         false);
+    assertEquals(3, nodes.length);
+    assertSame(CMD_CONST1, nodes[0]);
+    assertSame(sub3, nodes[1]);
+    assertSame(CMD_CONST2, nodes[2]);
+    nodes = index.getNodes(CommandGene.IntegerClass, 0, true, false);
+    assertEquals(1, nodes.length);
+    assertSame(addInt, nodes[0]);
+    nodes = index.getNodes(CommandGene.IntegerClass, 0, true, true);
+    assertEquals(4, nodes.length);
+    assertSame(addInt, nodes[1]);
+    nodes = index.getNodes(CommandGene.IntegerClass, 3, true, true);
+    assertEquals(1, nodes.length);
+    assertSame(sub3, nodes[0]);
+    assertEquals(0, index.getNodes(CommandGene.IntegerClass, 4, true,
+                                   true).length);
+    assertEquals(0, index.getNodes(CommandGene.BooleanClass, 0, true,
+                                   true).length);
+  }
+
+  /**
+   * Function sets with nodes of variable arity are not indexed.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testIndexable_0()
+      throws Exception {
+    CommandGene[] set = new CommandGene[] {CMD_CONST1, CMD_SUB_I_I};
+    assertFalse(NodeSetIndex.isIndexable(set));
+    assertNull(m_gpconf.getNodeSetIndex(set));
+    try {
+      new NodeSetIndex(set);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+    set = new CommandGene[] {CMD_CONST1, CMD_ADD};
+    NodeSetIndex index = m_gpconf.getNodeSetIndex(set);
+    assertNotNull(index);
+    assertSame(index, m_gpconf.getNodeSetIndex(set));
+    assertNotSame(index, m_gpconf.getNodeSetIndex(new CommandGene[] {
+        CMD_CONST1, CMD_ADD}));
+  }
+
+  /**
+   * Nodes picked via the index are the same as those picked by scanning the
+   * function set.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSelectNode_0()
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 10, prog);
+    CommandGene[] set = new CommandGene[] {
+        CMD_CONST1, CMD_ADD, CMD_CONST2, CMD_NOP, CMD_CONST3};
+    rn.setNextIntSequence(new int[] {2, 1, 0});
+    assertSame(CMD_CONST3, pc.selectNode(0, CommandGene.IntegerClass, 0, set,
+                                         false, false));
+    assertSame(CMD_ADD, pc.selectNode(0, CommandGene.IntegerClass, 0, set,
+                                      true, true));
+    assertSame(CMD_ADD, pc.selectNode(0, CommandGene.IntegerClass, 0, set,
+                                      true, false));
+    try {
+      pc.selectNode(0, CommandGene.BooleanClass, 0, set, true, false);
+      fail();
+    } catch (IllegalStateException iex) {
+      ; //this is OK
+    }
+  }
+}
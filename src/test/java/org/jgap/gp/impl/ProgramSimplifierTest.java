@@ -0,0 +1,198 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import junit.framework.*;
+import org.jgap.gp.*;
+import org.jgap.gp.function.*;
+import org.jgap.gp.terminal.*;
+
+/**
+ * Tests the ProgramSimplifier class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class ProgramSimplifierTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private Variable m_x;
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(ProgramSimplifierTest.class);
+    return suite;
+  }
+
+  public void setUp() {
+    super.setUp();
+    try {
+      m_x = Variable.create(m_gpconf, "X", CommandGene.IntegerClass);
+      m_x.set(new Integer(5));
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Constant subtrees are folded.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testFold_0()
+      throws Exception {
+    ProgramChromosome pc = createChromosome(new CommandGene[] {
+        new Multiply(m_gpconf, CommandGene.IntegerClass), m_x,
+        new Add(m_gpconf, CommandGene.IntegerClass), constant(1), constant(2)});
+    ProgramChromosome simple = new ProgramSimplifier().simplify(pc);
+    assertEquals(3, simple.size());
+    assertEquals(5, pc.size());
+    assertEquals(15, simple.execute_int(new Object[0]));
+    assertEquals(15, pc.execute_int(new Object[0]));
+  }
+
+  /**
+   * Neutral operations are removed.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testNeutral_0()
+      throws Exception {
+    ProgramChromosome pc = createChromosome(new CommandGene[] {
+        new Add(m_gpconf, CommandGene.IntegerClass),
+        new Multiply(m_gpconf, CommandGene.IntegerClass), constant(1), m_x,
+        new Subtract(m_gpconf, CommandGene.IntegerClass), m_x, m_x});
+    ProgramChromosome simple = new ProgramSimplifier().simplify(pc);
+    assertEquals(1, simple.size());
+    assertSame(m_x, simple.getNode(0));
+    assertEquals(5, simple.execute_int(new Object[0]));
+  }
+
+  /**
+   * Subtrees which may throw an exception are not dropped by multiplying
+   * them with zero.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testNeutral_1()
+      throws Exception {
+    m_x.set(new Integer(0));
+    // (1 / X) * 0
+    // -----------
+    ProgramChromosome pc = createChromosome(new CommandGene[] {
+        new Multiply(m_gpconf, CommandGene.IntegerClass),
+        new Divide(m_gpconf, CommandGene.IntegerClass), constant(1), m_x,
+        constant(0)});
+    ProgramChromosome simple = new ProgramSimplifier().simplify(pc);
+    assertSame(pc, simple);
+    try {
+      simple.execute_int(new Object[0]);
+      fail();
+    } catch (IllegalStateException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * If with constant condition is replaced by the branch taken.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testDeadBranch_0()
+      throws Exception {
+    ProgramChromosome pc = createChromosome(new CommandGene[] {
+        new Add(m_gpconf, CommandGene.IntegerClass),
+        new If(m_gpconf, CommandGene.IntegerClass), constant(1), m_x,
+        new If(m_gpconf, CommandGene.IntegerClass), constant(0), m_x});
+    ProgramChromosome simple = new ProgramSimplifier().simplify(pc);
+    // The false If becomes 0, the resulting X + 0 becomes X.
+    // -------------------------------------------------------
+    assertEquals(1, simple.size());
+    assertSame(m_x, simple.getNode(0));
+  }
+
+  /**
+   * Subtrees failing on execution are left untouched, unchanged chromosomes
+   * are not copied.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testNoChange_0()
+      throws Exception {
+    ProgramChromosome pc = createChromosome(new CommandGene[] {
+        new Divide(m_gpconf, CommandGene.IntegerClass), constant(1),
+        constant(0)});
+    assertSame(pc, new ProgramSimplifier().simplify(pc));
+  }
+
+  /**
+   * Programs are executed in simplified form when a simplifier is configured,
+   * without changing the program.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testExecuteProgram_0()
+      throws Exception {
+    ProgramChromosome pc = createChromosome(new CommandGene[] {
+        new Multiply(m_gpconf, CommandGene.IntegerClass), m_x,
+        new Add(m_gpconf, CommandGene.IntegerClass), constant(1), constant(2)});
+    GPProgram prog = (GPProgram) pc.getIndividual();
+    String norm = prog.toStringNorm(0);
+    long hash = prog.structuralHash();
+    assertSame(pc, prog.getExecutable(0));
+    m_gpconf.setProgramSimplifier(new ProgramSimplifier());
+    assertNotSame(pc, prog.getExecutable(0));
+    assertEquals(15, prog.execute_int(0, new Object[0]));
+    assertEquals(norm, prog.toStringNorm(0));
+    assertFalse(hash == prog.structuralHash());
+    // Changing the chromosome discards the simplified form.
+    // -----------------------------------------------------
+    pc.setGene(3, constant(2));
+    assertEquals(20, prog.execute_int(0, new Object[0]));
+  }
+
+  private Constant constant(int a_value)
+      throws Exception {
+    return new Constant(m_gpconf, CommandGene.IntegerClass,
+                        new Integer(a_value));
+  }
+
+  private ProgramChromosome createChromosome(CommandGene[] a_genes)
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, a_genes.length + 1,
+        prog);
+    for (int i = 0; i < a_genes.length; i++) {
+      pc.setGene(i, a_genes[i]);
+    }
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    return pc;
+  }
+}
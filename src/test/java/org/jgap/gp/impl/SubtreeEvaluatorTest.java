@@ -0,0 +1,287 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import junit.framework.*;
+import org.jgap.gp.*;
+import org.jgap.gp.function.*;
+import org.jgap.gp.terminal.*;
+
+/**
+ * Tests the SubtreeEvaluator and SubtreeCache classes.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class SubtreeEvaluatorTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private Variable m_x;
+
+  private double[][] m_cases;
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(SubtreeEvaluatorTest.class);
+    return suite;
+  }
+
+  public void setUp() {
+    super.setUp();
+    try {
+      m_x = Variable.create(m_gpconf, "X", CommandGene.DoubleClass);
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+    m_cases = new double[][] { {1}, {2}, {3}, {4}};
+  }
+
+  /**
+   * Outputs are those of executing the program case by case.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvaluate_0()
+      throws Exception {
+    SubtreeEvaluator eval = new SubtreeEvaluator(new Variable[] {m_x},
+        m_cases, 1000000);
+    // (X * X) + 3
+    // -----------
+    GPProgram prog = createProgram(new CommandGene[] {
+        new Add(m_gpconf, CommandGene.DoubleClass),
+        new Multiply(m_gpconf, CommandGene.DoubleClass), m_x, m_x,
+        constant(3)});
+    double[] output = eval.evaluate(prog, 0);
+    assertEquals(4, output.length);
+    for (int i = 0; i < m_cases.length; i++) {
+      m_x.set(new Double(m_cases[i][0]));
+      assertEquals(prog.execute_double(0, new Object[0]), output[i], DELTA);
+    }
+    assertEquals(12.0d, output[2], DELTA);
+    assertEquals(2, eval.getCache().size());
+  }
+
+  /**
+   * Subtrees shared by different programs are taken from the cache.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvaluate_1()
+      throws Exception {
+    SubtreeEvaluator eval = new SubtreeEvaluator(new Variable[] {m_x},
+        m_cases, 1000000);
+    GPProgram prog1 = createProgram(new CommandGene[] {
+        new Add(m_gpconf, CommandGene.DoubleClass),
+        new Multiply(m_gpconf, CommandGene.DoubleClass), m_x, m_x, m_x});
+    GPProgram prog2 = createProgram(new CommandGene[] {
+        new Subtract(m_gpconf, CommandGene.DoubleClass),
+        new Multiply(m_gpconf, CommandGene.DoubleClass), m_x, m_x,
+        constant(1)});
+    eval.evaluate(prog1, 0);
+    assertEquals(0, eval.getCache().getHits());
+    double[] output = eval.evaluate(prog2, 0);
+    assertEquals(1, eval.getCache().getHits());
+    assertEquals(15.0d, output[3], DELTA);
+    // Evaluating again takes the whole program from the cache.
+    // --------------------------------------------------------
+    output = eval.evaluate(prog2, 0);
+    assertEquals(2, eval.getCache().getHits());
+    assertEquals(8.0d, output[2], DELTA);
+  }
+
+  /**
+   * Programs depending on state other than the fitness cases are executed case
+   * by case.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvaluate_2()
+      throws Exception {
+    SubtreeEvaluator eval = new SubtreeEvaluator(new Variable[] {m_x},
+        m_cases, 1000000);
+    Variable y = Variable.create(m_gpconf, "Y", CommandGene.DoubleClass);
+    y.set(new Double(10));
+    GPProgram prog = createProgram(new CommandGene[] {
+        new Add(m_gpconf, CommandGene.DoubleClass), m_x, y});
+    double[] output = eval.evaluate(prog, 0);
+    assertEquals(11.0d, output[0], DELTA);
+    assertEquals(14.0d, output[3], DELTA);
+    assertEquals(0, eval.getCache().size());
+  }
+
+  /**
+   * Outputs of long subtrees are cached without rounding them to double
+   * values.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvaluate_3()
+      throws Exception {
+    Variable x = Variable.create(m_gpconf, "XL", CommandGene.LongClass);
+    SubtreeEvaluator eval = new SubtreeEvaluator(new Variable[] {x},
+        m_cases, 1000000);
+    // (2^60 + X) - 2^60
+    // -----------------
+    Long big = Long.valueOf(1L << 60);
+    GPProgram prog = createProgram(new CommandGene[] {
+        new Subtract(m_gpconf, CommandGene.LongClass),
+        new Add(m_gpconf, CommandGene.LongClass),
+        new Constant(m_gpconf, CommandGene.LongClass, big), x,
+        new Constant(m_gpconf, CommandGene.LongClass, big)});
+    double[] output = eval.evaluate(prog, 0);
+    for (int i = 0; i < m_cases.length; i++) {
+      assertEquals(m_cases[i][0], output[i], DELTA);
+    }
+    assertEquals(2, eval.getCache().size());
+  }
+
+  /**
+   * Deterministic subtrees of programs depending on other state are taken
+   * from the cache.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvaluate_4()
+      throws Exception {
+    SubtreeEvaluator eval = new SubtreeEvaluator(new Variable[] {m_x},
+        m_cases, 1000000);
+    Variable y = Variable.create(m_gpconf, "Y", CommandGene.DoubleClass);
+    y.set(Double.valueOf(10));
+    // (X * X) + Y
+    // -----------
+    GPProgram prog = createProgram(new CommandGene[] {
+        new Add(m_gpconf, CommandGene.DoubleClass),
+        new Multiply(m_gpconf, CommandGene.DoubleClass), m_x, m_x, y});
+    double[] output = eval.evaluate(prog, 0);
+    assertEquals(11.0d, output[0], DELTA);
+    assertEquals(26.0d, output[3], DELTA);
+    assertEquals(1, eval.getCache().size());
+    eval.evaluate(prog, 0);
+    assertEquals(1, eval.getCache().getHits());
+  }
+
+  /**
+   * Conditions are executed case by case, thus a guarded division does not
+   * fail for the cases the guard excludes.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvaluate_5()
+      throws Exception {
+    Variable x = Variable.create(m_gpconf, "XI", CommandGene.IntegerClass);
+    double[][] cases = new double[][] { {0}, {1}, {2}, {3}};
+    SubtreeEvaluator eval = new SubtreeEvaluator(new Variable[] {x}, cases,
+        1000000);
+    // if (X > 0) then 6 / X
+    // ---------------------
+    GPProgram prog = createProgram(new CommandGene[] {
+        new If(m_gpconf, CommandGene.IntegerClass), x,
+        new Divide(m_gpconf, CommandGene.IntegerClass),
+        new Constant(m_gpconf, CommandGene.IntegerClass, Integer.valueOf(6)),
+        x});
+    double[] output = eval.evaluate(prog, 0);
+    for (int i = 0; i < cases.length; i++) {
+      x.set(Integer.valueOf( (int) cases[i][0]));
+      assertEquals(prog.execute_int(0, new Object[0]), output[i], DELTA);
+    }
+    assertEquals(0.0d, output[0], DELTA);
+    assertEquals(3.0d, output[2], DELTA);
+  }
+
+  /**
+   * Columns are only returned for the subtree they were cached for, not for
+   * another one with the same hash.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCollision_0()
+      throws Exception {
+    SubtreeCache cache = new SubtreeCache(100000);
+    double[] column = new double[10];
+    cache.put(1, "X", column);
+    assertNull(cache.get(1, "Y"));
+    assertEquals(1, cache.getMisses());
+    assertSame(column, cache.get(1, "X"));
+    assertEquals(1, cache.getHits());
+  }
+
+  /**
+   * The cache stays within its memory budget.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testBudget_0()
+      throws Exception {
+    SubtreeCache cache = new SubtreeCache(500);
+    for (long i = 0; i < 100; i++) {
+      cache.put(i, "", new double[10]);
+    }
+    assertTrue(cache.getMemoryUsed() <= 500);
+    assertEquals(100 - cache.size(), cache.getEvictions());
+    // Most recently used columns are kept.
+    // ------------------------------------
+    assertNotNull(cache.get(99, ""));
+    assertNull(cache.get(0, ""));
+    cache.put(1000, "", new double[100]);
+    assertNull(cache.get(1000, ""));
+    cache.put(1001, "", new long[10]);
+    assertTrue(cache.get(1001, "") instanceof long[]);
+    try {
+      new SubtreeCache(0);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  private Constant constant(double a_value)
+      throws Exception {
+    return new Constant(m_gpconf, CommandGene.DoubleClass,
+                        new Double(a_value));
+  }
+
+  private GPProgram createProgram(CommandGene[] a_genes)
+      throws Exception {
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, a_genes.length + 1,
+        prog);
+    for (int i = 0; i < a_genes.length; i++) {
+      pc.setGene(i, a_genes[i]);
+    }
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    return prog;
+  }
+}
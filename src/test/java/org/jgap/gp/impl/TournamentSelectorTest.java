@@ -0,0 +1,169 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.impl;
+
+import junit.framework.*;
+import org.jgap.gp.*;
+import org.jgap.impl.*;
+
+/**
+ * Tests the TournamentSelector class for GP.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class TournamentSelectorTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private GPProgram m_big;
+
+  private GPProgram m_small;
+
+  private GPPopulation m_pop;
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(TournamentSelectorTest.class);
+    return suite;
+  }
+
+  public void setUp() {
+    super.setUp();
+    try {
+      m_big = new GPProgram(m_gpconf, 1);
+      ProgramChromosome pc = new ProgramChromosome(m_gpconf, 5, m_big);
+      pc.setGene(0, CMD_ADD);
+      pc.setGene(1, CMD_CONST1);
+      pc.setGene(2, CMD_CONST2);
+      pc.redepth();
+      m_big.setChromosome(0, pc);
+      m_small = new GPProgram(m_gpconf, 1);
+      pc = new ProgramChromosome(m_gpconf, 5, m_small);
+      pc.setGene(0, CMD_CONST3);
+      pc.redepth();
+      m_small.setChromosome(0, pc);
+      m_pop = new GPPopulation(m_gpconf, 2);
+      m_pop.setGPProgram(0, m_big);
+      m_pop.setGPProgram(1, m_small);
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Without parsimony, the first of equally fit programs wins. With
+   * lexicographic parsimony, the smaller one wins.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSelect_0()
+      throws Exception {
+    m_big.setFitnessValue(5);
+    m_small.setFitnessValue(5);
+    rn.setNextDouble(0.0d);
+    GPGenotype gen = createGenotype();
+    TournamentSelector sel = new TournamentSelector(2);
+    assertSame(m_big, sel.select(gen));
+    sel.setParsimony(TournamentSelector.PARSIMONY_LEXICOGRAPHIC);
+    assertSame(m_small, sel.select(gen));
+    // Fitness still goes first.
+    // -------------------------
+    m_big.setFitnessValue(6);
+    assertSame(m_big, sel.select(gen));
+  }
+
+  /**
+   * With full pressure, the smaller finalist of a double tournament wins.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSelect_1()
+      throws Exception {
+    m_big.setFitnessValue(10);
+    m_small.setFitnessValue(5);
+    StockRandomGenerator random = new StockRandomGenerator();
+    random.setSeed(17);
+    m_gpconf.setRandomGenerator(random);
+    GPGenotype gen = createGenotype();
+    TournamentSelector sel = new TournamentSelector(1);
+    sel.setParsimony(TournamentSelector.PARSIMONY_DOUBLE_TOURNAMENT);
+    sel.setParsimonyPressure(2.0d);
+    int small = 0;
+    for (int i = 0; i < 200; i++) {
+      if (sel.select(gen) == m_small) {
+        small++;
+      }
+    }
+    // The big program only wins if it wins both tournaments.
+    // ------------------------------------------------------
+    assertTrue(small > 100);
+    try {
+      sel.setParsimonyPressure(0.5d);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * Programs larger than average are excluded by the Tarpeian method.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSelect_2()
+      throws Exception {
+    m_big.setFitnessValue(10);
+    m_small.setFitnessValue(5);
+    rn.setNextDouble(0.0d);
+    GPGenotype gen = createGenotype();
+    TournamentSelector sel = new TournamentSelector(2);
+    assertSame(m_big, sel.select(gen));
+    sel.setTarpeianProbability(1.0d);
+    assertSame(m_small, sel.select(gen));
+    assertEquals(3, TournamentSelector.getProgramSize(m_big));
+    assertEquals(1, TournamentSelector.getProgramSize(m_small));
+  }
+
+  /**
+   * Parsimony settings are kept when cloning.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testClone_0()
+      throws Exception {
+    TournamentSelector sel = new TournamentSelector(3);
+    sel.setParsimony(TournamentSelector.PARSIMONY_DOUBLE_TOURNAMENT);
+    sel.setParsimonyPressure(1.7d);
+    sel.setTarpeianProbability(0.2d);
+    TournamentSelector sel2 = (TournamentSelector) sel.clone();
+    assertEquals(TournamentSelector.PARSIMONY_DOUBLE_TOURNAMENT,
+                 sel2.getParsimony());
+    assertEquals(1.7d, sel2.getParsimonyPressure(), DELTA);
+    assertEquals(0.2d, sel2.getTarpeianProbability(), DELTA);
+  }
+
+  private GPGenotype createGenotype()
+      throws Exception {
+    return new GPGenotype(m_gpconf, m_pop, null, null, null, null, null, 1);
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.terminal;
+
+import junit.framework.*;
+
+/**
+ * Test suite for all tests of package org.jgap.gp.terminal.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class AllGPTerminalTests
+    extends TestSuite {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite("AllGPTerminalTests");
+    suite.addTest(PrimitiveVariableTest.suite());
+    return suite;
+  }
+}
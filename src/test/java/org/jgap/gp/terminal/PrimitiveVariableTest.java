@@ -0,0 +1,165 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.gp.terminal;
+
+import junit.framework.*;
+import org.jgap.gp.*;
+import org.jgap.gp.function.*;
+import org.jgap.gp.impl.*;
+
+/**
+ * Tests the primitive variables and the VariableContext class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class PrimitiveVariableTest
+    extends GPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(PrimitiveVariableTest.class);
+    return suite;
+  }
+
+  /**
+   * Variables are bound to consecutive slots per type and registered with the
+   * configuration.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSlots_0()
+      throws Exception {
+    VariableContext ctx = m_gpconf.getVariableContext();
+    DoubleVariable x = new DoubleVariable(m_gpconf, "X");
+    DoubleVariable y = DoubleVariable.create(m_gpconf, "Y");
+    IntegerVariable i = new IntegerVariable(m_gpconf, "I");
+    LongVariable l = new LongVariable(m_gpconf, "L");
+    assertEquals(0, x.getSlot());
+    assertEquals(1, y.getSlot());
+    assertEquals(0, i.getSlot());
+    assertEquals(0, l.getSlot());
+    assertSame(ctx, x.getContext());
+    assertSame(y, m_gpconf.getVariable("Y"));
+    assertSame(y, DoubleVariable.create(m_gpconf, "Y"));
+    assertEquals(2, ctx.getDoubleCount());
+    ctx.setDoubles(new double[] {1.5d, 2.5d});
+    assertEquals(2.5d, y.getDouble(), DELTA);
+    x.set(4.0d);
+    assertEquals(4.0d, ctx.getDouble(0), DELTA);
+    i.set(new Integer(7));
+    assertEquals(7, ctx.getInt(i.getSlot()));
+    assertEquals(new Integer(7), i.getValue());
+    l.set(1L << 40);
+    assertEquals(1L << 40, l.execute_long(null, 0, null));
+    assertEquals(CommandGene.LongClass, l.getReturnType());
+    try {
+      ctx.setDoubles(new double[3]);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+    // Many slots.
+    // -----------
+    for (int j = 0; j < 20; j++) {
+      assertEquals(2 + j, ctx.allocateDouble());
+    }
+    assertEquals(4.0d, x.getDouble(), DELTA);
+  }
+
+  /**
+   * Programs read the values set via the context.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testExecute_0()
+      throws Exception {
+    DoubleVariable x = new DoubleVariable(m_gpconf, "X");
+    IntegerVariable i = new IntegerVariable(m_gpconf, "I");
+    GPProgram prog = new GPProgram(m_gpconf, 2);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 5, prog);
+    pc.setGene(0, new Multiply(m_gpconf, CommandGene.DoubleClass));
+    pc.setGene(1, x);
+    pc.setGene(2, new Constant(m_gpconf, CommandGene.DoubleClass,
+                               new Double(3.0d)));
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    ProgramChromosome pc2 = new ProgramChromosome(m_gpconf, 5, prog);
+    pc2.setGene(0, new Add(m_gpconf, CommandGene.IntegerClass));
+    pc2.setGene(1, i);
+    pc2.setGene(2, i);
+    pc2.redepth();
+    prog.setChromosome(1, pc2);
+    VariableContext ctx = m_gpconf.getVariableContext();
+    for (int k = 0; k < 5; k++) {
+      ctx.setDouble(x.getSlot(), k);
+      ctx.setInt(i.getSlot(), k);
+      assertEquals(3.0d * k, prog.execute_double(0, new Object[0]), DELTA);
+      assertEquals(2 * k, prog.execute_int(1, new Object[0]));
+    }
+  }
+
+  /**
+   * A genotype resolves variables to their slots.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testGenotype_0()
+      throws Exception {
+    DoubleVariable x = new DoubleVariable(m_gpconf, "X");
+    Variable v = Variable.create(m_gpconf, "V", CommandGene.DoubleClass);
+    GPProgram prog = new GPProgram(m_gpconf, 1);
+    ProgramChromosome pc = new ProgramChromosome(m_gpconf, 5, prog);
+    pc.setGene(0, x);
+    pc.redepth();
+    prog.setChromosome(0, pc);
+    GPPopulation pop = new GPPopulation(m_gpconf, 1);
+    pop.setGPProgram(0, prog);
+    GPGenotype gen = new GPGenotype(m_gpconf, pop, null, null, null, null,
+                                    null, 1);
+    assertEquals(x.getSlot(), gen.getVariableSlot("X"));
+    assertSame(m_gpconf.getVariableContext(), gen.getVariableContext());
+    try {
+      gen.getVariableSlot(v.getName());
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * Numeric constants are executed as any primitive type.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testConstant_0()
+      throws Exception {
+    Constant c = new Constant(m_gpconf, CommandGene.LongClass,
+                              new Long(1L << 35));
+    assertEquals(1L << 35, c.execute_long(null, 0, null));
+    c = new Constant(m_gpconf, CommandGene.DoubleClass, new Double(2.5d));
+    assertEquals(2.5d, c.execute_double(null, 0, null), DELTA);
+    assertEquals(2.5f, c.execute_float(null, 0, null), DELTA);
+    assertEquals(new Double(2.5d), c.execute_object(null, 0, null));
+  }
+}
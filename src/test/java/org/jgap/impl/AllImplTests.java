@@ -48,6 +48,7 @@ public class AllImplTests
     suite.addTest(DoubleGeneTest.suite());
     suite.addTest(FixedBinaryGeneTest.suite());
     suite.addTest(FittestPopulationMergerTest.suite());
+    suite.addTest(GABreederMultiTest.suite());
     suite.addTest(GaussianMutationOperatorTest.suite());
     suite.addTest(GaussianRandomGeneratorTest.suite());
     suite.addTest(GreedyCrossoverTest.suite());
@@ -56,6 +57,10 @@ public class AllImplTests
     suite.addTest(JGAPFactoryTest.suite());
     suite.addTest(MapGeneTest.suite());
     suite.addTest(MutationOperatorTest.suite());
+    suite.addTest(NearestNeighbourSurrogateTest.suite());
+    suite.addTest(RacingEvaluatorTest.suite());
+    suite.addTest(NonDominatedSortingTest.suite());
+    suite.addTest(NSGA2SelectorTest.suite());
     suite.addTest(SwappingMutationOperatorTest.suite());
     suite.addTest(NumberGeneTest.suite());
     suite.addTest(PoolTest.suite());
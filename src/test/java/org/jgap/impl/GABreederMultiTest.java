@@ -0,0 +1,130 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import org.jgap.*;
+import junit.framework.*;
+
+/**
+ * Tests the GABreederMulti class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GABreederMultiTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(GABreederMultiTest.class);
+    return suite;
+  }
+
+  /**
+   * Once the surrogate model is trained, only the chromosomes predicted best
+   * are evaluated, the others get an estimated fitness value.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvaluateWithSurrogate_0()
+      throws Exception {
+    AlleleFitness fitness = new AlleleFitness();
+    conf.resetProperty(Configuration.PROPERTY_FITFUNC_INST);
+    conf.setFitnessFunction(fitness);
+    GABreederMulti breeder = new GABreederMulti(2);
+    NearestNeighbourSurrogate model = new NearestNeighbourSurrogate(1, 100);
+    breeder.setSurrogate(model, 0.3d, 5);
+    // Not enough samples yet: all chromosomes are evaluated.
+    // ------------------------------------------------------
+    List<IChromosome> chroms = new ArrayList<IChromosome>();
+    for (int i = 0; i < 10; i++) {
+      chroms.add(createChromosome(2 * i));
+    }
+    breeder.evaluateWithSurrogate(chroms, conf);
+    assertEquals(10, fitness.m_calls.get());
+    assertEquals(10, model.size());
+    assertEquals(10, breeder.getSurrogateEvaluatedCount());
+    assertEquals(0, breeder.getSurrogateEstimatedCount());
+    assertTrue(Double.isNaN(breeder.getSurrogateError()));
+    chroms.clear();
+    for (int i = 0; i < 10; i++) {
+      chroms.add(createChromosome(2 * i + 1));
+    }
+    breeder.evaluateWithSurrogate(chroms, conf);
+    assertEquals(13, fitness.m_calls.get());
+    assertEquals(13, model.size());
+    assertEquals(13, breeder.getSurrogateEvaluatedCount());
+    assertEquals(7, breeder.getSurrogateEstimatedCount());
+    int estimated = 0;
+    for (IChromosome chrom : chroms) {
+      Chromosome c = (Chromosome) chrom;
+      int allele = ( (Integer) c.getGene(0).getAllele()).intValue();
+      if (c.isFitnessEstimated()) {
+        estimated++;
+        assertTrue(allele < 19);
+      }
+      else {
+        assertEquals(allele + 1, c.getFitnessValueDirectly(), DELTA);
+      }
+    }
+    assertEquals(7, estimated);
+    // The nearest sample always differs by one.
+    // -----------------------------------------
+    assertEquals(1.0d, breeder.getSurrogateError(), DELTA);
+    try {
+      breeder.setSurrogate(model, 0, 1);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * Setting a fitness value resets the estimation flag, cloning keeps it.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testFitnessEstimated_0()
+      throws Exception {
+    Chromosome chrom = createChromosome(3);
+    chrom.setFitnessValueEstimated(5);
+    assertTrue(chrom.isFitnessEstimated());
+    assertEquals(5.0d, chrom.getFitnessValue(), DELTA);
+    assertTrue( ( (Chromosome) chrom.clone()).isFitnessEstimated());
+    chrom.setFitnessValue(5);
+    assertFalse(chrom.isFitnessEstimated());
+  }
+
+  private Chromosome createChromosome(int a_allele)
+      throws Exception {
+    Gene gene = new IntegerGene(conf, 0, 100);
+    gene.setAllele(new Integer(a_allele));
+    return new Chromosome(conf, new Gene[] {gene});
+  }
+
+  static class AlleleFitness
+      extends FitnessFunction {
+    AtomicInteger m_calls = new AtomicInteger();
+
+    public double evaluate(IChromosome a_subject) {
+      m_calls.incrementAndGet();
+      return ( (Integer) a_subject.getGene(0).getAllele()).intValue() + 1;
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import java.util.*;
+import org.jgap.*;
+import junit.framework.*;
+
+/**
+ * Tests the NSGA2Selector class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class NSGA2SelectorTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  private int m_count;
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(NSGA2SelectorTest.class);
+    return suite;
+  }
+
+  /**
+   * The first front is taken completely, the second one cut by crowding
+   * distance.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSelect_0()
+      throws Exception {
+    NSGA2Selector selector = new NSGA2Selector(conf);
+    selector.setDoubletteChromosomesAllowed(false);
+    Population pop = new Population(conf);
+    IChromosome a = createChromosome(1, 4);
+    IChromosome b = createChromosome(4, 1);
+    IChromosome c = createChromosome(2, 5);
+    IChromosome d = createChromosome(3, 4.5d);
+    IChromosome e = createChromosome(5, 2);
+    IChromosome f = createChromosome(9, 9);
+    pop.addChromosome(f);
+    pop.addChromosome(d);
+    pop.addChromosome(a);
+    pop.addChromosome(c);
+    pop.addChromosome(e);
+    pop.addChromosome(b);
+    Population toPop = new Population(conf);
+    selector.select(4, pop, toPop);
+    assertEquals(4, toPop.size());
+    assertTrue(toPop.contains(a));
+    assertTrue(toPop.contains(b));
+    // The inner chromosome d of the second front is the most crowded one.
+    // -------------------------------------------------------------------
+    assertTrue(toPop.contains(c));
+    assertTrue(toPop.contains(e));
+    assertFalse(toPop.contains(d));
+    assertTrue(a.isSelectedForNextGeneration());
+    selector.empty();
+    toPop = new Population(conf);
+    selector.select(10, pop, toPop);
+    assertEquals(6, toPop.size());
+  }
+
+  /**
+   * Maximized objectives are negated.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSelect_1()
+      throws Exception {
+    NSGA2Selector selector = new NSGA2Selector(conf);
+    selector.setMaximized(new boolean[] {true, true});
+    Population pop = new Population(conf);
+    IChromosome a = createChromosome(1, 4);
+    IChromosome f = createChromosome(9, 9);
+    pop.addChromosome(a);
+    pop.addChromosome(f);
+    Population toPop = new Population(conf);
+    selector.select(1, pop, toPop);
+    assertSame(f, toPop.getChromosome(0));
+    // Doublettes fill up the population.
+    // ----------------------------------
+    selector.empty();
+    selector.setDoubletteChromosomesAllowed(true);
+    toPop = new Population(conf);
+    selector.select(3, pop, toPop);
+    assertEquals(3, toPop.size());
+    assertSame(f, toPop.getChromosome(0));
+    assertEquals(f, toPop.getChromosome(2));
+  }
+
+  /**
+   * Chromosomes without objective values cannot be selected.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSelect_2()
+      throws Exception {
+    NSGA2Selector selector = new NSGA2Selector(conf);
+    Population pop = new Population(conf);
+    Chromosome chrom = new Chromosome(conf, new BooleanGene(conf), 2);
+    chrom.setFitnessValue(1);
+    pop.addChromosome(chrom);
+    try {
+      selector.select(1, pop, new Population(conf));
+      fail();
+    } catch (IllegalStateException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * The archive keeps the non-dominated chromosomes across generations,
+   * bounded in size.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testArchive_0()
+      throws Exception {
+    NSGA2Selector selector = new NSGA2Selector(conf);
+    selector.setArchiveSize(3);
+    Population pop = new Population(conf);
+    pop.addChromosome(createChromosome(2, 2));
+    pop.addChromosome(createChromosome(5, 5));
+    selector.select(1, pop, new Population(conf));
+    ParetoArchive archive = selector.getArchive();
+    assertEquals(1, archive.size());
+    assertTrue(Arrays.equals(new double[] {2, 2}, archive.getObjectives(0)));
+    selector.empty();
+    pop = new Population(conf);
+    pop.addChromosome(createChromosome(0, 4));
+    pop.addChromosome(createChromosome(1, 3));
+    pop.addChromosome(createChromosome(3, 1));
+    pop.addChromosome(createChromosome(4, 0));
+    selector.select(1, pop, new Population(conf));
+    // (2, 2) is kept as it is not dominated, the inner ones are most
+    // crowded.
+    // --------------------------------------------------------------
+    assertEquals(3, archive.size());
+    assertTrue(Arrays.equals(new double[] {2, 2}, archive.getObjectives(0)));
+    assertTrue(Arrays.equals(new double[] {0, 4}, archive.getObjectives(1)));
+    assertTrue(Arrays.equals(new double[] {4, 0}, archive.getObjectives(2)));
+    assertNotSame(pop.getChromosome(0), archive.getMembers().get(1));
+    NSGA2Selector clone = (NSGA2Selector) selector.clone();
+    assertEquals(3, clone.getArchiveSize());
+    assertEquals(0, clone.getArchive().size());
+  }
+
+  /**
+   * Selectors with equal settings are equal and have equal hash codes.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEquals_0()
+      throws Exception {
+    NSGA2Selector selector = new NSGA2Selector(conf);
+    selector.setArchiveSize(3);
+    NSGA2Selector other = (NSGA2Selector) selector.clone();
+    assertEquals(selector, other);
+    assertEquals(selector.hashCode(), other.hashCode());
+    other.setArchiveSize(4);
+    assertFalse(selector.equals(other));
+  }
+
+  private IChromosome createChromosome(double a_obj1, double a_obj2)
+      throws Exception {
+    // Distinct alleles, as equal chromosomes are only added once.
+    // ------------------------------------------------------------
+    Gene gene = new IntegerGene(conf, 0, 1000);
+    gene.setAllele(new Integer(m_count++));
+    Chromosome chrom = new Chromosome(conf, new Gene[] {gene});
+    chrom.setFitnessValue(1);
+    List objectives = new Vector();
+    objectives.add(new Double(a_obj1));
+    objectives.add(new Double(a_obj2));
+    chrom.setMultiObjectives(objectives);
+    return chrom;
+  }
+}
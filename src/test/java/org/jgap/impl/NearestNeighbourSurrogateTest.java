@@ -0,0 +1,81 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import org.jgap.*;
+import junit.framework.*;
+
+/**
+ * Tests the NearestNeighbourSurrogate class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class NearestNeighbourSurrogateTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(NearestNeighbourSurrogateTest.class);
+    return suite;
+  }
+
+  /**
+   * Predictions are weighted by inverse distance of the scaled features.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testPredict_0()
+      throws Exception {
+    NearestNeighbourSurrogate model = new NearestNeighbourSurrogate(2, 10);
+    try {
+      model.predict(new double[] {0, 0});
+      fail();
+    } catch (IllegalStateException iex) {
+      ; //this is OK
+    }
+    model.train(new double[] {0, 0}, 10);
+    model.train(new double[] {1, 100}, 20);
+    model.train(new double[] {4, 400}, 90);
+    assertEquals(3, model.size());
+    assertEquals(20.0d, model.predict(new double[] {1, 100}), DELTA);
+    // Equally distant from the first two samples.
+    // -------------------------------------------
+    assertEquals(15.0d, model.predict(new double[] {0.5d, 50}), DELTA);
+    try {
+      model.train(new double[] {1}, 1);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * The oldest sample is replaced when the model is full.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCapacity_0()
+      throws Exception {
+    NearestNeighbourSurrogate model = new NearestNeighbourSurrogate(1, 2);
+    model.train(new double[] {0}, 1);
+    model.train(new double[] {10}, 2);
+    model.train(new double[] {1}, 3);
+    assertEquals(2, model.size());
+    assertEquals(3.0d, model.predict(new double[] {0}), DELTA);
+  }
+}
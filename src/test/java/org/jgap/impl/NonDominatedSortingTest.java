@@ -0,0 +1,132 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import java.util.*;
+import org.jgap.*;
+import junit.framework.*;
+
+/**
+ * Tests the NonDominatedSorting class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class NonDominatedSortingTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(NonDominatedSortingTest.class);
+    return suite;
+  }
+
+  /**
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testDominates_0()
+      throws Exception {
+    assertTrue(NonDominatedSorting.dominates(new double[] {1, 2},
+                                             new double[] {1, 3}));
+    assertFalse(NonDominatedSorting.dominates(new double[] {1, 3},
+                                              new double[] {1, 2}));
+    assertFalse(NonDominatedSorting.dominates(new double[] {1, 2},
+                                              new double[] {1, 2}));
+    assertFalse(NonDominatedSorting.dominates(new double[] {0, 3},
+                                              new double[] {1, 2}));
+  }
+
+  /**
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSort_0()
+      throws Exception {
+    double[][] objectives = new double[][] {
+        {3, 3}, {1, 4}, {2, 2}, {4, 1}, {4, 4}, {2, 3}};
+    int[][] fronts = NonDominatedSorting.sort(objectives, 1);
+    assertEquals(4, fronts.length);
+    assertTrue(Arrays.equals(new int[] {1, 2, 3}, fronts[0]));
+    assertTrue(Arrays.equals(new int[] {5}, fronts[1]));
+    assertTrue(Arrays.equals(new int[] {0}, fronts[2]));
+    assertTrue(Arrays.equals(new int[] {4}, fronts[3]));
+    objectives = new double[][] {{1, 4}, {4, 1}, {2, 5}, {5, 2}};
+    fronts = NonDominatedSorting.sort(objectives, 1);
+    assertEquals(2, fronts.length);
+    assertTrue(Arrays.equals(new int[] {2, 3}, fronts[1]));
+  }
+
+  /**
+   * Sorting with several threads yields the same fronts.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSort_1()
+      throws Exception {
+    Random random = new Random(11);
+    double[][] objectives = new double[700][3];
+    for (int i = 0; i < objectives.length; i++) {
+      for (int k = 0; k < 3; k++) {
+        objectives[i][k] = random.nextInt(20);
+      }
+    }
+    int[][] fronts = NonDominatedSorting.sort(objectives, 1);
+    int[][] fronts2 = NonDominatedSorting.sort(objectives, 4);
+    assertEquals(fronts.length, fronts2.length);
+    int total = 0;
+    for (int i = 0; i < fronts.length; i++) {
+      assertTrue(Arrays.equals(fronts[i], fronts2[i]));
+      total += fronts[i].length;
+      // No individual of a front dominates another one of the same front.
+      // ------------------------------------------------------------------
+      for (int j = 0; j < fronts[i].length; j++) {
+        for (int k = 0; k < fronts[i].length; k++) {
+          assertFalse(NonDominatedSorting.dominates(objectives[fronts[i][j]],
+              objectives[fronts[i][k]]));
+        }
+      }
+    }
+    assertEquals(objectives.length, total);
+  }
+
+  /**
+   * Boundary individuals get an infinite distance, inner ones the sum of the
+   * normalized side lengths of their cuboid.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testCrowdingDistance_0()
+      throws Exception {
+    double[][] objectives = new double[][] {
+        {0, 4}, {1, 3}, {3, 1}, {4, 0}, {9, 9}};
+    int[] front = new int[] {0, 1, 2, 3};
+    double[] distance = NonDominatedSorting.crowdingDistance(objectives,
+        front);
+    assertEquals(Double.POSITIVE_INFINITY, distance[0], DELTA);
+    assertEquals(Double.POSITIVE_INFINITY, distance[3], DELTA);
+    assertEquals(3.0d / 4 + 3.0d / 4, distance[1], DELTA);
+    assertEquals(3.0d / 4 + 3.0d / 4, distance[2], DELTA);
+    int[] order = NonDominatedSorting.sortByCrowding(new int[] {1, 2, 0},
+        new double[] {1.0d, 2.0d, Double.POSITIVE_INFINITY});
+    assertTrue(Arrays.equals(new int[] {0, 2, 1}, order));
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.impl;
+
+import java.util.*;
+import org.jgap.*;
+import junit.framework.*;
+
+/**
+ * Tests the RacingEvaluator class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class RacingEvaluatorTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    TestSuite suite = new TestSuite(RacingEvaluatorTest.class);
+    return suite;
+  }
+
+  /**
+   * All but the two best individuals drop out after the minimum number of
+   * samples, the best ones get all samples.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvaluate_0()
+      throws Exception {
+    List<IChromosome> chroms = createChromosomes(10);
+    RacingEvaluator racing = new RacingEvaluator(new NoisyFitnessFunction(),
+        0.2d);
+    racing.evaluate(chroms, new DefaultFitnessEvaluator());
+    assertEquals(8, racing.getDroppedOut());
+    assertEquals(8 * 17, racing.getSamplesSaved());
+    assertEquals(3 * 10 + 17 * 2, racing.getSamplesTaken());
+    assertEquals(100.0d, chroms.get(9).getFitnessValueDirectly(), DELTA);
+    assertEquals(90.0d, chroms.get(8).getFitnessValueDirectly(), DELTA);
+    assertEquals(10.0d + 1.0d / 3, chroms.get(0).getFitnessValueDirectly(),
+                 DELTA);
+    // Only the fitness values of individuals that dropped out are estimated.
+    // ---------------------------------------------------------------------
+    assertFalse( ( (Chromosome) chroms.get(9)).isFitnessEstimated());
+    assertTrue( ( (Chromosome) chroms.get(0)).isFitnessEstimated());
+    // Same result with several threads.
+    // ---------------------------------
+    List<IChromosome> chroms2 = createChromosomes(10);
+    racing.setThreads(3);
+    racing.evaluate(chroms2, new DefaultFitnessEvaluator());
+    assertEquals(8, racing.getDroppedOut());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(chroms.get(i).getFitnessValueDirectly(),
+                   chroms2.get(i).getFitnessValueDirectly(), DELTA);
+    }
+  }
+
+  /**
+   * Individuals with a fitness value count for the threshold. With lower
+   * values being fitter, a known very fit individual makes all others drop
+   * out.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testEvaluate_1()
+      throws Exception {
+    List<IChromosome> chroms = createChromosomes(9);
+    IChromosome known = chroms.get(0);
+    known.setFitnessValue(5.0d);
+    RacingEvaluator racing = new RacingEvaluator(new NoisyFitnessFunction(),
+        0.1d);
+    racing.setMinSamples(4);
+    racing.evaluate(chroms, new DeltaFitnessEvaluator());
+    assertEquals(5.0d, known.getFitnessValueDirectly(), DELTA);
+    assertEquals(8, racing.getDroppedOut());
+    assertEquals(8 * 4, racing.getSamplesTaken());
+    assertEquals(20.0d, chroms.get(1).getFitnessValueDirectly(), DELTA);
+    // Without confidence interval nobody drops out.
+    // ---------------------------------------------
+    chroms = createChromosomes(9);
+    racing.setConfidence(Double.POSITIVE_INFINITY);
+    racing.evaluate(chroms, new DeltaFitnessEvaluator());
+    assertEquals(0, racing.getDroppedOut());
+    assertEquals(9 * 20, racing.getSamplesTaken());
+    assertEquals(10.0d, chroms.get(0).getFitnessValueDirectly(), DELTA);
+  }
+
+  /**
+   * Invalid settings are rejected.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testConstruct_0()
+      throws Exception {
+    try {
+      new RacingEvaluator(new NoisyFitnessFunction(), 0);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+    RacingEvaluator racing = new RacingEvaluator(new NoisyFitnessFunction(),
+        1);
+    try {
+      racing.setMinSamples(1);
+      fail();
+    } catch (IllegalArgumentException iex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * Racing is used by the bulk fitness function and by GABreederMulti.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testIntegration_0()
+      throws Exception {
+    RacingEvaluator racing = new RacingEvaluator(new NoisyFitnessFunction(),
+        0.2d);
+    List<IChromosome> chroms = createChromosomes(10);
+    Population pop = new Population(conf,
+        chroms.toArray(new IChromosome[chroms.size()]));
+    new RacingBulkFitnessFunction(racing).evaluate(pop);
+    assertEquals(8, racing.getDroppedOut());
+    assertEquals(100.0d, chroms.get(9).getFitnessValueDirectly(), DELTA);
+    chroms = createChromosomes(10);
+    pop = new Population(conf, chroms.toArray(new IChromosome[chroms.size()]));
+    GABreederMulti breeder = new GABreederMulti(2);
+    breeder.setRacing(racing);
+    assertSame(racing, ( (GABreederMulti) breeder.clone()).getRacing());
+    breeder.updateChromosomes(pop, conf);
+    assertEquals(8, racing.getDroppedOut());
+    assertEquals(90.0d, chroms.get(8).getFitnessValueDirectly(), DELTA);
+  }
+
+  private List<IChromosome> createChromosomes(int a_count)
+      throws Exception {
+    List<IChromosome> result = new ArrayList<IChromosome>();
+    for (int i = 1; i <= a_count; i++) {
+      Gene gene = new IntegerGene(conf, 0, 100);
+      gene.setAllele(new Integer(i));
+      result.add(new Chromosome(conf, new Gene[] {gene}));
+    }
+    return result;
+  }
+
+  /**
+   * Samples scatter by one around ten times the allele.
+   */
+  private class NoisyFitnessFunction
+      extends SampledFitnessFunction {
+    public int getSampleCount() {
+      return 20;
+    }
+
+    public double evaluateSample(IChromosome a_subject, int a_sample) {
+      int value = ( (Integer) a_subject.getGene(0).getAllele()).intValue();
+      return value * 10 + (a_sample % 2 == 0 ? 1 : -1);
+    }
+  }
+}
@@ -0,0 +1,596 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.perf;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.commons.cli.*;
+import org.homedns.dade.jcgrid.*;
+import org.homedns.dade.jcgrid.client.*;
+import org.homedns.dade.jcgrid.message.*;
+import org.homedns.dade.jcgrid.worker.*;
+import org.jgap.distr.grid.*;
+import org.jgap.distr.grid.gp.*;
+import org.jgap.gp.*;
+import org.jgap.gp.function.*;
+import org.jgap.gp.impl.*;
+import org.jgap.gp.terminal.*;
+import org.jgap.util.*;
+
+/**
+ * Load test of the GP grid request/response path on the loopback interface.
+ * A JGAPServer, a number of GridWorkers running a JGAPWorkerGP each, and a
+ * client sending JGAPRequestGPs via DummyGridClientMediator (as JGAPClientGP
+ * does in LAN mode) are started in one JVM. The workload is a synthetic
+ * symbolic regression, evolved by the workers via DefaultEvolveStrategyGP.
+ * <p>
+ * The client keeps a given number of requests outstanding. After a warm-up,
+ * it reports the request throughput, end-to-end latency percentiles, the
+ * bytes per message as sent over the jcgrid channel (Java serialization)
+ * and as persisted by the client (XStream or GPBinaryCodec), and how the
+ * time of a request splits up into the stages:
+ * <ul>
+ * <li>send: serializing and writing the request at the client</li>
+ * <li>to worker: server queue and transport up to the start of the
+ * worker</li>
+ * <li>worker setup: setting up the genotype and assembling the result</li>
+ * <li>evolve: evolution via DefaultEvolveStrategyGP</li>
+ * <li>to client: transport of the result via the server</li>
+ * <li>persist: encoding the result as the client does for storing it</li>
+ * </ul>
+ * Call with -? for the options. On Java 9 and later, XStream needs the JVM
+ * option --add-opens for each JDK package it reflects on (for example
+ * java.base/java.util=ALL-UNNAMED), otherwise use -binary.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class GridLoopbackBenchmark {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  /**
+   * Timestamps (nanoseconds) recorded by the workers per request ID: start
+   * of the worker, duration of the evolution, end of the worker.
+   */
+  private final static Map<String, long[]> WORKER_TIMES =
+      new ConcurrentHashMap<String, long[]>();
+
+  /**
+   * Duration of the last evolution of the current worker thread.
+   */
+  private final static ThreadLocal<long[]> EVOLVE_TIME =
+      new ThreadLocal<long[]>() {
+    protected long[] initialValue() {
+      return new long[1];
+    }
+  };
+
+  private final static String[] STAGES = {"send", "to worker",
+      "worker setup", "evolve", "to client", "persist"};
+
+  private int m_workers = 4;
+
+  private int m_requests = 200;
+
+  private int m_warmup = 20;
+
+  private int m_concurrency = 8;
+
+  private int m_popSize = 50;
+
+  private int m_generations = 2;
+
+  private boolean m_compress;
+
+  private boolean m_binaryCodec;
+
+  private File m_workDir;
+
+  private JGAPServer m_server;
+
+  private GridWorker[] m_gridWorkers;
+
+  private IGridClientMediator m_mediator;
+
+  private GridNodeClientConfig m_clientConfig;
+
+  private IGridConfigurationGP m_gridConfig;
+
+  private GPPopulation m_population;
+
+  private IObjectCodec m_codec;
+
+  public static void main(String[] args)
+      throws Exception {
+    Options options = new Options();
+    options.addOption("workers", true, "number of workers (default 4)");
+    options.addOption("requests", true,
+                      "number of requests measured (default 200)");
+    options.addOption("warmup", true,
+                      "number of warm-up requests (default 20)");
+    options.addOption("concurrency", true,
+                      "requests outstanding at a time (default 8)");
+    options.addOption("popsize", true,
+                      "programs per request population (default 50)");
+    options.addOption("generations", true,
+                      "generations evolved per request (default 2)");
+    options.addOption("z", false, "compress the grid connections");
+    options.addOption("binary", false,
+                      "persist results via GPBinaryCodec instead of XStream");
+    options.addOption("?", false, "print this help");
+    CommandLine cmd = new PosixParser().parse(options, args);
+    if (cmd.hasOption("?")) {
+      new HelpFormatter().printHelp("GridLoopbackBenchmark", options);
+      return;
+    }
+    GridLoopbackBenchmark benchmark = new GridLoopbackBenchmark();
+    benchmark.m_workers = getInt(cmd, "workers", benchmark.m_workers);
+    benchmark.m_requests = getInt(cmd, "requests", benchmark.m_requests);
+    benchmark.m_warmup = getInt(cmd, "warmup", benchmark.m_warmup);
+    benchmark.m_concurrency = getInt(cmd, "concurrency",
+                                     benchmark.m_concurrency);
+    benchmark.m_popSize = getInt(cmd, "popsize", benchmark.m_popSize);
+    benchmark.m_generations = getInt(cmd, "generations",
+                                     benchmark.m_generations);
+    benchmark.m_compress = cmd.hasOption("z");
+    benchmark.m_binaryCodec = cmd.hasOption("binary");
+    // Exiting ends the threads of the jcgrid server and workers.
+    // ---------------------------------------------------------
+    try {
+      benchmark.run(System.out);
+    } catch (Throwable t) {
+      t.printStackTrace();
+      System.exit(1);
+    }
+    System.exit(0);
+  }
+
+  private static int getInt(CommandLine a_cmd, String a_option, int a_default) {
+    return Integer.parseInt(a_cmd.getOptionValue(a_option,
+        String.valueOf(a_default)));
+  }
+
+  /**
+   * Starts the grid, executes the benchmark and stops the grid.
+   *
+   * @param a_out the stream to write the report to
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void run(PrintStream a_out)
+      throws Exception {
+    m_workDir = File.createTempFile("jgapgrid", "");
+    m_workDir.delete();
+    m_workDir.mkdirs();
+    setupWorkload();
+    startGrid();
+    try {
+      runRequests(m_warmup, null);
+      Report report = new Report(m_requests);
+      long start = System.nanoTime();
+      runRequests(m_requests, report);
+      report.m_wallNanos = System.nanoTime() - start;
+      report.print(a_out);
+    } finally {
+      stopGrid();
+      FileKit.deleteDirectory(m_workDir);
+    }
+  }
+
+  /**
+   * Sets up the grid configuration and the population sent with each
+   * request.
+   *
+   * @throws Exception
+   */
+  private void setupWorkload()
+      throws Exception {
+    GPConfiguration.reset();
+    GPConfiguration conf = new GPConfiguration();
+    conf.setGPFitnessEvaluator(new DeltaGPFitnessEvaluator());
+    conf.setPopulationSize(m_popSize);
+    conf.setMaxInitDepth(5);
+    Variable x = Variable.create(conf, "X", CommandGene.DoubleClass);
+    conf.setFitnessFunction(new RegressionFitness(x));
+    BenchmarkGridConfiguration gridConfig = new BenchmarkGridConfiguration();
+    gridConfig.setConfiguration(conf);
+    gridConfig.setTypes(new Class[] {CommandGene.DoubleClass});
+    gridConfig.setArgTypes(new Class[][] { {}
+    });
+    gridConfig.setNodeSets(new CommandGene[][] { {
+        x,
+        new Add(conf, CommandGene.DoubleClass),
+        new Subtract(conf, CommandGene.DoubleClass),
+        new Multiply(conf, CommandGene.DoubleClass),
+        new Terminal(conf, CommandGene.DoubleClass, 1.0d, 5.0d, true),
+    }
+    });
+    gridConfig.setMaxNodes(30);
+    gridConfig.setGenotypeInitializer(new GenotypeInitializer());
+    gridConfig.setWorkerEvolveStrategy(new TimedEvolveStrategy(
+        m_generations));
+    gridConfig.setWorkerReturnStrategy(new PopulationReturnStrategy());
+    m_gridConfig = gridConfig;
+    m_population = GPGenotype.randomInitialGenotype(conf,
+        gridConfig.getTypes(), gridConfig.getArgTypes(),
+        gridConfig.getNodeSets(), gridConfig.getMaxNodes(), false).
+        getGPPopulation();
+    if (m_binaryCodec) {
+      m_codec = new GPBinaryCodec(true, conf);
+    }
+  }
+
+  private void startGrid()
+      throws Exception {
+    int clientPort = getFreePort();
+    int workerPort = getFreePort();
+    int adminPort = getFreePort();
+    List<String> args = new ArrayList<String>(Arrays.asList(new String[] {
+        "-p", String.valueOf(clientPort), "-k", String.valueOf(workerPort),
+        "-a", String.valueOf(adminPort),
+        "-d", new File(m_workDir, "server").getPath()}));
+    if (m_compress) {
+      args.add("-z");
+    }
+    m_server = new JGAPServer(args.toArray(new String[args.size()]));
+    m_gridWorkers = new GridWorker[m_workers];
+    for (int i = 0; i < m_workers; i++) {
+      GridNodeWorkerConfig config = new GridNodeWorkerConfig();
+      setupNodeConfig(config, clientPort, workerPort);
+      config.setSessionName("benchmark_worker_" + i);
+      config.setWorkingDir(new File(m_workDir, "worker_" + i).getPath());
+      m_gridWorkers[i] = new GridWorker();
+      m_gridWorkers[i].setNodeConfig(config);
+      m_gridWorkers[i].setWorker(new TimedWorkerGP());
+      m_gridWorkers[i].start();
+    }
+    m_clientConfig = new GridNodeClientConfig();
+    setupNodeConfig(m_clientConfig, clientPort, workerPort);
+    m_clientConfig.setSessionName("benchmark_client");
+    m_clientConfig.setWorkingDir(new File(m_workDir, "client").getPath());
+    m_mediator = new DummyGridClientMediator(m_clientConfig);
+  }
+
+  private void setupNodeConfig(GridNodeGenericConfig a_config,
+                               int a_clientPort, int a_workerPort) {
+    GridConfig grid = a_config.getGridConfig();
+    grid.setServerAddress("localhost");
+    grid.setServerClientPort(a_clientPort);
+    grid.setServerWorkerPort(a_workerPort);
+    grid.setUseCompression(m_compress);
+  }
+
+  /**
+   * Stops the client. The server and the workers of jcgrid cannot be
+   * stopped without waiting for threads blocking on sockets, thus they end
+   * with the JVM only.
+   */
+  private void stopGrid() {
+    try {
+      if (m_mediator != null) {
+        m_mediator.stop();
+      }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  private static int getFreePort()
+      throws IOException {
+    ServerSocket socket = new ServerSocket(0);
+    try {
+      return socket.getLocalPort();
+    } finally {
+      socket.close();
+    }
+  }
+
+  /**
+   * Sends requests, keeping the configured number of them outstanding, and
+   * receives their results.
+   *
+   * @param a_count number of requests to send
+   * @param a_report the report to record measurements in, null to discard
+   * them
+   * @throws Exception
+   */
+  private void runRequests(int a_count, Report a_report)
+      throws Exception {
+    Map<String, long[]> sent = new HashMap<String, long[]>();
+    MessageContext context = new MessageContext(JGAPClientGP.MODULE_CS,
+        JGAPClientGP.CONTEXT_WORK_REQUEST, JGAPClientGP.CONTEXT_ID_EMPTY);
+    context.setVersion(JGAPClientGP.APP_VERSION);
+    int nextRequest = 0;
+    int received = 0;
+    while (received < a_count) {
+      while (nextRequest < a_count
+             && nextRequest - received < m_concurrency) {
+        JGAPRequestGP req = createRequest(nextRequest++);
+        GridMessageWorkRequest msg = new GridMessageWorkRequest(req);
+        if (a_report != null) {
+          a_report.m_requestBytes += getSerializedSize(msg);
+        }
+        long start = System.nanoTime();
+        m_mediator.send(msg, context, null);
+        sent.put(req.getID(), new long[] {start, System.nanoTime()});
+      }
+      GridMessageWorkResult msg = (GridMessageWorkResult) m_mediator.
+          getGridMessage(context, null, JGAPClientGP.TIMEOUT_SECONDS, 0,
+                         false);
+      long receivedAt = System.nanoTime();
+      if (msg == null) {
+        throw new IllegalStateException("No result received within "
+                                        + JGAPClientGP.TIMEOUT_SECONDS
+                                        + " seconds");
+      }
+      JGAPResultGP result = (JGAPResultGP) msg.getWorkResult();
+      long[] clientTimes = sent.remove(result.getID());
+      long[] workerTimes = WORKER_TIMES.remove(result.getID());
+      if (clientTimes == null || workerTimes == null) {
+        throw new IllegalStateException("Unknown result " + result.getID());
+      }
+      received++;
+      if (a_report == null) {
+        continue;
+      }
+      a_report.m_resultBytes += getSerializedSize(msg);
+      File file = new File(m_workDir, "result.jgap");
+      long persistStart = System.nanoTime();
+      persist(result, file);
+      long persistEnd = System.nanoTime();
+      a_report.m_persistedBytes += file.length();
+      a_report.add(receivedAt - clientTimes[0], new long[] {
+          clientTimes[1] - clientTimes[0],
+          workerTimes[0] - clientTimes[1],
+          workerTimes[2] - workerTimes[0] - workerTimes[1],
+          workerTimes[1],
+          receivedAt - workerTimes[2],
+          persistEnd - persistStart});
+    }
+  }
+
+  private JGAPRequestGP createRequest(int a_index) {
+    JGAPRequestGP req = new JGAPRequestGP(m_clientConfig.getSessionName(),
+                                          "benchmark_" + System.nanoTime()
+                                          + "_" + a_index, a_index,
+                                          m_gridConfig, m_population);
+    req.setWorkerReturnStrategy(m_gridConfig.getWorkerReturnStrategy());
+    req.setGenotypeInitializer(m_gridConfig.getGenotypeInitializer());
+    req.setEvolveStrategy(m_gridConfig.getWorkerEvolveStrategy());
+    req.setRequestDate(DateKit.now());
+    return req;
+  }
+
+  /**
+   * Writes a result to a file as JGAPClientGP does for storing results,
+   * omitting the configuration.
+   */
+  private void persist(JGAPResultGP a_result, File a_file)
+      throws Exception {
+    PersistableObject po = new PersistableObject(a_file);
+    po.setCodec(m_codec);
+    po.setObject(a_result);
+    po.save(true);
+  }
+
+  /**
+   * @return number of bytes of the Java serialization of an object, as used
+   * by the uncompressed jcgrid channel
+   */
+  private static long getSerializedSize(Object a_obj)
+      throws IOException {
+    CountingOutputStream count = new CountingOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(count);
+    out.writeObject(a_obj);
+    out.close();
+    return count.m_count;
+  }
+
+  /**
+   * Measurements of the requests.
+   */
+  private class Report {
+    private final long[] m_latencies;
+
+    private final long[] m_stageNanos = new long[STAGES.length];
+
+    private int m_count;
+
+    private long m_wallNanos;
+
+    private long m_requestBytes;
+
+    private long m_resultBytes;
+
+    private long m_persistedBytes;
+
+    Report(int a_count) {
+      m_latencies = new long[a_count];
+    }
+
+    void add(long a_latency, long[] a_stages) {
+      m_latencies[m_count++] = a_latency;
+      for (int i = 0; i < a_stages.length; i++) {
+        m_stageNanos[i] += a_stages[i];
+      }
+    }
+
+    void print(PrintStream a_out) {
+      long[] sorted = m_latencies.clone();
+      Arrays.sort(sorted);
+      a_out.println("Workers: " + m_workers + ", concurrency: "
+                    + m_concurrency + ", programs per request: " + m_popSize
+                    + ", generations: " + m_generations + ", compression: "
+                    + m_compress);
+      a_out.println("Requests: " + m_count + " in "
+                    + format(m_wallNanos / 1e9d) + " s, throughput: "
+                    + format(m_count / (m_wallNanos / 1e9d))
+                    + " requests/s");
+      a_out.println("Latency (ms): p50 " + millis(percentile(sorted, 50))
+                    + ", p90 " + millis(percentile(sorted, 90)) + ", p99 "
+                    + millis(percentile(sorted, 99)) + ", max "
+                    + millis(sorted[sorted.length - 1]));
+      a_out.println("Bytes per message: request " + m_requestBytes / m_count
+                    + ", result " + m_resultBytes / m_count + ", persisted ("
+                    + (m_binaryCodec ? "binary codec" : "XStream") + ") "
+                    + m_persistedBytes / m_count);
+      long total = 0;
+      for (int i = 0; i < m_stageNanos.length; i++) {
+        total += m_stageNanos[i];
+      }
+      a_out.println("Time per request by stage:");
+      for (int i = 0; i < STAGES.length; i++) {
+        a_out.println("  " + STAGES[i] + ": "
+                      + millis(m_stageNanos[i] / m_count) + " ms ("
+                      + format(100.0d * m_stageNanos[i] / total) + " %)");
+      }
+    }
+
+    private long percentile(long[] a_sorted, int a_percent) {
+      int index = (int) Math.ceil(a_percent / 100.0d * a_sorted.length) - 1;
+      return a_sorted[Math.max(0, index)];
+    }
+
+    private String millis(long a_nanos) {
+      return format(a_nanos / 1e6d);
+    }
+
+    private String format(double a_value) {
+      return String.format(Locale.US, "%.2f", a_value);
+    }
+  }
+
+  private static class CountingOutputStream
+      extends OutputStream {
+    private long m_count;
+
+    public void write(int a_byte) {
+      m_count++;
+    }
+
+    public void write(byte[] a_bytes, int a_offset, int a_length) {
+      m_count += a_length;
+    }
+  }
+
+  /**
+   * Worker recording when it starts and ends working on a request.
+   */
+  public static class TimedWorkerGP
+      extends JGAPWorkerGP {
+    public WorkResult doWork(WorkRequest a_work, String a_workDir)
+        throws Exception {
+      long start = System.nanoTime();
+      EVOLVE_TIME.get()[0] = 0;
+      WorkResult result = super.doWork(a_work, a_workDir);
+      WORKER_TIMES.put( ( (JGAPRequestGP) a_work).getID(), new long[] {
+          start, EVOLVE_TIME.get()[0], System.nanoTime()});
+      return result;
+    }
+  }
+
+  /**
+   * Evolves via DefaultEvolveStrategyGP and records the time needed.
+   */
+  public static class TimedEvolveStrategy
+      implements IWorkerEvolveStrategyGP {
+    private final int m_generations;
+
+    private final DefaultEvolveStrategyGP m_strategy =
+        new DefaultEvolveStrategyGP();
+
+    public TimedEvolveStrategy(int a_generations) {
+      m_generations = a_generations;
+    }
+
+    public void evolve(GPGenotype a_genotype) {
+      long start = System.nanoTime();
+      for (int i = 0; i < m_generations; i++) {
+        m_strategy.evolve(a_genotype);
+      }
+      EVOLVE_TIME.get()[0] = System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Sets up the genotype with the population sent.
+   */
+  public static class GenotypeInitializer
+      implements IGenotypeInitializerGP {
+    public GPGenotype setupGenotype(JGAPRequestGP a_req,
+                                    GPPopulation a_initialPop)
+        throws Exception {
+      IGridConfigurationGP config = a_req.getGridConfiguration();
+      GPConfiguration conf = a_req.getConfiguration();
+      return new GPGenotype(conf, a_initialPop, config.getTypes(),
+                            config.getArgTypes(), config.getNodeSets(),
+                            config.getMinDepths(), config.getMaxDepths(),
+                            config.getMaxNodes());
+    }
+  }
+
+  /**
+   * Returns the evolved population.
+   */
+  public static class PopulationReturnStrategy
+      implements IWorkerReturnStrategyGP {
+    public JGAPResultGP assembleResult(JGAPRequestGP a_request,
+                                       GPGenotype a_genotype)
+        throws Exception {
+      return new JGAPResultGP(a_request.getSessionName(), a_request.getID(),
+                              a_request.getChunk(),
+                              a_genotype.getGPPopulation(), 1);
+    }
+  }
+
+  /**
+   * Grid configuration set up by the benchmark itself.
+   */
+  public static class BenchmarkGridConfiguration
+      extends GridConfigurationGPBase {
+    public void initialize(GridNodeClientConfig a_gridconfig) {
+    }
+
+    public void validate() {
+    }
+  }
+
+  /**
+   * Sum of absolute errors of approximating x^3 - 2x + 1 on [-2, 2].
+   */
+  public static class RegressionFitness
+      extends GPFitnessFunction {
+    private final Variable m_x;
+
+    public RegressionFitness(Variable a_x) {
+      m_x = a_x;
+    }
+
+    protected double evaluate(IGPProgram a_subject) {
+      double error = 0;
+      for (int i = -20; i <= 20; i++) {
+        double x = i / 10.0d;
+        m_x.set(new Double(x));
+        double value = a_subject.execute_double(0, new Object[0]);
+        error += Math.abs(value - (x * x * x - 2 * x + 1));
+      }
+      if (Double.isNaN(error) || Double.isInfinite(error)) {
+        return Double.MAX_VALUE / 2;
+      }
+      return error;
+    }
+  }
+}
@@ -28,6 +28,7 @@ public class AllUtilTests
     suite.addTest(FileKitTest.suite());
     suite.addTest(NumberKitTest.suite());
     suite.addTest(PluginDiscovererTest.suite());
+    suite.addTest(RepresentationCursorTest.suite());
     return suite;
   }
 }
@@ -0,0 +1,171 @@
+/*
+ * This file is part of JGAP.
+ *
+ * JGAP offers a dual license model containing the LGPL as well as the MPL.
+ *
+ * For licensing information please see the file license.txt included with JGAP
+ * or have a look at the top of class org.jgap.Chromosome which representatively
+ * includes the JGAP license policy applicable for any file delivered with JGAP.
+ */
+package org.jgap.util;
+
+import java.io.StringReader;
+import java.util.StringTokenizer;
+
+import org.jgap.*;
+import org.jgap.impl.*;
+
+import junit.framework.*;
+
+/**
+ * Tests the RepresentationCursor class.
+ *
+ * @author Julien Subercaze
+ * @since 3.7
+ */
+public class RepresentationCursorTest
+    extends JGAPTestCase {
+  /** String containing the CVS revision. Read out via reflection!*/
+  private final static String CVS_REVISION = "$Revision: 1.1 $";
+
+  public static Test suite() {
+    return new TestSuite(RepresentationCursorTest.class);
+  }
+
+  /**
+   * Decoding a range yields the same as StringKit.decode.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testDecode_0()
+      throws Exception {
+    String[] texts = new String[] {
+        "", "plain", "a b+c", "<x>#y:z~[1]", "%", "été €",
+        "org.jgap.impl.IntegerGene#5:0:10"};
+    for (int i = 0; i < texts.length; i++) {
+      String encoded = StringKit.encode(texts[i]);
+      String framed = "<" + encoded + ">";
+      assertEquals(StringKit.decode(encoded),
+                   StringKit.decode(framed, 1, framed.length() - 1));
+      assertEquals(texts[i], StringKit.decode(framed, 1, framed.length() - 1));
+    }
+  }
+
+  /**
+   * Elements are read in order, empty elements included.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testNextElement_0()
+      throws Exception {
+    RepresentationCursor cursor = new RepresentationCursor(
+        "<a><><" + StringKit.encode("<b>") + ">");
+    assertTrue(cursor.hasNext());
+    assertEquals("a", cursor.nextElement("<", ">"));
+    assertEquals("", cursor.nextElement("<", ">"));
+    assertEquals("<b>", cursor.nextElement("<", ">"));
+    assertFalse(cursor.hasNext());
+  }
+
+  /**
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testNextElement_1()
+      throws Exception {
+    try {
+      new RepresentationCursor("x<a>").nextElement("<", ">");
+      fail();
+    } catch (UnsupportedRepresentationException uex) {
+      ; //this is OK
+    }
+    try {
+      new RepresentationCursor("<a<b>").nextElement("<", ">");
+      fail();
+    } catch (UnsupportedRepresentationException uex) {
+      ; //this is OK
+    }
+    try {
+      new RepresentationCursor("<a").nextElement("<", ">");
+      fail();
+    } catch (UnsupportedRepresentationException uex) {
+      ; //this is OK
+    }
+  }
+
+  /**
+   * Splitting into two tokens behaves like a StringTokenizer.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testSplitPair_0()
+      throws Exception {
+    String[] texts = new String[] {
+        "a#b", "#a#b", "a##b#", "a", "a#", "#", "", "a#b#c"};
+    for (int i = 0; i < texts.length; i++) {
+      StringTokenizer st = new StringTokenizer(texts[i], "#");
+      if (st.countTokens() == 2) {
+        String[] pair = RepresentationCursor.splitPair(texts[i], "#");
+        assertEquals(st.nextToken(), pair[0]);
+        assertEquals(st.nextToken(), pair[1]);
+      }
+      else {
+        try {
+          RepresentationCursor.splitPair(texts[i], "#");
+          fail(texts[i]);
+        } catch (UnsupportedRepresentationException uex) {
+          ; //this is OK
+        }
+      }
+    }
+  }
+
+  /**
+   * A population containing nested genes is restored identically, also when
+   * read from a Reader.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testPopulation_0()
+      throws Exception {
+    Population pop = new Population(conf);
+    for (int i = 0; i < 5; i++) {
+      CompositeGene comp = new CompositeGene(conf);
+      IntegerGene ig = new IntegerGene(conf, 0, 100);
+      ig.setAllele(new Integer(i * 7));
+      comp.addGene(ig);
+      StringGene sg = new StringGene(conf, 0, 30, "gen 0123456789<>#~[]%+é");
+      sg.setAllele("<g#e>~[n]%+é " + i);
+      comp.addGene(sg);
+      DoubleGene dg = new DoubleGene(conf, -1, 1);
+      dg.setAllele(new Double(0.25d * i - 0.5d));
+      Chromosome chrom = new Chromosome(conf, new Gene[] {comp, dg});
+      chrom.setFitnessValueDirectly(i + 0.5d);
+      pop.addChromosome(chrom);
+    }
+    String repr = pop.getPersistentRepresentation();
+    Population pop2 = new Population(conf);
+    pop2.setValueFromPersistentRepresentation(repr);
+    assertEquals(repr, pop2.getPersistentRepresentation());
+    assertEquals(pop, pop2);
+    Population pop3 = new Population(conf);
+    pop3.readPersistentRepresentation(new RepresentationCursor(
+        new StringReader(repr)));
+    assertEquals(repr, pop3.getPersistentRepresentation());
+    assertEquals(5, pop3.size());
+  }
+}
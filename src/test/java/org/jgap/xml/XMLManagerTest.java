@@ -354,4 +354,166 @@ public class XMLManagerTest
     assertEquals(genotypeFromXML, genotype);
   }
 
+  /**
+   * A genotype written by streaming is read via DOM.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testWriteGenotype_0()
+      throws Exception {
+    File f = File.createTempFile(FILENAME_WRITE, "tmp");
+    try {
+      XMLManager.writeGenotype(m_genotype, f);
+      Document doc = XMLManager.readFile(f);
+      assertEquals("1", doc.getDocumentElement().getAttribute("size"));
+      assertEquals(m_genotype,
+                   XMLManager.getGenotypeFromDocument(m_conf, doc));
+    } finally {
+      f.delete();
+    }
+  }
+
+  /**
+   * A genotype written via DOM is read by streaming.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testReadGenotype_0()
+      throws Exception {
+    File f = File.createTempFile(FILENAME_WRITE, "tmp");
+    try {
+      XMLManager.writeFile(XMLManager.representGenotypeAsDocument(m_genotype),
+                           f);
+      assertEquals(m_genotype, XMLManager.readGenotype(m_conf, f));
+    } finally {
+      f.delete();
+    }
+  }
+
+  /**
+   * Streaming round trip of a larger genotype.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testReadGenotype_1()
+      throws Exception {
+    Configuration.resetProperty(Configuration.PROPERTY_SAMPLE_CHROM_INST);
+    conf.setSampleChromosome(new Chromosome(conf, new Gene[] {
+        new BooleanGene(conf), new DoubleGene(conf, -1.0d, 1.0d),
+        new StringGene(conf, 1, 5, "ab<&\">"), new IntegerGene(conf, 0, 9)}));
+    conf.setPopulationSize(50);
+    conf.reset();
+    conf.setFitnessFunction(new TestFitnessFunction());
+    Genotype genotype = Genotype.randomInitialGenotype(conf);
+    // A value of two quotes stands for the empty string, thus use fixed
+    // alleles with quotes to be escaped.
+    // -----------------------------------------------------------------
+    String[] alleles = {"a\"b", "\"<&>", "b&\"a<"};
+    IChromosome[] chroms = genotype.getChromosomes();
+    for (int i = 0; i < chroms.length; i++) {
+      chroms[i].getGene(2).setAllele(alleles[i % alleles.length]);
+    }
+    File f = File.createTempFile(FILENAME_WRITE, "tmp");
+    try {
+      XMLManager.writeGenotype(genotype, f);
+      Genotype genotype2 = XMLManager.readGenotype(conf, f);
+      assertEquals(genotype, genotype2);
+      assertEquals(genotype, XMLManager.getGenotypeFromDocument(conf,
+          XMLManager.readFile(f)));
+    } finally {
+      f.delete();
+    }
+  }
+
+  /**
+   * Iterating over the chromosomes of a file.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testReadChromosomes_0()
+      throws Exception {
+    Genotype genotype = new Genotype(m_conf, new Chromosome[] {m_chrom,
+                                     (Chromosome) m_chrom.clone()});
+    File f = File.createTempFile(FILENAME_WRITE, "tmp");
+    try {
+      XMLManager.writeGenotype(genotype, f);
+      XMLGenotypeReader reader = XMLManager.readChromosomes(m_conf, f);
+      try {
+        assertEquals(2, reader.getSize());
+        int count = 0;
+        while (reader.hasNext()) {
+          assertEquals(m_chrom, reader.next());
+          count++;
+        }
+        assertEquals(2, count);
+      } finally {
+        reader.close();
+      }
+    } finally {
+      f.delete();
+    }
+  }
+
+  /**
+   * A document with a chromosome as root element yields that chromosome.
+   *
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testReadChromosomes_1()
+      throws Exception {
+    File f = File.createTempFile(FILENAME_WRITE, "tmp");
+    try {
+      XMLManager.writeFile(XMLManager.representChromosomeAsDocument(m_chrom),
+                           f);
+      XMLGenotypeReader reader = XMLManager.readChromosomes(m_conf, f);
+      try {
+        assertTrue(reader.hasNext());
+        assertEquals(m_chrom, reader.nextChromosome());
+        assertFalse(reader.hasNext());
+      } finally {
+        reader.close();
+      }
+    } finally {
+      f.delete();
+    }
+  }
+
+  /**
+   * @throws Exception
+   *
+   * @author Julien Subercaze
+   * @since 3.7
+   */
+  public void testReadChromosomes_2()
+      throws Exception {
+    File f = File.createTempFile(FILENAME_WRITE, "tmp");
+    try {
+      FileWriter fw = new FileWriter(f);
+      fw.write("<population><chromosome/></population>");
+      fw.close();
+      try {
+        XMLManager.readChromosomes(m_conf, f);
+        fail();
+      } catch (ImproperXMLException iex) {
+        ; //this is OK
+      }
+    } finally {
+      f.delete();
+    }
+  }
 }